@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.annotation.index;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An annotation processor which records, at compile time, every class which declares metadata decorators (classes
+ * annotated with <code>@ScanMe</code> or having methods annotated with <code>@PropertyDecorator</code> or
+ * <code>@BeanDecorator</code>).  The class names are written to {@link #INDEX_RESOURCE}, one per line, so that
+ * Wicketopia can locate decorators at runtime without scanning the entire classpath.
+ *
+ * @since 1.5
+ */
+@SupportedAnnotationTypes({
+        DecoratorIndexProcessor.SCAN_ME,
+        DecoratorIndexProcessor.PROPERTY_DECORATOR,
+        DecoratorIndexProcessor.BEAN_DECORATOR})
+public class DecoratorIndexProcessor extends AbstractProcessor {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    public static final String INDEX_RESOURCE = "META-INF/wicketopia/decorators.index";
+
+    static final String SCAN_ME = "org.metastopheles.annotation.ScanMe";
+    static final String PROPERTY_DECORATOR = "org.metastopheles.annotation.PropertyDecorator";
+    static final String BEAN_DECORATOR = "org.metastopheles.annotation.BeanDecorator";
+
+    private static final String ENCODING = "UTF-8";
+
+    private final Set<String> classNames = new TreeSet<String>();
+    private final Set<String> compiledTypes = new HashSet<String>();
+
+//----------------------------------------------------------------------------------------------------------------------
+// Processor Implementation
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeIndex();
+        } else {
+            for (Element root : roundEnv.getRootElements()) {
+                if (root instanceof TypeElement) {
+                    compiledTypes.add(processingEnv.getElementUtils().getBinaryName((TypeElement) root).toString());
+                }
+            }
+            for (TypeElement annotation : annotations) {
+                for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                    final TypeElement type = findEnclosingType(element);
+                    if (type != null) {
+                        classNames.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static TypeElement findEnclosingType(Element element) {
+        Element current = element;
+        while (current != null && !(current instanceof TypeElement)) {
+            current = current.getEnclosingElement();
+        }
+        return (TypeElement) current;
+    }
+
+    /**
+     * Reads any index left behind by a previous (incremental) compilation, so that classes which were not recompiled
+     * this time around are not dropped from the index.  Entries for classes which were recompiled (and so have
+     * already been re-indexed if they still declare decorators) or which no longer exist are dropped.
+     *
+     * @return whether an existing index was found
+     */
+    private boolean readExistingIndex() {
+        try {
+            final FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), ENCODING));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.length() > 0 && !line.startsWith("#") && isStillIndexable(line)) {
+                        classNames.add(line);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            return true;
+        } catch (IOException e) {
+            // No existing index, nothing to merge.
+            return false;
+        }
+    }
+
+    private boolean isStillIndexable(String className) {
+        final int nested = className.indexOf('$');
+        final String topLevel = nested == -1 ? className : className.substring(0, nested);
+        return !compiledTypes.contains(topLevel) && processingEnv.getElementUtils().getTypeElement(className.replace('$', '.')) != null;
+    }
+
+    private void writeIndex() {
+        final boolean existing = readExistingIndex();
+        if (classNames.isEmpty() && !existing) {
+            return;
+        }
+        try {
+            final FileObject index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            final Writer writer = new OutputStreamWriter(index.openOutputStream(), ENCODING);
+            try {
+                for (String className : classNames) {
+                    writer.write(className);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Unable to write Wicketopia decorator index " + INDEX_RESOURCE + ": " + e.getMessage());
+        }
+    }
+}
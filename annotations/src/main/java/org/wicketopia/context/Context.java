@@ -16,7 +16,13 @@
 
 package org.wicketopia.context;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  *
@@ -36,12 +42,58 @@ public class Context implements Serializable {
 
     public static final ContextPredicate ALL_CONTEXTS = new AllContextsPredicate();
 
+    private static final ConcurrentMap<String, Integer> IDS = new ConcurrentHashMap<String, Integer>();
+    private static final ConcurrentMap<String, Context> CONTEXTS = new ConcurrentHashMap<String, Context>();
+
     private final String name;
+    private transient volatile int id = -1;
 
 //----------------------------------------------------------------------------------------------------------------------
 // Static Methods
 //----------------------------------------------------------------------------------------------------------------------
 
+    /**
+     * Returns a shared context instance for the name.  Contexts are immutable, so there is no need to create a new one
+     * each time.
+     *
+     * @param name the context name
+     * @return the context
+     * @since 1.5
+     */
+    public static Context forName(String name) {
+        Context context = CONTEXTS.get(name);
+        if (context == null) {
+            context = new Context(name);
+            final Context existing = CONTEXTS.putIfAbsent(name, context);
+            if (existing != null) {
+                context = existing;
+            }
+        }
+        return context;
+    }
+
+    /**
+     * Returns the small, non-negative integer id interned for the context name.  Ids are assigned sequentially in the
+     * order in which names are first seen, so they are suitable for indexing into arrays.
+     *
+     * @param name the context name
+     * @return the id
+     * @since 1.5
+     */
+    public static int idOf(String name) {
+        Integer id = IDS.get(name);
+        if (id == null) {
+            synchronized (IDS) {
+                id = IDS.get(name);
+                if (id == null) {
+                    id = IDS.size();
+                    IDS.put(name, id);
+                }
+            }
+        }
+        return id;
+    }
+
     public static ContextPredicate whereContextNameIn(String... contextNames) {
         return new ContextNamePredicate(contextNames);
     }
@@ -58,41 +110,110 @@ public class Context implements Serializable {
 // Getter/Setter Methods
 //----------------------------------------------------------------------------------------------------------------------
 
+    /**
+     * Returns the id interned for this context's name (see {@link #idOf(String)}).
+     *
+     * @return the id
+     * @since 1.5
+     */
+    public int getId() {
+        int id = this.id;
+        if (id < 0) {
+            id = idOf(name);
+            this.id = id;
+        }
+        return id;
+    }
+
     public String getName() {
         return name;
     }
 
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Contexts are written as just their names and read back as the shared instances (see {@link #forName(String)}).
+     * The interned ids are only meaningful within a single JVM, so they are not written.
+     */
+    private Object writeReplace() {
+        return new CompactForm(name);
+    }
+
 //----------------------------------------------------------------------------------------------------------------------
 // Inner Classes
 //----------------------------------------------------------------------------------------------------------------------
 
-    private static final class AllContextsPredicate implements ContextPredicate {
+    private static final class AllContextsPredicate implements StaticContextPredicate {
         @Override
         public boolean evaluate(Context context) {
             return true;
         }
     }
 
-    private static final class ContextNamePredicate implements ContextPredicate {
+    private static final class CompactForm implements Externalizable {
+        private static final long serialVersionUID = 1L;
+
+        private String name;
+
+        public CompactForm() {
+        }
+
+        private CompactForm(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            name = in.readUTF();
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            out.writeUTF(name);
+        }
+
+        private Object readResolve() {
+            return forName(name);
+        }
+    }
+
+    private static final class ContextNamePredicate implements StaticContextPredicate {
         private final String[] contextNames;
+        private final transient boolean all;
+        private final transient int[] contextIds;
 
         private ContextNamePredicate(String... contextNames) {
             this.contextNames = contextNames;
+            boolean all = contextNames == null || contextNames.length == 0;
+            this.contextIds = new int[all ? 0 : contextNames.length];
+            for (int i = 0; i < contextIds.length; ++i) {
+                all |= ALL.equals(contextNames[i]);
+                contextIds[i] = idOf(contextNames[i]);
+            }
+            this.all = all;
         }
 
         @Override
         public boolean evaluate(Context context) {
-            if (contextNames == null || contextNames.length == 0) {
+            if (all) {
                 return true;
-            } else {
-                final String target = context.getName();
-                for (String contextName : contextNames) {
-                    if (ALL.equals(contextName) || target.equals(contextName)) {
-                        return true;
-                    }
+            }
+            final int target = context.getId();
+            for (int contextId : contextIds) {
+                if (target == contextId) {
+                    return true;
                 }
-                return false;
             }
+            return false;
+        }
+
+        /**
+         * Context ids are only meaningful within a single JVM, so they are recalculated upon deserialization.
+         */
+        private Object readResolve() {
+            return new ContextNamePredicate(contextNames);
         }
     }
 }
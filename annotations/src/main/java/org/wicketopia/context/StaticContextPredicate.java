@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.context;
+
+/**
+ * A {@link ContextPredicate} whose result depends solely upon the name of the context (and never upon request state,
+ * such as the current user's roles), so its result may be computed once and cached per context name.
+ *
+ * @since 1.5
+ */
+public interface StaticContextPredicate extends ContextPredicate {
+}
@@ -113,6 +113,6 @@ public class WicketApplication extends WebApplication {
         wicketopia.addPropertyViewerProvider("image-boolean", ImageBooleanViewer.getProvider());
 
         wicketopia.install(this);
-        getAjaxRequestTargetListeners().add(new AutoFeedbackListener());
+        AutoFeedbackListener.install(this);
     }
 }
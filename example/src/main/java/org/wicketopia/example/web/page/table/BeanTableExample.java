@@ -47,6 +47,7 @@ public class BeanTableExample extends BasePage {
         final PropertyComponentFactory<Person> factory = Wicketopia.get().createViewerFactory(Person.class);
         final Context context = new Context(Context.LIST);
         final List<IColumn<Person, String>> columns = Wicketopia.get().createColumns(Person.class, factory, context);
+        dataProvider.setProjection(Wicketopia.get().getVisibleProperties(Person.class, context));
         add(new AjaxFallbackDefaultDataTable<Person, String>("table", columns, dataProvider, ROWS_PER_PAGE));
     }
 }
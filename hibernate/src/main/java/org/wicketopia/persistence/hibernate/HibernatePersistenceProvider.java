@@ -19,24 +19,43 @@ package org.wicketopia.persistence.hibernate;
 import org.hibernate.Criteria;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.ProjectionList;
 import org.hibernate.criterion.Projections;
-import org.wicketopia.persistence.PersistenceProvider;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.transform.Transformers;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+import org.wicketopia.persistence.AbstractPersistenceProvider;
+import org.wicketopia.persistence.Keyset;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
  * @author James Carman
  */
-public class HibernatePersistenceProvider implements PersistenceProvider {
+public class HibernatePersistenceProvider extends AbstractPersistenceProvider {
 //----------------------------------------------------------------------------------------------------------------------
 // Fields
 //----------------------------------------------------------------------------------------------------------------------
 
     private static final String ASSOCIATION_ALIAS = "sp";
+
+    /**
+     * The most identifiers to put in one "in" list (some databases limit the size of the list).
+     */
+    private static final int MAX_IDENTIFIERS_PER_QUERY = 500;
     private SessionFactory sessionFactory;
 
 //----------------------------------------------------------------------------------------------------------------------
@@ -67,33 +86,92 @@ public class HibernatePersistenceProvider implements PersistenceProvider {
         return (T) getSession().get(beanType, identifier);
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Map<Serializable, T> getByIdentifiers(Class<T> entityType, Collection<? extends Serializable> identifiers) {
+        final String identifierProperty = getIdentifierPropertyName(entityType);
+        if (identifierProperty == null) {
+            return super.getByIdentifiers(entityType, identifiers);
+        }
+        final Map<Serializable, T> entities = new HashMap<Serializable, T>();
+        final List<Serializable> remaining = new ArrayList<Serializable>(identifiers);
+        for (int i = 0; i < remaining.size(); i += MAX_IDENTIFIERS_PER_QUERY) {
+            final List<Serializable> batch = remaining.subList(i, Math.min(remaining.size(), i + MAX_IDENTIFIERS_PER_QUERY));
+            for (T entity : (List<T>) getSession().createCriteria(entityType).add(Restrictions.in(identifierProperty, batch)).list()) {
+                entities.put(getIdentifier(entity), entity);
+            }
+        }
+        return entities;
+    }
+
     @Override
     public long getCount(Class<?> beanType) {
         return ((Number) getSession().createCriteria(beanType).setProjection(Projections.rowCount()).uniqueResult()).intValue();
     }
 
     public Serializable getIdentifier(Object entity) {
-        return getSession().getIdentifier(entity);
+        final Session session = getSession();
+        if (session.contains(entity)) {
+            return session.getIdentifier(entity);
+        }
+        // Not associated with the session (a projected entity, for example)...
+        return sessionFactory.getClassMetadata(entity.getClass()).getIdentifier(entity, (SessionImplementor) session);
+    }
+
+    @Override
+    public Class<?> getIdentifierType(Class<?> entityType) {
+        return sessionFactory.getClassMetadata(entityType).getIdentifierType().getReturnedClass();
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public <T> List<T> getList(Class<T> entityType, long first, long max, String sortProperty, boolean ascending) {
-        Criteria c = getSession().createCriteria(entityType)
-                .setMaxResults((int) max)
-                .setFirstResult((int) first);
-        if (sortProperty != null) {
-            final int ndx = sortProperty.lastIndexOf('.');
-            if (ndx != -1) {
-                final String associationPath = sortProperty.substring(0, ndx);
-                final String propertyName = sortProperty.substring(ndx + 1);
-                c = c.createAlias(associationPath, ASSOCIATION_ALIAS)
-                        .addOrder(ascending ? Order.asc(ASSOCIATION_ALIAS + "." + propertyName) : Order.desc(ASSOCIATION_ALIAS + "." + propertyName));
-            } else {
-                c = c.addOrder(ascending ? Order.asc(sortProperty) : Order.desc(sortProperty));
+        return createOffsetCriteria(entityType, first, max, sortProperty, ascending).list();
+    }
+
+    @Override
+    public <T> List<T> getList(Class<T> entityType, Keyset keyset, long max, String sortProperty, boolean ascending) {
+        return seek(createKeysetCriteria(entityType, keyset, max, sortProperty, ascending), keyset);
+    }
+
+    /**
+     * Keyset paging requires a single identifier property and a sort property which isn't nullable according to the
+     * mapping, since rows with null sort values would fall out of the seek predicate (and databases disagree on where
+     * nulls sort).
+     */
+    @Override
+    public boolean supportsKeyset(Class<?> entityType, String sortProperty) {
+        return getIdentifierPropertyName(entityType) != null && (sortProperty == null || !isNullable(entityType, sortProperty));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getProjectedList(Class<T> entityType, List<String> properties, long first, long max, String sortProperty, boolean ascending) {
+        return project(createOffsetCriteria(entityType, first, max, sortProperty, ascending), entityType, properties).list();
+    }
+
+    @Override
+    public <T> List<T> getProjectedList(Class<T> entityType, List<String> properties, Keyset keyset, long max, String sortProperty, boolean ascending) {
+        return seek(project(createKeysetCriteria(entityType, keyset, max, sortProperty, ascending), entityType, properties), keyset);
+    }
+
+    /**
+     * Only the mapped basic properties (no associations, collections or components) of entities with a single
+     * identifier property can be projected.
+     */
+    @Override
+    public boolean supportsProjection(Class<?> entityType, List<String> properties) {
+        final String identifierProperty = getIdentifierPropertyName(entityType);
+        if (identifierProperty == null) {
+            return false;
+        }
+        final ClassMetadata metadata = sessionFactory.getClassMetadata(entityType);
+        for (String property : properties) {
+            if (!property.equals(identifierProperty) && !isBasicProperty(metadata, property)) {
+                return false;
             }
         }
-        return c.list();
+        return true;
     }
 
     @Override
@@ -139,6 +217,151 @@ public class HibernatePersistenceProvider implements PersistenceProvider {
 // Other Methods
 //----------------------------------------------------------------------------------------------------------------------
 
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> seek(Criteria c, Keyset keyset) {
+        final List<T> list = c.list();
+        if (keyset.isBackwards()) {
+            Collections.reverse(list);
+        }
+        return list;
+    }
+
+    private static Criterion createSeekCriterion(String propertyPath, Object value, boolean forward, boolean inclusive) {
+        if (forward) {
+            return inclusive ? Restrictions.ge(propertyPath, value) : Restrictions.gt(propertyPath, value);
+        }
+        return inclusive ? Restrictions.le(propertyPath, value) : Restrictions.lt(propertyPath, value);
+    }
+
+    /**
+     * Returns whether or not the property is mapped to plain column values (rather than being unmapped, an association,
+     * a collection or a component).
+     */
+    private static boolean isBasicProperty(ClassMetadata metadata, String property) {
+        if (!Arrays.asList(metadata.getPropertyNames()).contains(property)) {
+            return false;
+        }
+        final Type type = metadata.getPropertyType(property);
+        return !type.isAssociationType() && !type.isComponentType();
+    }
+
+    private static int toMaxResults(long max) {
+        return (int) Math.min(max, Integer.MAX_VALUE);
+    }
+
+    private Criteria createKeysetCriteria(Class<?> entityType, Keyset keyset, long max, String sortProperty, boolean ascending) {
+        if (!supportsKeyset(entityType, sortProperty)) {
+            throw new UnsupportedOperationException("Keyset paging requires a single identifier property and a non-nullable sort property (" + entityType.getName() + " sorted by " + sortProperty + ").");
+        }
+        if (sortProperty != null && keyset.getSortValue() == null) {
+            throw new IllegalArgumentException("Keyset " + keyset + " has no sort value.");
+        }
+        final String identifierProperty = getIdentifierPropertyName(entityType);
+        final boolean forward = ascending != keyset.isBackwards();
+        final Criteria c = getSession().createCriteria(entityType).setMaxResults(toMaxResults(max));
+        final Criterion identifierCriterion = createSeekCriterion(identifierProperty, keyset.getIdentifier(), forward, keyset.isInclusive());
+        final String sortPath = createSortPath(c, sortProperty);
+        if (sortPath == null) {
+            c.add(identifierCriterion);
+        } else {
+            c.add(Restrictions.or(
+                    createSeekCriterion(sortPath, keyset.getSortValue(), forward, false),
+                    Restrictions.and(Restrictions.eq(sortPath, keyset.getSortValue()), identifierCriterion)));
+            c.addOrder(forward ? Order.asc(sortPath) : Order.desc(sortPath));
+        }
+        c.addOrder(forward ? Order.asc(identifierProperty) : Order.desc(identifierProperty));
+        return c;
+    }
+
+    private Criteria createOffsetCriteria(Class<?> entityType, long first, long max, String sortProperty, boolean ascending) {
+        if (first > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Offset " + first + " is too large (use keyset paging instead).");
+        }
+        final Criteria c = getSession().createCriteria(entityType)
+                .setMaxResults(toMaxResults(max))
+                .setFirstResult((int) first);
+        final String sortPath = createSortPath(c, sortProperty);
+        if (sortPath != null) {
+            c.addOrder(ascending ? Order.asc(sortPath) : Order.desc(sortPath));
+        }
+        final String identifierProperty = getIdentifierPropertyName(entityType);
+        if (identifierProperty != null) {
+            c.addOrder(ascending ? Order.asc(identifierProperty) : Order.desc(identifierProperty));
+        }
+        return c;
+    }
+
+    /**
+     * Returns the path to use for the sort property in the criteria, adding an alias for its association (if any).
+     */
+    private String createSortPath(Criteria c, String sortProperty) {
+        if (sortProperty == null) {
+            return null;
+        }
+        final int ndx = sortProperty.lastIndexOf('.');
+        if (ndx == -1) {
+            return sortProperty;
+        }
+        c.createAlias(sortProperty.substring(0, ndx), ASSOCIATION_ALIAS);
+        return ASSOCIATION_ALIAS + "." + sortProperty.substring(ndx + 1);
+    }
+
+    /**
+     * Returns the name of the identifier property, or <code>null</code> if the identifier is composite (an embedded
+     * identifier or an identifier class), in which case there is no single property to order or seek by.
+     */
+    private String getIdentifierPropertyName(Class<?> entityType) {
+        final ClassMetadata metadata = sessionFactory.getClassMetadata(entityType);
+        final String identifierProperty = metadata.getIdentifierPropertyName();
+        return identifierProperty == null || metadata.getIdentifierType().isComponentType() ? null : identifierProperty;
+    }
+
+    /**
+     * Returns whether or not the property (following associations for a property path) may be null, according to the
+     * mapping.
+     */
+    private boolean isNullable(Class<?> entityType, String propertyPath) {
+        ClassMetadata metadata = sessionFactory.getClassMetadata(entityType);
+        final String[] properties = propertyPath.split("\\.");
+        for (int i = 0; i < properties.length - 1; ++i) {
+            final Type type = metadata.getPropertyType(properties[i]);
+            if (!type.isEntityType()) {
+                return true;
+            }
+            metadata = sessionFactory.getClassMetadata(((EntityType) type).getAssociatedEntityName());
+        }
+        final String property = properties[properties.length - 1];
+        if (property.equals(metadata.getIdentifierPropertyName())) {
+            return false;
+        }
+        final String[] propertyNames = metadata.getPropertyNames();
+        for (int i = 0; i < propertyNames.length; ++i) {
+            if (propertyNames[i].equals(property)) {
+                return metadata.getPropertyNullability()[i];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Selects only the identifier and the properties, turning each row into a new instance of the entity type.  Only
+     * basic properties can be projected.
+     */
+    private Criteria project(Criteria c, Class<?> entityType, List<String> properties) {
+        if (!supportsProjection(entityType, properties)) {
+            throw new UnsupportedOperationException("Properties " + properties + " of " + entityType.getName() + " can't be projected (only mapped basic properties of entities with a single identifier property can).");
+        }
+        final String identifierProperty = getIdentifierPropertyName(entityType);
+        final ProjectionList projection = Projections.projectionList()
+                .add(Projections.property(identifierProperty), identifierProperty);
+        for (String property : properties) {
+            if (!property.equals(identifierProperty)) {
+                projection.add(Projections.property(property), property);
+            }
+        }
+        return c.setProjection(projection).setResultTransformer(Transformers.aliasToBean(entityType));
+    }
+
     protected Session getSession() {
         return sessionFactory.getCurrentSession();
     }
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.persistence.hibernate;
+
+import org.hibernate.HibernateException;
+import org.hibernate.SessionFactory;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wicketopia.persistence.RowCountEstimator;
+
+/**
+ * A {@link RowCountEstimator} which reads the number of rows in an entity's table from the database's statistics,
+ * using a native query taking the (unqualified) table name as its only parameter.  Queries are provided for
+ * {@link #H2_QUERY H2}, {@link #MYSQL_QUERY MySQL} and {@link #POSTGRESQL_QUERY PostgreSQL}, but the query for the
+ * database in use must be set explicitly (until it is, there is no estimate).  If the query fails, there is no estimate
+ * either.  The estimate is only as good as the statistics (which may be stale).
+ *
+ * @since 1.5
+ */
+public class HibernateRowCountEstimator implements RowCountEstimator {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HibernateRowCountEstimator.class);
+
+    public static final String H2_QUERY = "select row_count_estimate from information_schema.tables where upper(table_name) = upper(?)";
+    public static final String MYSQL_QUERY = "select table_rows from information_schema.tables where table_schema = database() and upper(table_name) = upper(?)";
+    public static final String POSTGRESQL_QUERY = "select cast(reltuples as bigint) from pg_class where relkind = 'r' and lower(relname) = lower(?)";
+
+    private SessionFactory sessionFactory;
+    private String query;
+
+//----------------------------------------------------------------------------------------------------------------------
+// RowCountEstimator Implementation
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public long estimateCount(Class<?> entityType) {
+        if (query == null) {
+            return -1;
+        }
+        final String tableName = getTableName(entityType);
+        if (tableName == null) {
+            return -1;
+        }
+        try {
+            final Object result = sessionFactory.getCurrentSession()
+                    .createSQLQuery(query)
+                    .setString(0, tableName)
+                    .setMaxResults(1)
+                    .uniqueResult();
+            return result instanceof Number ? ((Number) result).longValue() : -1;
+        } catch (HibernateException e) {
+            LOGGER.warn("Unable to estimate the number of rows in table " + tableName + " (check the query for your database).", e);
+            return -1;
+        }
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Getter/Setter Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Sets the native query reading the row count estimate (one of the queries provided or one of your own).
+     */
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public SessionFactory getSessionFactory() {
+        return sessionFactory;
+    }
+
+    public void setSessionFactory(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    private String getTableName(Class<?> entityType) {
+        final ClassMetadata metadata = sessionFactory.getClassMetadata(entityType);
+        if (!(metadata instanceof AbstractEntityPersister)) {
+            return null;
+        }
+        final String tableName = ((AbstractEntityPersister) metadata).getTableName();
+        return tableName.substring(tableName.lastIndexOf('.') + 1).replaceAll("[\"`\\[\\]]", "");
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.persistence.hibernate;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import static org.testng.Assert.*;
+
+public class TestHibernateRowCountEstimator {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private SessionFactory sessionFactory;
+    private HibernateRowCountEstimator estimator;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    @BeforeClass
+    public void createSessionFactory() {
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(Gadget.class)
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.connection.driver_class", "org.h2.Driver")
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:estimator;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.hbm2ddl.auto", "create")
+                .setProperty("hibernate.current_session_context_class", "thread")
+                .buildSessionFactory();
+        sessionFactory.getCurrentSession().beginTransaction();
+        for (long i = 0; i < 3; i++) {
+            sessionFactory.getCurrentSession().save(new Gadget(i));
+        }
+        sessionFactory.getCurrentSession().getTransaction().commit();
+    }
+
+    @AfterClass
+    public void closeSessionFactory() {
+        sessionFactory.close();
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        estimator = new HibernateRowCountEstimator();
+        estimator.setSessionFactory(sessionFactory);
+        sessionFactory.getCurrentSession().beginTransaction();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        sessionFactory.getCurrentSession().getTransaction().rollback();
+    }
+
+    @Test
+    public void testEstimateFromStatistics() {
+        estimator.setQuery(HibernateRowCountEstimator.H2_QUERY);
+        assertEquals(estimator.estimateCount(Gadget.class), 3);
+    }
+
+    @Test
+    public void testNoEstimateWithoutQuery() {
+        assertEquals(estimator.estimateCount(Gadget.class), -1);
+    }
+
+    @Test
+    public void testNoEstimateWhenQueryFails() {
+        estimator.setQuery(HibernateRowCountEstimator.POSTGRESQL_QUERY);
+        assertEquals(estimator.estimateCount(Gadget.class), -1);
+    }
+
+    @Test
+    public void testNoEstimateForUnmappedType() {
+        estimator.setQuery(HibernateRowCountEstimator.H2_QUERY);
+        assertEquals(estimator.estimateCount(String.class), -1);
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Entity
+    public static class Gadget {
+        @Id
+        private Long id;
+
+        public Gadget() {
+        }
+
+        public Gadget(Long id) {
+            this.id = id;
+        }
+
+        public Long getId() {
+            return id;
+        }
+    }
+}
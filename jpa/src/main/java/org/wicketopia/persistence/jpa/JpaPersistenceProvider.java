@@ -16,7 +16,7 @@
 
 package org.wicketopia.persistence.jpa;
 
-import org.wicketopia.persistence.PersistenceProvider;
+import org.wicketopia.persistence.AbstractPersistenceProvider;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -28,7 +28,7 @@ import java.util.List;
 /**
  * @author James Carman
  */
-public class JpaPersistenceProvider implements PersistenceProvider {
+public class JpaPersistenceProvider extends AbstractPersistenceProvider {
 //----------------------------------------------------------------------------------------------------------------------
 // Fields
 //----------------------------------------------------------------------------------------------------------------------
@@ -107,8 +107,11 @@ public class JpaPersistenceProvider implements PersistenceProvider {
         if (sortProperty != null) {
             jpaql = jpaql + " order by x." + sortProperty + (ascending ? " asc" : " desc");
         }
+        if (first > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Offset " + first + " is too large.");
+        }
         final Query query = entityManager.createQuery(jpaql);
-        query.setFirstResult((int) first).setMaxResults((int) max);
+        query.setFirstResult((int) first).setMaxResults((int) Math.min(max, Integer.MAX_VALUE));
         return query.getResultList();
     }
 }
@@ -16,23 +16,43 @@
 
 package org.wicketopia.persistence.jpa;
 
-import org.wicketopia.persistence.PersistenceProvider;
+import org.wicketopia.persistence.AbstractPersistenceProvider;
+import org.wicketopia.persistence.Keyset;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
 import javax.persistence.Query;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.SingularAttribute;
+import javax.persistence.metamodel.Type;
 import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author James Carman
  */
-public class Jpa2PersistenceProvider implements PersistenceProvider {
+public class Jpa2PersistenceProvider extends AbstractPersistenceProvider {
 //----------------------------------------------------------------------------------------------------------------------
 // Fields
 //----------------------------------------------------------------------------------------------------------------------
 
+    /**
+     * The most identifiers to put in one "in" list (some databases limit the size of the list).
+     */
+    private static final int MAX_IDENTIFIERS_PER_QUERY = 500;
+
     @PersistenceContext
     private EntityManager entityManager;
 
@@ -89,11 +109,36 @@ public class Jpa2PersistenceProvider implements PersistenceProvider {
         return (Serializable) entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity);
     }
 
+    @Override
+    public Class<?> getIdentifierType(Class<?> entityType) {
+        return entityManager.getMetamodel().entity(entityType).getIdType().getJavaType();
+    }
+
     @Override
     public <T> T getByIdentifier(Class<T> entityType, Serializable identifier) {
         return entityManager.find(entityType, identifier);
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Map<Serializable, T> getByIdentifiers(Class<T> entityType, Collection<? extends Serializable> identifiers) {
+        final String identifierAttribute = getIdentifierAttributeName(entityType);
+        if (identifierAttribute == null) {
+            return super.getByIdentifiers(entityType, identifiers);
+        }
+        final Map<Serializable, T> entities = new HashMap<Serializable, T>();
+        final List<Serializable> remaining = new ArrayList<Serializable>(identifiers);
+        final String jpaql = "select x from " + entityType.getName() + " x where x." + identifierAttribute + " in (:identifiers)";
+        for (int i = 0; i < remaining.size(); i += MAX_IDENTIFIERS_PER_QUERY) {
+            final Query query = entityManager.createQuery(jpaql);
+            query.setParameter("identifiers", remaining.subList(i, Math.min(remaining.size(), i + MAX_IDENTIFIERS_PER_QUERY)));
+            for (T entity : (List<T>) query.getResultList()) {
+                entities.put(getIdentifier(entity), entity);
+            }
+        }
+        return entities;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public <T> List<T> getAll(Class<T> entityType) {
@@ -104,13 +149,259 @@ public class Jpa2PersistenceProvider implements PersistenceProvider {
 
     @SuppressWarnings("unchecked")
     public <T> List<T> getList(Class<T> entityType, final long first, final long max, final String sortProperty, final boolean ascending) {
-        String jpaql = "select x from " + entityType.getName() + " x";
+        return createOffsetQuery(entityType, "x", first, max, sortProperty, ascending).getResultList();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getList(Class<T> entityType, Keyset keyset, long max, String sortProperty, boolean ascending) {
+        return seek(createKeysetQuery(entityType, "x", keyset, max, sortProperty, ascending).getResultList(), keyset);
+    }
+
+    /**
+     * Keyset paging requires a single basic identifier attribute and a sort attribute which isn't optional according to
+     * the metamodel, since rows with null sort values would fall out of the seek predicate (and databases disagree on
+     * where nulls sort).
+     */
+    @Override
+    public boolean supportsKeyset(Class<?> entityType, String sortProperty) {
+        return getIdentifierAttributeName(entityType) != null && (sortProperty == null || !isNullable(entityType, sortProperty));
+    }
+
+    @Override
+    public <T> List<T> getProjectedList(Class<T> entityType, List<String> properties, long first, long max, String sortProperty, boolean ascending) {
+        final Projection<T> projection = new Projection<T>(entityType, properties);
+        return projection.toEntities(createOffsetQuery(entityType, projection.getSelect(), first, max, sortProperty, ascending).getResultList());
+    }
+
+    @Override
+    public <T> List<T> getProjectedList(Class<T> entityType, List<String> properties, Keyset keyset, long max, String sortProperty, boolean ascending) {
+        final Projection<T> projection = new Projection<T>(entityType, properties);
+        return seek(projection.toEntities(createKeysetQuery(entityType, projection.getSelect(), keyset, max, sortProperty, ascending).getResultList()), keyset);
+    }
+
+    /**
+     * Only the basic attributes of entities with a single basic identifier attribute can be projected.
+     */
+    @Override
+    public boolean supportsProjection(Class<?> entityType, List<String> properties) {
+        if (getIdentifierAttributeName(entityType) == null) {
+            return false;
+        }
+        final EntityType<?> type = entityManager.getMetamodel().entity(entityType);
+        for (String property : properties) {
+            if (getBasicAttribute(type, property) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Getter/Setter Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    public EntityManager getEntityManager() {
+        return entityManager;
+    }
+
+    public void setEntityManager(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the basic attribute of the entity type with the name, or <code>null</code> if there is none.
+     */
+    private static Attribute<?, ?> getBasicAttribute(EntityType<?> type, String name) {
+        for (Attribute<?, ?> attribute : type.getAttributes()) {
+            if (attribute.getName().equals(name)) {
+                return attribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.BASIC ? attribute : null;
+            }
+        }
+        return null;
+    }
+
+    private static <T> List<T> seek(List<T> list, Keyset keyset) {
+        if (keyset.isBackwards()) {
+            Collections.reverse(list);
+        }
+        return list;
+    }
+
+    private static int toMaxResults(long max) {
+        return (int) Math.min(max, Integer.MAX_VALUE);
+    }
+
+    private Query createKeysetQuery(Class<?> entityType, String select, Keyset keyset, long max, String sortProperty, boolean ascending) {
+        if (!supportsKeyset(entityType, sortProperty)) {
+            throw new UnsupportedOperationException("Keyset paging requires a single identifier attribute and a non-optional sort attribute (" + entityType.getName() + " sorted by " + sortProperty + ").");
+        }
+        if (sortProperty != null && keyset.getSortValue() == null) {
+            throw new IllegalArgumentException("Keyset " + keyset + " has no sort value.");
+        }
+        final String identifierAttribute = getIdentifierAttributeName(entityType);
+        final boolean forward = ascending != keyset.isBackwards();
+        final String direction = forward ? " asc" : " desc";
+        final String identifier = "x." + identifierAttribute;
+        final String identifierCondition = identifier + (forward ? ">" : "<") + (keyset.isInclusive() ? "=" : "") + " :identifier";
+        final StringBuilder jpaql = new StringBuilder("select ").append(select).append(" from ").append(entityType.getName()).append(" x where ");
+        if (sortProperty == null) {
+            jpaql.append(identifierCondition).append(" order by ");
+        } else {
+            final String sort = "x." + sortProperty;
+            jpaql.append(sort).append(forward ? " > " : " < ").append(":sortValue or (")
+                    .append(sort).append(" = :sortValue and ").append(identifierCondition).append(") order by ")
+                    .append(sort).append(direction).append(", ");
+        }
+        jpaql.append(identifier).append(direction);
+        final Query query = entityManager.createQuery(jpaql.toString());
+        query.setParameter("identifier", keyset.getIdentifier());
         if (sortProperty != null) {
-            jpaql = jpaql + " order by x." + sortProperty + (ascending ? " asc" : " desc");
+            query.setParameter("sortValue", keyset.getSortValue());
+        }
+        query.setMaxResults(toMaxResults(max));
+        return query;
+    }
+
+    private Query createOffsetQuery(Class<?> entityType, String select, long first, long max, String sortProperty, boolean ascending) {
+        if (first > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Offset " + first + " is too large (use keyset paging instead).");
+        }
+        final String direction = ascending ? " asc" : " desc";
+        final String identifierAttribute = getIdentifierAttributeName(entityType);
+        String jpaql = "select " + select + " from " + entityType.getName() + " x";
+        if (sortProperty != null) {
+            jpaql = jpaql + " order by x." + sortProperty + direction;
+        }
+        if (identifierAttribute != null) {
+            jpaql = jpaql + (sortProperty == null ? " order by x." : ", x.") + identifierAttribute + direction;
         }
         final Query query = entityManager.createQuery(jpaql);
-        query.setFirstResult((int) first).setMaxResults((int) max);
-        return query.getResultList();
+        query.setFirstResult((int) first).setMaxResults(toMaxResults(max));
+        return query;
+    }
+
+    /**
+     * Returns the name of the identifier attribute, or <code>null</code> if the identifier is composite (an embedded
+     * identifier or an identifier class), in which case there is no single attribute to order or seek by.
+     */
+    private String getIdentifierAttributeName(Class<?> entityType) {
+        final EntityType<?> type = entityManager.getMetamodel().entity(entityType);
+        if (!type.hasSingleIdAttribute() || type.getIdType().getPersistenceType() != Type.PersistenceType.BASIC) {
+            return null;
+        }
+        return type.getId(type.getIdType().getJavaType()).getName();
+    }
+
+    /**
+     * Returns whether or not the attribute (following associations for an attribute path) may be null, according to
+     * the metamodel.
+     */
+    private boolean isNullable(Class<?> entityType, String propertyPath) {
+        ManagedType<?> type = entityManager.getMetamodel().entity(entityType);
+        final String[] properties = propertyPath.split("\\.");
+        for (int i = 0; i < properties.length - 1; ++i) {
+            final Attribute<?, ?> attribute = type.getAttribute(properties[i]);
+            if (!(attribute instanceof SingularAttribute) || !(((SingularAttribute<?, ?>) attribute).getType() instanceof ManagedType)) {
+                return true;
+            }
+            type = (ManagedType<?>) ((SingularAttribute<?, ?>) attribute).getType();
+        }
+        final Attribute<?, ?> attribute = type.getAttribute(properties[properties.length - 1]);
+        if (!(attribute instanceof SingularAttribute)) {
+            return true;
+        }
+        final SingularAttribute<?, ?> singularAttribute = (SingularAttribute<?, ?>) attribute;
+        return singularAttribute.isOptional() && !singularAttribute.isId();
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Selects only the identifier and some basic attributes of an entity, turning each tuple back into a new instance of
+     * the entity type.
+     */
+    private final class Projection<T> {
+        private final Class<T> entityType;
+        private final List<Attribute<?, ?>> attributes = new ArrayList<Attribute<?, ?>>();
+        private final StringBuilder select = new StringBuilder();
+
+        private Projection(Class<T> entityType, List<String> properties) {
+            this.entityType = entityType;
+            if (!supportsProjection(entityType, properties)) {
+                throw new UnsupportedOperationException("Properties " + properties + " of " + entityType.getName() + " can't be projected (only basic attributes of entities with a single basic identifier attribute can).");
+            }
+            final EntityType<T> type = entityManager.getMetamodel().entity(entityType);
+            add(type.getAttribute(getIdentifierAttributeName(entityType)));
+            for (String property : properties) {
+                final Attribute<?, ?> attribute = getBasicAttribute(type, property);
+                if (!attributes.contains(attribute)) {
+                    add(attribute);
+                }
+            }
+        }
+
+        private void add(Attribute<?, ?> attribute) {
+            if (select.length() > 0) {
+                select.append(", ");
+            }
+            select.append("x.").append(attribute.getName());
+            attributes.add(attribute);
+        }
+
+        private Method findSetter(Class<?> type, String name) throws NoSuchMethodException {
+            final String setterName = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Method method : c.getDeclaredMethods()) {
+                    if (method.getName().equals(setterName) && method.getParameterTypes().length == 1) {
+                        return method;
+                    }
+                }
+            }
+            throw new NoSuchMethodException(type.getName() + "." + setterName + "()");
+        }
+
+        private String getSelect() {
+            return select.toString();
+        }
+
+        private void setValue(T entity, Attribute<?, ?> attribute, Object value) throws Exception {
+            final Member member = attribute.getJavaMember();
+            if (member instanceof Field) {
+                final Field field = (Field) member;
+                field.setAccessible(true);
+                field.set(entity, value);
+            } else {
+                final Method setter = findSetter(member.getDeclaringClass(), attribute.getName());
+                setter.setAccessible(true);
+                setter.invoke(entity, value);
+            }
+        }
+
+        private List<T> toEntities(List<?> rows) {
+            final List<T> entities = new ArrayList<T>(rows.size());
+            try {
+                final Constructor<T> constructor = entityType.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                for (Object row : rows) {
+                    final Object[] values = row instanceof Object[] ? (Object[]) row : new Object[]{row};
+                    final T entity = constructor.newInstance();
+                    for (int i = 0; i < values.length; ++i) {
+                        setValue(entity, attributes.get(i), values[i]);
+                    }
+                    entities.add(entity);
+                }
+            } catch (Exception e) {
+                throw new PersistenceException("Unable to populate projected " + entityType.getName() + ".", e);
+            }
+            return entities;
+        }
     }
 }
 
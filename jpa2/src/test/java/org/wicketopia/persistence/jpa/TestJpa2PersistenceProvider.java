@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.persistence.jpa;
+
+import org.hibernate.ejb.Ejb3Configuration;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wicketopia.persistence.Keyset;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Id;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class TestJpa2PersistenceProvider {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+    private Jpa2PersistenceProvider provider;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static List<Long> ids(List<Gizmo> gizmos) {
+        final List<Long> ids = new ArrayList<Long>(gizmos.size());
+        for (Gizmo gizmo : gizmos) {
+            ids.add(gizmo.getId());
+        }
+        return ids;
+    }
+
+    @BeforeClass
+    public void createEntityManagerFactory() {
+        entityManagerFactory = new Ejb3Configuration()
+                .addAnnotatedClass(Gizmo.class)
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.connection.driver_class", "org.h2.Driver")
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:jpa2;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.hbm2ddl.auto", "create")
+                .buildEntityManagerFactory();
+        final EntityManager em = entityManagerFactory.createEntityManager();
+        em.getTransaction().begin();
+        // Two gizmos per name, so the identifier has to break the ties...
+        final String[] names = {"a", "a", "b", "b", "c", "c"};
+        for (int i = 0; i < names.length; i++) {
+            em.persist(new Gizmo(i + 1L, names[i], "nick" + (i + 1)));
+        }
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @AfterClass
+    public void closeEntityManagerFactory() {
+        entityManagerFactory.close();
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        entityManager = entityManagerFactory.createEntityManager();
+        entityManager.getTransaction().begin();
+        provider = new Jpa2PersistenceProvider();
+        provider.setEntityManager(entityManager);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        entityManager.getTransaction().rollback();
+        entityManager.close();
+    }
+
+    @Test
+    public void testProjectedRows() {
+        final List<Gizmo> gizmos = provider.getProjectedList(Gizmo.class, Arrays.asList("name"), 0, 2, "name", false);
+        assertEquals(ids(gizmos), Arrays.asList(6L, 5L));
+        for (Gizmo gizmo : gizmos) {
+            assertEquals(gizmo.getName(), "c");
+            assertNull(gizmo.getNickname());
+            assertFalse(entityManager.contains(gizmo));
+        }
+    }
+
+    @Test
+    public void testProjectedSortAndPaging() {
+        final List<String> properties = Arrays.asList("nickname", "name");
+        final List<Gizmo> offsetPage = provider.getProjectedList(Gizmo.class, properties, 2, 2, "name", true);
+        assertEquals(ids(offsetPage), Arrays.asList(3L, 4L));
+        assertEquals(offsetPage.get(0).getNickname(), "nick3");
+        assertEquals(ids(provider.getProjectedList(Gizmo.class, properties, Keyset.after("b", 4L), 2, "name", true)), Arrays.asList(5L, 6L));
+        assertEquals(ids(provider.getProjectedList(Gizmo.class, properties, Keyset.before("c", 5L), 2, "name", true)), Arrays.asList(3L, 4L));
+        assertEquals(ids(provider.getProjectedList(Gizmo.class, properties, Keyset.after("b", 3L), 2, "name", false)), Arrays.asList(2L, 1L));
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testProjectingUnmappedProperty() {
+        provider.getProjectedList(Gizmo.class, Arrays.asList("name", "label"), 0, 2, "name", true);
+    }
+
+    @Test
+    public void testSupportsProjection() {
+        assertTrue(provider.supportsProjection(Gizmo.class, Arrays.asList("name", "nickname")));
+        assertTrue(provider.supportsProjection(Gizmo.class, Arrays.asList("id", "name")));
+        assertFalse(provider.supportsProjection(Gizmo.class, Arrays.asList("name", "label")));
+    }
+
+    @Test
+    public void testSupportsKeyset() {
+        assertTrue(provider.supportsKeyset(Gizmo.class, null));
+        assertTrue(provider.supportsKeyset(Gizmo.class, "name"));
+        assertTrue(provider.supportsKeyset(Gizmo.class, "id"));
+        assertFalse(provider.supportsKeyset(Gizmo.class, "nickname"));
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void testKeysetByNullableProperty() {
+        provider.getList(Gizmo.class, Keyset.after("x", 1L), 2, "nickname", true);
+    }
+
+    @Test
+    public void testSeekAfter() {
+        assertEquals(ids(provider.getList(Gizmo.class, Keyset.after("a", 2L), 2, "name", true)), Arrays.asList(3L, 4L));
+        // The tie on the sort value is broken by the identifier...
+        assertEquals(ids(provider.getList(Gizmo.class, Keyset.after("b", 3L), 10, "name", true)), Arrays.asList(4L, 5L, 6L));
+    }
+
+    @Test
+    public void testSeekAfterDescending() {
+        assertEquals(ids(provider.getList(Gizmo.class, Keyset.after("c", 5L), 2, "name", false)), Arrays.asList(4L, 3L));
+    }
+
+    @Test
+    public void testSeekBefore() {
+        // Fetched backwards, but returned in list order...
+        assertEquals(ids(provider.getList(Gizmo.class, Keyset.before("c", 5L), 2, "name", true)), Arrays.asList(3L, 4L));
+        assertEquals(ids(provider.getList(Gizmo.class, Keyset.before("b", 4L), 10, "name", true)), Arrays.asList(1L, 2L, 3L));
+        assertEquals(ids(provider.getList(Gizmo.class, Keyset.before("b", 4L), 10, "name", false)), Arrays.asList(6L, 5L));
+    }
+
+    @Test
+    public void testSeekFrom() {
+        assertEquals(ids(provider.getList(Gizmo.class, Keyset.from("b", 3L), 2, "name", true)), Arrays.asList(3L, 4L));
+        assertEquals(ids(provider.getList(Gizmo.class, Keyset.from("b", 4L), 2, "name", false)), Arrays.asList(4L, 3L));
+    }
+
+    @Test
+    public void testSeekByIdentifierOnly() {
+        assertEquals(ids(provider.getList(Gizmo.class, Keyset.after(null, 4L), 10, null, true)), Arrays.asList(5L, 6L));
+        assertEquals(ids(provider.getList(Gizmo.class, Keyset.before(null, 3L), 10, null, true)), Arrays.asList(1L, 2L));
+        assertEquals(ids(provider.getList(Gizmo.class, Keyset.from(null, 3L), 10, null, false)), Arrays.asList(3L, 2L, 1L));
+    }
+
+    @Test
+    public void testSeekMatchesOffsetPaging() {
+        final List<Gizmo> offsetPage = provider.getList(Gizmo.class, 2, 2, "name", false);
+        final Gizmo last = offsetPage.get(offsetPage.size() - 1);
+        assertEquals(ids(provider.getList(Gizmo.class, Keyset.after(last.getName(), last.getId()), 2, "name", false)), ids(provider.getList(Gizmo.class, 4, 2, "name", false)));
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Entity
+    public static class Gizmo {
+        @Id
+        private Long id;
+
+        @Column(nullable = false)
+        private String name;
+
+        private String nickname;
+
+        public Gizmo() {
+        }
+
+        public Gizmo(Long id, String name, String nickname) {
+            this.id = id;
+            this.name = name;
+            this.nickname = nickname;
+        }
+
+        /**
+         * An unmapped property (the mapping uses field access).
+         */
+        public String getLabel() {
+            return name + " (" + nickname + ")";
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getNickname() {
+            return nickname;
+        }
+
+        public void setNickname(String nickname) {
+            this.nickname = nickname;
+        }
+    }
+}
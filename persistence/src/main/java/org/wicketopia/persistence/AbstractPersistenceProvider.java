@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.persistence;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A convenient base class for {@link PersistenceProvider} implementations.  It implements the methods added to the
+ * interface in 1.5 in terms of the original ones (or as unsupported), so an implementation written against an earlier
+ * version only needs to extend this class; it may then override these methods with something more efficient.
+ *
+ * @since 1.5
+ */
+public abstract class AbstractPersistenceProvider implements PersistenceProvider {
+//----------------------------------------------------------------------------------------------------------------------
+// PersistenceProvider Implementation
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Not supported by default.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public Class<?> getIdentifierType(Class<?> entityType) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not report identifier types.");
+    }
+
+    /**
+     * Looks up the entities one at a time, using {@link #getByIdentifier(Class, Serializable)}.
+     */
+    @Override
+    public <T> Map<Serializable, T> getByIdentifiers(Class<T> entityType, Collection<? extends Serializable> identifiers) {
+        final Map<Serializable, T> entities = new HashMap<Serializable, T>();
+        for (Serializable identifier : identifiers) {
+            final T entity = getByIdentifier(entityType, identifier);
+            if (entity != null) {
+                entities.put(identifier, entity);
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * Not supported by default.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public <T> List<T> getList(Class<T> entityType, Keyset keyset, long max, String sortProperty, boolean ascending) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support keyset paging.");
+    }
+
+    /**
+     * Not supported by default.
+     *
+     * @return <code>false</code>
+     */
+    @Override
+    public boolean supportsKeyset(Class<?> entityType, String sortProperty) {
+        return false;
+    }
+
+    /**
+     * Returns fully populated entities, using {@link #getList(Class, long, long, String, boolean)}.
+     */
+    @Override
+    public <T> List<T> getProjectedList(Class<T> entityType, List<String> properties, long first, long max, String sortProperty, boolean ascending) {
+        return getList(entityType, first, max, sortProperty, ascending);
+    }
+
+    /**
+     * Returns fully populated entities, using {@link #getList(Class, Keyset, long, String, boolean)}.
+     */
+    @Override
+    public <T> List<T> getProjectedList(Class<T> entityType, List<String> properties, Keyset keyset, long max, String sortProperty, boolean ascending) {
+        return getList(entityType, keyset, max, sortProperty, ascending);
+    }
+
+    /**
+     * Not supported by default (the projected lists are fully populated).
+     *
+     * @return <code>false</code>
+     */
+    @Override
+    public boolean supportsProjection(Class<?> entityType, List<String> properties) {
+        return false;
+    }
+}
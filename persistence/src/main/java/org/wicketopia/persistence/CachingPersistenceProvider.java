@@ -0,0 +1,454 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.persistence;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wicketopia.util.BoundedMemo;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link PersistenceProvider} decorator which caches the results of {@link #getCount(Class)} and
+ * {@link #getList(Class, long, long, String, boolean)}.  Lists are cached as lists of identifiers, whose entities are
+ * looked up (in one batch) through {@link #getByIdentifiers(Class, Collection)}, so this pairs well with a second-level
+ * cache.
+ * <p/>
+ * Results expire after a time-to-live and are kept in bounded caches, one per entity type.  Creating, updating or
+ * deleting entities through this provider invalidates the cached results of their types (and supertypes), but changes
+ * made by other means only show once the results expire.
+ * <p/>
+ * Optionally, counts which are read when close to expiring can be refreshed in the background using a
+ * {@link #setRefreshExecutor(Executor) refresh executor}.  Its tasks call the delegate's <code>getCount()</code>, so
+ * the executor must provide whatever session/transaction context the delegate needs.
+ *
+ * @since 1.5
+ */
+public class CachingPersistenceProvider extends AbstractPersistenceProvider {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    public static final long DEFAULT_TIME_TO_LIVE = 60 * 1000;
+    public static final int DEFAULT_MAXIMUM_SIZE = 256;
+    public static final double DEFAULT_REFRESH_AHEAD_FACTOR = 0.75;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingPersistenceProvider.class);
+
+    private final PersistenceProvider delegate;
+    private final long timeToLive;
+    private final int maximumSize;
+    private final ConcurrentMap<Class<?>, TypeCache> caches = new ConcurrentHashMap<Class<?>, TypeCache>();
+    private volatile Executor refreshExecutor;
+    private volatile double refreshAheadFactor = DEFAULT_REFRESH_AHEAD_FACTOR;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    public CachingPersistenceProvider(PersistenceProvider delegate) {
+        this(delegate, DEFAULT_TIME_TO_LIVE, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * @param delegate    the provider doing the actual work
+     * @param timeToLive  the time (in milliseconds) for which results are cached
+     * @param maximumSize the maximum number of results cached per entity type
+     */
+    public CachingPersistenceProvider(PersistenceProvider delegate, long timeToLive, int maximumSize) {
+        this.delegate = delegate;
+        this.timeToLive = timeToLive;
+        this.maximumSize = maximumSize;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// PersistenceProvider Implementation
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public <T> T create(T object) {
+        final T created = delegate.create(object);
+        invalidate(object);
+        return created;
+    }
+
+    @Override
+    public <T, C extends Collection<? extends T>> void create(C collection) {
+        delegate.create(collection);
+        invalidateAll(collection);
+    }
+
+    @Override
+    public <T> void delete(T object) {
+        delegate.delete(object);
+        invalidate(object);
+    }
+
+    @Override
+    public <T, C extends Collection<? extends T>> void delete(C collection) {
+        delegate.delete(collection);
+        invalidateAll(collection);
+    }
+
+    @Override
+    public <T> List<T> getAll(Class<T> entityType) {
+        return delegate.getAll(entityType);
+    }
+
+    @Override
+    public <T> T getByIdentifier(Class<T> entityType, Serializable identifier) {
+        return delegate.getByIdentifier(entityType, identifier);
+    }
+
+    @Override
+    public <T> Map<Serializable, T> getByIdentifiers(Class<T> entityType, Collection<? extends Serializable> identifiers) {
+        return delegate.getByIdentifiers(entityType, identifiers);
+    }
+
+    @Override
+    public long getCount(Class<?> beanType) {
+        final TypeCache cache = getTypeCache(beanType);
+        final CountKey key = new CountKey();
+        final CachedResult result = cache.get(key);
+        if (result != null) {
+            refreshAhead(beanType, cache, key, result);
+            return (Long) result.value;
+        }
+        final long generation = cache.generation.get();
+        final long count = delegate.getCount(beanType);
+        cache.put(key, new CachedResult(count, generation));
+        return count;
+    }
+
+    @Override
+    public Serializable getIdentifier(Object entity) {
+        return delegate.getIdentifier(entity);
+    }
+
+    @Override
+    public Class<?> getIdentifierType(Class<?> entityType) {
+        return delegate.getIdentifierType(entityType);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getList(Class<T> entityType, long first, long max, String sortProperty, boolean ascending) {
+        final TypeCache cache = getTypeCache(entityType);
+        final ListKey key = new ListKey(first, max, sortProperty, ascending);
+        final CachedResult result = cache.get(key);
+        if (result != null) {
+            final List<T> entities = resolve(entityType, (List<Serializable>) result.value);
+            if (entities != null) {
+                return entities;
+            }
+        }
+        final long generation = cache.generation.get();
+        final List<T> entities = delegate.getList(entityType, first, max, sortProperty, ascending);
+        final List<Serializable> identifiers = new ArrayList<Serializable>(entities.size());
+        for (T entity : entities) {
+            identifiers.add(delegate.getIdentifier(entity));
+        }
+        cache.put(key, new CachedResult(identifiers, generation));
+        return entities;
+    }
+
+    @Override
+    public <T> List<T> getList(Class<T> entityType, Keyset keyset, long max, String sortProperty, boolean ascending) {
+        return delegate.getList(entityType, keyset, max, sortProperty, ascending);
+    }
+
+    @Override
+    public boolean supportsKeyset(Class<?> entityType, String sortProperty) {
+        return delegate.supportsKeyset(entityType, sortProperty);
+    }
+
+    @Override
+    public <T> List<T> getProjectedList(Class<T> entityType, List<String> properties, long first, long max, String sortProperty, boolean ascending) {
+        return delegate.getProjectedList(entityType, properties, first, max, sortProperty, ascending);
+    }
+
+    @Override
+    public <T> List<T> getProjectedList(Class<T> entityType, List<String> properties, Keyset keyset, long max, String sortProperty, boolean ascending) {
+        return delegate.getProjectedList(entityType, properties, keyset, max, sortProperty, ascending);
+    }
+
+    @Override
+    public boolean supportsProjection(Class<?> entityType, List<String> properties) {
+        return delegate.supportsProjection(entityType, properties);
+    }
+
+    @Override
+    public <T> T update(T object) {
+        final T updated = delegate.update(object);
+        invalidate(object);
+        return updated;
+    }
+
+    @Override
+    public <T, C extends Collection<? extends T>> void update(C collection) {
+        delegate.update(collection);
+        invalidateAll(collection);
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Getter/Setter Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    public PersistenceProvider getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Sets the fraction of the time-to-live after which a count which is read is refreshed in the background (if a
+     * {@link #setRefreshExecutor(Executor) refresh executor} is set).
+     *
+     * @param refreshAheadFactor the fraction of the time-to-live (between 0 and 1)
+     */
+    public void setRefreshAheadFactor(double refreshAheadFactor) {
+        this.refreshAheadFactor = refreshAheadFactor;
+    }
+
+    /**
+     * Sets the executor used to refresh counts ahead of their expiry.  Without one (the default), counts are only
+     * reloaded once expired.
+     *
+     * @param refreshExecutor the executor
+     */
+    public void setRefreshExecutor(Executor refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Discards all cached results.
+     */
+    public void clear() {
+        for (TypeCache cache : caches.values()) {
+            cache.invalidate();
+        }
+    }
+
+    /**
+     * Discards the cached results of the entity type and of its supertypes.
+     *
+     * @param entityType the entity type
+     */
+    public void invalidate(Class<?> entityType) {
+        for (Map.Entry<Class<?>, TypeCache> entry : caches.entrySet()) {
+            if (entry.getKey().isAssignableFrom(entityType)) {
+                entry.getValue().invalidate();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cache hits (for the entity type's counts and lists).
+     *
+     * @param entityType the entity type
+     * @return the number of hits
+     */
+    public long getHits(Class<?> entityType) {
+        final TypeCache cache = caches.get(entityType);
+        return cache == null ? 0 : cache.hits.get();
+    }
+
+    /**
+     * Returns the number of cache misses (for the entity type's counts and lists).
+     *
+     * @param entityType the entity type
+     * @return the number of misses
+     */
+    public long getMisses(Class<?> entityType) {
+        final TypeCache cache = caches.get(entityType);
+        return cache == null ? 0 : cache.misses.get();
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private TypeCache getTypeCache(Class<?> entityType) {
+        TypeCache cache = caches.get(entityType);
+        if (cache == null) {
+            final TypeCache newCache = new TypeCache();
+            cache = caches.putIfAbsent(entityType, newCache);
+            if (cache == null) {
+                cache = newCache;
+            }
+        }
+        return cache;
+    }
+
+    private void invalidate(Object entity) {
+        if (entity != null) {
+            invalidate(entity.getClass());
+        }
+    }
+
+    private void invalidateAll(Collection<?> entities) {
+        final Set<Class<?>> types = new HashSet<Class<?>>();
+        for (Object entity : entities) {
+            if (entity != null && types.add(entity.getClass())) {
+                invalidate(entity.getClass());
+            }
+        }
+    }
+
+    private void refreshAhead(final Class<?> beanType, final TypeCache cache, final CountKey key, CachedResult result) {
+        final Executor executor = refreshExecutor;
+        if (executor == null || currentTimeMillis() - result.created < timeToLive * refreshAheadFactor || !result.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final long generation = cache.generation.get();
+                    cache.put(key, new CachedResult(delegate.getCount(beanType), generation));
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Unable to refresh count for " + beanType.getName() + ".", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Looks up the entities of a cached list, returning <code>null</code> if any of them no longer exist.
+     */
+    private <T> List<T> resolve(Class<T> entityType, List<Serializable> identifiers) {
+        final Map<Serializable, T> found = delegate.getByIdentifiers(entityType, identifiers);
+        final List<T> entities = new ArrayList<T>(identifiers.size());
+        for (Serializable identifier : identifiers) {
+            final T entity = found.get(identifier);
+            if (entity == null) {
+                return null;
+            }
+            entities.add(entity);
+        }
+        return entities;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    private final class CachedResult {
+        private final Object value;
+        private final long generation;
+        private final long created = currentTimeMillis();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private CachedResult(Object value, long generation) {
+            this.value = value;
+            this.generation = generation;
+        }
+    }
+
+    private static final class CountKey {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CountKey;
+        }
+
+        @Override
+        public int hashCode() {
+            return CountKey.class.hashCode();
+        }
+    }
+
+    private static final class ListKey {
+        private final long first;
+        private final long max;
+        private final String sortProperty;
+        private final boolean ascending;
+
+        private ListKey(long first, long max, String sortProperty, boolean ascending) {
+            this.first = first;
+            this.max = max;
+            this.sortProperty = sortProperty;
+            this.ascending = ascending;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ListKey)) {
+                return false;
+            }
+            final ListKey other = (ListKey) o;
+            return first == other.first && max == other.max && ascending == other.ascending && ObjectUtils.equals(sortProperty, other.sortProperty);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (first ^ (first >>> 32));
+            result = 31 * result + (int) (max ^ (max >>> 32));
+            result = 31 * result + ObjectUtils.hashCode(sortProperty);
+            result = 31 * result + (ascending ? 1 : 0);
+            return result;
+        }
+    }
+
+    /**
+     * The cached results of an entity type.  Invalidating bumps the generation, so that results loaded before the
+     * invalidation (but stored after it) are never served.
+     */
+    private final class TypeCache {
+        private final AtomicLong generation = new AtomicLong();
+        private final BoundedMemo<Object, CachedResult> entries = new BoundedMemo<Object, CachedResult>(maximumSize);
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+
+        private CachedResult get(Object key) {
+            final CachedResult result = entries.get(key);
+            if (result == null || result.generation != generation.get() || currentTimeMillis() - result.created >= timeToLive) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return result;
+        }
+
+        private void invalidate() {
+            generation.incrementAndGet();
+            entries.clear();
+        }
+
+        private void put(Object key, CachedResult result) {
+            if (result.generation == generation.get()) {
+                entries.put(key, result);
+            }
+        }
+    }
+}
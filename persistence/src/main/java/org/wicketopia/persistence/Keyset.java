@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.persistence;
+
+import java.io.Serializable;
+
+/**
+ * A position in a list of entities ordered by a sort property and then by identifier (as a deterministic tiebreaker),
+ * used for keyset ("seek") paging.  Rather than skipping a number of rows, a keyset page is fetched by comparing against
+ * the sort value and identifier of the row at the page boundary, which the database can do using an index no matter how
+ * deep the page is.
+ *
+ * @see PersistenceProvider#getList(Class, Keyset, long, String, boolean)
+ * @since 1.5
+ */
+public final class Keyset implements Serializable {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final long serialVersionUID = 1L;
+
+    private final Seek seek;
+    private final Serializable sortValue;
+    private final Serializable identifier;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The rows following (but not including) the row with the sort value and identifier.
+     */
+    public static Keyset after(Serializable sortValue, Serializable identifier) {
+        return new Keyset(Seek.After, sortValue, identifier);
+    }
+
+    /**
+     * The rows preceding (but not including) the row with the sort value and identifier.  They are still returned in
+     * list order.
+     */
+    public static Keyset before(Serializable sortValue, Serializable identifier) {
+        return new Keyset(Seek.Before, sortValue, identifier);
+    }
+
+    /**
+     * The rows starting from (and including) the row with the sort value and identifier.
+     */
+    public static Keyset from(Serializable sortValue, Serializable identifier) {
+        return new Keyset(Seek.From, sortValue, identifier);
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    private Keyset(Seek seek, Serializable sortValue, Serializable identifier) {
+        this.seek = seek;
+        this.sortValue = sortValue;
+        this.identifier = identifier;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Getter/Setter Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    public Serializable getIdentifier() {
+        return identifier;
+    }
+
+    public Seek getSeek() {
+        return seek;
+    }
+
+    /**
+     * Returns the sort value of the boundary row (ignored when the list isn't sorted).
+     */
+    public Serializable getSortValue() {
+        return sortValue;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns whether or not rows must be fetched in reverse list order (and then reversed again).
+     */
+    public boolean isBackwards() {
+        return seek == Seek.Before;
+    }
+
+    /**
+     * Returns whether or not the boundary row itself is included.
+     */
+    public boolean isInclusive() {
+        return seek == Seek.From;
+    }
+
+    @Override
+    public String toString() {
+        return seek + "(" + sortValue + ", " + identifier + ")";
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    public static enum Seek {
+        After,
+        Before,
+        From
+    }
+}
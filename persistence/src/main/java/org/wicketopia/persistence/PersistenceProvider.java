@@ -19,7 +19,13 @@ package org.wicketopia.persistence;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Performs the persistence operations needed by Wicketopia's components.  Implementations should extend
+ * {@link AbstractPersistenceProvider}, which implements the methods added in later versions in terms of the original
+ * ones, so they keep compiling as the interface grows.
+ */
 public interface PersistenceProvider {
 //----------------------------------------------------------------------------------------------------------------------
 // Other Methods
@@ -29,8 +35,27 @@ public interface PersistenceProvider {
 
     Serializable getIdentifier(Object entity);
 
+    /**
+     * Returns the type of the identifiers of the entity type.
+     *
+     * @param entityType the entity type
+     * @return the identifier type
+     * @since 1.5
+     */
+    Class<?> getIdentifierType(Class<?> entityType);
+
     <T> T getByIdentifier(Class<T> entityType, Serializable identifier);
 
+    /**
+     * Looks up several entities of a type at once, using as few queries as possible.
+     *
+     * @param entityType  the entity type
+     * @param identifiers the identifiers
+     * @return the entities found, keyed by identifier (entities which don't exist are left out)
+     * @since 1.5
+     */
+    <T> Map<Serializable, T> getByIdentifiers(Class<T> entityType, Collection<? extends Serializable> identifiers);
+
     <T> T create(T object);
 
     <T, C extends Collection<? extends T>> void create(C collection);
@@ -43,6 +68,79 @@ public interface PersistenceProvider {
 
     <T> List<T> getList(Class<T> entityType, final long first, final long max, final String sortProperty, final boolean ascending);
 
+    /**
+     * Returns a page of entities by keyset ("seek") paging rather than by offset.  Entities are ordered by the sort
+     * property (if any) and then by identifier, and the page starts next to the keyset's boundary row.  Since rows with
+     * a null sort value can't be compared against the boundary row, providers may refuse nullable sort properties.
+     *
+     * @param entityType   the entity type
+     * @param keyset       the page boundary
+     * @param max          the maximum number of entities to return
+     * @param sortProperty the sort property (or <code>null</code> to order by identifier only)
+     * @param ascending    whether or not the sort is ascending
+     * @return the entities, in list order
+     * @throws UnsupportedOperationException if keyset paging isn't supported (see {@link #supportsKeyset(Class, String)})
+     * @since 1.5
+     */
+    <T> List<T> getList(Class<T> entityType, Keyset keyset, long max, String sortProperty, boolean ascending);
+
+    /**
+     * Returns whether or not entities of the type can be paged by keyset when sorted by the sort property.
+     *
+     * @param entityType   the entity type
+     * @param sortProperty the sort property (or <code>null</code> to order by identifier only)
+     * @return whether or not {@link #getList(Class, Keyset, long, String, boolean)} supports the type and sort property
+     * @since 1.5
+     */
+    boolean supportsKeyset(Class<?> entityType, String sortProperty);
+
+    /**
+     * Returns a page of entities like {@link #getList(Class, long, long, String, boolean)}, but selects only the
+     * identifier and the named properties.  The entities returned are new, unmanaged instances of the entity type with
+     * only those properties populated, suitable for display only.  Providers may restrict the properties to mapped
+     * basic properties (no associations or collections).
+     *
+     * @param entityType   the entity type
+     * @param properties   the names of the (top-level) properties to select
+     * @param first        the index of the first entity to return
+     * @param max          the maximum number of entities to return
+     * @param sortProperty the sort property (or <code>null</code> to order by identifier only)
+     * @param ascending    whether or not the sort is ascending
+     * @return the partially populated entities
+     * @throws UnsupportedOperationException if the provider doesn't {@link #supportsProjection(Class, List) support}
+     *                                       projecting the properties
+     * @since 1.5
+     */
+    <T> List<T> getProjectedList(Class<T> entityType, List<String> properties, long first, long max, String sortProperty, boolean ascending);
+
+    /**
+     * Returns a page of entities by keyset paging like {@link #getList(Class, Keyset, long, String, boolean)}, but
+     * selects only the identifier and the named properties like
+     * {@link #getProjectedList(Class, List, long, long, String, boolean)}.
+     *
+     * @param entityType   the entity type
+     * @param properties   the names of the (top-level) properties to select
+     * @param keyset       the page boundary
+     * @param max          the maximum number of entities to return
+     * @param sortProperty the sort property (or <code>null</code> to order by identifier only)
+     * @param ascending    whether or not the sort is ascending
+     * @return the partially populated entities, in list order
+     * @throws UnsupportedOperationException if projecting the properties or keyset paging aren't supported
+     * @since 1.5
+     */
+    <T> List<T> getProjectedList(Class<T> entityType, List<String> properties, Keyset keyset, long max, String sortProperty, boolean ascending);
+
+    /**
+     * Returns whether or not the properties of entities of the type can be selected on their own.
+     *
+     * @param entityType the entity type
+     * @param properties the names of the (top-level) properties to select
+     * @return whether or not {@link #getProjectedList(Class, List, long, long, String, boolean)} supports the type and
+     *         properties
+     * @since 1.5
+     */
+    boolean supportsProjection(Class<?> entityType, List<String> properties);
+
     <T> T update(T object);
 
     <T, C extends Collection<? extends T>> void update(C collection);
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.persistence;
+
+/**
+ * Estimates the number of entities of a type (typically from the database's statistics), for use where an exact
+ * count would be too expensive.
+ *
+ * @see org.wicketopia.persistence.model.repeater.PersistenceDataProvider#setRowCountEstimator(RowCountEstimator)
+ * @since 1.5
+ */
+public interface RowCountEstimator {
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Estimates the number of entities of the type.
+     *
+     * @param entityType the entity type
+     * @return the estimate, or a negative number if no estimate is available
+     */
+    long estimateCount(Class<?> entityType);
+}
@@ -19,6 +19,7 @@ package org.wicketopia.persistence.component.link;
 import org.apache.wicket.markup.html.form.SubmitLink;
 import org.apache.wicket.model.IModel;
 import org.wicketopia.persistence.PersistenceProvider;
+import org.wicketopia.persistence.model.EntityBatchLoader;
 
 
 public abstract class CreateLink<T> extends SubmitLink {
@@ -52,6 +53,7 @@ public abstract class CreateLink<T> extends SubmitLink {
     public final void onSubmit() {
         T object = (T) getDefaultModelObject();
         object = persistenceProvider.create(object);
+        EntityBatchLoader.evict(persistenceProvider, object);
         afterCreate(object);
     }
 }
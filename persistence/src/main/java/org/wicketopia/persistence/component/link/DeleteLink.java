@@ -19,6 +19,7 @@ package org.wicketopia.persistence.component.link;
 import org.apache.wicket.markup.html.link.Link;
 import org.apache.wicket.model.IModel;
 import org.wicketopia.persistence.PersistenceProvider;
+import org.wicketopia.persistence.model.EntityBatchLoader;
 
 public class DeleteLink<T> extends Link<T> {
 //----------------------------------------------------------------------------------------------------------------------
@@ -48,6 +49,7 @@ public class DeleteLink<T> extends Link<T> {
     public final void onClick() {
         final T object = getModelObject();
         persistenceProvider.delete(object);
+        EntityBatchLoader.evict(persistenceProvider, object);
         afterDelete(object);
     }
 }
@@ -20,6 +20,7 @@ import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.ajax.markup.html.form.AjaxSubmitLink;
 import org.apache.wicket.markup.html.form.Form;
 import org.wicketopia.persistence.PersistenceProvider;
+import org.wicketopia.persistence.model.EntityBatchLoader;
 
 public abstract class AjaxCreateLink<T> extends AjaxSubmitLink {
 //----------------------------------------------------------------------------------------------------------------------
@@ -51,6 +52,7 @@ public abstract class AjaxCreateLink<T> extends AjaxSubmitLink {
     protected void onSubmit(AjaxRequestTarget target, Form<?> form) {
         T object = (T) form.getModelObject();
         object = persistenceProvider.create(object);
+        EntityBatchLoader.evict(persistenceProvider, object);
         afterCreate(object, target);
     }
 }
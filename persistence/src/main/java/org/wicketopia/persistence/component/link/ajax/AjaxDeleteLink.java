@@ -20,6 +20,7 @@ import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.ajax.markup.html.AjaxLink;
 import org.apache.wicket.model.IModel;
 import org.wicketopia.persistence.PersistenceProvider;
+import org.wicketopia.persistence.model.EntityBatchLoader;
 
 public abstract class AjaxDeleteLink<T> extends AjaxLink<T> {
 //----------------------------------------------------------------------------------------------------------------------
@@ -51,6 +52,7 @@ public abstract class AjaxDeleteLink<T> extends AjaxLink<T> {
     public final void onClick(AjaxRequestTarget target) {
         final T object = getModelObject();
         persistenceProvider.delete(object);
+        EntityBatchLoader.evict(persistenceProvider, object);
         afterDelete(object, target);
     }
 }
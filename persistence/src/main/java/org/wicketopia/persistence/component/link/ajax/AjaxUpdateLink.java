@@ -20,6 +20,7 @@ import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.ajax.markup.html.form.AjaxSubmitLink;
 import org.apache.wicket.markup.html.form.Form;
 import org.wicketopia.persistence.PersistenceProvider;
+import org.wicketopia.persistence.model.EntityBatchLoader;
 
 public abstract class AjaxUpdateLink<T> extends AjaxSubmitLink {
 //----------------------------------------------------------------------------------------------------------------------
@@ -52,6 +53,7 @@ public abstract class AjaxUpdateLink<T> extends AjaxSubmitLink {
     protected final void onSubmit(AjaxRequestTarget target, Form<?> form) {
         T object = (T) form.getModelObject();
         object = persistenceProvider.update(object);
+        EntityBatchLoader.evict(persistenceProvider, object);
         afterUpdate(object, target);
     }
 }
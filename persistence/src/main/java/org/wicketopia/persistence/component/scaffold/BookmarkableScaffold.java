@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.persistence.component.scaffold;
+
+import org.apache.wicket.AttributeModifier;
+import org.apache.wicket.Component;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.SortOrder;
+import org.apache.wicket.feedback.ContainerFeedbackMessageFilter;
+import org.apache.wicket.markup.head.CssHeaderItem;
+import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.html.IHeaderContributor;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.form.Button;
+import org.apache.wicket.markup.html.form.Form;
+import org.apache.wicket.markup.html.link.BookmarkablePageLink;
+import org.apache.wicket.markup.html.panel.FeedbackPanel;
+import org.apache.wicket.markup.html.panel.Fragment;
+import org.apache.wicket.markup.html.panel.Panel;
+import org.apache.wicket.markup.repeater.Item;
+import org.apache.wicket.markup.repeater.RepeatingView;
+import org.apache.wicket.markup.repeater.data.DataView;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.request.http.flow.AbortWithHttpErrorCodeException;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.request.resource.PackageResourceReference;
+import org.apache.wicket.util.lang.Objects;
+import org.wicketopia.Wicketopia;
+import org.wicketopia.context.Context;
+import org.wicketopia.factory.PropertyComponentFactory;
+import org.wicketopia.layout.view.CssBeanViewLayoutPanel;
+import org.wicketopia.layout.view.InlineBeanView;
+import org.wicketopia.metadata.BeanRenderPlan;
+import org.wicketopia.metadata.WicketopiaBeanFacet;
+import org.wicketopia.model.label.DisplayNameModel;
+import org.wicketopia.model.label.PluralizedModel;
+import org.wicketopia.persistence.PersistencePlugin;
+import org.wicketopia.persistence.PersistenceProvider;
+import org.wicketopia.persistence.model.LoadableDetachableEntityModel;
+import org.wicketopia.persistence.model.repeater.PersistenceDataProvider;
+import org.wicketopia.viewer.component.InlinePropertyViewer;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A scaffold which keeps all of its state in the page parameters (mode, entity id, page number and sort order) and
+ * navigates using bookmarkable links only.  Listing and viewing entities is therefore stateless: no page instance is
+ * stored in the session and any node can serve any request.  Only the update/create forms make the page stateful.
+ * <p/>
+ * The scaffold is meant to be the main content of a bookmarkable page which passes its {@link PageParameters} along;
+ * all links point back to that page class.
+ *
+ * @author James Carman
+ * @since 1.5
+ */
+public class BookmarkableScaffold<T> extends Panel implements IHeaderContributor {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    public static final String MODE_PARAM = "mode";
+    public static final String ID_PARAM = "id";
+    public static final String PAGE_PARAM = "page";
+    public static final String SORT_PARAM = "sort";
+    public static final String DIRECTION_PARAM = "dir";
+    public static final String ASCENDING = "asc";
+    public static final String DESCENDING = "desc";
+
+    private static final int PAGE_WINDOW = 10;
+    private static final PackageResourceReference CSS_REFERENCE = new PackageResourceReference(Scaffold.class, "scaffold.css");
+    private static final String CONTENT_ID = "content";
+
+    private final Class<T> beanType;
+    private final PersistenceProvider persistenceProvider;
+    private final PageParameters parameters;
+    private final DisplayNameModel displayName;
+    private int rowsPerPage = Scaffold.DEFAULT_ROWS_PER_PAGE;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    public BookmarkableScaffold(String id, Class<T> beanType, PageParameters parameters) {
+        this(id, beanType, parameters, PersistencePlugin.get().getPersistenceProvider());
+    }
+
+    public BookmarkableScaffold(String id, Class<T> beanType, PageParameters parameters, PersistenceProvider persistenceProvider) {
+        super(id);
+        this.beanType = beanType;
+        this.parameters = parameters;
+        this.persistenceProvider = persistenceProvider;
+        displayName = new DisplayNameModel(WicketopiaBeanFacet.get(Wicketopia.get().getBeanMetaData(beanType)));
+        add(new AttributeModifier("class", new Model<String>("scaffold")));
+        final FeedbackPanel feedback = new FeedbackPanel("feedback");
+        feedback.setFilter(new ContainerFeedbackMessageFilter(this));
+        add(feedback);
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// IHeaderContributor Implementation
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void renderHead(IHeaderResponse response) {
+        response.render(CssHeaderItem.forReference(CSS_REFERENCE));
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Getter/Setter Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    public int getRowsPerPage() {
+        return rowsPerPage;
+    }
+
+    public BookmarkableScaffold<T> setRowsPerPage(int rowsPerPage) {
+        this.rowsPerPage = rowsPerPage;
+        return this;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected void onInitialize() {
+        super.onInitialize();
+        add(createContent());
+    }
+
+    @Override
+    protected void onDetach() {
+        super.onDetach();
+        displayName.detach();
+    }
+
+    private Component createContent() {
+        switch (getMode()) {
+            case View:
+                return new ViewFragment(getEntityModel());
+            case Update:
+                return new EditFragment(ScaffoldMode.Update, getEntityModel());
+            case Create:
+                return new EditFragment(ScaffoldMode.Create, new CreateModel());
+            default:
+                return new ListFragment();
+        }
+    }
+
+    private ScaffoldMode getMode() {
+        final String mode = parameters.get(MODE_PARAM).toOptionalString();
+        if (mode != null) {
+            for (ScaffoldMode candidate : ScaffoldMode.values()) {
+                if (candidate.name().equalsIgnoreCase(mode)) {
+                    return candidate;
+                }
+            }
+        }
+        return ScaffoldMode.List;
+    }
+
+    private IModel<T> getEntityModel() {
+        final String id = parameters.get(ID_PARAM).toOptionalString();
+        if (id == null) {
+            throw new AbortWithHttpErrorCodeException(HttpServletResponse.SC_NOT_FOUND);
+        }
+        final LoadableDetachableEntityModel<T> model = new LoadableDetachableEntityModel<T>(beanType, convertIdentifier(id), persistenceProvider);
+        if (model.getObject() == null) {
+            throw new AbortWithHttpErrorCodeException(HttpServletResponse.SC_NOT_FOUND);
+        }
+        return model;
+    }
+
+    /**
+     * Converts an entity id page parameter to an identifier.  By default the string is converted to the identifier
+     * type reported by the persistence provider.
+     *
+     * @param id the id page parameter
+     * @return the identifier
+     */
+    protected Serializable convertIdentifier(String id) {
+        final Class<?> identifierType = persistenceProvider.getIdentifierType(beanType);
+        if (String.class.equals(identifierType)) {
+            return id;
+        }
+        try {
+            return (Serializable) Objects.convertValue(id, identifierType);
+        } catch (RuntimeException e) {
+            throw new AbortWithHttpErrorCodeException(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    private BookmarkablePageLink<Void> newLink(String id, PageParameters linkParameters) {
+        return new BookmarkablePageLink<Void>(id, getPage().getPageClass(), linkParameters);
+    }
+
+    /**
+     * Returns the list parameters (page number and sort order) without the mode and entity id.
+     */
+    private PageParameters listParameters() {
+        final PageParameters list = new PageParameters(parameters);
+        list.remove(MODE_PARAM);
+        list.remove(ID_PARAM);
+        return list;
+    }
+
+    private PageParameters entityParameters(ScaffoldMode mode, Object entity) {
+        final PageParameters entityParameters = listParameters();
+        entityParameters.set(MODE_PARAM, mode.name());
+        entityParameters.set(ID_PARAM, String.valueOf(persistenceProvider.getIdentifier(entity)));
+        return entityParameters;
+    }
+
+    private PageParameters modeParameters(ScaffoldMode mode) {
+        final PageParameters modeParameters = listParameters();
+        modeParameters.set(MODE_PARAM, mode.name());
+        return modeParameters;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    private final class CreateModel extends LoadableDetachableModel<T> {
+        @Override
+        protected T load() {
+            try {
+                return beanType.newInstance();
+            } catch (Exception e) {
+                throw new WicketRuntimeException("Unable to instantiate " + beanType.getName() + " object (" + e.getMessage() + ").", e);
+            }
+        }
+    }
+
+    private final class EditFragment extends Fragment {
+        private EditFragment(final ScaffoldMode mode, IModel<T> model) {
+            super(CONTENT_ID, "edit", BookmarkableScaffold.this);
+            add(newLink("listButton", listParameters()).add(new Label("nameList", displayName).setRenderBodyOnly(true)));
+            add(new Label("caption", mode == ScaffoldMode.Create ? "Create" : "Edit").setRenderBodyOnly(true));
+            add(new Label("nameCaption", displayName).setRenderBodyOnly(true));
+            final Form<T> form = new Form<T>("form", model) {
+                @Override
+                protected void onSubmit() {
+                    final T entity = mode == ScaffoldMode.Create ? persistenceProvider.create(getModelObject()) : persistenceProvider.update(getModelObject());
+                    getSession().info(displayName.getObject() + (mode == ScaffoldMode.Create ? " Created" : " Updated"));
+                    setResponsePage(getPage().getPageClass(), entityParameters(ScaffoldMode.View, entity));
+                }
+            };
+            final PropertyComponentFactory<T> editorFactory = Wicketopia.get().createEditorFactory(beanType);
+            final Context context = Context.forName(mode == ScaffoldMode.Create ? Context.CREATE : Context.UPDATE);
+            form.add(new CssBeanViewLayoutPanel<T>("layout", beanType, model, context, editorFactory));
+            form.add(new Button("saveButton", new Model<String>(mode == ScaffoldMode.Create ? "Create" : "Update")));
+            add(form);
+        }
+    }
+
+    private final class ListFragment extends Fragment {
+        private ListFragment() {
+            super(CONTENT_ID, "list", BookmarkableScaffold.this);
+            add(newLink("newEntity", modeParameters(ScaffoldMode.Create)).add(new Label("displayName", displayName).setRenderBodyOnly(true)));
+            add(new Label("pluralName", new PluralizedModel(displayName)).setRenderBodyOnly(true));
+
+            final Context context = Context.forName(Context.LIST);
+            final BeanRenderPlan plan = Wicketopia.get().getRenderPlan(beanType, context);
+            final List<String> propertyNames = plan.getPropertyNames();
+            final String sortProperty = parameters.get(SORT_PARAM).toOptionalString();
+            final boolean sorted = sortProperty != null && propertyNames.contains(sortProperty);
+            final boolean ascending = !DESCENDING.equals(parameters.get(DIRECTION_PARAM).toOptionalString());
+
+            final PersistenceDataProvider<T> dataProvider = new PersistenceDataProvider<T>(beanType, persistenceProvider);
+            if (sorted) {
+                dataProvider.setSort(sortProperty, ascending ? SortOrder.ASCENDING : SortOrder.DESCENDING);
+            }
+
+            final PropertyComponentFactory<T> viewerFactory = Wicketopia.get().createViewerFactory(beanType);
+            final RepeatingView headers = new RepeatingView("headers");
+            for (String propertyName : propertyNames) {
+                final WebMarkupContainer header = new WebMarkupContainer(headers.newChildId());
+                final PageParameters sortParameters = listParameters();
+                sortParameters.remove(PAGE_PARAM);
+                sortParameters.set(SORT_PARAM, propertyName);
+                final boolean current = sorted && propertyName.equals(sortProperty);
+                sortParameters.set(DIRECTION_PARAM, current && ascending ? DESCENDING : ASCENDING);
+                header.add(newLink("sortLink", sortParameters).add(viewerFactory.createPropertyLabel("label", propertyName)));
+                if (current) {
+                    header.add(new AttributeModifier("class", ascending ? "wicket_orderUp" : "wicket_orderDown"));
+                }
+                headers.add(header);
+            }
+            add(headers);
+
+            final DataView<T> rows = new DataView<T>("rows", dataProvider, rowsPerPage) {
+                @Override
+                protected void populateItem(Item<T> item) {
+                    final RepeatingView cells = new RepeatingView("cells");
+                    for (String propertyName : propertyNames) {
+                        final WebMarkupContainer cell = new WebMarkupContainer(cells.newChildId());
+                        if (plan.getPropertyPlan(propertyName).isInlineViewable()) {
+                            cell.add(new InlinePropertyViewer("cell", item.getModel(), beanType, propertyName, context));
+                        } else {
+                            cell.add(viewerFactory.createPropertyComponent("cell", item.getModel(), propertyName, context));
+                        }
+                        cells.add(cell);
+                    }
+                    item.add(cells);
+                    item.add(newLink("viewLink", entityParameters(ScaffoldMode.View, item.getModelObject())));
+                    item.add(newLink("updateLink", entityParameters(ScaffoldMode.Update, item.getModelObject())));
+                    item.add(new AttributeModifier("class", item.getIndex() % 2 == 0 ? "even" : "odd"));
+                }
+            };
+            final long pageCount = rows.getPageCount();
+            final long currentPage = Math.max(0, Math.min(pageCount - 1, parameters.get(PAGE_PARAM).toLong(1) - 1));
+            rows.setCurrentPage(currentPage);
+            add(rows);
+
+            add(newLink("previous", pageParameters(currentPage - 1)).setVisible(currentPage > 0));
+            add(newLink("next", pageParameters(currentPage + 1)).setVisible(currentPage < pageCount - 1));
+            final RepeatingView pages = new RepeatingView("pages");
+            final long firstPage = Math.max(0, Math.min(currentPage - PAGE_WINDOW / 2, pageCount - PAGE_WINDOW));
+            for (long page = firstPage; page < Math.min(pageCount, firstPage + PAGE_WINDOW); ++page) {
+                final WebMarkupContainer container = new WebMarkupContainer(pages.newChildId());
+                final BookmarkablePageLink<Void> pageLink = newLink("pageLink", pageParameters(page));
+                pageLink.add(new Label("number", String.valueOf(page + 1)));
+                container.add(pageLink.setEnabled(page != currentPage));
+                pages.add(container.setRenderBodyOnly(true));
+            }
+            add(pages.setVisible(pageCount > 1));
+        }
+
+        private PageParameters pageParameters(long page) {
+            final PageParameters pageParameters = listParameters();
+            pageParameters.set(PAGE_PARAM, page + 1);
+            return pageParameters;
+        }
+    }
+
+    private final class ViewFragment extends Fragment {
+        private ViewFragment(IModel<T> model) {
+            super(CONTENT_ID, "view", BookmarkableScaffold.this);
+            add(new Label("nameCaption", displayName).setRenderBodyOnly(true));
+            add(newLink("editButton", entityParameters(ScaffoldMode.Update, model.getObject())));
+            add(newLink("listButton", listParameters()).add(new Label("nameList", displayName).setRenderBodyOnly(true)));
+            add(newLink("createButton", modeParameters(ScaffoldMode.Create)).add(new Label("nameCreate", displayName).setRenderBodyOnly(true)));
+            final Context context = Context.forName(Context.VIEW);
+            if (InlineBeanView.isSupported(beanType, context)) {
+                add(new InlineBeanView<T>("layout", beanType, model, context));
+            } else {
+                add(new CssBeanViewLayoutPanel<T>("layout", beanType, model, context, Wicketopia.get().createViewerFactory(beanType)));
+            }
+        }
+    }
+}
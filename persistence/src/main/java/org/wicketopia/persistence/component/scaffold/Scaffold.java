@@ -18,45 +18,74 @@ package org.wicketopia.persistence.component.scaffold;
 
 import org.apache.wicket.AttributeModifier;
 import org.apache.wicket.Component;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.Session;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.form.AjaxFormChoiceComponentUpdatingBehavior;
 import org.apache.wicket.ajax.markup.html.AjaxLink;
 import org.apache.wicket.behavior.Behavior;
-import org.apache.wicket.extensions.ajax.markup.html.repeater.data.table.AjaxFallbackDefaultDataTable;
+import org.apache.wicket.extensions.ajax.markup.html.repeater.data.table.AjaxFallbackHeadersToolbar;
+import org.apache.wicket.extensions.ajax.markup.html.repeater.data.table.AjaxNavigationToolbar;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.DataTable;
 import org.apache.wicket.extensions.markup.html.repeater.data.table.IColumn;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.NoRecordsToolbar;
 import org.apache.wicket.feedback.ContainerFeedbackMessageFilter;
 import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.head.CssHeaderItem;
 import org.apache.wicket.markup.head.IHeaderResponse;
 import org.apache.wicket.markup.html.IHeaderContributor;
 import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.form.CheckBoxMultipleChoice;
 import org.apache.wicket.markup.html.form.Form;
+import org.apache.wicket.markup.html.form.IChoiceRenderer;
 import org.apache.wicket.markup.html.panel.EmptyPanel;
 import org.apache.wicket.markup.html.panel.FeedbackPanel;
 import org.apache.wicket.markup.html.panel.Fragment;
 import org.apache.wicket.markup.html.panel.Panel;
+import org.apache.wicket.markup.repeater.Item;
+import org.apache.wicket.markup.repeater.OddEvenItem;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.model.Model;
 import org.apache.wicket.request.resource.PackageResourceReference;
+import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitor;
 import org.wicketopia.Wicketopia;
 import org.wicketopia.context.Context;
 import org.wicketopia.factory.PropertyComponentFactory;
 import org.wicketopia.layout.view.CssBeanViewLayoutPanel;
+import org.wicketopia.layout.view.InlineBeanView;
 import org.wicketopia.metadata.WicketopiaBeanFacet;
+import org.wicketopia.metadata.WicketopiaPropertyFacet;
 import org.wicketopia.model.column.FragmentColumn;
 import org.wicketopia.model.label.DisplayNameModel;
 import org.wicketopia.model.label.PluralizedModel;
 import org.wicketopia.persistence.PersistencePlugin;
 import org.wicketopia.persistence.PersistenceProvider;
+import org.wicketopia.persistence.RowCountEstimator;
 import org.wicketopia.persistence.component.link.ajax.AjaxCreateLink;
 import org.wicketopia.persistence.component.link.ajax.AjaxUpdateLink;
+import org.wicketopia.persistence.component.table.CountFreeNavigationToolbar;
+import org.wicketopia.persistence.model.EntityBatchLoader;
 import org.wicketopia.persistence.model.LoadableDetachableEntityModel;
 import org.wicketopia.persistence.model.repeater.PersistenceDataProvider;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 
 /**
+ * A panel providing list/view/create/edit screens for an entity type, switching between them via AJAX.  Only the
+ * affected parts of the panel are re-rendered: deleting from the list removes just the deleted row, the list screen
+ * (with its paging and sorting state) is kept when switching to other screens and back, and
+ * {@link #refreshRow(AjaxRequestTarget, Object)} re-renders a single row of the list.
+ * <p/>
+ * The list only selects the properties it displays (see {@link PersistenceDataProvider#setProjection(List)}), and its
+ * column chooser lets the user narrow them down further.
+ *
  * @author James Carman
  */
 public class Scaffold<T> extends Panel implements IHeaderContributor {
@@ -67,12 +96,16 @@ public class Scaffold<T> extends Panel implements IHeaderContributor {
     public static final int DEFAULT_ROWS_PER_PAGE = 25;
     private static final PackageResourceReference CSS_REFERENCE = new PackageResourceReference(Scaffold.class, "scaffold.css");
     private static final String CONTENT_ID = "content";
+    private static final MetaDataKey<HashMap<String, ArrayList<String>>> CHOSEN_COLUMNS_KEY = new MetaDataKey<HashMap<String, ArrayList<String>>>() {
+    };
     private final Class<T> beanType;
     private final PersistenceProvider persistenceProvider;
     private ScaffoldMode mode = ScaffoldMode.List;
     private final FeedbackPanel feedback = new FeedbackPanel("feedback");
     private IModel<T> model;
     private final DisplayNameModel displayName;
+    private final ScaffoldDataProvider dataProvider;
+    private ListFragment listFragment;
 
 //----------------------------------------------------------------------------------------------------------------------
 // Constructors
@@ -92,23 +125,32 @@ public class Scaffold<T> extends Panel implements IHeaderContributor {
         add(feedback);
         this.beanType = beanType;
         this.persistenceProvider = persistenceProvider;
+        this.dataProvider = new ScaffoldDataProvider();
         refreshContent(null);
         setOutputMarkupPlaceholderTag(true);
     }
 
     private void refreshContent(AjaxRequestTarget target) {
+        final Component previous = get(CONTENT_ID);
         final Component content = createContent();
         content.setOutputMarkupPlaceholderTag(true);
+        if (previous != null && previous != content) {
+            // Take over the previous content's place in the DOM...
+            content.setMarkupId(previous.getMarkupId());
+        }
         addOrReplace(content);
         if (target != null) {
-            target.add(this);
+            target.add(content, feedback);
         }
     }
 
     private Component createContent() {
         switch (mode) {
             case List:
-                return new ListFragment();
+                if (listFragment == null) {
+                    listFragment = new ListFragment();
+                }
+                return listFragment;
             case View:
                 return new ViewFragment();
             case Update:
@@ -134,13 +176,97 @@ public class Scaffold<T> extends Panel implements IHeaderContributor {
 //----------------------------------------------------------------------------------------------------------------------
 
     private Context createContext(String mode) {
-        return new Context(mode);
+        return Context.forName(mode);
+    }
+
+    /**
+     * Returns a model which loads the full entity of a list row by its identifier (the row's own object may only be
+     * partially populated, since the list only selects the properties it displays).
+     */
+    private IModel<T> createEntityModel(IModel<T> rowModel) {
+        return new LoadableDetachableEntityModel<T>(beanType, getIdentifier(rowModel), persistenceProvider);
+    }
+
+    /**
+     * Returns the properties of the list columns the user has chosen to show (all of them by default).
+     */
+    private List<String> getChosenProperties() {
+        final HashMap<String, ArrayList<String>> chosen = Session.get().getMetaData(CHOSEN_COLUMNS_KEY);
+        final List<String> properties = getListProperties();
+        final List<String> chosenProperties = chosen == null ? null : chosen.get(beanType.getName());
+        if (chosenProperties != null && !chosenProperties.isEmpty()) {
+            properties.retainAll(chosenProperties);
+        }
+        return properties;
+    }
+
+    private Serializable getIdentifier(IModel<T> rowModel) {
+        if (rowModel instanceof LoadableDetachableEntityModel) {
+            return ((LoadableDetachableEntityModel<T>) rowModel).getIdentifier();
+        }
+        return persistenceProvider.getIdentifier(rowModel.getObject());
+    }
+
+    private List<String> getListProperties() {
+        return Wicketopia.get().getVisibleProperties(beanType, createContext(Context.LIST));
     }
 
     @Override
     protected void onDetach() {
         super.onDetach();
         displayName.detach();
+        if (listFragment != null && listFragment.getParent() == null) {
+            listFragment.detach();
+        }
+    }
+
+    /**
+     * Enables or disables count-free paging of the list, where the entities are only counted on request and the list
+     * offers "previous" and "next" links instead of page numbers.
+     *
+     * @param countFree whether or not the list should be count-free
+     * @see PersistenceDataProvider#setCountFree(boolean)
+     */
+    public void setCountFree(boolean countFree) {
+        dataProvider.setCountFree(countFree);
+    }
+
+    /**
+     * Sets the estimator used for the approximate number of pages shown by the count-free list.
+     *
+     * @param rowCountEstimator the estimator
+     */
+    public void setRowCountEstimator(RowCountEstimator rowCountEstimator) {
+        dataProvider.setRowCountEstimator(rowCountEstimator);
+    }
+
+    /**
+     * Re-renders the list row displaying the entity (if the list is showing it), leaving the rest of the list alone.
+     *
+     * @param target the AJAX request target
+     * @param entity the entity
+     * @return whether or not a row was found for the entity
+     */
+    public boolean refreshRow(AjaxRequestTarget target, T entity) {
+        if (mode != ScaffoldMode.List || listFragment == null) {
+            return false;
+        }
+        final Serializable identifier = persistenceProvider.getIdentifier(entity);
+        final RowItem row = listFragment.visitChildren(RowItem.class, new IVisitor<RowItem, RowItem>() {
+            @Override
+            public void component(RowItem rowItem, IVisit<RowItem> visit) {
+                if (identifier.equals(rowItem.getIdentifier())) {
+                    visit.stop(rowItem);
+                } else {
+                    visit.dontGoDeeper();
+                }
+            }
+        });
+        if (row == null) {
+            return false;
+        }
+        target.add(row);
+        return true;
     }
 
 //----------------------------------------------------------------------------------------------------------------------
@@ -156,8 +282,8 @@ public class Scaffold<T> extends Panel implements IHeaderContributor {
         protected Fragment createFragment(String componentId, IModel<T> rowModel) {
             Fragment f = new Fragment(componentId, "actions", Scaffold.this);
             f.add(new ViewLink("viewLink", rowModel));
-            f.add(new ScaffoldEditLink("updateLink", rowModel));
-            f.add(new ScaffoldDeleteLink("deleteLink", rowModel));
+            f.add(new ScaffoldEditLink("updateLink", rowModel, true));
+            f.add(new ScaffoldDeleteLink("deleteLink", rowModel, true));
             return f;
         }
     }
@@ -223,7 +349,7 @@ public class Scaffold<T> extends Panel implements IHeaderContributor {
         private EditFragment() {
             super(CONTENT_ID, "edit", Scaffold.this);
             add(new Label("nameCaption", displayName).setRenderBodyOnly(true));
-            add(new ScaffoldDeleteLink("deleteButton", model));
+            add(new ScaffoldDeleteLink("deleteButton", model, false));
             add(new ScaffoldListLink("listButton").add(new Label("nameList", displayName).setRenderBodyOnly(true)));
             add(new ScaffoldCreateLink("createButton").add(new Label("nameCreate", displayName).setRenderBodyOnly(true)));
             final Form<T> form = new Form<T>("form", model);
@@ -235,6 +361,61 @@ public class Scaffold<T> extends Panel implements IHeaderContributor {
         }
     }
 
+    /**
+     * Lets the user choose which of the list's columns to show (remembered in the session per entity type).
+     */
+    private final class ColumnChooser extends Form<Void> {
+        private ColumnChooser(String id) {
+            super(id);
+            final CheckBoxMultipleChoice<String> columns = new CheckBoxMultipleChoice<String>("columns", new ChosenColumnsModel(), getListProperties(), new ColumnRenderer());
+            columns.setSuffix(" ");
+            columns.add(new AjaxFormChoiceComponentUpdatingBehavior() {
+                @Override
+                protected void onUpdate(AjaxRequestTarget target) {
+                    findParent(ListFragment.class).refreshTable(target);
+                }
+            });
+            add(columns);
+        }
+    }
+
+    private final class ChosenColumnsModel implements IModel<Collection<String>> {
+        @Override
+        public void detach() {
+        }
+
+        @Override
+        public Collection<String> getObject() {
+            return getChosenProperties();
+        }
+
+        @Override
+        public void setObject(Collection<String> object) {
+            HashMap<String, ArrayList<String>> chosen = Session.get().getMetaData(CHOSEN_COLUMNS_KEY);
+            if (chosen == null) {
+                chosen = new HashMap<String, ArrayList<String>>();
+            }
+            chosen.put(beanType.getName(), new ArrayList<String>(object));
+            Session.get().setMetaData(CHOSEN_COLUMNS_KEY, chosen);
+        }
+    }
+
+    private final class ColumnRenderer implements IChoiceRenderer<String> {
+        @Override
+        public Object getDisplayValue(String propertyName) {
+            final WicketopiaPropertyFacet facet = WicketopiaPropertyFacet.get(Wicketopia.get().getBeanMetaData(beanType).getPropertyMetaData(propertyName));
+            return DisplayNameModel.getDisplayName(facet, getLocalizer(), Scaffold.this);
+        }
+
+        @Override
+        public String getIdValue(String propertyName, int index) {
+            return propertyName;
+        }
+    }
+
+    /**
+     * A list row, which can be re-rendered (or removed) on its own.
+     */
     private final class ListFragment extends Fragment {
         private ListFragment() {
             super(CONTENT_ID, "list", Scaffold.this);
@@ -242,11 +423,37 @@ public class Scaffold<T> extends Panel implements IHeaderContributor {
             add(create);
             add(new Label("pluralName", new PluralizedModel(displayName)).setRenderBodyOnly(true));
             create.add(new Label("displayName", displayName).setRenderBodyOnly(true));
-            final PropertyComponentFactory<T> viewerFactory = Wicketopia.get().createViewerFactory(beanType);
+            add(new ColumnChooser("columnChooser"));
+            add(createTable());
+        }
+
+        private ScaffoldTable createTable() {
+            final List<String> properties = getChosenProperties();
+            dataProvider.setProjection(properties);
             final Context context = createContext(Context.LIST);
-            final List<IColumn<T, String>> columns = Wicketopia.get().createColumns(beanType, viewerFactory, context);
+            final List<IColumn<T, String>> columns = Wicketopia.get().createInlineColumns(beanType, context, properties.toArray(new String[properties.size()]));
             columns.add(new ActionsColumn());
-            add(new AjaxFallbackDefaultDataTable<T, String>("table", columns, new PersistenceDataProvider<T>(beanType, persistenceProvider), DEFAULT_ROWS_PER_PAGE));
+            return new ScaffoldTable(columns);
+        }
+
+        private void refreshTable(AjaxRequestTarget target) {
+            final Component previous = get("table");
+            final ScaffoldTable table = createTable();
+            table.setMarkupId(previous.getMarkupId());
+            table.setCurrentPage(((ScaffoldTable) previous).getCurrentPage());
+            replace(table);
+            target.add(table);
+        }
+    }
+
+    private final class RowItem extends OddEvenItem<T> {
+        private RowItem(String id, int index, IModel<T> model) {
+            super(id, index, model);
+            setOutputMarkupId(true);
+        }
+
+        private Serializable getIdentifier() {
+            return Scaffold.this.getIdentifier(getModel());
         }
     }
 
@@ -259,6 +466,7 @@ public class Scaffold<T> extends Panel implements IHeaderContributor {
         protected void afterCreate(T object, AjaxRequestTarget target) {
             Scaffold.this.mode = ScaffoldMode.View;
             Scaffold.this.info(displayName.getObject() + " Created");
+            dataProvider.invalidate();
             model = new LoadableDetachableEntityModel<T>(beanType, object, persistenceProvider);
             refreshContent(target);
         }
@@ -281,29 +489,81 @@ public class Scaffold<T> extends Panel implements IHeaderContributor {
         }
     }
 
+    /**
+     * A data provider which counts the entities at most once per request (the table and its navigator both ask).
+     */
+    private final class ScaffoldDataProvider extends PersistenceDataProvider<T> {
+        private transient Long size;
+
+        private ScaffoldDataProvider() {
+            super(beanType, persistenceProvider);
+        }
+
+        private void invalidate() {
+            size = null;
+            invalidateCount();
+        }
+
+        @Override
+        public void detach() {
+            size = null;
+            super.detach();
+        }
+
+        @Override
+        public long size() {
+            if (isCountFree()) {
+                return super.size();
+            }
+            if (size == null) {
+                size = super.size();
+            }
+            return size;
+        }
+    }
+
     private final class ScaffoldDeleteLink extends AjaxLink<T> {
-        private ScaffoldDeleteLink(String id, IModel<T> tiModel) {
+        private final boolean inRow;
+
+        private ScaffoldDeleteLink(String id, IModel<T> tiModel, boolean inRow) {
             super(id, tiModel);
+            this.inRow = inRow;
             add(new ConfirmBehavior("onclick", new Model<String>("Are you sure?")));
         }
 
         @Override
         public void onClick(AjaxRequestTarget target) {
-            persistenceProvider.delete(getModelObject());
+            // Never delete a partially populated list row...
+            final T entity = inRow ? createEntityModel(getModel()).getObject() : getModelObject();
+            persistenceProvider.delete(entity);
+            EntityBatchLoader.evict(persistenceProvider, entity);
             Scaffold.this.info(displayName.getObject() + " Deleted");
-            mode = ScaffoldMode.List;
-            refreshContent(target);
+            dataProvider.invalidate();
+            final RowItem row = inRow ? findParent(RowItem.class) : null;
+            if (row != null) {
+                target.add(feedback);
+                // The navigator's page count and the "no records" toolbar depend on the number of entities...
+                final ScaffoldTable table = row.findParent(ScaffoldTable.class);
+                target.add(table.getToolbars(true), table.getToolbars(false));
+                target.appendJavaScript("Wicket.DOM.remove(Wicket.$('" + row.getMarkupId() + "'));");
+            } else {
+                mode = ScaffoldMode.List;
+                refreshContent(target);
+            }
         }
     }
 
     private final class ScaffoldEditLink extends AjaxLink<T> {
-        private ScaffoldEditLink(String id, IModel<T> model) {
+        private final boolean inRow;
+
+        private ScaffoldEditLink(String id, IModel<T> model, boolean inRow) {
             super(id, model);
+            this.inRow = inRow;
         }
 
         @Override
         public void onClick(AjaxRequestTarget target) {
-            model = getModel();
+            model = inRow ? createEntityModel(getModel()) : getModel();
             mode = ScaffoldMode.Update;
             refreshContent(target);
         }
@@ -321,6 +581,40 @@ public class Scaffold<T> extends Panel implements IHeaderContributor {
         }
     }
 
+    private final class ScaffoldTable extends DataTable<T, String> {
+        private ScaffoldTable(List<IColumn<T, String>> columns) {
+            super("table", columns, dataProvider, DEFAULT_ROWS_PER_PAGE);
+            setOutputMarkupId(true);
+            setVersioned(false);
+            getToolbars(true).setOutputMarkupId(true);
+            getToolbars(false).setOutputMarkupPlaceholderTag(true);
+            addTopToolbar(new AjaxNavigationToolbar(this) {
+                @Override
+                protected void onConfigure() {
+                    super.onConfigure();
+                    if (dataProvider.isCountFree()) {
+                        setVisible(false);
+                    }
+                }
+            });
+            addTopToolbar(new CountFreeNavigationToolbar(this, dataProvider));
+            addTopToolbar(new AjaxFallbackHeadersToolbar<String>(this, dataProvider));
+            addBottomToolbar(new NoRecordsToolbar(this));
+        }
+
+        /**
+         * Returns the container of the top or bottom toolbars (their class isn't visible outside of DataTable).
+         */
+        private Component getToolbars(boolean top) {
+            return top ? getTopToolbars() : getBottomToolbars();
+        }
+
+        @Override
+        protected Item<T> newRowItem(String id, int index, IModel<T> model) {
+            return new RowItem(id, index, model);
+        }
+    }
+
     private class ScaffoldUpdateLink<T> extends AjaxUpdateLink<T> {
         public ScaffoldUpdateLink(Form<T> form) {
             super("saveButton", form, persistenceProvider);
@@ -343,13 +637,17 @@ public class Scaffold<T> extends Panel implements IHeaderContributor {
         private ViewFragment() {
             super(CONTENT_ID, "view", Scaffold.this);
             add(new Label("nameCaption", displayName).setRenderBodyOnly(true));
-            add(new ScaffoldEditLink("editButton", model));
-            add(new ScaffoldDeleteLink("deleteButton", model));
+            add(new ScaffoldEditLink("editButton", model, false));
+            add(new ScaffoldDeleteLink("deleteButton", model, false));
             add(new ScaffoldListLink("listButton").add(new Label("nameList", displayName).setRenderBodyOnly(true)));
             add(new ScaffoldCreateLink("createButton").add(new Label("nameCreate", displayName).setRenderBodyOnly(true)));
-            final PropertyComponentFactory<T> factory = Wicketopia.get().createViewerFactory(beanType);
             final Context context = createContext(Context.VIEW);
-            add(new CssBeanViewLayoutPanel<T>("layout", beanType, model, context, factory));
+            if (InlineBeanView.isSupported(beanType, context)) {
+                add(new InlineBeanView<T>("layout", beanType, model, context));
+            } else {
+                final PropertyComponentFactory<T> factory = Wicketopia.get().createViewerFactory(beanType);
+                add(new CssBeanViewLayoutPanel<T>("layout", beanType, model, context, factory));
+            }
         }
     }
 
@@ -360,7 +658,7 @@ public class Scaffold<T> extends Panel implements IHeaderContributor {
 
         @Override
         public void onClick(AjaxRequestTarget target) {
-            model = getModel();
+            model = createEntityModel(getModel());
             mode = ScaffoldMode.View;
             refreshContent(target);
         }
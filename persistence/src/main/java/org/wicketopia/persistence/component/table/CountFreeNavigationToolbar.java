@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.persistence.component.table;
+
+import org.apache.wicket.AttributeModifier;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.markup.html.AjaxFallbackLink;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.AbstractToolbar;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.DataTable;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.apache.wicket.model.Model;
+import org.wicketopia.persistence.model.repeater.PersistenceDataProvider;
+
+/**
+ * A navigation toolbar for tables backed by a {@link PersistenceDataProvider} in
+ * {@link PersistenceDataProvider#setCountFree(boolean) count-free} mode.  It only offers "previous" and "next" links,
+ * showing "page N of M" once the number of entities is known, "page N of about M" when the data provider has an
+ * estimate, or just "page N" otherwise.  The "count" link counts the entities exactly.  The toolbar is hidden when the
+ * data provider isn't in count-free mode.
+ *
+ * @since 1.5
+ */
+public class CountFreeNavigationToolbar extends AbstractToolbar {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private final PersistenceDataProvider<?> dataProvider;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    public CountFreeNavigationToolbar(DataTable<?, ?> table, PersistenceDataProvider<?> dataProvider) {
+        super(table);
+        this.dataProvider = dataProvider;
+        table.setOutputMarkupId(true);
+        final WebMarkupContainer span = new WebMarkupContainer("span");
+        span.add(AttributeModifier.replace("colspan", new Model<String>(String.valueOf(table.getColumns().size()))));
+        span.add(new PreviousLink("previous"));
+        span.add(new Label("page", new PageModel()));
+        span.add(new NextLink("next"));
+        span.add(new CountLink("count"));
+        add(span);
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    private long getPageCount(long count) {
+        final long itemsPerPage = getTable().getItemsPerPage();
+        return Math.max(1, (count + itemsPerPage - 1) / itemsPerPage);
+    }
+
+    @Override
+    public boolean isVisible() {
+        return dataProvider.isCountFree();
+    }
+
+    private void refresh(AjaxRequestTarget target) {
+        if (target != null) {
+            target.add(getTable());
+        }
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    private final class CountLink extends AjaxFallbackLink<Void> {
+        private CountLink(String id) {
+            super(id);
+        }
+
+        @Override
+        public boolean isVisible() {
+            return dataProvider.getKnownCount() < 0;
+        }
+
+        @Override
+        public void onClick(AjaxRequestTarget target) {
+            dataProvider.countExactly();
+            refresh(target);
+        }
+    }
+
+    private final class NextLink extends AjaxFallbackLink<Void> {
+        private NextLink(String id) {
+            super(id);
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return dataProvider.hasMoreRows();
+        }
+
+        @Override
+        public void onClick(AjaxRequestTarget target) {
+            getTable().setCurrentPage(getTable().getCurrentPage() + 1);
+            refresh(target);
+        }
+    }
+
+    private final class PageModel extends AbstractReadOnlyModel<String> {
+        @Override
+        public String getObject() {
+            final long page = getTable().getCurrentPage() + 1;
+            final long known = dataProvider.getKnownCount();
+            if (known >= 0) {
+                return "Page " + page + " of " + getPageCount(known);
+            }
+            final long estimate = dataProvider.getEstimatedCount();
+            if (estimate >= 0) {
+                return "Page " + page + " of about " + Math.max(getPageCount(estimate), dataProvider.hasMoreRows() ? page + 1 : page);
+            }
+            return "Page " + page;
+        }
+    }
+
+    private final class PreviousLink extends AjaxFallbackLink<Void> {
+        private PreviousLink(String id) {
+            super(id);
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return getTable().getCurrentPage() > 0;
+        }
+
+        @Override
+        public void onClick(AjaxRequestTarget target) {
+            getTable().setCurrentPage(getTable().getCurrentPage() - 1);
+            refresh(target);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.persistence.model;
+
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.wicketopia.persistence.PersistenceProvider;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A request-scoped identity map and batch loader for entities.  {@link LoadableDetachableEntityModel}s register the
+ * identifiers of the entities they're going to need with the loader of the current request, and the first one to load
+ * its entity loads all the registered entities of its type at once (using
+ * {@link PersistenceProvider#getByIdentifiers(Class, java.util.Collection)}), so that a page full of models costs one
+ * query per entity type rather than one per model.  Entities are only remembered for the rest of the request, and
+ * components writing entities {@link #evict(PersistenceProvider, Object) evict} their type, so that nothing stale
+ * (including entities found missing before they were created) is handed out after a write.
+ *
+ * @since 1.5
+ */
+public final class EntityBatchLoader {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final MetaDataKey<EntityBatchLoader> KEY = new MetaDataKey<EntityBatchLoader>() {
+    };
+
+    private final Map<PersistenceProvider, Map<Class<?>, Batch>> batches = new IdentityHashMap<PersistenceProvider, Map<Class<?>, Batch>>();
+
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the loader of the current request.
+     *
+     * @return the loader, or <code>null</code> if there is no current request
+     */
+    public static EntityBatchLoader get() {
+        final RequestCycle requestCycle = RequestCycle.get();
+        if (requestCycle == null) {
+            return null;
+        }
+        EntityBatchLoader loader = requestCycle.getMetaData(KEY);
+        if (loader == null) {
+            loader = new EntityBatchLoader();
+            requestCycle.setMetaData(KEY, loader);
+        }
+        return loader;
+    }
+
+    /**
+     * Makes the loader of the current request (if any) forget the entities loaded of the entity's type, so that they're
+     * loaded again when next needed.  Call this after creating, updating or deleting the entity.
+     *
+     * @param persistenceProvider the persistence provider
+     * @param entity              the entity written
+     */
+    public static void evict(PersistenceProvider persistenceProvider, Object entity) {
+        final RequestCycle requestCycle = RequestCycle.get();
+        final EntityBatchLoader loader = requestCycle == null ? null : requestCycle.getMetaData(KEY);
+        final Map<Class<?>, Batch> providerBatches = loader == null ? null : loader.batches.get(persistenceProvider);
+        if (providerBatches == null) {
+            return;
+        }
+        for (Map.Entry<Class<?>, Batch> entry : providerBatches.entrySet()) {
+            // The entity may be an instance of a subclass (or a proxy) of the type it was loaded as...
+            if (entry.getKey().isInstance(entity)) {
+                entry.getValue().loaded.clear();
+            }
+        }
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    private EntityBatchLoader() {
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    private Batch getBatch(PersistenceProvider persistenceProvider, Class<?> entityType) {
+        Map<Class<?>, Batch> providerBatches = batches.get(persistenceProvider);
+        if (providerBatches == null) {
+            providerBatches = new HashMap<Class<?>, Batch>();
+            batches.put(persistenceProvider, providerBatches);
+        }
+        Batch batch = providerBatches.get(entityType);
+        if (batch == null) {
+            batch = new Batch();
+            providerBatches.put(entityType, batch);
+        }
+        return batch;
+    }
+
+    /**
+     * Returns the entity, loading it (along with all the other registered entities of its type) unless it has already
+     * been loaded during this request.
+     *
+     * @param persistenceProvider the persistence provider
+     * @param entityType          the entity type
+     * @param identifier          the identifier
+     * @return the entity, or <code>null</code> if it doesn't exist
+     */
+    public <T> T load(PersistenceProvider persistenceProvider, Class<T> entityType, Serializable identifier) {
+        final Batch batch = getBatch(persistenceProvider, entityType);
+        if (!batch.loaded.containsKey(identifier)) {
+            batch.pending.add(identifier);
+            final List<Serializable> identifiers = new ArrayList<Serializable>(batch.pending);
+            batch.pending.clear();
+            final Map<Serializable, T> entities = persistenceProvider.getByIdentifiers(entityType, identifiers);
+            for (Serializable pendingIdentifier : identifiers) {
+                batch.loaded.put(pendingIdentifier, entities.get(pendingIdentifier));
+            }
+        }
+        return entityType.cast(batch.loaded.get(identifier));
+    }
+
+    /**
+     * Registers an entity to be loaded with the next batch of its type (unless it has already been loaded during this
+     * request).
+     *
+     * @param persistenceProvider the persistence provider
+     * @param entityType          the entity type
+     * @param identifier          the identifier
+     */
+    public void register(PersistenceProvider persistenceProvider, Class<?> entityType, Serializable identifier) {
+        final Batch batch = getBatch(persistenceProvider, entityType);
+        if (!batch.loaded.containsKey(identifier)) {
+            batch.pending.add(identifier);
+        }
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final class Batch {
+        private final Set<Serializable> pending = new LinkedHashSet<Serializable>();
+        private final Map<Serializable, Object> loaded = new HashMap<Serializable, Object>();
+    }
+}
@@ -19,9 +19,18 @@ package org.wicketopia.persistence.model;
 import org.apache.wicket.model.LoadableDetachableModel;
 import org.wicketopia.persistence.PersistenceProvider;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.List;
 
 /**
+ * A model which reloads its entity by identifier once detached.  Models register their identifiers with the current
+ * request's {@link EntityBatchLoader} when they're created for an identifier or read back in with their page, so that
+ * the entities of all the models used in a request are loaded with one query per entity type.  Since the page isn't
+ * read back in for every request (AJAX requests to the same page instance, for example), a model may also be given the
+ * identifiers of the entities it was loaded with (the other rows of its page), which it registers whenever it loads.
+ *
  * @author James Carman
  */
 public class LoadableDetachableEntityModel<T> extends LoadableDetachableModel<T> {
@@ -32,6 +41,7 @@ public class LoadableDetachableEntityModel<T> extends LoadableDetachableModel<T>
     private final PersistenceProvider persistenceProvider;
     private final Class<T> entityType;
     private final Serializable identifier;
+    private final List<Serializable> batchIdentifiers;
 
 //----------------------------------------------------------------------------------------------------------------------
 // Constructors
@@ -41,13 +51,38 @@ public class LoadableDetachableEntityModel<T> extends LoadableDetachableModel<T>
         this.entityType = entityType;
         this.identifier = identifier;
         this.persistenceProvider = persistenceProvider;
+        this.batchIdentifiers = null;
+        register();
     }
 
     public LoadableDetachableEntityModel(Class<T> entityType, T entity, PersistenceProvider persistenceProvider) {
+        this(entityType, entity, persistenceProvider, null);
+    }
+
+    /**
+     * Creates a model for an entity which was loaded along with others.
+     *
+     * @param entityType          the entity type
+     * @param entity              the entity
+     * @param persistenceProvider the persistence provider
+     * @param batchIdentifiers    the (serializable) list of the identifiers of the entities to load along with this one
+     *                            whenever it's reloaded (shared between the models, so that it's only stored once)
+     * @since 1.5
+     */
+    public LoadableDetachableEntityModel(Class<T> entityType, T entity, PersistenceProvider persistenceProvider, List<Serializable> batchIdentifiers) {
         super(entity);
         this.identifier = persistenceProvider.getIdentifier(entity);
         this.entityType = entityType;
         this.persistenceProvider = persistenceProvider;
+        this.batchIdentifiers = batchIdentifiers;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Getter/Setter Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    public Serializable getIdentifier() {
+        return identifier;
     }
 
 //----------------------------------------------------------------------------------------------------------------------
@@ -56,6 +91,29 @@ public class LoadableDetachableEntityModel<T> extends LoadableDetachableModel<T>
 
     @Override
     protected T load() {
-        return persistenceProvider.getByIdentifier(entityType, identifier);
+        final EntityBatchLoader loader = identifier == null ? null : EntityBatchLoader.get();
+        if (loader == null) {
+            return persistenceProvider.getByIdentifier(entityType, identifier);
+        }
+        if (batchIdentifiers != null) {
+            for (Serializable batchIdentifier : batchIdentifiers) {
+                loader.register(persistenceProvider, entityType, batchIdentifier);
+            }
+        }
+        return loader.load(persistenceProvider, entityType, identifier);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (!isAttached()) {
+            register();
+        }
+    }
+
+    private void register() {
+        final EntityBatchLoader loader = identifier == null ? null : EntityBatchLoader.get();
+        if (loader != null) {
+            loader.register(persistenceProvider, entityType, identifier);
+        }
     }
 }
@@ -16,15 +16,38 @@
 
 package org.wicketopia.persistence.model.repeater;
 
+import org.apache.wicket.core.util.lang.PropertyResolver;
 import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
 import org.apache.wicket.extensions.markup.html.repeater.util.SortableDataProvider;
 import org.apache.wicket.model.IModel;
+import org.apache.wicket.util.lang.Objects;
+import org.wicketopia.persistence.Keyset;
 import org.wicketopia.persistence.PersistenceProvider;
+import org.wicketopia.persistence.RowCountEstimator;
 import org.wicketopia.persistence.model.LoadableDetachableEntityModel;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 /**
+ * A data provider backed by a {@link PersistenceProvider}.  When the table pages sequentially (the next page, the
+ * previous page or the same page again) the rows are fetched using keyset paging relative to the rows of the last page
+ * fetched, so deep pages cost the same as the first one.  Any other jump falls back to offset paging.
+ * <p/>
+ * In {@link #setCountFree(boolean) count-free} mode the provider never counts the entities on its own.  Instead, it
+ * fetches one row more than asked for to find out whether there is another page, and {@link #size()} only reports
+ * what is known so far (enough rows for the next page, if there is one).  An optional {@link RowCountEstimator} supplies
+ * an approximate total for display and {@link #countExactly()} counts the entities on request.
+ * <p/>
+ * With a {@link #setProjection(List) projection}, only the identifier and the properties displayed are selected, and
+ * the rows are partially populated instances of the entity type.  The row models reload the full entities once
+ * detached, but anything editing or deleting a row should load the entity by identifier rather than use the row's
+ * object.  Properties the persistence provider doesn't
+ * {@link PersistenceProvider#supportsProjection(Class, List) support} projecting (unmapped ones or associations, for
+ * example) make it load full entities instead.
+ *
  * @author James Carman
  */
 public class PersistenceDataProvider<T> extends SortableDataProvider<T, String> {
@@ -32,9 +55,34 @@ public class PersistenceDataProvider<T> extends SortableDataProvider<T, String>
 // Fields
 //----------------------------------------------------------------------------------------------------------------------
 
+    /**
+     * The size reported in count-free mode before the first page has been fetched (enough for any page to be shown).
+     */
+    private static final long UNKNOWN_SIZE = Integer.MAX_VALUE;
+
     private final Class<T> beanType;
     private final PersistenceProvider persistenceProvider;
 
+    private boolean keysetPaging = true;
+    private long lastFirst = -1;
+    private long lastMax;
+    private String lastSortProperty;
+    private boolean lastAscending;
+    private Keyset firstRow;
+    private Keyset lastRow;
+
+    private boolean countFree;
+    private RowCountEstimator rowCountEstimator;
+    private transient Long estimatedCount;
+    private long knownCount = -1;
+    private long fetchedThrough = -1;
+    private long fetchedMax;
+    private boolean moreRows;
+
+    private transient ArrayList<Serializable> pageIdentifiers;
+
+    private ArrayList<String> projection;
+
 //----------------------------------------------------------------------------------------------------------------------
 // Constructors
 //----------------------------------------------------------------------------------------------------------------------
@@ -51,14 +99,279 @@ public class PersistenceDataProvider<T> extends SortableDataProvider<T, String>
 
     public Iterator<? extends T> iterator(long first, long max) {
         final SortParam<String> sort = getSort();
-        return persistenceProvider.getList(beanType, first, max, sort == null ? null : sort.getProperty(), sort == null || sort.isAscending()).iterator();
+        final String sortProperty = sort == null ? null : sort.getProperty();
+        final boolean ascending = sort == null || sort.isAscending();
+        final Keyset keyset = isSeekable(sortProperty) ? getKeyset(first, max, sortProperty, ascending) : null;
+        // Going back a page, we already know there's another one after it...
+        final boolean backwards = keyset != null && keyset.isBackwards();
+        final long fetch = countFree && !backwards && max < Long.MAX_VALUE ? max + 1 : max;
+        List<T> list = keyset != null ? getList(keyset, fetch, sortProperty, ascending) : getList(first, fetch, sortProperty, ascending);
+        if (countFree) {
+            final boolean more = backwards || list.size() > max;
+            if (list.size() > max) {
+                list = new ArrayList<T>(list.subList(0, (int) max));
+            }
+            updateCount(first, max, list.size(), more);
+        }
+        remember(list, first, max, sortProperty, ascending);
+        pageIdentifiers = new ArrayList<Serializable>(list.size());
+        for (T entity : list) {
+            pageIdentifiers.add(persistenceProvider.getIdentifier(entity));
+        }
+        return list.iterator();
+    }
+
+    @Override
+    public void detach() {
+        estimatedCount = null;
+        pageIdentifiers = null;
+        super.detach();
     }
 
     public IModel<T> model(T entity) {
-        return new LoadableDetachableEntityModel<T>(beanType, entity, persistenceProvider);
+        // The rows of a page are reloaded together...
+        return new LoadableDetachableEntityModel<T>(beanType, entity, persistenceProvider, pageIdentifiers);
     }
 
     public long size() {
-        return persistenceProvider.getCount(beanType);
+        if (!countFree) {
+            return persistenceProvider.getCount(beanType);
+        }
+        if (knownCount >= 0) {
+            return knownCount;
+        }
+        if (fetchedThrough < 0) {
+            return UNKNOWN_SIZE;
+        }
+        return moreRows ? fetchedThrough + fetchedMax : fetchedThrough;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Getter/Setter Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    public boolean isCountFree() {
+        return countFree;
+    }
+
+    /**
+     * Enables or disables count-free mode, in which the entities are only counted on request.
+     */
+    public void setCountFree(boolean countFree) {
+        this.countFree = countFree;
+        invalidateCount();
+    }
+
+    /**
+     * Returns the exact number of entities, if known (in count-free mode, that's once the last page has been fetched
+     * or the entities have been {@link #countExactly() counted}).
+     *
+     * @return the number of entities, or -1 if it isn't known
+     */
+    public long getKnownCount() {
+        return countFree ? knownCount : size();
+    }
+
+    public boolean isKeysetPaging() {
+        return keysetPaging;
+    }
+
+    /**
+     * Enables or disables keyset paging (it is only used for the sort properties the persistence provider
+     * {@link PersistenceProvider#supportsKeyset(Class, String) supports} it for).
+     */
+    public void setKeysetPaging(boolean keysetPaging) {
+        this.keysetPaging = keysetPaging;
+        forget();
+    }
+
+    public List<String> getProjection() {
+        return projection;
+    }
+
+    /**
+     * Selects only the properties (and the identifier) of the entities for display, rather than loading the full
+     * entities.  Property paths are reduced to their top-level properties.  If the persistence provider can't project
+     * the properties, full entities are loaded instead.
+     *
+     * @param propertyPaths the paths of the properties displayed (or <code>null</code> to load full entities)
+     */
+    public void setProjection(List<String> propertyPaths) {
+        if (propertyPaths == null) {
+            projection = null;
+            return;
+        }
+        projection = new ArrayList<String>(propertyPaths.size());
+        for (String propertyPath : propertyPaths) {
+            addTopLevelProperty(projection, propertyPath);
+        }
+    }
+
+    public RowCountEstimator getRowCountEstimator() {
+        return rowCountEstimator;
+    }
+
+    public void setRowCountEstimator(RowCountEstimator rowCountEstimator) {
+        this.rowCountEstimator = rowCountEstimator;
+        estimatedCount = null;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Counts the entities exactly (in count-free mode, the count is then remembered until
+     * {@link #invalidateCount() invalidated}).
+     *
+     * @return the number of entities
+     */
+    public long countExactly() {
+        final long count = persistenceProvider.getCount(beanType);
+        if (countFree) {
+            knownCount = count;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the estimated number of entities (the exact number, if known).  The estimate is only made once per
+     * request.
+     *
+     * @return the estimate, or a negative number if there is no estimate
+     */
+    public long getEstimatedCount() {
+        final long known = getKnownCount();
+        if (known >= 0 || rowCountEstimator == null) {
+            return known;
+        }
+        if (estimatedCount == null) {
+            estimatedCount = rowCountEstimator.estimateCount(beanType);
+        }
+        return estimatedCount;
+    }
+
+    /**
+     * Returns whether or not there are more entities after the last page fetched (in count-free mode).
+     */
+    public boolean hasMoreRows() {
+        return moreRows;
+    }
+
+    /**
+     * Forgets what is known about the number of entities (call this after creating or deleting entities).
+     */
+    public void invalidateCount() {
+        knownCount = -1;
+        estimatedCount = null;
+        fetchedThrough = -1;
+        moreRows = false;
+    }
+
+    private static void addTopLevelProperty(List<String> properties, String propertyPath) {
+        final int ndx = propertyPath.indexOf('.');
+        final String property = ndx == -1 ? propertyPath : propertyPath.substring(0, ndx);
+        if (!properties.contains(property)) {
+            properties.add(property);
+        }
+    }
+
+    private boolean isSeekable(String sortProperty) {
+        return keysetPaging && persistenceProvider.supportsKeyset(beanType, sortProperty);
+    }
+
+    private void forget() {
+        lastFirst = -1;
+        firstRow = null;
+        lastRow = null;
+    }
+
+    private void updateCount(long first, long max, long fetched, boolean more) {
+        fetchedThrough = first + fetched;
+        fetchedMax = max;
+        moreRows = more;
+        if (!more && (fetched > 0 || first == 0)) {
+            knownCount = fetchedThrough;
+        } else if (knownCount >= 0 && knownCount < fetchedThrough + (more ? 1 : 0)) {
+            knownCount = -1;
+        }
+    }
+
+    private List<T> getList(long first, long max, String sortProperty, boolean ascending) {
+        final List<String> properties = getSelectedProperties(sortProperty);
+        if (properties == null) {
+            return persistenceProvider.getList(beanType, first, max, sortProperty, ascending);
+        }
+        return persistenceProvider.getProjectedList(beanType, properties, first, max, sortProperty, ascending);
+    }
+
+    private List<T> getList(Keyset keyset, long max, String sortProperty, boolean ascending) {
+        final List<String> properties = getSelectedProperties(sortProperty);
+        if (properties == null) {
+            return persistenceProvider.getList(beanType, keyset, max, sortProperty, ascending);
+        }
+        return persistenceProvider.getProjectedList(beanType, properties, keyset, max, sortProperty, ascending);
+    }
+
+    /**
+     * Returns the properties to select (including the sort property, whose values keyset paging needs), or
+     * <code>null</code> if full entities have to be loaded.
+     */
+    private List<String> getSelectedProperties(String sortProperty) {
+        if (projection == null) {
+            return null;
+        }
+        List<String> properties = projection;
+        if (sortProperty != null) {
+            properties = new ArrayList<String>(projection);
+            addTopLevelProperty(properties, sortProperty);
+        }
+        return persistenceProvider.supportsProjection(beanType, properties) ? properties : null;
+    }
+
+    private Keyset getKeyset(long first, long max, String sortProperty, boolean ascending) {
+        if (firstRow == null || lastFirst < 0 || ascending != lastAscending || !Objects.equal(sortProperty, lastSortProperty)) {
+            return null;
+        }
+        if (first == lastFirst && max == lastMax) {
+            return firstRow;
+        }
+        if (first == lastFirst + lastMax) {
+            return lastRow;
+        }
+        if (first + max == lastFirst) {
+            return Keyset.before(firstRow.getSortValue(), firstRow.getIdentifier());
+        }
+        return null;
+    }
+
+    private Keyset getKeyset(T entity, String sortProperty, boolean after) {
+        final Serializable identifier = persistenceProvider.getIdentifier(entity);
+        Serializable sortValue = null;
+        if (sortProperty != null) {
+            final Object value = PropertyResolver.getValue(sortProperty, entity);
+            if (!(value instanceof Serializable)) {
+                return null;
+            }
+            sortValue = (Serializable) value;
+        }
+        return after ? Keyset.after(sortValue, identifier) : Keyset.from(sortValue, identifier);
+    }
+
+    private void remember(List<T> list, long first, long max, String sortProperty, boolean ascending) {
+        forget();
+        if (!isSeekable(sortProperty) || list.isEmpty()) {
+            return;
+        }
+        firstRow = getKeyset(list.get(0), sortProperty, false);
+        lastRow = getKeyset(list.get(list.size() - 1), sortProperty, true);
+        if (firstRow == null || lastRow == null) {
+            forget();
+            return;
+        }
+        lastFirst = first;
+        lastMax = max;
+        lastSortProperty = sortProperty;
+        lastAscending = ascending;
     }
 }
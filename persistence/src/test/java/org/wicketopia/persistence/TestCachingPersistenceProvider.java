@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.persistence;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class TestCachingPersistenceProvider {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private StubPersistenceProvider delegate;
+    private CachingPersistenceProvider provider;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    @BeforeMethod
+    public void setUp() {
+        delegate = new StubPersistenceProvider();
+        for (int i = 0; i < 10; i++) {
+            delegate.widgets.put(i, new Widget(i));
+        }
+        provider = new CachingPersistenceProvider(delegate);
+    }
+
+    @Test
+    public void testCountIsCached() {
+        assertEquals(provider.getCount(Widget.class), 10);
+        assertEquals(provider.getCount(Widget.class), 10);
+        assertEquals(delegate.counts.get(), 1);
+        assertEquals(provider.getHits(Widget.class), 1);
+        assertEquals(provider.getMisses(Widget.class), 1);
+    }
+
+    @Test
+    public void testWritesInvalidate() {
+        provider.getCount(Widget.class);
+        provider.create(new Widget(10));
+        assertEquals(provider.getCount(Widget.class), 11);
+        provider.update(delegate.widgets.get(3));
+        provider.getCount(Widget.class);
+        provider.delete(delegate.widgets.get(3));
+        assertEquals(provider.getCount(Widget.class), 10);
+        assertEquals(delegate.counts.get(), 4);
+    }
+
+    @Test
+    public void testCachedListResolvedInOneBatch() {
+        final List<Widget> first = provider.getList(Widget.class, 0, 5, "id", true);
+        final List<Widget> second = provider.getList(Widget.class, 0, 5, "id", true);
+        assertEquals(second, first);
+        assertEquals(delegate.lists.get(), 1);
+        assertEquals(delegate.batches.get(), 1);
+    }
+
+    @Test
+    public void testListReloadedWhenEntityDisappears() {
+        provider.getList(Widget.class, 0, 5, "id", true);
+        delegate.widgets.remove(2);
+        final List<Widget> list = provider.getList(Widget.class, 0, 5, "id", true);
+        assertEquals(list.size(), 5);
+        assertEquals(list.get(2).getId(), Integer.valueOf(3));
+        assertEquals(delegate.lists.get(), 2);
+    }
+
+    @Test
+    public void testResultLoadedDuringInvalidationIsNotCached() {
+        final CachingPersistenceProvider racing = new CachingPersistenceProvider(new StubPersistenceProvider() {
+            private boolean invalidated;
+
+            @Override
+            public long getCount(Class<?> beanType) {
+                final long count = super.getCount(beanType);
+                if (!invalidated) {
+                    // Someone writes while we're still counting...
+                    invalidated = true;
+                    provider.invalidate(Widget.class);
+                }
+                return count;
+            }
+        });
+        provider = racing;
+        racing.getCount(Widget.class);
+        racing.getCount(Widget.class);
+        assertEquals(racing.getHits(Widget.class), 0);
+        assertEquals(racing.getMisses(Widget.class), 2);
+    }
+
+    @Test
+    public void testConcurrentHitsAndMisses() throws Exception {
+        final int threads = 8;
+        final int calls = 500;
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < threads; i++) {
+                final boolean writer = i == 0;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        for (int j = 0; j < calls; j++) {
+                            assertEquals(provider.getCount(Widget.class), 10);
+                            if (writer && j % 50 == 0) {
+                                provider.update(delegate.widgets.get(j % 10));
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(provider.getHits(Widget.class) + provider.getMisses(Widget.class), threads * calls);
+        assertEquals(provider.getMisses(Widget.class), delegate.counts.get());
+        assertTrue(provider.getHits(Widget.class) > 0);
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    public static class Widget implements Serializable {
+        private Integer id;
+
+        public Widget(Integer id) {
+            this.id = id;
+        }
+
+        public Integer getId() {
+            return id;
+        }
+    }
+
+    private static class StubPersistenceProvider extends AbstractPersistenceProvider {
+        private final Map<Integer, Widget> widgets = Collections.synchronizedMap(new LinkedHashMap<Integer, Widget>());
+        private final AtomicInteger counts = new AtomicInteger();
+        private final AtomicInteger lists = new AtomicInteger();
+        private final AtomicInteger batches = new AtomicInteger();
+
+        @Override
+        public long getCount(Class<?> beanType) {
+            counts.incrementAndGet();
+            return widgets.size();
+        }
+
+        @Override
+        public Serializable getIdentifier(Object entity) {
+            return ((Widget) entity).getId();
+        }
+
+        @Override
+        public Class<?> getIdentifierType(Class<?> entityType) {
+            return Integer.class;
+        }
+
+        @Override
+        public <T> T getByIdentifier(Class<T> entityType, Serializable identifier) {
+            return entityType.cast(widgets.get(identifier));
+        }
+
+        @Override
+        public <T> Map<Serializable, T> getByIdentifiers(Class<T> entityType, Collection<? extends Serializable> identifiers) {
+            batches.incrementAndGet();
+            final Map<Serializable, T> found = new LinkedHashMap<Serializable, T>();
+            for (Serializable identifier : identifiers) {
+                final Widget widget = widgets.get(identifier);
+                if (widget != null) {
+                    found.put(identifier, entityType.cast(widget));
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public <T> T create(T object) {
+            final Widget widget = (Widget) object;
+            widgets.put(widget.getId(), widget);
+            return object;
+        }
+
+        @Override
+        public <T, C extends Collection<? extends T>> void create(C collection) {
+            for (T object : collection) {
+                create(object);
+            }
+        }
+
+        @Override
+        public <T> void delete(T object) {
+            widgets.remove(((Widget) object).getId());
+        }
+
+        @Override
+        public <T, C extends Collection<? extends T>> void delete(C collection) {
+            for (T object : collection) {
+                delete(object);
+            }
+        }
+
+        @Override
+        public <T> List<T> getAll(Class<T> entityType) {
+            return getList(entityType, 0, Long.MAX_VALUE, null, true);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> getList(Class<T> entityType, long first, long max, String sortProperty, boolean ascending) {
+            lists.incrementAndGet();
+            final List<Widget> all;
+            synchronized (widgets) {
+                all = new ArrayList<Widget>(widgets.values());
+            }
+            final int from = (int) Math.min(first, all.size());
+            final int to = (int) Math.min(first + max, all.size());
+            return (List<T>) new ArrayList<Widget>(all.subList(from, to));
+        }
+
+        @Override
+        public <T> T update(T object) {
+            return object;
+        }
+
+        @Override
+        public <T, C extends Collection<? extends T>> void update(C collection) {
+        }
+    }
+}
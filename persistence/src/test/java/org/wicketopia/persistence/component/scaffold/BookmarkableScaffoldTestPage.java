@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.persistence.component.scaffold;
+
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.wicketopia.persistence.testing.Part;
+
+public class BookmarkableScaffoldTestPage extends WebPage {
+    public static final String SCAFFOLD_ID = "scaffold";
+    public static final int ROWS_PER_PAGE = 2;
+
+    public BookmarkableScaffoldTestPage(PageParameters parameters) {
+        super(parameters);
+        add(new BookmarkableScaffold<Part>(SCAFFOLD_ID, Part.class, parameters).setRowsPerPage(ROWS_PER_PAGE));
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.persistence.component.scaffold;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.markup.html.link.BookmarkablePageLink;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wicketopia.Wicketopia;
+import org.wicketopia.persistence.PersistencePlugin;
+import org.wicketopia.persistence.testing.InMemoryPersistenceProvider;
+import org.wicketopia.persistence.testing.Part;
+import org.wicketopia.testing.AbstractWicketopiaTestCase;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class TestBookmarkableScaffold extends AbstractWicketopiaTestCase {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final String CONTENT_PATH = BookmarkableScaffoldTestPage.SCAFFOLD_ID + ":content";
+    private static final String ROWS_PATH = CONTENT_PATH + ":rows";
+
+    private final InMemoryPersistenceProvider provider = new InMemoryPersistenceProvider();
+    private Part cog;
+    private Part gear;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected Wicketopia createWicketopia() {
+        return new Wicketopia(new PersistencePlugin(provider));
+    }
+
+    @BeforeMethod
+    public void addParts() {
+        if (provider.getCount(Part.class) == 0) {
+            cog = provider.add("Cog", "A small gear");
+            gear = provider.add("Gear", "A toothed wheel");
+            provider.add("Axle", "A rod for a wheel");
+            provider.add("Sprocket", "A wheel for a chain");
+            provider.add("Bolt", "A threaded pin");
+        }
+    }
+
+    @Test
+    public void testListIsStateless() {
+        tester.startPage(BookmarkableScaffoldTestPage.class, new PageParameters());
+        tester.assertRenderedPage(BookmarkableScaffoldTestPage.class);
+        assertTrue(tester.getLastRenderedPage().isPageStateless());
+        assertEquals(getRowNames(), Arrays.asList("Cog", "Gear"));
+    }
+
+    @Test
+    public void testViewIsStateless() {
+        tester.startPage(BookmarkableScaffoldTestPage.class, entityParameters(ScaffoldMode.View, gear));
+        tester.assertRenderedPage(BookmarkableScaffoldTestPage.class);
+        assertTrue(tester.getLastRenderedPage().isPageStateless());
+        tester.assertContains("A toothed wheel");
+    }
+
+    @Test
+    public void testListParametersRoundTrip() {
+        final PageParameters parameters = new PageParameters()
+                .set(BookmarkableScaffold.PAGE_PARAM, 2)
+                .set(BookmarkableScaffold.SORT_PARAM, "name")
+                .set(BookmarkableScaffold.DIRECTION_PARAM, BookmarkableScaffold.DESCENDING);
+        tester.startPage(BookmarkableScaffoldTestPage.class, parameters);
+        assertEquals(getRowNames(), Arrays.asList("Cog", "Bolt"));
+        assertListParameters(getLinkParameters(CONTENT_PATH + ":next"), "3", "name", BookmarkableScaffold.DESCENDING);
+        assertListParameters(getLinkParameters(CONTENT_PATH + ":previous"), "1", "name", BookmarkableScaffold.DESCENDING);
+
+        final PageParameters viewParameters = getLinkParameters(ROWS_PATH + ":" + getFirstRowId() + ":viewLink");
+        assertEquals(viewParameters.get(BookmarkableScaffold.MODE_PARAM).toString(), ScaffoldMode.View.name());
+        assertEquals(viewParameters.get(BookmarkableScaffold.ID_PARAM).toString(), String.valueOf(cog.getId()));
+        assertListParameters(viewParameters, "2", "name", BookmarkableScaffold.DESCENDING);
+
+        tester.startPage(BookmarkableScaffoldTestPage.class, viewParameters);
+        tester.assertContains("A small gear");
+        final PageParameters listParameters = getLinkParameters(CONTENT_PATH + ":listButton");
+        assertTrue(listParameters.get(BookmarkableScaffold.MODE_PARAM).isNull());
+        assertTrue(listParameters.get(BookmarkableScaffold.ID_PARAM).isNull());
+        assertListParameters(listParameters, "2", "name", BookmarkableScaffold.DESCENDING);
+
+        tester.startPage(BookmarkableScaffoldTestPage.class, listParameters);
+        assertEquals(getRowNames(), Arrays.asList("Cog", "Bolt"));
+    }
+
+    @Test
+    public void testSortHeaderTogglesDirection() {
+        tester.startPage(BookmarkableScaffoldTestPage.class, new PageParameters()
+                .set(BookmarkableScaffold.PAGE_PARAM, 2)
+                .set(BookmarkableScaffold.SORT_PARAM, "name"));
+        final PageParameters sortParameters = getLinkParameters(getSortLinkPath("name"));
+        assertEquals(sortParameters.get(BookmarkableScaffold.DIRECTION_PARAM).toString(), BookmarkableScaffold.DESCENDING);
+        assertTrue(sortParameters.get(BookmarkableScaffold.PAGE_PARAM).isNull());
+    }
+
+    @Test
+    public void testSortByNonVisiblePropertyIsIgnored() {
+        tester.startPage(BookmarkableScaffoldTestPage.class, new PageParameters()
+                .set(BookmarkableScaffold.SORT_PARAM, "class")
+                .set(BookmarkableScaffold.DIRECTION_PARAM, BookmarkableScaffold.DESCENDING));
+        tester.assertRenderedPage(BookmarkableScaffoldTestPage.class);
+        assertEquals(getRowNames(), Arrays.asList("Cog", "Gear"));
+        tester.assertContainsNot("wicket_orderDown");
+    }
+
+    @Test
+    public void testUnknownIdentifierIsNotFound() {
+        tester.startPage(BookmarkableScaffoldTestPage.class, new PageParameters()
+                .set(BookmarkableScaffold.MODE_PARAM, ScaffoldMode.View.name())
+                .set(BookmarkableScaffold.ID_PARAM, 12345));
+        assertEquals(tester.getLastResponse().getStatus(), HttpServletResponse.SC_NOT_FOUND);
+    }
+
+    @Test
+    public void testMalformedIdentifierIsNotFound() {
+        tester.startPage(BookmarkableScaffoldTestPage.class, new PageParameters()
+                .set(BookmarkableScaffold.MODE_PARAM, ScaffoldMode.Update.name())
+                .set(BookmarkableScaffold.ID_PARAM, "gear"));
+        assertEquals(tester.getLastResponse().getStatus(), HttpServletResponse.SC_NOT_FOUND);
+    }
+
+    private static void assertListParameters(PageParameters parameters, String page, String sort, String direction) {
+        assertEquals(parameters.get(BookmarkableScaffold.PAGE_PARAM).toString(), page);
+        assertEquals(parameters.get(BookmarkableScaffold.SORT_PARAM).toString(), sort);
+        assertEquals(parameters.get(BookmarkableScaffold.DIRECTION_PARAM).toString(), direction);
+    }
+
+    private PageParameters entityParameters(ScaffoldMode mode, Part part) {
+        return new PageParameters()
+                .set(BookmarkableScaffold.MODE_PARAM, mode.name())
+                .set(BookmarkableScaffold.ID_PARAM, part.getId());
+    }
+
+    private String getFirstRowId() {
+        return ((MarkupContainer) tester.getComponentFromLastRenderedPage(ROWS_PATH)).iterator().next().getId();
+    }
+
+    private PageParameters getLinkParameters(String path) {
+        return ((BookmarkablePageLink<?>) tester.getComponentFromLastRenderedPage(path)).getPageParameters();
+    }
+
+    private List<String> getRowNames() {
+        final List<String> names = new ArrayList<String>();
+        for (Component row : (MarkupContainer) tester.getComponentFromLastRenderedPage(ROWS_PATH)) {
+            names.add(((Part) row.getDefaultModelObject()).getName());
+        }
+        return names;
+    }
+
+    private String getSortLinkPath(String propertyName) {
+        final MarkupContainer headers = (MarkupContainer) tester.getComponentFromLastRenderedPage(CONTENT_PATH + ":headers");
+        for (Component header : headers) {
+            final BookmarkablePageLink<?> link = (BookmarkablePageLink<?>) ((MarkupContainer) header).get("sortLink");
+            if (propertyName.equals(link.getPageParameters().get(BookmarkableScaffold.SORT_PARAM).toString())) {
+                return link.getPageRelativePath();
+            }
+        }
+        throw new AssertionError("There is no sort link for " + propertyName + ".");
+    }
+}
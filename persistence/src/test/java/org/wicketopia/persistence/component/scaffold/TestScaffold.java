@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.persistence.component.scaffold;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wicketopia.persistence.testing.InMemoryPersistenceProvider;
+import org.wicketopia.persistence.testing.Part;
+import org.wicketopia.testing.AbstractWicketopiaTestCase;
+
+import static org.testng.Assert.*;
+
+public class TestScaffold extends AbstractWicketopiaTestCase {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final String CONTENT_PATH = "scaffold:content";
+    private static final String FEEDBACK_PATH = "scaffold:feedback";
+    private static final String TABLE_PATH = CONTENT_PATH + ":table";
+    private static final String ROWS_PATH = TABLE_PATH + ":body:rows";
+
+    private InMemoryPersistenceProvider provider;
+    private Part gear;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    @BeforeMethod
+    public void startScaffold() {
+        provider = new InMemoryPersistenceProvider();
+        gear = provider.add("Gear", "A toothed wheel");
+        provider.add("Sprocket", "A wheel for a chain");
+        tester.startComponentInPage(new Scaffold<Part>("scaffold", Part.class, provider));
+    }
+
+    @Test
+    public void testRowsAreProjected() {
+        assertEquals(provider.getProjected().size(), 2);
+        assertEquals(provider.getProjected().get(0).getId(), gear.getId());
+        assertNotSame(provider.getProjected().get(0), gear);
+    }
+
+    @Test
+    public void testCreateRefreshesContent() {
+        tester.clickLink(CONTENT_PATH + ":newEntity", true);
+        tester.assertComponentOnAjaxResponse(CONTENT_PATH);
+        tester.clickLink(CONTENT_PATH + ":saveButton", true);
+        assertEquals(provider.getCount(Part.class), 3);
+        tester.assertComponentOnAjaxResponse(CONTENT_PATH);
+        tester.assertComponentOnAjaxResponse(FEEDBACK_PATH);
+        tester.assertContains("Part Created");
+        assertNotNull(tester.getComponentFromLastRenderedPage(CONTENT_PATH + ":editButton"));
+    }
+
+    @Test
+    public void testUpdateRefreshesContent() {
+        tester.clickLink(getRowLink(0, "updateLink"), true);
+        tester.assertComponentOnAjaxResponse(CONTENT_PATH);
+        tester.clickLink(CONTENT_PATH + ":saveButton", true);
+        tester.assertComponentOnAjaxResponse(CONTENT_PATH);
+        tester.assertComponentOnAjaxResponse(FEEDBACK_PATH);
+        tester.assertContains("Part Updated");
+        assertNotNull(tester.getComponentFromLastRenderedPage(CONTENT_PATH + ":editButton"));
+    }
+
+    @Test
+    public void testDeleteFromRowRemovesOnlyTheRow() {
+        final String rowMarkupId = getRow(0).getMarkupId();
+        final String contentMarkupId = tester.getComponentFromLastRenderedPage(CONTENT_PATH).getMarkupId();
+        tester.clickLink(getRowLink(0, "deleteLink"), true);
+        tester.assertComponentOnAjaxResponse(FEEDBACK_PATH);
+        tester.assertComponentOnAjaxResponse(TABLE_PATH + ":topToolbars");
+        tester.assertComponentOnAjaxResponse(TABLE_PATH + ":bottomToolbars");
+        tester.assertContains("Wicket.DOM.remove\\(Wicket.\\$\\('" + rowMarkupId + "'\\)\\)");
+        assertTrue(isOnAjaxResponse(tester.getComponentFromLastRenderedPage(FEEDBACK_PATH).getMarkupId()));
+        assertFalse(isOnAjaxResponse(contentMarkupId));
+        assertFalse(isOnAjaxResponse(rowMarkupId));
+    }
+
+    @Test
+    public void testDeleteFromViewRefreshesContent() {
+        tester.clickLink(getRowLink(0, "viewLink"), true);
+        tester.assertComponentOnAjaxResponse(CONTENT_PATH);
+        tester.clickLink(CONTENT_PATH + ":deleteButton", true);
+        assertSame(provider.getDeleted().get(0), gear);
+        tester.assertComponentOnAjaxResponse(CONTENT_PATH);
+        tester.assertComponentOnAjaxResponse(FEEDBACK_PATH);
+        tester.assertContains("Part Deleted");
+        assertNotNull(tester.getComponentFromLastRenderedPage(CONTENT_PATH + ":newEntity"));
+    }
+
+    @Test
+    public void testUpdateFromRowReloadsByIdentifier() {
+        tester.clickLink(getRowLink(0, "updateLink"), true);
+        tester.clickLink("scaffold:content:saveButton", true);
+        assertEquals(provider.getUpdated().size(), 1);
+        assertSame(provider.getUpdated().get(0), gear);
+        assertFalse(provider.getProjected().contains(gear));
+        assertEquals(gear.getDescription(), "A toothed wheel");
+    }
+
+    @Test
+    public void testUpdateFromViewReloadsByIdentifier() {
+        tester.clickLink(getRowLink(0, "viewLink"), true);
+        tester.clickLink("scaffold:content:editButton", true);
+        tester.clickLink("scaffold:content:saveButton", true);
+        assertSame(provider.getUpdated().get(0), gear);
+    }
+
+    @Test
+    public void testDeleteFromRowReloadsByIdentifier() {
+        tester.clickLink(getRowLink(0, "deleteLink"), true);
+        assertEquals(provider.getDeleted().size(), 1);
+        assertSame(provider.getDeleted().get(0), gear);
+        assertFalse(provider.getProjected().contains(gear));
+        assertEquals(provider.getCount(Part.class), 1);
+    }
+
+    private boolean isOnAjaxResponse(String markupId) {
+        return tester.getLastResponseAsString().contains("<component id=\"" + markupId + "\"");
+    }
+
+    private Component getRow(int index) {
+        final MarkupContainer rows = (MarkupContainer) tester.getComponentFromLastRenderedPage(ROWS_PATH);
+        int i = 0;
+        for (Component row : rows) {
+            if (i++ == index) {
+                return row;
+            }
+        }
+        throw new AssertionError("There is no row " + index + ".");
+    }
+
+    private String getRowLink(int index, final String linkId) {
+        final Component link = ((MarkupContainer) getRow(index)).visitChildren(new IVisitor<Component, Component>() {
+            @Override
+            public void component(Component component, IVisit<Component> visit) {
+                if (linkId.equals(component.getId())) {
+                    visit.stop(component);
+                }
+            }
+        });
+        return link.getPageRelativePath();
+    }
+}
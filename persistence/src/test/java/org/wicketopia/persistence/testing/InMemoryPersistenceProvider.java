@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.persistence.testing;
+
+import org.apache.wicket.core.util.lang.PropertyResolver;
+import org.wicketopia.persistence.AbstractPersistenceProvider;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps {@link Part}s in memory.  Like a real persistence provider, its projected lists hold new instances with only the
+ * identifier and the selected properties populated.  It remembers those along with the instances it was asked to update
+ * or delete, so tests can check that the latter are the stored (fully populated) ones.
+ */
+public class InMemoryPersistenceProvider extends AbstractPersistenceProvider implements Serializable {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private final Map<Serializable, Part> parts = new LinkedHashMap<Serializable, Part>();
+    private final List<Part> projected = new ArrayList<Part>();
+    private final List<Part> updated = new ArrayList<Part>();
+    private final List<Part> deleted = new ArrayList<Part>();
+    private long nextId = 1;
+
+//----------------------------------------------------------------------------------------------------------------------
+// PersistenceProvider Implementation
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public long getCount(Class<?> beanType) {
+        return parts.size();
+    }
+
+    @Override
+    public Serializable getIdentifier(Object entity) {
+        return ((Part) entity).getId();
+    }
+
+    @Override
+    public Class<?> getIdentifierType(Class<?> entityType) {
+        return Long.class;
+    }
+
+    @Override
+    public <T> T getByIdentifier(Class<T> entityType, Serializable identifier) {
+        return entityType.cast(parts.get(identifier));
+    }
+
+    @Override
+    public <T> T create(T object) {
+        final Part part = (Part) object;
+        part.setId(nextId++);
+        parts.put(part.getId(), part);
+        return object;
+    }
+
+    @Override
+    public <T, C extends Collection<? extends T>> void create(C collection) {
+        for (T object : collection) {
+            create(object);
+        }
+    }
+
+    @Override
+    public <T> void delete(T object) {
+        deleted.add((Part) object);
+        parts.remove(getIdentifier(object));
+    }
+
+    @Override
+    public <T, C extends Collection<? extends T>> void delete(C collection) {
+        for (T object : collection) {
+            delete(object);
+        }
+    }
+
+    @Override
+    public <T> List<T> getAll(Class<T> entityType) {
+        return getList(entityType, 0, Long.MAX_VALUE, null, true);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getList(Class<T> entityType, long first, long max, final String sortProperty, final boolean ascending) {
+        final List<Part> all = new ArrayList<Part>(parts.values());
+        if (sortProperty != null) {
+            Collections.sort(all, new Comparator<Part>() {
+                @Override
+                public int compare(Part left, Part right) {
+                    final Comparable<Object> leftValue = (Comparable<Object>) PropertyResolver.getValue(sortProperty, left);
+                    final Object rightValue = PropertyResolver.getValue(sortProperty, right);
+                    final int result = leftValue == null ? (rightValue == null ? 0 : -1) : (rightValue == null ? 1 : leftValue.compareTo(rightValue));
+                    return ascending ? result : -result;
+                }
+            });
+        }
+        final int from = (int) Math.min(first, all.size());
+        final int to = (int) Math.min(from + max, all.size());
+        return (List<T>) new ArrayList<Part>(all.subList(from, to));
+    }
+
+    @Override
+    public <T> List<T> getProjectedList(Class<T> entityType, List<String> properties, long first, long max, String sortProperty, boolean ascending) {
+        final List<T> projected = new ArrayList<T>();
+        for (T entity : getList(entityType, first, max, sortProperty, ascending)) {
+            final Part part = new Part();
+            part.setId(((Part) entity).getId());
+            for (String property : properties) {
+                PropertyResolver.setValue(property, part, PropertyResolver.getValue(property, entity), null);
+            }
+            this.projected.add(part);
+            projected.add(entityType.cast(part));
+        }
+        return projected;
+    }
+
+    @Override
+    public boolean supportsProjection(Class<?> entityType, List<String> properties) {
+        return true;
+    }
+
+    @Override
+    public <T> T update(T object) {
+        final Part part = (Part) object;
+        updated.add(part);
+        parts.put(part.getId(), part);
+        return object;
+    }
+
+    @Override
+    public <T, C extends Collection<? extends T>> void update(C collection) {
+        for (T object : collection) {
+            update(object);
+        }
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Getter/Setter Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    public List<Part> getDeleted() {
+        return deleted;
+    }
+
+    public List<Part> getProjected() {
+        return projected;
+    }
+
+    public List<Part> getUpdated() {
+        return updated;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    public Part add(String name, String description) {
+        return create(new Part(name, description));
+    }
+}
@@ -17,7 +17,9 @@
 package org.wicketopia;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.wicket.Application;
 import org.apache.wicket.Component;
+import org.apache.wicket.IApplicationListener;
 import org.apache.wicket.MetaDataKey;
 import org.apache.wicket.RuntimeConfigurationType;
 import org.apache.wicket.WicketRuntimeException;
@@ -29,7 +31,6 @@ import org.metastopheles.BeanMetaDataFactory;
 import org.metastopheles.MetaDataDecorator;
 import org.metastopheles.MethodMetaData;
 import org.metastopheles.PropertyMetaData;
-import org.metastopheles.annotation.AnnotationBeanMetaDataFactory;
 import org.scannotation.ClasspathUrlFinder;
 import org.scannotation.WarUrlFinder;
 import org.slf4j.Logger;
@@ -37,6 +38,7 @@ import org.slf4j.LoggerFactory;
 import org.wicketopia.builder.EditorBuilder;
 import org.wicketopia.builder.ViewerBuilder;
 import org.wicketopia.context.Context;
+import org.wicketopia.context.ContextPredicate;
 import org.wicketopia.editor.PropertyEditorProvider;
 import org.wicketopia.editor.component.property.CheckBoxPropertyEditor;
 import org.wicketopia.editor.component.property.PasswordFieldPropertyEditor;
@@ -49,24 +51,42 @@ import org.wicketopia.factory.PropertyViewerComponentFactory;
 import org.wicketopia.mapping.TypeMapping;
 import org.wicketopia.mapping.editor.DefaultEditorTypeMapping;
 import org.wicketopia.mapping.viewer.DefaultViewerTypeMapping;
+import org.wicketopia.metadata.BeanRenderPlan;
+import org.wicketopia.metadata.DecoratorIndex;
+import org.wicketopia.metadata.DecoratorScanner;
+import org.wicketopia.metadata.MetaDataChangeDetector;
+import org.wicketopia.metadata.WicketopiaBeanFacet;
 import org.wicketopia.metadata.WicketopiaPropertyFacet;
 import org.wicketopia.model.column.BeanPropertyColumn;
+import org.wicketopia.model.column.InlineBeanPropertyColumn;
+import org.wicketopia.model.label.DisplayNameCache;
+import org.wicketopia.model.label.DisplayNameModel;
+import org.wicketopia.util.Pluralizer;
 import org.wicketopia.util.ServiceLocator;
 import org.wicketopia.viewer.PropertyViewerProvider;
 import org.wicketopia.viewer.component.LabelPropertyViewer;
 
+import java.io.File;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Wicketopia {
 //----------------------------------------------------------------------------------------------------------------------
@@ -77,23 +97,52 @@ public class Wicketopia {
 
     private static final MetaDataKey<Wicketopia> META_KEY = new WicketopiaPluginKey();
 
-    private BeanMetaDataFactory beanMetaDataFactory = new AnnotationBeanMetaDataFactory(findClasspathUrls());
+    private volatile BeanMetaDataFactory beanMetaDataFactory;
+    private DecoratorScanner decoratorScanner = new DecoratorScanner();
+    private boolean decoratorIndexOnly = false;
+    private final ConcurrentMap<Class<?>, BeanMetaData> frozenMetaData = new ConcurrentHashMap<Class<?>, BeanMetaData>();
+    private final MetaDataChangeDetector changeDetector = new MetaDataChangeDetector();
+    private final ConcurrentMap<RenderPlanKey, RenderPlanFamily> renderPlans = new ConcurrentHashMap<RenderPlanKey, RenderPlanFamily>();
+    private final DisplayNameCache displayNameCache = new DisplayNameCache();
     private TypeMapping editorTypeMapping = new DefaultEditorTypeMapping();
     private TypeMapping viewerTypeMapping = new DefaultViewerTypeMapping();
     private final Map<String, PropertyEditorProvider> editorProviders = new HashMap<String, PropertyEditorProvider>();
     private final Map<String, PropertyViewerProvider> viewerProviders = new HashMap<String, PropertyViewerProvider>();
     private final List<WicketopiaPlugin> plugins;
     private WebApplication application;
+    private volatile boolean frozen = false;
+    private int sortThreads = Runtime.getRuntime().availableProcessors();
+    private ExecutorService sortExecutor;
+    private boolean destroyed = false;
 
 //----------------------------------------------------------------------------------------------------------------------
 // Static Methods
 //----------------------------------------------------------------------------------------------------------------------
 
-    private static URL[] findClasspathUrls() {
+    /**
+     * Creates the bean metadata factory with the metadata decorators found by the supplied {@link DecoratorScanner}.
+     * The classes listed in compile-time decorator indexes (see {@link DecoratorIndex}) are always registered; the
+     * remaining classpath URLs are probed too, unless index-only mode is on.
+     */
+    private static BeanMetaDataFactory createBeanMetaDataFactory(DecoratorScanner scanner, boolean indexOnly, WebApplication webApplication) {
+        final URL[] indexed = DecoratorIndex.findIndexedRoots(Wicketopia.class.getClassLoader(), Thread.currentThread().getContextClassLoader());
+        LOGGER.debug("Found indexed decorator URLs\n{}", StringUtils.join(indexed, "\n"));
+        if (indexOnly) {
+            return scanner.createBeanMetaDataFactory(new URL[0], indexed);
+        }
+        if (webApplication != null && scanner.getCacheDirectory() == null) {
+            final Object tempDir = webApplication.getServletContext().getAttribute("javax.servlet.context.tempdir");
+            if (tempDir instanceof File) {
+                scanner.setCacheDirectory((File) tempDir);
+            }
+        }
+        return scanner.createBeanMetaDataFactory(findClasspathUrls(webApplication), indexed);
+    }
+
+    private static URL[] findClasspathUrls(WebApplication webApplication) {
         final UrlList urls = new UrlList();
         urls.addClassLoader(Wicketopia.class.getClassLoader());
         urls.addClassLoader(Thread.currentThread().getContextClassLoader());
-        WebApplication webApplication = WebApplication.get();
         if (webApplication != null) {
             urls.addUrl(WarUrlFinder.findWebInfClassesPath(webApplication.getServletContext()));
             urls.addAll(WarUrlFinder.findWebInfLibClasspaths(webApplication.getServletContext()));
@@ -107,6 +156,23 @@ public class Wicketopia {
         return WebApplication.get().getMetaData(META_KEY);
     }
 
+    /**
+     * Returns whether or not the metadata has been frozen and safely published by the current application's Wicketopia
+     * instance.  Its facets are all attached before it is put into the (concurrent) frozen metadata map and are never
+     * modified afterwards, so once a thread has looked it up there, it may read them without locking.
+     *
+     * @param beanMetaData the bean metadata
+     * @return whether or not the metadata has been published
+     * @since 1.5
+     */
+    public static boolean isPublished(BeanMetaData beanMetaData) {
+        if (!Application.exists()) {
+            return false;
+        }
+        final Wicketopia wicketopia = Application.get().getMetaData(META_KEY);
+        return wicketopia != null && wicketopia.frozen && wicketopia.frozenMetaData.get(beanMetaData.getBeanDescriptor().getBeanClass()) == beanMetaData;
+    }
+
     /**
      * Installs Wicketopia into the currently-running web application using all default settings.
      */
@@ -146,12 +212,34 @@ public class Wicketopia {
         return application;
     }
 
+    /**
+     * Returns whether or not this Wicketopia instance has been frozen.  Wicketopia freezes itself at the end of
+     * {@link #install(WebApplication)}, after all plugins have been initialized.  From then on, all bean metadata
+     * handed out has its facets frozen (see {@link WicketopiaPropertyFacet#freeze()}).
+     *
+     * @return whether or not this instance has been frozen
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Returns the cache of localized display names used by {@link DisplayNameModel}.  It is cleared whenever Wicket
+     * reloads a properties file.
+     *
+     * @return the display name cache
+     */
+    public DisplayNameCache getDisplayNameCache() {
+        return displayNameCache;
+    }
+
     public TypeMapping getEditorTypeMapping() {
         return editorTypeMapping;
     }
 
     public void setEditorTypeMapping(TypeMapping editorTypeMapping) {
         this.editorTypeMapping = editorTypeMapping;
+        renderPlans.clear();
     }
 
     public TypeMapping getViewerTypeMapping() {
@@ -160,10 +248,58 @@ public class Wicketopia {
 
     public void setViewerTypeMapping(TypeMapping viewerTypeMapping) {
         this.viewerTypeMapping = viewerTypeMapping;
+        renderPlans.clear();
     }
 
     public void setBeanMetaDataFactory(BeanMetaDataFactory beanMetaDataFactory) {
         this.beanMetaDataFactory = beanMetaDataFactory;
+        frozenMetaData.clear();
+        changeDetector.clear();
+        renderPlans.clear();
+    }
+
+    public DecoratorScanner getDecoratorScanner() {
+        return decoratorScanner;
+    }
+
+    /**
+     * Sets the scanner used to find metadata decorators in classpath roots without a decorator index.  This must be called
+     * before the bean metadata factory is first used (i.e. before {@link #install(WebApplication)}).
+     *
+     * @param decoratorScanner the decorator scanner
+     */
+    public void setDecoratorScanner(DecoratorScanner decoratorScanner) {
+        this.decoratorScanner = decoratorScanner;
+    }
+
+    public int getSortThreads() {
+        return sortThreads;
+    }
+
+    /**
+     * Sets the maximum number of threads used to sort large in-memory collections (see
+     * {@link #getSortExecutor()}).  This must be called before the sort executor is first used.
+     *
+     * @param sortThreads the number of sort threads (less than two to always sort on the calling thread)
+     */
+    public void setSortThreads(int sortThreads) {
+        this.sortThreads = sortThreads;
+    }
+
+    public boolean isDecoratorIndexOnly() {
+        return decoratorIndexOnly;
+    }
+
+    /**
+     * Sets whether only the classpath roots with a decorator index (see {@link DecoratorIndex}) are scanned for
+     * metadata decorators, skipping the {@link DecoratorScanner} altogether.  Only turn this on if every jar and class
+     * directory containing decorators was compiled with the index processor.  This must be called before the bean
+     * metadata factory is first used (i.e. before {@link #install(WebApplication)}).
+     *
+     * @param decoratorIndexOnly whether to scan indexed roots only
+     */
+    public void setDecoratorIndexOnly(boolean decoratorIndexOnly) {
+        this.decoratorIndexOnly = decoratorIndexOnly;
     }
 
 //----------------------------------------------------------------------------------------------------------------------
@@ -171,15 +307,18 @@ public class Wicketopia {
 //----------------------------------------------------------------------------------------------------------------------
 
     public void addBeanMetaDataDecorator(MetaDataDecorator<BeanMetaData> decorator) {
-        beanMetaDataFactory.getBeanMetaDataDecorators().add(decorator);
+        getBeanMetaDataFactory().getBeanMetaDataDecorators().add(decorator);
+        renderPlans.clear();
     }
 
     public void addEditorTypeOverride(Class<?> propertyType, String typeName) {
         editorTypeMapping.addTypeOverride(propertyType, typeName);
+        renderPlans.clear();
     }
 
     public void addMethodMetaDataDecorator(MetaDataDecorator<MethodMetaData> decorator) {
-        beanMetaDataFactory.getMethodMetaDataDecorators().add(decorator);
+        getBeanMetaDataFactory().getMethodMetaDataDecorators().add(decorator);
+        renderPlans.clear();
     }
 
     public void addPlugin(WicketopiaPlugin plugin) {
@@ -188,18 +327,22 @@ public class Wicketopia {
 
     public void addPropertyEditorProvider(String typeName, PropertyEditorProvider provider) {
         editorProviders.put(typeName, provider);
+        renderPlans.clear();
     }
 
     public void addPropertyMetaDataDecorator(MetaDataDecorator<PropertyMetaData> decorator) {
-        beanMetaDataFactory.getPropertyMetaDataDecorators().add(decorator);
+        getBeanMetaDataFactory().getPropertyMetaDataDecorators().add(decorator);
+        renderPlans.clear();
     }
 
     public void addPropertyViewerProvider(String typeName, PropertyViewerProvider provider) {
         viewerProviders.put(typeName, provider);
+        renderPlans.clear();
     }
 
     public void addViewerTypeOverride(Class<?> propertyType, String typeName) {
         viewerTypeMapping.addTypeOverride(propertyType, typeName);
+        renderPlans.clear();
     }
 
     public <T> List<IColumn<T, String>> createColumns(Class<T> beanType, PropertyComponentFactory<T> factory, Context context, String... properties) {
@@ -211,10 +354,60 @@ public class Wicketopia {
         return columns;
     }
 
+    /**
+     * Creates read-only columns for the visible properties.  Properties which are
+     * {@link BeanRenderPlan.PropertyPlan#isInlineViewable() inline viewable} get an {@link InlineBeanPropertyColumn},
+     * all others a regular {@link BeanPropertyColumn} using a viewer factory.
+     *
+     * @param beanType   the bean type
+     * @param context    the context
+     * @param properties the properties (all visible properties if none are specified)
+     * @return the columns
+     */
+    public <T> List<IColumn<T, String>> createInlineColumns(Class<T> beanType, Context context, String... properties) {
+        final PropertyComponentFactory<T> factory = createViewerFactory(beanType);
+        final BeanRenderPlan plan = getRenderPlan(beanType, context);
+        final List<String> visible = getVisibleProperties(beanType, context, properties);
+        final List<IColumn<T, String>> columns = new ArrayList<IColumn<T, String>>(visible.size());
+        for (String propertyName : visible) {
+            if (plan.getPropertyPlan(propertyName).isInlineViewable()) {
+                columns.add(new InlineBeanPropertyColumn<T>(beanType, factory, propertyName, context));
+            } else {
+                columns.add(new BeanPropertyColumn<T>(factory, propertyName, context));
+            }
+        }
+        return columns;
+    }
+
     public <T> PropertyComponentFactory<T> createEditorFactory(Class<T> beanType) {
         return new PropertyEditorComponentFactory<T>(beanType);
     }
 
+    /**
+     * Creates an editor for the named property using the cached {@link BeanRenderPlan} for the bean type and context.
+     *
+     * @param id            the component id
+     * @param beanType      the bean type
+     * @param propertyName  the property name
+     * @param propertyModel the property model
+     * @param context       the context
+     * @return the editor component
+     * @since 1.5
+     */
+    public Component createPropertyEditor(String id, Class<?> beanType, String propertyName, IModel<?> propertyModel, Context context) {
+        final BeanRenderPlan.PropertyPlan plan = getRenderPlan(beanType, context).getPropertyPlan(propertyName);
+        if (plan == null) {
+            return createPropertyEditor(id, getPropertyMetaData(beanType, propertyName), propertyModel, context);
+        }
+        PropertyEditorProvider provider = plan.getEditorProvider();
+        if (provider == null) {
+            provider = getEditorProvider(plan.getPropertyMetaData());
+        }
+        EditorBuilder builder = provider.createPropertyEditor(id, plan.getPropertyMetaData(), propertyModel, context);
+        plan.getFacet().decorate(builder, context, plan.getEditorFeatures());
+        return builder.build();
+    }
+
     public Component createPropertyEditor(String id, PropertyMetaData propertyMetadata, IModel<?> propertyModel, Context context) {
         final WicketopiaPropertyFacet facet = WicketopiaPropertyFacet.get(propertyMetadata);
         EditorBuilder builder = getEditorProvider(propertyMetadata).createPropertyEditor(id, propertyMetadata, propertyModel, context);
@@ -222,6 +415,31 @@ public class Wicketopia {
         return builder.build();
     }
 
+    /**
+     * Creates a viewer for the named property using the cached {@link BeanRenderPlan} for the bean type and context.
+     *
+     * @param id            the component id
+     * @param beanType      the bean type
+     * @param propertyName  the property name
+     * @param propertyModel the property model
+     * @param context       the context
+     * @return the viewer component
+     * @since 1.5
+     */
+    public Component createPropertyViewer(String id, Class<?> beanType, String propertyName, IModel<?> propertyModel, Context context) {
+        final BeanRenderPlan.PropertyPlan plan = getRenderPlan(beanType, context).getPropertyPlan(propertyName);
+        if (plan == null) {
+            return createPropertyViewer(id, getPropertyMetaData(beanType, propertyName), propertyModel, context);
+        }
+        PropertyViewerProvider provider = plan.getViewerProvider();
+        if (provider == null) {
+            provider = getViewerProvider(plan.getPropertyMetaData());
+        }
+        ViewerBuilder builder = provider.createPropertyViewer(id, plan.getPropertyMetaData(), propertyModel, context);
+        plan.getFacet().decorate(builder, context, plan.getViewerFeatures());
+        return builder.build();
+    }
+
     public Component createPropertyViewer(String id, PropertyMetaData propertyMetaData, IModel<?> propertyModel, Context context) {
         final WicketopiaPropertyFacet facet = WicketopiaPropertyFacet.get(propertyMetaData);
         ViewerBuilder builder = getViewerProvider(propertyMetaData).createPropertyViewer(id, propertyMetaData, propertyModel, context);
@@ -234,10 +452,85 @@ public class Wicketopia {
     }
 
     public BeanMetaData getBeanMetaData(Class<?> beanClass) {
-        if (WebApplication.get().getConfigurationType().equals(RuntimeConfigurationType.DEVELOPMENT)) {
-            beanMetaDataFactory.clear();
+        if (!frozen) {
+            return getBeanMetaDataFactory().getBeanMetaData(beanClass);
+        }
+        final WebApplication webApplication = application != null ? application : WebApplication.get();
+        final boolean development = webApplication.getConfigurationType().equals(RuntimeConfigurationType.DEVELOPMENT);
+        if (development) {
+            evictChangedMetaData();
+        }
+        BeanMetaData beanMetaData = frozenMetaData.get(beanClass);
+        if (beanMetaData == null) {
+            if (development) {
+                changeDetector.watch(beanClass);
+            }
+            beanMetaData = freeze(getBeanMetaDataFactory().getBeanMetaData(beanClass));
+            final BeanMetaData existing = frozenMetaData.putIfAbsent(beanClass, beanMetaData);
+            if (existing != null) {
+                beanMetaData = existing;
+            }
+        }
+        return beanMetaData;
+    }
+
+    /**
+     * In development mode, only the metadata of classes which have actually changed is rebuilt.  Clearing the factory
+     * only drops its own cache; the metadata of unchanged classes is still served from ours.
+     */
+    private void evictChangedMetaData() {
+        final List<Class<?>> changed = changeDetector.detectChanges();
+        if (!changed.isEmpty()) {
+            for (Class<?> changedClass : changed) {
+                LOGGER.info("Metadata for {} has changed, reloading...", changedClass.getName());
+                frozenMetaData.remove(changedClass);
+            }
+            getBeanMetaDataFactory().clear();
+        }
+    }
+
+    /**
+     * Resolves the editor/viewer types of all properties (so that they need not be lazily assigned later on request
+     * threads) and freezes the bean's facets.  The metadata is then safely published to other threads through the
+     * concurrent map.
+     */
+    private BeanMetaData freeze(BeanMetaData beanMetaData) {
+        synchronized (beanMetaData) {
+            for (String propertyName : beanMetaData.getPropertyNames()) {
+                final PropertyMetaData propertyMetaData = beanMetaData.getPropertyMetaData(propertyName);
+                final WicketopiaPropertyFacet facet = WicketopiaPropertyFacet.get(propertyMetaData);
+                if (!facet.isFrozen()) {
+                    if (facet.getEditorType() == null) {
+                        facet.setEditorType(editorTypeMapping.getTypeName(propertyMetaData));
+                    }
+                    if (facet.getViewerType() == null) {
+                        facet.setViewerType(viewerTypeMapping.getTypeName(propertyMetaData));
+                    }
+                    facet.freeze();
+                }
+            }
+            final WicketopiaBeanFacet beanFacet = WicketopiaBeanFacet.get(beanMetaData);
+            if (!beanFacet.isFrozen()) {
+                Pluralizer.pluralize(beanFacet.getDisplayName());
+                beanFacet.freeze();
+            }
         }
-        return beanMetaDataFactory.getBeanMetaData(beanClass);
+        return beanMetaData;
+    }
+
+    private BeanMetaDataFactory getBeanMetaDataFactory() {
+        BeanMetaDataFactory factory = beanMetaDataFactory;
+        if (factory == null) {
+            synchronized (this) {
+                factory = beanMetaDataFactory;
+                if (factory == null) {
+                    final WebApplication webApplication = application != null ? application : WebApplication.get();
+                    factory = createBeanMetaDataFactory(decoratorScanner, decoratorIndexOnly, webApplication);
+                    beanMetaDataFactory = factory;
+                }
+            }
+        }
+        return factory;
     }
 
     public PropertyEditorProvider getEditorProvider(PropertyMetaData propertyMetaData) {
@@ -245,7 +538,9 @@ public class Wicketopia {
         String editorType = facet.getEditorType();
         if (editorType == null) {
             editorType = editorTypeMapping.getTypeName(propertyMetaData);
-            facet.setEditorType(editorType);
+            if (!facet.isFrozen()) {
+                facet.setEditorType(editorType);
+            }
         }
         if (editorType == null) {
             throw new WicketRuntimeException("No editor type defined for property " +
@@ -282,7 +577,9 @@ public class Wicketopia {
         String viewerType = facet.getViewerType();
         if (viewerType == null) {
             viewerType = viewerTypeMapping.getTypeName(propertyMetaData);
-            facet.setViewerType(viewerType);
+            if (!facet.isFrozen()) {
+                facet.setViewerType(viewerType);
+            }
         }
         if (viewerType == null) {
             throw new WicketRuntimeException("No viewer type defined for property " +
@@ -298,38 +595,125 @@ public class Wicketopia {
         return viewerProviders.get(viewerType);
     }
 
-    public List<String> getVisibleProperties(Class<?> beanType, Context context, String... properties) {
-        final List<String> names = new LinkedList<String>();
+    /**
+     * Returns the (cached) render plan for the bean type within the context.  Plans are keyed by bean type and context
+     * name.  If any of the bean's properties have visibility rules which depend upon more than the context name (role
+     * checks, for example), a separate plan is kept for each combination of those rules' outcomes.
+     *
+     * @param beanType the bean type
+     * @param context  the context
+     * @return the render plan
+     * @since 1.5
+     */
+    public BeanRenderPlan getRenderPlan(Class<?> beanType, Context context) {
         final BeanMetaData beanMetaData = getBeanMetaData(beanType);
-        if (properties == null || properties.length == 0) {
-            for (String propertyName : beanMetaData.getPropertyNames()) {
-                WicketopiaPropertyFacet facet = WicketopiaPropertyFacet.get(beanMetaData.getPropertyMetaData(propertyName));
-                if (!facet.isIgnored() && facet.isVisible(context)) {
-                    names.add(propertyName);
-                }
+        final RenderPlanKey key = new RenderPlanKey(beanType, context.getName());
+        RenderPlanFamily family = renderPlans.get(key);
+        if (family == null || family.beanMetaData != beanMetaData) {
+            family = new RenderPlanFamily(beanMetaData);
+            renderPlans.put(key, family);
+        }
+        return family.getPlan(context);
+    }
+
+    private BeanRenderPlan createRenderPlan(BeanMetaData beanMetaData, Context context) {
+        final Class<?> beanType = beanMetaData.getBeanDescriptor().getBeanClass();
+        final List<WicketopiaPropertyFacet> facets = new ArrayList<WicketopiaPropertyFacet>();
+        for (String propertyName : beanMetaData.getPropertyNames()) {
+            WicketopiaPropertyFacet facet = WicketopiaPropertyFacet.get(beanMetaData.getPropertyMetaData(propertyName));
+            if (!facet.isIgnored() && facet.isVisible(context)) {
+                facets.add(facet);
             }
-            Collections.sort(names, new Comparator<String>() {
-                @Override
-                public int compare(String o1, String o2) {
-                    WicketopiaPropertyFacet left = WicketopiaPropertyFacet.get(beanMetaData.getPropertyMetaData(o1));
-                    WicketopiaPropertyFacet right = WicketopiaPropertyFacet.get(beanMetaData.getPropertyMetaData(o2));
-                    return WicketopiaPropertyFacet.compare(left, right);
-                }
-            });
-        } else {
-            for (String propertyName : properties) {
-                WicketopiaPropertyFacet facet = WicketopiaPropertyFacet.get(beanMetaData.getPropertyMetaData(propertyName));
-                if (!facet.isIgnored() && facet.isVisible(context)) {
-                    names.add(propertyName);
-                }
+        }
+        Collections.sort(facets, new Comparator<WicketopiaPropertyFacet>() {
+            @Override
+            public int compare(WicketopiaPropertyFacet left, WicketopiaPropertyFacet right) {
+                return WicketopiaPropertyFacet.compare(left, right);
+            }
+        });
+        final List<BeanRenderPlan.PropertyPlan> properties = new ArrayList<BeanRenderPlan.PropertyPlan>(facets.size());
+        for (WicketopiaPropertyFacet facet : facets) {
+            properties.add(new BeanRenderPlan.PropertyPlan(facet,
+                    findEditorProvider(facet.getPropertyMetaData()),
+                    findViewerProvider(facet.getPropertyMetaData()),
+                    facet.getActiveEditorFeatures(context),
+                    facet.getActiveViewerFeatures(context)));
+        }
+        return new BeanRenderPlan(beanType, context.getName(), properties);
+    }
+
+    private PropertyEditorProvider findEditorProvider(PropertyMetaData propertyMetaData) {
+        try {
+            return getEditorProvider(propertyMetaData);
+        } catch (WicketRuntimeException e) {
+            return null;
+        }
+    }
+
+    private PropertyViewerProvider findViewerProvider(PropertyMetaData propertyMetaData) {
+        try {
+            return getViewerProvider(propertyMetaData);
+        } catch (WicketRuntimeException e) {
+            return null;
+        }
+    }
+
+    private PropertyMetaData getPropertyMetaData(Class<?> beanType, String propertyName) {
+        final PropertyMetaData propertyMetaData = getBeanMetaData(beanType).getPropertyMetaData(propertyName);
+        if (propertyMetaData == null) {
+            throw new WicketRuntimeException("Property \"" + propertyName + "\" not found for bean type " + beanType.getName() + ".");
+        }
+        return propertyMetaData;
+    }
+
+    public List<String> getVisibleProperties(Class<?> beanType, Context context, String... properties) {
+        final BeanRenderPlan plan = getRenderPlan(beanType, context);
+        if (properties == null || properties.length == 0) {
+            return new ArrayList<String>(plan.getPropertyNames());
+        }
+        final List<String> names = new ArrayList<String>(properties.length);
+        for (String propertyName : properties) {
+            if (plan.getPropertyPlan(propertyName) != null) {
+                names.add(propertyName);
+            } else {
+                getPropertyMetaData(beanType, propertyName);
             }
         }
         return names;
     }
 
+    /**
+     * Releases the resources held by this instance (i.e. shuts down the {@link #getSortExecutor() sort executor}).
+     * This is called automatically when the application Wicketopia is installed into is destroyed.
+     */
+    public synchronized void destroy() {
+        destroyed = true;
+        if (sortExecutor != null) {
+            sortExecutor.shutdownNow();
+            sortExecutor = null;
+        }
+    }
+
+    /**
+     * Returns the bounded thread pool used to sort large in-memory collections in parallel (see
+     * {@link org.wicketopia.model.table.SortableCollectionDataProvider}).  The pool is created on first use and shut
+     * down by {@link #destroy()}, so no threads outlive the application.
+     *
+     * @return the sort executor, or <code>null</code> if sorting should happen on the calling thread
+     */
+    public synchronized ExecutorService getSortExecutor() {
+        if (sortExecutor == null && sortThreads > 1 && !destroyed) {
+            sortExecutor = Executors.newFixedThreadPool(sortThreads, new SortThreadFactory());
+        }
+        return sortExecutor;
+    }
+
     public void install(WebApplication application) {
         this.application = application;
         application.setMetaData(META_KEY, this);
+        application.getApplicationListeners().add(new DestroyListener(this));
+        application.getResourceSettings().getPropertiesFactory().addListener(displayNameCache);
+        getBeanMetaDataFactory();
         addDefaultEditorProviders();
         adDefaultViewerProviders();
         for (WicketopiaPlugin plugin : plugins) {
@@ -338,6 +722,7 @@ public class Wicketopia {
             }
             plugin.initialize(this);
         }
+        frozen = true;
     }
 
     private void addDefaultEditorProviders() {
@@ -391,4 +776,96 @@ public class Wicketopia {
 
     private static final class WicketopiaPluginKey extends MetaDataKey<Wicketopia> {
     }
+
+    private static final class DestroyListener implements IApplicationListener {
+        private final Wicketopia wicketopia;
+
+        private DestroyListener(Wicketopia wicketopia) {
+            this.wicketopia = wicketopia;
+        }
+
+        @Override
+        public void onAfterInitialized(Application application) {
+        }
+
+        @Override
+        public void onBeforeDestroyed(Application application) {
+            wicketopia.destroy();
+        }
+    }
+
+    private static final class SortThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "wicketopia-sort-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static final class RenderPlanKey {
+        private final Class<?> beanType;
+        private final String contextName;
+
+        private RenderPlanKey(Class<?> beanType, String contextName) {
+            this.beanType = beanType;
+            this.contextName = contextName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RenderPlanKey)) {
+                return false;
+            }
+            RenderPlanKey other = (RenderPlanKey) o;
+            return beanType.equals(other.beanType) && StringUtils.equals(contextName, other.contextName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * beanType.hashCode() + (contextName == null ? 0 : contextName.hashCode());
+        }
+    }
+
+    /**
+     * All of the render plans for a bean type and context name, keyed by the outcomes of the dynamic (non-static)
+     * visibility predicates of the bean's properties.
+     */
+    private final class RenderPlanFamily {
+        private final BeanMetaData beanMetaData;
+        private final ContextPredicate[] predicates;
+        private final ConcurrentMap<BitSet, BeanRenderPlan> plans = new ConcurrentHashMap<BitSet, BeanRenderPlan>();
+
+        private RenderPlanFamily(BeanMetaData beanMetaData) {
+            this.beanMetaData = beanMetaData;
+            final Set<ContextPredicate> dynamic = new LinkedHashSet<ContextPredicate>();
+            for (String propertyName : beanMetaData.getPropertyNames()) {
+                WicketopiaPropertyFacet.get(beanMetaData.getPropertyMetaData(propertyName)).collectDynamicVisibilityPredicates(dynamic);
+            }
+            this.predicates = dynamic.toArray(new ContextPredicate[dynamic.size()]);
+        }
+
+        private BeanRenderPlan getPlan(Context context) {
+            final BitSet fingerprint = new BitSet(predicates.length);
+            for (int i = 0; i < predicates.length; ++i) {
+                if (predicates[i].evaluate(context)) {
+                    fingerprint.set(i);
+                }
+            }
+            BeanRenderPlan plan = plans.get(fingerprint);
+            if (plan == null) {
+                plan = createRenderPlan(beanMetaData, context);
+                final BeanRenderPlan existing = plans.putIfAbsent(fingerprint, plan);
+                if (existing != null) {
+                    plan = existing;
+                }
+            }
+            return plan;
+        }
+    }
 }
@@ -19,8 +19,8 @@ package org.wicketopia.component.choice;
 import org.apache.wicket.markup.html.form.DropDownChoice;
 import org.apache.wicket.model.IModel;
 import org.wicketopia.renderer.EnumChoiceRenderer;
+import org.wicketopia.renderer.EnumChoices;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -50,7 +50,7 @@ public class EnumDropDownChoice<T extends Enum> extends DropDownChoice<T> {
      * @param enumClass the enum class
      */
     public EnumDropDownChoice(String id, Class<T> enumClass) {
-        super(id, new ArrayList<T>(Arrays.asList(enumClass.getEnumConstants())));
+        super(id, EnumChoices.of(enumClass).getConstants());
         setChoiceRenderer(new EnumChoiceRenderer<T>(this));
     }
 
@@ -98,7 +98,30 @@ public class EnumDropDownChoice<T extends Enum> extends DropDownChoice<T> {
      * @param enumClass the enum class
      */
     public EnumDropDownChoice(String id, IModel<T> model, Class<T> enumClass) {
-        super(id, model, Arrays.asList(enumClass.getEnumConstants()));
+        super(id, model, EnumChoices.of(enumClass).getConstants());
         setChoiceRenderer(new EnumChoiceRenderer<T>(this));
     }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Looks the constant up by ordinal rather than scanning the choices.  When the choices are a subset of the enum
+     * constants, the constant must also be one of them.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected T convertChoiceIdToChoice(String id) {
+        final List<? extends T> choices = getChoices();
+        if (choices.isEmpty() || choices.get(0) == null || !(getChoiceRenderer() instanceof EnumChoiceRenderer)) {
+            return super.convertChoiceIdToChoice(id);
+        }
+        final EnumChoices<T> enumChoices = EnumChoices.of(choices.get(0).getDeclaringClass());
+        final T constant = enumChoices.getConstant(id);
+        if (constant == null || choices == enumChoices.getConstants() || choices.contains(constant)) {
+            return constant;
+        }
+        return null;
+    }
 }
@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.component.table;
+
+import org.apache.wicket.AttributeModifier;
+import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.extensions.markup.html.repeater.data.grid.ICellPopulator;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.IColumn;
+import org.apache.wicket.markup.head.CssHeaderItem;
+import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.head.JavaScriptHeaderItem;
+import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.panel.Panel;
+import org.apache.wicket.markup.repeater.Item;
+import org.apache.wicket.markup.repeater.RepeatingView;
+import org.apache.wicket.markup.repeater.data.IDataProvider;
+import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.request.IRequestParameters;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.resource.PackageResourceReference;
+import org.wicketopia.Wicketopia;
+import org.wicketopia.context.Context;
+import org.wicketopia.factory.PropertyComponentFactory;
+import org.wicketopia.model.column.BeanPropertyColumn;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A table which only renders a window of its rows (the visible viewport plus some overscan above and below it).  As the
+ * viewport is scrolled, further windows are fetched from the data provider (using <code>first</code>/<code>count</code>)
+ * through an Ajax callback.  The rows are a fixed set of recycled "slots" whose models are re-pointed at each window,
+ * so the component tree (and the response size) stays the same no matter how many rows there are.
+ * <p/>
+ * Rows must have a fixed height, given in pixels.
+ *
+ * @since 1.5
+ */
+public class VirtualScrollTable<T> extends Panel {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    public static final int DEFAULT_ROW_HEIGHT = 24;
+    public static final int DEFAULT_VISIBLE_ROWS = 20;
+    public static final int DEFAULT_OVERSCAN = 10;
+
+    private static final PackageResourceReference CSS_REFERENCE = new PackageResourceReference(VirtualScrollTable.class, "virtual-scroll.css");
+    private static final PackageResourceReference JS_REFERENCE = new PackageResourceReference(VirtualScrollTable.class, "virtual-scroll.js");
+
+    private final List<? extends IColumn<T, String>> columns;
+    private final IDataProvider<T> dataProvider;
+    private final int rowHeight;
+    private final int overscan;
+    private final int windowSize;
+    private final WebMarkupContainer viewport;
+    private final WebMarkupContainer spacer;
+    private final WindowCallback callback;
+    private final List<RowSlot> slots = new ArrayList<RowSlot>();
+    private long first;
+    private int count;
+    private transient Long size;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    public VirtualScrollTable(String id, Class<T> beanType, IDataProvider<T> dataProvider, Context context, PropertyComponentFactory<T> componentFactory, String... propertyNames) {
+        this(id, createColumns(beanType, context, componentFactory, propertyNames), dataProvider);
+    }
+
+    public VirtualScrollTable(String id, List<? extends IColumn<T, String>> columns, IDataProvider<T> dataProvider) {
+        this(id, columns, dataProvider, DEFAULT_ROW_HEIGHT, DEFAULT_VISIBLE_ROWS, DEFAULT_OVERSCAN);
+    }
+
+    public VirtualScrollTable(String id, List<? extends IColumn<T, String>> columns, IDataProvider<T> dataProvider, int rowHeight, int visibleRows, int overscan) {
+        super(id);
+        this.columns = columns;
+        this.dataProvider = dataProvider;
+        this.rowHeight = rowHeight;
+        this.overscan = overscan;
+        this.windowSize = visibleRows + 2 * overscan;
+        this.count = windowSize;
+
+        final RepeatingView headers = new RepeatingView("headers");
+        for (IColumn<T, String> column : columns) {
+            final WebMarkupContainer header = new WebMarkupContainer(headers.newChildId());
+            header.add(column.getHeader("header"));
+            headers.add(header);
+        }
+        add(headers);
+
+        viewport = new WebMarkupContainer("viewport");
+        viewport.setOutputMarkupId(true);
+        viewport.add(AttributeModifier.replace("style", "height: " + (visibleRows * rowHeight) + "px;"));
+        add(viewport);
+
+        spacer = new WebMarkupContainer("spacer") {
+            @Override
+            protected void onBeforeRender() {
+                fillWindow();
+                super.onBeforeRender();
+            }
+        };
+        spacer.setOutputMarkupId(true);
+        spacer.add(AttributeModifier.replace("style", new AbstractReadOnlyModel<String>() {
+            @Override
+            public String getObject() {
+                return "height: " + (getSize() * VirtualScrollTable.this.rowHeight) + "px;";
+            }
+        }));
+        viewport.add(spacer);
+
+        final WebMarkupContainer window = new WebMarkupContainer("window");
+        window.add(AttributeModifier.replace("style", new AbstractReadOnlyModel<String>() {
+            @Override
+            public String getObject() {
+                return "top: " + (first * VirtualScrollTable.this.rowHeight) + "px;";
+            }
+        }));
+        window.add(AttributeModifier.replace("data-first", new AbstractReadOnlyModel<Long>() {
+            @Override
+            public Long getObject() {
+                return first;
+            }
+        }));
+        window.add(AttributeModifier.replace("data-count", new AbstractReadOnlyModel<Long>() {
+            @Override
+            public Long getObject() {
+                return getWindowCount();
+            }
+        }));
+        spacer.add(window);
+
+        final RepeatingView rows = new RepeatingView("rows");
+        for (int i = 0; i < windowSize; ++i) {
+            final RowSlot slot = new RowSlot(rows.newChildId(), i);
+            slots.add(slot);
+            rows.add(slot);
+        }
+        window.add(rows);
+
+        callback = new WindowCallback();
+        viewport.add(callback);
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static <T> List<IColumn<T, String>> createColumns(Class<T> beanType, Context context, PropertyComponentFactory<T> componentFactory, String... propertyNames) {
+        final List<IColumn<T, String>> columns = new ArrayList<IColumn<T, String>>();
+        for (String propertyName : Wicketopia.get().getVisibleProperties(beanType, context, propertyNames)) {
+            columns.add(new BeanPropertyColumn<T>(componentFactory, propertyName, context));
+        }
+        return columns;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Getter/Setter Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    public IDataProvider<T> getDataProvider() {
+        return dataProvider;
+    }
+
+    /**
+     * Returns the index of the first row in the rendered window.
+     */
+    public long getFirst() {
+        return first;
+    }
+
+    /**
+     * Returns the number of rows in a full window (and hence the number of row components).
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Moves the rendered window so that it starts at the given row (clamped to the available rows).
+     *
+     * @param first the index of the first row to render
+     */
+    public void setFirst(long first) {
+        setWindow(first, windowSize);
+    }
+
+    /**
+     * Moves the rendered window so that it starts at the given row and spans (at most) the given number of rows.  The
+     * count is clamped to the window size, which bounds the work done for any one request.
+     *
+     * @param first the index of the first row to render
+     * @param count the number of rows to render
+     */
+    public void setWindow(long first, int count) {
+        this.first = Math.max(0, Math.min(first, getSize() - 1));
+        this.count = Math.max(1, Math.min(count, windowSize));
+    }
+
+    @Override
+    public void renderHead(IHeaderResponse response) {
+        super.renderHead(response);
+        response.render(CssHeaderItem.forReference(CSS_REFERENCE));
+        response.render(JavaScriptHeaderItem.forReference(JS_REFERENCE));
+        response.render(OnDomReadyHeaderItem.forScript("Wicketopia.VirtualScroll.init('" + viewport.getMarkupId() + "', '" + callback.getCallbackUrl() + "', " + rowHeight + ", " + overscan + ", " + windowSize + ");"));
+    }
+
+    /**
+     * Points the row slots at the beans in the current window (the spacer is the unit of re-rendering, so this happens
+     * when it is rendered, whether as part of the page or in an Ajax response).
+     */
+    private void fillWindow() {
+        size = null;
+        first = Math.max(0, Math.min(first, getSize() - 1));
+        final Iterator<? extends T> beans = getSize() == 0 ? null : dataProvider.iterator(first, getWindowCount());
+        for (RowSlot slot : slots) {
+            slot.fill(beans != null && beans.hasNext() ? dataProvider.model(beans.next()) : null);
+        }
+    }
+
+    @Override
+    protected void onDetach() {
+        size = null;
+        dataProvider.detach();
+        for (IColumn<T, String> column : columns) {
+            column.detach();
+        }
+        super.onDetach();
+    }
+
+    private long getSize() {
+        if (size == null) {
+            size = dataProvider.size();
+        }
+        return size;
+    }
+
+    private long getWindowCount() {
+        return Math.max(0, Math.min(count, getSize() - first));
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A recycled row.  Its cells are populated once, against a slot model whose delegate is re-pointed at whichever
+     * bean currently occupies the slot.
+     */
+    private final class RowSlot extends Item<T> {
+        private RowSlot(String id, int index) {
+            super(id, index, new SlotModel<T>());
+            add(AttributeModifier.replace("style", "height: " + rowHeight + "px;"));
+            final RepeatingView cells = new RepeatingView("cells");
+            for (IColumn<T, String> column : columns) {
+                final Item<ICellPopulator<T>> cell = new Item<ICellPopulator<T>>(cells.newChildId(), cells.size(), new Model<ICellPopulator<T>>(column));
+                column.populateItem(cell, "cell", getModel());
+                cells.add(cell);
+            }
+            add(cells);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void fill(IModel<T> beanModel) {
+            ((SlotModel<T>) getDefaultModel()).setDelegate(beanModel);
+            setVisible(beanModel != null);
+        }
+    }
+
+    private static final class SlotModel<T> extends AbstractReadOnlyModel<T> {
+        private IModel<T> delegate;
+
+        @Override
+        public void detach() {
+            if (delegate != null) {
+                delegate.detach();
+            }
+        }
+
+        @Override
+        public T getObject() {
+            return delegate == null ? null : delegate.getObject();
+        }
+
+        private void setDelegate(IModel<T> delegate) {
+            this.delegate = delegate;
+        }
+    }
+
+    /**
+     * Moves the window to the <code>first</code>/<code>count</code> rows requested by the client and re-renders it.
+     */
+    private final class WindowCallback extends AbstractDefaultAjaxBehavior {
+        @Override
+        protected void respond(AjaxRequestTarget target) {
+            final IRequestParameters parameters = RequestCycle.get().getRequest().getRequestParameters();
+            setWindow(parameters.getParameterValue("first").toLong(first), parameters.getParameterValue("count").toInt(windowSize));
+            target.add(spacer);
+        }
+    }
+}
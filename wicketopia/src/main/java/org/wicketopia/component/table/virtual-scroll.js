@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/*
+ * Fetches a new window of rows for a VirtualScrollTable whenever its viewport is scrolled beyond the rows which have
+ * been rendered.  The window element reports the rendered range through its data-first/data-count attributes.
+ */
+(function () {
+    "use strict";
+
+    var Wicketopia = window.Wicketopia = window.Wicketopia || {};
+
+    Wicketopia.VirtualScroll = {
+        init: function (viewportId, callbackUrl, rowHeight, overscan, windowSize) {
+            var viewport = document.getElementById(viewportId), timer = null;
+            if (!viewport || viewport.getAttribute("data-virtual-scroll")) {
+                return;
+            }
+            viewport.setAttribute("data-virtual-scroll", "true");
+
+            function renderedWindow() {
+                var table = viewport.getElementsByTagName("table")[0];
+                return {
+                    first: parseInt(table.getAttribute("data-first"), 10),
+                    count: parseInt(table.getAttribute("data-count"), 10)
+                };
+            }
+
+            function update() {
+                var top = Math.floor(viewport.scrollTop / rowHeight),
+                    visible = Math.ceil(viewport.clientHeight / rowHeight),
+                    rendered = renderedWindow();
+                if (top < rendered.first || (top + visible > rendered.first + rendered.count && rendered.count >= windowSize)) {
+                    Wicket.Ajax.get({
+                        u: callbackUrl,
+                        ep: {first: Math.max(0, top - overscan), count: windowSize}
+                    });
+                }
+            }
+
+            viewport.addEventListener("scroll", function () {
+                clearTimeout(timer);
+                timer = setTimeout(update, 50);
+            });
+        }
+    };
+})();
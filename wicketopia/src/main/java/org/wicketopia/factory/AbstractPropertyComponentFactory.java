@@ -20,6 +20,12 @@ import org.apache.wicket.markup.html.basic.Label;
 import org.metastopheles.PropertyMetaData;
 import org.wicketopia.Wicketopia;
 import org.wicketopia.component.label.PropertyLabel;
+import org.wicketopia.util.CompactSerialization;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 
 public abstract class AbstractPropertyComponentFactory<T> implements PropertyComponentFactory<T> {
 //----------------------------------------------------------------------------------------------------------------------
@@ -49,4 +55,43 @@ public abstract class AbstractPropertyComponentFactory<T> implements PropertyCom
     protected Class<T> getBeanType() {
         return beanType;
     }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The compact serialized form of the built-in factories, which are fully described by their kind and bean type.
+     */
+    static final class CompactForm implements Externalizable {
+        private static final long serialVersionUID = 1L;
+
+        private boolean editor;
+        private Class<?> beanType;
+
+        public CompactForm() {
+        }
+
+        CompactForm(boolean editor, Class<?> beanType) {
+            this.editor = editor;
+            this.beanType = beanType;
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            editor = in.readBoolean();
+            beanType = CompactSerialization.readClass(in);
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            out.writeBoolean(editor);
+            CompactSerialization.writeClass(out, beanType);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object readResolve() {
+            return editor ? new PropertyEditorComponentFactory(beanType) : new PropertyViewerComponentFactory(beanType);
+        }
+    }
 }
@@ -18,10 +18,9 @@ package org.wicketopia.factory;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.model.IModel;
-import org.apache.wicket.model.PropertyModel;
-import org.metastopheles.PropertyMetaData;
 import org.wicketopia.Wicketopia;
 import org.wicketopia.context.Context;
+import org.wicketopia.model.property.CompiledPropertyModel;
 
 /**
  * @since 1.0
@@ -41,8 +40,14 @@ public class PropertyViewerComponentFactory<T> extends AbstractPropertyComponent
 
     @Override
     public Component createPropertyComponent(String id, IModel<T> beanModel, String propertyName, Context context) {
-        Wicketopia plugin = Wicketopia.get();
-        PropertyMetaData propertyMetaData = plugin.getBeanMetaData(getBeanType()).getPropertyMetaData(propertyName);
-        return plugin.createPropertyViewer(id, propertyMetaData, new PropertyModel(beanModel, propertyName), context);
+        return Wicketopia.get().createPropertyViewer(id, getBeanType(), propertyName, new CompiledPropertyModel<Object>(beanModel, getBeanType(), propertyName), context);
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    private Object writeReplace() {
+        return new CompactForm(false, getBeanType());
     }
 }
@@ -17,10 +17,12 @@
 package org.wicketopia.layout.list;
 
 import org.apache.wicket.WicketRuntimeException;
-import org.apache.wicket.markup.html.list.ListItem;
-import org.apache.wicket.markup.html.list.ListItemModel;
-import org.apache.wicket.markup.html.list.ListView;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.markup.repeater.Item;
+import org.apache.wicket.markup.repeater.RefreshingView;
 import org.apache.wicket.markup.repeater.RepeatingView;
+import org.apache.wicket.markup.repeater.ReuseIfModelsEqualStrategy;
+import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.IModel;
 import org.metastopheles.BeanMetaData;
 import org.metastopheles.PropertyMetaData;
@@ -30,14 +32,31 @@ import org.wicketopia.context.Context;
 import org.wicketopia.factory.PropertyComponentFactory;
 import org.wicketopia.layout.AbstractLayoutPanel;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Lays out a list of beans as a grid, one row per bean and one cell per property.  Each cell is the property component
+ * itself (no per-cell list items or models), and rows are reused across requests based upon the bean's
+ * {@link #getRowKey(Object) row key} rather than its index, so that individual rows may be
+ * {@link #refreshRow(AjaxRequestTarget, Object) refreshed} via Ajax.  Rows only hold on to their keys; the beans
+ * themselves are looked up from the list on each request.
+ */
 public class BeanListLayoutPanel<T> extends AbstractLayoutPanel<T> {
 //----------------------------------------------------------------------------------------------------------------------
 // Fields
 //----------------------------------------------------------------------------------------------------------------------
 
-    private final BeanListView listView;
+    private final IModel<? extends List<? extends T>> model;
+    private final String[] columns;
+    private final BeanRowView rowView;
+    private RowKeyFunction<? super T> rowKeyFunction = RowKeys.BEAN;
+    private transient Map<RowKey, T> rows;
 
 //----------------------------------------------------------------------------------------------------------------------
 // Constructors
@@ -45,9 +64,11 @@ public class BeanListLayoutPanel<T> extends AbstractLayoutPanel<T> {
 
     public BeanListLayoutPanel(String id, Class<T> beanType, IModel<? extends List<? extends T>> model, Context context, PropertyComponentFactory<T> componentFactory, String... propertyNames) {
         super(id, beanType, context, componentFactory, propertyNames);
+        this.model = model;
+        this.columns = getPropertyNames().toArray(new String[getPropertyNames().size()]);
         BeanMetaData beanMetaData = Wicketopia.get().getBeanMetaData(beanType);
         final RepeatingView headers = new RepeatingView("headers");
-        for (String property : getPropertyNames()) {
+        for (String property : columns) {
             PropertyMetaData propertyMetaData = beanMetaData.getPropertyMetaData(property);
             if (propertyMetaData == null) {
                 throw new WicketRuntimeException("Property \"" + property + "\" not found for bean type " + beanType.getName() + ".");
@@ -55,8 +76,27 @@ public class BeanListLayoutPanel<T> extends AbstractLayoutPanel<T> {
             headers.add(new PropertyLabel(headers.newChildId(), propertyMetaData));
         }
         add(headers);
-        listView = new BeanListView("rows", model, componentFactory, context);
-        add(listView);
+        rowView = new BeanRowView("rows");
+        add(rowView);
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Getter/Setter Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    public RowKeyFunction<? super T> getRowKeyFunction() {
+        return rowKeyFunction;
+    }
+
+    /**
+     * Sets the function computing the {@link #getRowKey(Object) row keys}.  The default, {@link RowKeys#BEAN}, keys
+     * rows by the beans themselves; supply a function returning an identifier (such as an entity's id) to keep the
+     * beans out of the page store, or {@link RowKeys#IDENTITY} to key rows by bean instance.
+     *
+     * @param rowKeyFunction the row key function
+     */
+    public void setRowKeyFunction(RowKeyFunction<? super T> rowKeyFunction) {
+        this.rowKeyFunction = rowKeyFunction;
     }
 
 //----------------------------------------------------------------------------------------------------------------------
@@ -64,39 +104,185 @@ public class BeanListLayoutPanel<T> extends AbstractLayoutPanel<T> {
 //----------------------------------------------------------------------------------------------------------------------
 
     public List<? extends T> getList() {
-        return listView.getList();
+        return model.getObject();
+    }
+
+    /**
+     * Returns the key identifying the bean's row across requests, as computed by the
+     * {@link #setRowKeyFunction(RowKeyFunction) row key function}.  The key is stored with the row (and serialized
+     * along with the page), so it should be serializable and must not change while the bean is displayed.  Since the
+     * default key is the bean itself, rows follow equal beans when the list is reloaded with new instances (e.g. by a
+     * detachable list model).  Beans with equal keys each get their own row.
+     *
+     * @param bean the bean
+     * @return the row key
+     */
+    protected Object getRowKey(T bean) {
+        return rowKeyFunction.getRowKey(bean);
+    }
+
+    /**
+     * Returns a model of the list item at the index.
+     *
+     * @param model the list model
+     * @param index the index
+     * @return the list item model
+     * @deprecated rows are resolved by their {@link #getRowKey(Object) row keys} now, so this method is no longer called
+     */
+    @Deprecated
+    protected IModel<T> getListItemModel(final IModel<? extends List<? extends T>> model, final int index) {
+        return new AbstractReadOnlyModel<T>() {
+            @Override
+            public T getObject() {
+                return model.getObject().get(index);
+            }
+        };
+    }
+
+    @Override
+    protected void onBeforeRender() {
+        // The list may have changed since the rows were resolved (e.g. during form processing)...
+        rows = null;
+        super.onBeforeRender();
     }
 
-    protected IModel<T> getListItemModel(IModel<? extends List<? extends T>> model, int index) {
-        return new ListItemModel<T>(listView, index);
+    @Override
+    protected void onDetach() {
+        rows = null;
+        model.detach();
+        super.onDetach();
+    }
+
+    /**
+     * Adds the row displaying the bean to the Ajax request target, without rebuilding the rest of the grid.
+     *
+     * @param target the Ajax request target
+     * @param bean   the bean
+     * @return whether or not a row was found for the bean
+     */
+    public boolean refreshRow(AjaxRequestTarget target, T bean) {
+        final RowModel rowModel = new RowModel(findRowKey(bean));
+        for (Iterator<Item<T>> i = rowView.getItems(); i.hasNext(); ) {
+            final Item<T> item = i.next();
+            if (rowModel.equals(item.getModel())) {
+                target.add(item);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private RowKey findRowKey(T bean) {
+        // Prefer the row of this very instance, in case equal beans are listed more than once...
+        for (Map.Entry<RowKey, T> entry : getRows().entrySet()) {
+            if (entry.getValue() == bean) {
+                return entry.getKey();
+            }
+        }
+        return new RowKey(getRowKey(bean), 0);
+    }
+
+    private Map<RowKey, T> getRows() {
+        if (rows == null) {
+            rows = new LinkedHashMap<RowKey, T>();
+            final List<? extends T> list = getList();
+            if (list != null) {
+                final Map<Object, Integer> occurrences = new HashMap<Object, Integer>();
+                for (T bean : list) {
+                    final Object key = getRowKey(bean);
+                    final Integer previous = occurrences.get(key);
+                    final int occurrence = previous == null ? 0 : previous + 1;
+                    occurrences.put(key, occurrence);
+                    rows.put(new RowKey(key, occurrence), bean);
+                }
+            }
+        }
+        return rows;
     }
 
 //----------------------------------------------------------------------------------------------------------------------
 // Inner Classes
 //----------------------------------------------------------------------------------------------------------------------
 
-    private final class BeanListView extends ListView<T> {
-        private final PropertyComponentFactory<T> componentFactory;
-        private final Context context;
+    private final class BeanRowView extends RefreshingView<T> {
+        private BeanRowView(String id) {
+            super(id);
+            setItemReuseStrategy(ReuseIfModelsEqualStrategy.getInstance());
+        }
 
-        private BeanListView(String id, IModel<? extends List<? extends T>> model, PropertyComponentFactory<T> componentFactory, Context context) {
-            super(id, model);
-            this.componentFactory = componentFactory;
-            this.context = context;
-            setReuseItems(true);
+        @Override
+        protected Iterator<IModel<T>> getItemModels() {
+            final List<IModel<T>> models = new ArrayList<IModel<T>>();
+            for (RowKey key : getRows().keySet()) {
+                models.add(new RowModel(key));
+            }
+            return models.iterator();
         }
 
         @Override
-        protected void populateItem(ListItem<T> rowItem) {
-            final IModel<T> beanModel = rowItem.getModel();
-            ListView<String> cells = new ListView<String>("cells", getPropertyNames()) {
-                @Override
-                protected void populateItem(ListItem<String> cellItem) {
-                    cellItem.add(componentFactory.createPropertyComponent("component", beanModel, cellItem.getModelObject(), context));
-                }
-            };
-            cells.setReuseItems(true);
+        protected void populateItem(Item<T> rowItem) {
+            rowItem.setOutputMarkupId(true);
+            final RepeatingView cells = new RepeatingView("cells");
+            for (int i = 0; i < columns.length; ++i) {
+                cells.add(createPropertyComponent(String.valueOf(i), rowItem.getModel(), columns[i]));
+            }
             rowItem.add(cells);
         }
     }
+
+    /**
+     * A row key, along with how many earlier beans in the list had the same key.
+     */
+    private static final class RowKey implements Serializable {
+        private final Object key;
+        private final int occurrence;
+
+        private RowKey(Object key, int occurrence) {
+            this.key = key;
+            this.occurrence = occurrence;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RowKey)) {
+                return false;
+            }
+            final RowKey other = (RowKey) o;
+            return occurrence == other.occurrence && (key == null ? other.key == null : key.equals(other.key));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (key == null ? 0 : key.hashCode()) + occurrence;
+        }
+    }
+
+    /**
+     * A row's bean model, which resolves the bean by its row key from the current list.
+     */
+    private final class RowModel extends AbstractReadOnlyModel<T> {
+        private final RowKey key;
+
+        private RowModel(RowKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public T getObject() {
+            return getRows().get(key);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof BeanListLayoutPanel.RowModel && key.equals(((BeanListLayoutPanel.RowModel) o).key);
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode();
+        }
+    }
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.layout.list;
+
+import java.io.Serializable;
+
+/**
+ * Computes the key identifying a bean's row in a {@link BeanListLayoutPanel} across requests.
+ *
+ * @see RowKeys
+ * @since 1.5
+ */
+public interface RowKeyFunction<T> extends Serializable {
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the bean's row key.  The key is stored with the row (and serialized along with the page) and must not
+     * change while the bean is displayed.
+     *
+     * @param bean the bean
+     * @return the row key
+     */
+    Object getRowKey(T bean);
+}
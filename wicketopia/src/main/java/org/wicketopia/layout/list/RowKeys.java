@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.layout.list;
+
+/**
+ * The stock {@link RowKeyFunction}s.
+ *
+ * @since 1.5
+ */
+public enum RowKeys implements RowKeyFunction<Object> {
+    /**
+     * Keys rows by the bean itself, so rows follow equal beans when the list is reloaded with new instances (as
+     * long as the bean implements <code>equals()</code> and <code>hashCode()</code> by value).  The beans are
+     * serialized along with the page.
+     */
+    BEAN {
+        @Override
+        public Object getRowKey(Object bean) {
+            return bean;
+        }
+    },
+
+    /**
+     * Keys rows by the bean's identity hash code, so rows only follow the very same bean instances (e.g. a list held
+     * in memory which is reordered) and nothing but an integer is serialized along with the page.  Rows are not
+     * reused when the list is reloaded with new instances.
+     */
+    IDENTITY {
+        @Override
+        public Object getRowKey(Object bean) {
+            return System.identityHashCode(bean);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.layout.view;
+
+import org.apache.wicket.markup.ComponentTag;
+import org.apache.wicket.markup.MarkupStream;
+import org.apache.wicket.markup.html.WebComponent;
+import org.apache.wicket.markup.parser.XmlTag;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.util.string.Strings;
+import org.wicketopia.Wicketopia;
+import org.wicketopia.context.Context;
+import org.wicketopia.metadata.BeanRenderPlan;
+import org.wicketopia.model.label.DisplayNameModel;
+import org.wicketopia.viewer.component.InlinePropertyViewer;
+
+/**
+ * A read-only alternative to {@link CssBeanViewLayoutPanel} which renders the same markup (and CSS classes) for all
+ * visible properties of its bean from a single component, rather than from a label, a viewer and a container per
+ * property.  Properties are rendered using their {@link org.wicketopia.viewer.InlinePropertyViewerProvider}s, so this
+ * is only a faithful replacement when the render plan is
+ * {@link BeanRenderPlan#isInlineViewable() inline viewable} (see {@link #isSupported(Class, Context)}).
+ *
+ * @since 1.5
+ */
+public class InlineBeanView<T> extends WebComponent {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final long serialVersionUID = 1L;
+
+    private final Class<T> beanType;
+    private final Context context;
+    private String cssClass = CssBeanViewLayoutPanel.DEFAULT_CSS_CLASS;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns whether or not beans of the type can currently be viewed inline within the context.
+     *
+     * @param beanType the bean type
+     * @param context  the context
+     * @return whether or not beans of the type can be viewed inline
+     */
+    public static boolean isSupported(Class<?> beanType, Context context) {
+        return Wicketopia.get().getRenderPlan(beanType, context).isInlineViewable();
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    public InlineBeanView(String id, Class<T> beanType, IModel<T> beanModel, Context context) {
+        super(id, beanModel);
+        this.beanType = beanType;
+        this.context = context;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected void onComponentTag(ComponentTag tag) {
+        super.onComponentTag(tag);
+        if (tag.isOpenClose()) {
+            tag.setType(XmlTag.TagType.OPEN);
+        }
+        tag.getAttributes().put("class", cssClass);
+    }
+
+    @Override
+    public void onComponentTagBody(MarkupStream markupStream, ComponentTag openTag) {
+        final BeanRenderPlan plan = Wicketopia.get().getRenderPlan(beanType, context);
+        final Object bean = getDefaultModelObject();
+        final StringBuilder sb = new StringBuilder();
+        for (BeanRenderPlan.PropertyPlan property : plan.getProperties()) {
+            sb.append("<div class=\"prop-div\"><div class=\"prop-label\">");
+            sb.append(Strings.escapeMarkup(DisplayNameModel.getDisplayName(property.getFacet(), getLocalizer(), this)));
+            sb.append("</div><div class=\"prop-component\">");
+            sb.append(Strings.escapeMarkup(InlinePropertyViewer.getDisplayValue(property, bean, this)));
+            sb.append("</div></div>");
+        }
+        replaceComponentTagBody(markupStream, openTag, sb);
+    }
+
+    public InlineBeanView<T> setCssClass(String cssClass) {
+        this.cssClass = cssClass;
+        return this;
+    }
+}
@@ -16,9 +16,14 @@
 
 package org.wicketopia.listener.ajax;
 
+import org.apache.wicket.Application;
 import org.apache.wicket.Component;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.Page;
 import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.application.IComponentInitializationListener;
 import org.apache.wicket.feedback.IFeedback;
+import org.apache.wicket.protocol.http.WebApplication;
 import org.apache.wicket.util.visit.IVisit;
 import org.apache.wicket.util.visit.IVisitor;
 
@@ -26,11 +31,38 @@ import java.util.Map;
 
 /**
  * Add this to your AjaxRequestTarget and your feedback panels will automatically be included
- * in the AJAX response if they have messages.
+ * in the AJAX response if they have messages (or need to be cleared of messages they were showing).
+ * <p/>
+ * When {@link #install(WebApplication) installed}, feedback components register themselves with their page's
+ * {@link FeedbackRegistry} as they are initialized, so the page's component tree is never traversed.  Otherwise, the
+ * tree is traversed on each AJAX request to find them.
  *
  * @since 1.0
  */
 public class AutoFeedbackListener implements AjaxRequestTarget.IListener {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final MetaDataKey<Boolean> INSTALLED = new MetaDataKey<Boolean>() {
+    };
+
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Installs an AutoFeedbackListener into the application, along with the component initialization listener which
+     * registers feedback components with their pages' {@link FeedbackRegistry registries}.
+     *
+     * @param application the application
+     */
+    public static void install(WebApplication application) {
+        application.getComponentInitializationListeners().add(new RegisteringListener());
+        application.setMetaData(INSTALLED, Boolean.TRUE);
+        application.getAjaxRequestTargetListeners().add(new AutoFeedbackListener());
+    }
+
 //----------------------------------------------------------------------------------------------------------------------
 // IListener Implementation
 //----------------------------------------------------------------------------------------------------------------------
@@ -43,15 +75,44 @@ public class AutoFeedbackListener implements AjaxRequestTarget.IListener {
 
     @Override
     public void onBeforeRespond(Map<String, Component> map, final AjaxRequestTarget target) {
-        target.getPage().visitChildren(IFeedback.class, new IVisitor<Component, Void>() {
-            @Override
-            public void component(Component component, IVisit<Void> visit) {
+        final Page page = target.getPage();
+        if (!Boolean.TRUE.equals(Application.get().getMetaData(INSTALLED))) {
+            registerFeedbackComponents(page);
+        }
+        final FeedbackRegistry registry = FeedbackRegistry.find(page);
+        if (registry != null) {
+            for (Component component : registry.getComponentsToRender(page)) {
                 if (component.getOutputMarkupId()) {
                     target.add(component);
                 }
+            }
+        }
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    private void registerFeedbackComponents(Page page) {
+        page.visitChildren(IFeedback.class, new IVisitor<Component, Void>() {
+            @Override
+            public void component(Component component, IVisit<Void> visit) {
+                FeedbackRegistry.register(component);
                 visit.dontGoDeeper();
             }
         });
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
 
+    private static final class RegisteringListener implements IComponentInitializationListener {
+        @Override
+        public void onInitialize(Component component) {
+            if (component instanceof IFeedback) {
+                FeedbackRegistry.register(component);
+            }
+        }
     }
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.listener.ajax;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.Page;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.html.panel.FeedbackPanel;
+import org.apache.wicket.util.io.IClusterable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A page-level registry of feedback components, which lets the {@link AutoFeedbackListener} find them without walking
+ * the whole component tree.  The registry also remembers which components rendered messages the last time they were
+ * rendered, so that they can be refreshed (and cleared) once their messages are gone.
+ *
+ * @since 1.5
+ */
+public class FeedbackRegistry implements IClusterable {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final long serialVersionUID = 1L;
+
+    private static final MetaDataKey<FeedbackRegistry> KEY = new MetaDataKey<FeedbackRegistry>() {
+    };
+
+    private final Set<Component> components = new LinkedHashSet<Component>();
+    private final Set<Component> showingMessages = new LinkedHashSet<Component>();
+
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the page's registry, if any feedback component has been registered with it.
+     *
+     * @param page the page
+     * @return the registry or <code>null</code>
+     */
+    public static FeedbackRegistry find(Page page) {
+        return page.getMetaData(KEY);
+    }
+
+    /**
+     * Registers a feedback component with the registry of the page containing it.  The component must already be
+     * added to a page (as it is from <code>onInitialize()</code> onwards).
+     *
+     * @param component the feedback component
+     */
+    public static void register(Component component) {
+        final Page page = component.getPage();
+        FeedbackRegistry registry = find(page);
+        if (registry == null) {
+            registry = new FeedbackRegistry();
+            page.setMetaData(KEY, registry);
+        }
+        if (registry.components.add(component)) {
+            component.add(new MessageTracker());
+            if (component.hasBeenRendered()) {
+                // We didn't see what it rendered, so assume it is showing messages...
+                registry.showingMessages.add(component);
+            }
+        }
+    }
+
+    /**
+     * Removes a feedback component from the registry of the page containing it.
+     *
+     * @param component the feedback component
+     */
+    public static void unregister(Component component) {
+        final Page page = component.findParent(Page.class);
+        final FeedbackRegistry registry = page == null ? null : find(page);
+        if (registry != null) {
+            registry.remove(component);
+        }
+    }
+
+    /**
+     * Returns whether or not the feedback component has messages to render.  Only {@link FeedbackPanel}s can tell, so
+     * any other kind of feedback component is assumed to have messages.
+     */
+    private static boolean hasMessages(Component component) {
+        return !(component instanceof FeedbackPanel) || ((FeedbackPanel) component).anyMessage();
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the registered components (still attached to the page) which need to be rendered, because they either
+     * have messages to show or are still showing messages which are gone.  Components which have been removed from the
+     * page are dropped from the registry.
+     *
+     * @param page the page owning this registry
+     * @return the components to render
+     */
+    public List<Component> getComponentsToRender(Page page) {
+        final List<Component> toRender = new ArrayList<Component>();
+        for (Iterator<Component> i = components.iterator(); i.hasNext(); ) {
+            final Component component = i.next();
+            if (component.findParent(Page.class) != page) {
+                i.remove();
+                showingMessages.remove(component);
+            } else if (showingMessages.contains(component) || hasMessages(component)) {
+                toRender.add(component);
+            }
+        }
+        return toRender;
+    }
+
+    public boolean isRegistered(Component component) {
+        return components.contains(component);
+    }
+
+    private void remove(Component component) {
+        components.remove(component);
+        showingMessages.remove(component);
+    }
+
+    private void rendered(Component component) {
+        if (hasMessages(component)) {
+            showingMessages.add(component);
+        } else {
+            showingMessages.remove(component);
+        }
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Records whether its component rendered any messages.
+     */
+    private static final class MessageTracker extends Behavior {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void beforeRender(Component component) {
+            final FeedbackRegistry registry = find(component.getPage());
+            if (registry != null) {
+                registry.rendered(component);
+            }
+        }
+    }
+}
@@ -19,12 +19,19 @@ package org.wicketopia.mapping;
 import org.apache.commons.lang.ClassUtils;
 import org.metastopheles.PropertyMetaData;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
+ * A {@link TypeMapping} which maps property types (or their superclasses/interfaces) to type names.  Resolved type
+ * names are cached per property type; the cache is replaced along with the overrides whenever they change.
+ *
  * @since 1.0
  */
 public class ClassBasedTypeMapping implements TypeMapping {
@@ -32,7 +39,12 @@ public class ClassBasedTypeMapping implements TypeMapping {
 // Fields
 //----------------------------------------------------------------------------------------------------------------------
 
-    private Map<String, String> typeMap = new HashMap<String, String>();
+    /**
+     * Marks property types which resolve to no type name (a distinct instance, so it can be compared by identity).
+     */
+    private static final String NO_TYPE = new String("");
+
+    private volatile Mappings mappings = new Mappings(Collections.<String, String>emptyMap());
     private final String defaultType;
 
 //----------------------------------------------------------------------------------------------------------------------
@@ -58,6 +70,17 @@ public class ClassBasedTypeMapping implements TypeMapping {
     }
 
     public String getTypeName(Class<?> propertyType) {
+        final Mappings current = mappings;
+        String typeName = current.resolved.get(propertyType);
+        if (typeName == null) {
+            typeName = resolveTypeName(current.typeMap, propertyType);
+            current.resolved.putIfAbsent(propertyType, typeName == null ? NO_TYPE : typeName);
+            return typeName;
+        }
+        return typeName == NO_TYPE ? null : typeName;
+    }
+
+    private String resolveTypeName(Map<String, String> typeMap, Class<?> propertyType) {
         final Queue<Class<?>> typeQueue = createTypeQueue(propertyType);
         while (!typeQueue.isEmpty()) {
             Class<?> type = typeQueue.remove();
@@ -72,8 +95,10 @@ public class ClassBasedTypeMapping implements TypeMapping {
 // Other Methods
 //----------------------------------------------------------------------------------------------------------------------
 
-    public void addTypeOverride(Class<?> propertyType, String type) {
+    public synchronized void addTypeOverride(Class<?> propertyType, String type) {
+        final Map<String, String> typeMap = new HashMap<String, String>(mappings.typeMap);
         typeMap.put(propertyType.getName(), type);
+        mappings = new Mappings(typeMap);
     }
 
     @SuppressWarnings("unchecked")
@@ -89,9 +114,41 @@ public class ClassBasedTypeMapping implements TypeMapping {
         return queue;
     }
 
-    public void setTypeOverrides(Map<Class, String> typeOverrides) {
+    /**
+     * Resolves (and caches) the type names of all the supplied property types up front, so that later lookups are
+     * served straight from the cache.
+     *
+     * @param propertyTypes the property types
+     * @since 1.5
+     */
+    public void resolveAll(Collection<? extends Class<?>> propertyTypes) {
+        for (Class<?> propertyType : propertyTypes) {
+            getTypeName(propertyType);
+        }
+    }
+
+    public synchronized void setTypeOverrides(Map<Class, String> typeOverrides) {
+        final Map<String, String> typeMap = new HashMap<String, String>(mappings.typeMap);
         for (Map.Entry<Class, String> entry : typeOverrides.entrySet()) {
             typeMap.put(entry.getKey().getName(), entry.getValue());
         }
+        mappings = new Mappings(typeMap);
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The overrides along with the type names resolved from them.  Both are swapped out together, so a lookup never
+     * sees names resolved from stale overrides.
+     */
+    private static final class Mappings {
+        private final Map<String, String> typeMap;
+        private final ConcurrentMap<Class<?>, String> resolved = new ConcurrentHashMap<Class<?>, String>();
+
+        private Mappings(Map<String, String> typeMap) {
+            this.typeMap = typeMap;
+        }
     }
 }
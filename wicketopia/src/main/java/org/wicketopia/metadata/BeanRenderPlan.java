@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.metadata;
+
+import org.metastopheles.PropertyMetaData;
+import org.wicketopia.builder.EditorBuilder;
+import org.wicketopia.builder.ViewerBuilder;
+import org.wicketopia.builder.feature.ComponentBuilderFeature;
+import org.wicketopia.editor.PropertyEditorProvider;
+import org.wicketopia.viewer.InlinePropertyViewerProvider;
+import org.wicketopia.viewer.PropertyViewerProvider;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, precomputed description of how a bean type is rendered within a context: its visible properties (in
+ * display order) along with their resolved editor/viewer providers and the component builder features which are
+ * active for the context.
+ *
+ * @since 1.5
+ */
+public final class BeanRenderPlan {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private final Class<?> beanType;
+    private final String contextName;
+    private final PropertyPlan[] properties;
+    private final List<String> propertyNames;
+    private final Map<String, PropertyPlan> propertyPlans;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    public BeanRenderPlan(Class<?> beanType, String contextName, List<PropertyPlan> properties) {
+        this.beanType = beanType;
+        this.contextName = contextName;
+        this.properties = properties.toArray(new PropertyPlan[properties.size()]);
+        final List<String> names = new ArrayList<String>(this.properties.length);
+        final Map<String, PropertyPlan> plans = new HashMap<String, PropertyPlan>();
+        for (PropertyPlan property : this.properties) {
+            names.add(property.getPropertyName());
+            plans.put(property.getPropertyName(), property);
+        }
+        this.propertyNames = Collections.unmodifiableList(names);
+        this.propertyPlans = plans;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Getter/Setter Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    public Class<?> getBeanType() {
+        return beanType;
+    }
+
+    public String getContextName() {
+        return contextName;
+    }
+
+    /**
+     * Returns the visible properties, in display order.
+     *
+     * @return the visible properties
+     */
+    public List<PropertyPlan> getProperties() {
+        return Collections.unmodifiableList(Arrays.asList(properties));
+    }
+
+    /**
+     * Returns the names of the visible properties, in display order.
+     *
+     * @return the names of the visible properties
+     */
+    public List<String> getPropertyNames() {
+        return propertyNames;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the plan for the named property.
+     *
+     * @param propertyName the property name
+     * @return the plan for the property or <code>null</code> if the property is not visible
+     */
+    public PropertyPlan getPropertyPlan(String propertyName) {
+        return propertyPlans.get(propertyName);
+    }
+
+    /**
+     * Returns whether or not all visible properties can be viewed inline (see {@link PropertyPlan#isInlineViewable()}).
+     *
+     * @return whether or not all visible properties can be viewed inline
+     */
+    public boolean isInlineViewable() {
+        for (PropertyPlan property : properties) {
+            if (!property.isInlineViewable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return properties.length;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    public static final class PropertyPlan {
+        private final PropertyMetaData propertyMetaData;
+        private final WicketopiaPropertyFacet facet;
+        private final PropertyEditorProvider editorProvider;
+        private final PropertyViewerProvider viewerProvider;
+        private final List<ComponentBuilderFeature<EditorBuilder>> editorFeatures;
+        private final List<ComponentBuilderFeature<ViewerBuilder>> viewerFeatures;
+
+        /**
+         * Creates a property plan.  The providers may be <code>null</code> if none could be resolved for the
+         * property, in which case the error is reported when an editor/viewer is actually requested.
+         */
+        public PropertyPlan(WicketopiaPropertyFacet facet, PropertyEditorProvider editorProvider, PropertyViewerProvider viewerProvider, List<ComponentBuilderFeature<EditorBuilder>> editorFeatures, List<ComponentBuilderFeature<ViewerBuilder>> viewerFeatures) {
+            this.propertyMetaData = facet.getPropertyMetaData();
+            this.facet = facet;
+            this.editorProvider = editorProvider;
+            this.viewerProvider = viewerProvider;
+            this.editorFeatures = Collections.unmodifiableList(new ArrayList<ComponentBuilderFeature<EditorBuilder>>(editorFeatures));
+            this.viewerFeatures = Collections.unmodifiableList(new ArrayList<ComponentBuilderFeature<ViewerBuilder>>(viewerFeatures));
+        }
+
+        public List<ComponentBuilderFeature<EditorBuilder>> getEditorFeatures() {
+            return editorFeatures;
+        }
+
+        public PropertyEditorProvider getEditorProvider() {
+            return editorProvider;
+        }
+
+        public WicketopiaPropertyFacet getFacet() {
+            return facet;
+        }
+
+        public PropertyMetaData getPropertyMetaData() {
+            return propertyMetaData;
+        }
+
+        public String getPropertyName() {
+            return propertyMetaData.getPropertyDescriptor().getName();
+        }
+
+        public List<ComponentBuilderFeature<ViewerBuilder>> getViewerFeatures() {
+            return viewerFeatures;
+        }
+
+        public PropertyViewerProvider getViewerProvider() {
+            return viewerProvider;
+        }
+
+        /**
+         * Returns whether or not the property can be viewed without creating a viewer component, which is the case
+         * when its viewer provider is an {@link InlinePropertyViewerProvider} and no viewer features are active.
+         *
+         * @return whether or not the property can be viewed inline
+         */
+        public boolean isInlineViewable() {
+            return viewerProvider instanceof InlinePropertyViewerProvider && viewerFeatures.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.metadata;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wicketopia.annotation.index.DecoratorIndexProcessor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Locates the decorator indexes written at compile time by the {@link DecoratorIndexProcessor}.  Each index resource
+ * identifies a classpath root (a directory or a jar) which contains decorator classes, so only those roots need to be
+ * handed to the annotation scanner.
+ *
+ * @since 1.5
+ */
+public final class DecoratorIndex {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DecoratorIndex.class);
+
+    public static final String INDEX_RESOURCE = DecoratorIndexProcessor.INDEX_RESOURCE;
+
+    private static final String JAR_SEPARATOR = "!/";
+
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Finds the classpath roots of all decorator indexes visible to the supplied class loaders.
+     *
+     * @param classLoaders the class loaders to search (<code>null</code>s are ignored)
+     * @return the classpath roots which contain decorator classes (empty if no index is present)
+     */
+    public static URL[] findIndexedRoots(ClassLoader... classLoaders) {
+        final Map<String, URL> roots = new LinkedHashMap<String, URL>();
+        for (ClassLoader classLoader : classLoaders) {
+            if (classLoader == null) {
+                continue;
+            }
+            try {
+                final Enumeration<URL> indexes = classLoader.getResources(INDEX_RESOURCE);
+                while (indexes.hasMoreElements()) {
+                    final URL index = indexes.nextElement();
+                    final List<String> classNames = readIndex(index);
+                    if (!classNames.isEmpty()) {
+                        final URL root = toRoot(index);
+                        if (roots.put(root.toString(), root) == null) {
+                            LOGGER.debug("Found {} indexed decorator class(es) in {}", classNames.size(), root);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new WicketRuntimeException("Unable to read decorator indexes from class loader " + classLoader + ".", e);
+            }
+        }
+        return roots.values().toArray(new URL[roots.size()]);
+    }
+
+    /**
+     * Reads the class names listed in a decorator index.
+     *
+     * @param index the index resource
+     * @return the class names
+     * @throws IOException if the index cannot be read
+     */
+    public static List<String> readIndex(URL index) throws IOException {
+        final List<String> classNames = new ArrayList<String>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(index.openStream(), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() > 0 && !line.startsWith("#")) {
+                    classNames.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return classNames;
+    }
+
+    /**
+     * Reads the class names listed in the decorator index of a classpath root.
+     *
+     * @param root the classpath root (as returned by {@link #findIndexedRoots(ClassLoader...)})
+     * @return the class names
+     * @throws IOException if the index cannot be read
+     */
+    public static List<String> readIndexOf(URL root) throws IOException {
+        return readIndex(toIndex(root));
+    }
+
+    static URL toIndex(URL root) throws MalformedURLException {
+        final String external = root.toExternalForm();
+        if (external.endsWith("/")) {
+            return new URL(external + INDEX_RESOURCE);
+        }
+        return new URL("jar:" + external + JAR_SEPARATOR + INDEX_RESOURCE);
+    }
+
+    static URL toRoot(URL index) throws MalformedURLException {
+        final String external = index.toExternalForm();
+        if ("jar".equals(index.getProtocol())) {
+            return new URL(external.substring("jar:".length(), external.lastIndexOf(JAR_SEPARATOR)));
+        }
+        return new URL(external.substring(0, external.length() - INDEX_RESOURCE.length()));
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    private DecoratorIndex() {
+
+    }
+}
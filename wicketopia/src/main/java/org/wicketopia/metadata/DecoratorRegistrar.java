@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.metadata;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.metastopheles.BeanMetaData;
+import org.metastopheles.BeanMetaDataFactory;
+import org.metastopheles.MetaDataDecorator;
+import org.metastopheles.MetaDataObject;
+import org.metastopheles.PropertyMetaData;
+import org.metastopheles.annotation.BeanDecorator;
+import org.metastopheles.annotation.PropertyDecorator;
+import org.metastopheles.annotation.ScanMe;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+
+/**
+ * Registers the metadata decorators declared by the classes the {@link DecoratorScanner} found, the way metastopheles'
+ * <code>AnnotationBeanMetaDataFactory</code> registers those of the classes it scans itself: each public method
+ * annotated with {@link PropertyDecorator} or {@link BeanDecorator} decorates the metadata carrying the annotation type
+ * of its last parameter.  Instance methods are invoked on an instance of their class, which is only created if the
+ * class is annotated with {@link ScanMe}.
+ *
+ * @since 1.5
+ */
+final class DecoratorRegistrar {
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    static void register(BeanMetaDataFactory factory, Collection<String> classNames) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = DecoratorRegistrar.class.getClassLoader();
+        }
+        for (String className : classNames) {
+            try {
+                register(factory, Class.forName(className, true, classLoader));
+            } catch (ClassNotFoundException e) {
+                throw new WicketRuntimeException("Unable to load metadata decorator class " + className + ".", e);
+            } catch (InstantiationException e) {
+                throw new WicketRuntimeException("Unable to instantiate metadata decorator class " + className + ".", e);
+            } catch (IllegalAccessException e) {
+                throw new WicketRuntimeException("Unable to instantiate metadata decorator class " + className + ".", e);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void register(BeanMetaDataFactory factory, Class<?> type) throws InstantiationException, IllegalAccessException {
+        final Object instance = type.isAnnotationPresent(ScanMe.class) ? type.newInstance() : null;
+        for (Method method : type.getMethods()) {
+            final boolean propertyDecorator = method.isAnnotationPresent(PropertyDecorator.class);
+            final boolean beanDecorator = method.isAnnotationPresent(BeanDecorator.class);
+            final boolean isStatic = Modifier.isStatic(method.getModifiers());
+            if ((!propertyDecorator && !beanDecorator) || (!isStatic && instance == null)) {
+                continue;
+            }
+            final Class<?>[] parameterTypes = method.getParameterTypes();
+            final Class<? extends Annotation> annotationType = (Class<? extends Annotation>) parameterTypes[parameterTypes.length - 1];
+            final Object target = isStatic ? null : instance;
+            if (propertyDecorator) {
+                factory.getPropertyMetaDataDecorators().add(new MethodDecorator<PropertyMetaData>(annotationType, method, target));
+            }
+            if (beanDecorator) {
+                factory.getBeanMetaDataDecorators().add(new MethodDecorator<BeanMetaData>(annotationType, method, target));
+            }
+        }
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    private DecoratorRegistrar() {
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final class MethodDecorator<T extends MetaDataObject> implements MetaDataDecorator<T> {
+        private final Class<? extends Annotation> annotationType;
+        private final Method method;
+        private final Object target;
+
+        private MethodDecorator(Class<? extends Annotation> annotationType, Method method, Object target) {
+            this.annotationType = annotationType;
+            this.method = method;
+            this.target = target;
+        }
+
+        @Override
+        public void decorate(T metaData) {
+            final Annotation annotation = metaData.getAnnotation(annotationType);
+            if (annotation != null) {
+                try {
+                    method.invoke(target, metaData, annotation);
+                } catch (Exception e) {
+                    throw new WicketRuntimeException("Metadata decorator " + method + " failed.", e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,732 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.metadata;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.metastopheles.BeanMetaDataFactory;
+import org.metastopheles.annotation.BeanDecorator;
+import org.metastopheles.annotation.PropertyDecorator;
+import org.metastopheles.annotation.ScanMe;
+import org.scannotation.AnnotationDB;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Finds the classes on the classpath which may declare metadata decorators.  Each root is probed on its own thread by
+ * looking for the decorator annotation descriptors in the constant pools of its class files, honoring the configured
+ * package and jar filters, and {@link #createBeanMetaDataFactory(URL[], URL[])} registers the decorators of exactly
+ * the classes found (so classes in excluded packages never contribute decorators, even if their root is scanned).
+ * Probe results for jars are remembered in an on-disk cache keyed by a digest of the jar's path, size and
+ * modification time, so unchanged jars are not reopened on restart; entries for jars which have changed or no longer
+ * exist are dropped.  Unless a cache file is set explicitly, the cache lives in the cache directory (the system
+ * temporary directory by default) under a name derived from the scanned URLs, so applications sharing a machine don't
+ * share (or clobber) each other's cache.
+ *
+ * @since 1.5
+ */
+public class DecoratorScanner {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DecoratorScanner.class);
+
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String JAR_SUFFIX = ".jar";
+    private static final String[] ANNOTATIONS = {ScanMe.class.getName(), PropertyDecorator.class.getName(), BeanDecorator.class.getName()};
+    private static final byte[][] DESCRIPTORS = {
+            descriptor("org/metastopheles/annotation/ScanMe"),
+            descriptor("org/metastopheles/annotation/PropertyDecorator"),
+            descriptor("org/metastopheles/annotation/BeanDecorator")
+    };
+
+    private final List<String> includedPackages = new LinkedList<String>();
+    private final List<String> excludedPackages = new LinkedList<String>(Arrays.asList("java/", "javax/", "sun/", "com/sun/"));
+    private final List<Pattern> includedJars = new LinkedList<Pattern>();
+    private final List<Pattern> excludedJars = new LinkedList<Pattern>();
+    private boolean cacheEnabled = true;
+    private File cacheDirectory;
+    private File cacheFile;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static byte[] descriptor(String internalName) {
+        try {
+            return ("L" + internalName + ";").getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new WicketRuntimeException(e);
+        }
+    }
+
+    static boolean containsDescriptor(byte[] classFile) {
+        for (byte[] descriptor : DESCRIPTORS) {
+            if (indexOf(classFile, descriptor) != -1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int indexOf(byte[] haystack, byte[] needle) {
+        final int last = haystack.length - needle.length;
+        outer:
+        for (int i = 0; i <= last; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static String toClassName(String entryName) {
+        return entryName.substring(0, entryName.length() - CLASS_SUFFIX.length()).replace('/', '.');
+    }
+
+    private static String toEntryName(String className) {
+        return className.replace('.', '/') + CLASS_SUFFIX;
+    }
+
+    private static Pattern wildcard(String pattern) {
+        final StringBuilder regex = new StringBuilder();
+        for (String part : pattern.split("\\*", -1)) {
+            if (regex.length() > 0) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(part));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private static String toInternalName(String packageName) {
+        final String internal = packageName.replace('.', '/');
+        return internal.endsWith("/") ? internal : internal + "/";
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns a key identifying the classpath root denoted by the URL, so that the same root reached through differently
+     * spelled URLs (e.g. with or without a trailing slash) is recognized.
+     */
+    static String rootKey(URL url) {
+        final File file = toFile(url);
+        return file != null ? file.getAbsolutePath() : url.toExternalForm();
+    }
+
+    private static File toFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return new File(url.getPath());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Getter/Setter Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    public File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Sets the directory in which the default cache file is created (<code>null</code> means the system temporary
+     * directory).  Wicketopia points this at the servlet container's per-application temporary directory.
+     *
+     * @param cacheDirectory the cache directory
+     */
+    public void setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    public File getCacheFile() {
+        return cacheFile;
+    }
+
+    /**
+     * Sets the file used to remember jar probe results between restarts (<code>null</code> means a file in the cache
+     * directory named after the scanned URLs).
+     *
+     * @param cacheFile the cache file
+     */
+    public void setCacheFile(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    public void setCacheEnabled(boolean cacheEnabled) {
+        this.cacheEnabled = cacheEnabled;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Excludes jars whose file names match the supplied wildcard patterns (e.g. <code>wicket-*.jar</code>).
+     *
+     * @param patterns the patterns
+     * @return this scanner
+     */
+    public DecoratorScanner excludeJars(String... patterns) {
+        for (String pattern : patterns) {
+            excludedJars.add(wildcard(pattern));
+        }
+        return this;
+    }
+
+    /**
+     * Excludes classes within the supplied packages (and their subpackages) from being probed.
+     *
+     * @param packageNames the package names
+     * @return this scanner
+     */
+    public DecoratorScanner excludePackages(String... packageNames) {
+        for (String packageName : packageNames) {
+            excludedPackages.add(toInternalName(packageName));
+        }
+        return this;
+    }
+
+    /**
+     * Restricts probing to jars whose file names match the supplied wildcard patterns.  Directories are always probed.
+     *
+     * @param patterns the patterns
+     * @return this scanner
+     */
+    public DecoratorScanner includeJars(String... patterns) {
+        for (String pattern : patterns) {
+            includedJars.add(wildcard(pattern));
+        }
+        return this;
+    }
+
+    /**
+     * Restricts probing to classes within the supplied packages (and their subpackages).
+     *
+     * @param packageNames the package names
+     * @return this scanner
+     */
+    public DecoratorScanner includePackages(String... packageNames) {
+        for (String packageName : packageNames) {
+            includedPackages.add(toInternalName(packageName));
+        }
+        return this;
+    }
+
+    /**
+     * Returns the subset of the supplied URLs which may contain metadata decorators.
+     *
+     * @param urls the classpath URLs
+     * @return the URLs which should be scanned
+     */
+    public URL[] scan(URL[] urls) {
+        return scan(urls, new URL[0]);
+    }
+
+    /**
+     * Returns the subset of the supplied URLs which may contain metadata decorators.  The indexed roots (see
+     * {@link DecoratorIndex}) aren't probed, their indexes list their decorator classes; every other URL is probed as
+     * usual, so roots compiled without the index processor are still found.
+     *
+     * @param urls         the classpath URLs
+     * @param indexedRoots the classpath roots which have a decorator index
+     * @return the URLs which should be scanned
+     */
+    public URL[] scan(URL[] urls, URL[] indexedRoots) {
+        final Map<URL, Set<String>> roots = probe(urls, indexedRoots);
+        final List<URL> candidates = new ArrayList<URL>(roots.size());
+        for (Map.Entry<URL, Set<String>> root : roots.entrySet()) {
+            if (root.getValue() == null || !root.getValue().isEmpty()) {
+                candidates.add(root.getKey());
+            }
+        }
+        LOGGER.debug("{} of {} classpath URL(s) ({} indexed) may contain metadata decorators.", new Object[]{candidates.size(), urls.length, indexedRoots.length});
+        return candidates.toArray(new URL[candidates.size()]);
+    }
+
+    /**
+     * Returns the names of the classes within the supplied URLs which may declare metadata decorators, honoring the
+     * package filters.  The classes of URLs which can't be probed (anything but directories and jar files) are found by
+     * scanning them for the decorator annotations instead.
+     *
+     * @param urls         the classpath URLs
+     * @param indexedRoots the classpath roots which have a decorator index
+     * @return the (sorted) class names
+     */
+    public Set<String> findDecoratorClasses(URL[] urls, URL[] indexedRoots) {
+        final Set<String> classNames = new TreeSet<String>();
+        final List<URL> unprobed = new ArrayList<URL>();
+        for (Map.Entry<URL, Set<String>> root : probe(urls, indexedRoots).entrySet()) {
+            if (root.getValue() == null) {
+                unprobed.add(root.getKey());
+            } else {
+                classNames.addAll(root.getValue());
+            }
+        }
+        if (!unprobed.isEmpty()) {
+            classNames.addAll(scanAnnotations(unprobed));
+        }
+        LOGGER.debug("Found {} class(es) which may declare metadata decorators.", classNames.size());
+        return classNames;
+    }
+
+    /**
+     * Creates a bean metadata factory with the metadata decorators of the classes
+     * {@link #findDecoratorClasses(URL[], URL[]) found} within the supplied URLs.
+     *
+     * @param urls         the classpath URLs
+     * @param indexedRoots the classpath roots which have a decorator index
+     * @return the factory
+     */
+    public BeanMetaDataFactory createBeanMetaDataFactory(URL[] urls, URL[] indexedRoots) {
+        final BeanMetaDataFactory factory = new BeanMetaDataFactory();
+        DecoratorRegistrar.register(factory, findDecoratorClasses(urls, indexedRoots));
+        return factory;
+    }
+
+    /**
+     * Returns the names of the classes which may declare decorators by root (in classpath order), or <code>null</code>
+     * for the roots which can't be probed.
+     */
+    private Map<URL, Set<String>> probe(URL[] urls, URL[] indexedRoots) {
+        final File resolvedCacheFile = resolveCacheFile(urls);
+        final Properties cache = loadCache(resolvedCacheFile);
+        final String fingerprint = filterFingerprint();
+        final Map<URL, Set<String>> roots = new LinkedHashMap<URL, Set<String>>();
+        final Set<String> indexed = new HashSet<String>();
+        for (URL indexedRoot : indexedRoots) {
+            if (indexed.add(rootKey(indexedRoot))) {
+                roots.put(indexedRoot, readIndex(indexedRoot));
+            }
+        }
+        final List<Future<Set<String>>> probes = new ArrayList<Future<Set<String>>>(urls.length);
+        final List<URL> probed = new ArrayList<URL>(urls.length);
+        final List<String> probeKeys = new ArrayList<String>(urls.length);
+        final Set<String> usedKeys = new HashSet<String>();
+        final Set<String> jarPaths = new HashSet<String>();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            for (URL url : urls) {
+                if (indexed.contains(rootKey(url)) || roots.containsKey(url)) {
+                    continue;
+                }
+                final File file = toFile(url);
+                if (file == null) {
+                    // We can't look inside it, so it has to be scanned for the annotations.
+                    roots.put(url, null);
+                } else if (file.isDirectory()) {
+                    roots.put(url, Collections.<String>emptySet());
+                    probeKeys.add(null);
+                    probed.add(url);
+                    probes.add(executor.submit(new DirectoryProbe(file)));
+                } else if (file.isFile() && isIncludedJar(file)) {
+                    final String key = digest(file, fingerprint);
+                    usedKeys.add(key);
+                    jarPaths.add(file.getAbsolutePath());
+                    final Set<String> cached = parseCacheEntry(cache.getProperty(key));
+                    roots.put(url, cached != null ? cached : Collections.<String>emptySet());
+                    if (cached == null) {
+                        probeKeys.add(key);
+                        probed.add(url);
+                        probes.add(executor.submit(new JarProbe(file)));
+                    }
+                }
+            }
+            boolean cacheChanged = pruneCache(cache, usedKeys, jarPaths);
+            for (int i = 0; i < probes.size(); i++) {
+                final Set<String> classNames = probes.get(i).get();
+                roots.put(probed.get(i), classNames);
+                if (probeKeys.get(i) != null) {
+                    cache.setProperty(probeKeys.get(i), toCacheEntry(toFile(probed.get(i)), classNames));
+                    cacheChanged = true;
+                }
+            }
+            if (cacheChanged) {
+                saveCache(cache, resolvedCacheFile);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WicketRuntimeException("Interrupted while scanning for metadata decorators.", e);
+        } catch (ExecutionException e) {
+            throw new WicketRuntimeException("Unable to scan for metadata decorators.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return roots;
+    }
+
+    /**
+     * Returns the included classes listed in the decorator index of the root, or <code>null</code> if the index can't be
+     * read (so the root is scanned for the annotations instead).
+     */
+    private Set<String> readIndex(URL root) {
+        try {
+            final Set<String> classNames = new TreeSet<String>();
+            for (String className : DecoratorIndex.readIndexOf(root)) {
+                if (isIncludedClass(toEntryName(className))) {
+                    classNames.add(className);
+                }
+            }
+            return classNames;
+        } catch (IOException e) {
+            LOGGER.warn("Unable to read the decorator index of {}, scanning it instead.", root);
+            return null;
+        }
+    }
+
+    /**
+     * Scans the URLs for classes carrying the decorator annotations (on the classes or their methods).
+     */
+    private Set<String> scanAnnotations(List<URL> urls) {
+        final AnnotationDB annotationDb = new AnnotationDB();
+        try {
+            annotationDb.scanArchives(urls.toArray(new URL[urls.size()]));
+        } catch (IOException e) {
+            throw new WicketRuntimeException("Unable to scan for metadata decorators.", e);
+        }
+        final Set<String> classNames = new TreeSet<String>();
+        for (String annotation : ANNOTATIONS) {
+            final Set<String> annotated = annotationDb.getAnnotationIndex().get(annotation);
+            if (annotated != null) {
+                for (String className : annotated) {
+                    if (isIncludedClass(toEntryName(className))) {
+                        classNames.add(className);
+                    }
+                }
+            }
+        }
+        return classNames;
+    }
+
+    /**
+     * Cache entries record the jar's path along with the classes found in it, so that the entries of jars which have
+     * changed or no longer exist can be recognized.
+     */
+    private static String toCacheEntry(File jar, Set<String> classNames) {
+        final StringBuilder entry = new StringBuilder(jar.getAbsolutePath()).append('|');
+        for (String className : classNames) {
+            if (entry.charAt(entry.length() - 1) != '|') {
+                entry.append(',');
+            }
+            entry.append(className);
+        }
+        return entry.toString();
+    }
+
+    private static String getCachedPath(String entry) {
+        final int ndx = entry.lastIndexOf('|');
+        return ndx == -1 ? null : entry.substring(0, ndx);
+    }
+
+    private static Set<String> parseCacheEntry(String entry) {
+        if (entry == null || getCachedPath(entry) == null) {
+            return null;
+        }
+        final String classNames = entry.substring(entry.lastIndexOf('|') + 1);
+        final Set<String> parsed = new TreeSet<String>();
+        if (classNames.length() > 0) {
+            parsed.addAll(Arrays.asList(classNames.split(",")));
+        }
+        return parsed;
+    }
+
+    /**
+     * Removes the entries of jars which no longer exist or which have changed (were scanned under another key), along
+     * with any entries in an older format.
+     *
+     * @return whether or not any entries were removed
+     */
+    private static boolean pruneCache(Properties cache, Set<String> usedKeys, Set<String> jarPaths) {
+        boolean pruned = false;
+        for (String key : cache.stringPropertyNames()) {
+            if (usedKeys.contains(key)) {
+                continue;
+            }
+            final String path = getCachedPath(cache.getProperty(key));
+            if (path == null || jarPaths.contains(path) || !new File(path).isFile()) {
+                cache.remove(key);
+                pruned = true;
+            }
+        }
+        return pruned;
+    }
+
+    private String digest(File jar, String fingerprint) {
+        return digest(jar.getAbsolutePath(), String.valueOf(jar.length()), String.valueOf(jar.lastModified()), fingerprint);
+    }
+
+    private static String digest(String... values) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("MD5");
+            for (String value : values) {
+                digest.update(value.getBytes("UTF-8"));
+            }
+            final StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new WicketRuntimeException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new WicketRuntimeException(e);
+        }
+    }
+
+    /**
+     * Changing the package filters can change a jar's probe result, so they are folded into the cache keys.
+     */
+    private String filterFingerprint() {
+        return includedPackages + "|" + excludedPackages;
+    }
+
+    boolean isIncludedClass(String entryName) {
+        if (!entryName.endsWith(CLASS_SUFFIX)) {
+            return false;
+        }
+        for (String excluded : excludedPackages) {
+            if (entryName.startsWith(excluded)) {
+                return false;
+            }
+        }
+        if (includedPackages.isEmpty()) {
+            return true;
+        }
+        for (String included : includedPackages) {
+            if (entryName.startsWith(included)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isIncludedJar(File file) {
+        final String name = file.getName();
+        if (!name.endsWith(JAR_SUFFIX)) {
+            return false;
+        }
+        for (Pattern excluded : excludedJars) {
+            if (excluded.matcher(name).matches()) {
+                return false;
+            }
+        }
+        if (includedJars.isEmpty()) {
+            return true;
+        }
+        for (Pattern included : includedJars) {
+            if (included.matcher(name).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    File resolveCacheFile(URL[] urls) {
+        if (!cacheEnabled) {
+            return null;
+        }
+        if (cacheFile != null) {
+            return cacheFile;
+        }
+        final File directory = cacheDirectory != null ? cacheDirectory : new File(System.getProperty("java.io.tmpdir"));
+        final String[] values = new String[urls.length];
+        for (int i = 0; i < urls.length; i++) {
+            values[i] = String.valueOf(urls[i]);
+        }
+        return new File(directory, "wicketopia-decorator-scan-" + digest(values) + ".cache");
+    }
+
+    private Properties loadCache(File cacheFile) {
+        final Properties cache = new Properties();
+        if (cacheFile != null && cacheFile.isFile()) {
+            try {
+                final InputStream in = new BufferedInputStream(new FileInputStream(cacheFile));
+                try {
+                    cache.load(in);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Unable to read decorator scan cache {}, ignoring it.", cacheFile);
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Writes the cache to a temporary file next to the cache file and then renames it into place, so a concurrently
+     * starting application never reads a half-written cache.
+     */
+    private void saveCache(Properties cache, File cacheFile) {
+        if (cacheFile == null) {
+            return;
+        }
+        File temp = null;
+        try {
+            final File directory = cacheFile.getAbsoluteFile().getParentFile();
+            directory.mkdirs();
+            temp = File.createTempFile(cacheFile.getName(), ".tmp", directory);
+            final OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+            try {
+                cache.store(out, "Wicketopia decorator scan cache");
+            } finally {
+                out.close();
+            }
+            // Some platforms won't rename over an existing file.
+            if (!temp.renameTo(cacheFile) && !(cacheFile.delete() && temp.renameTo(cacheFile))) {
+                throw new IOException("Unable to rename " + temp + " to " + cacheFile);
+            }
+            temp = null;
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write decorator scan cache {}.", cacheFile);
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    private final class DirectoryProbe implements Callable<Set<String>> {
+        private final File root;
+
+        private DirectoryProbe(File root) {
+            this.root = root;
+        }
+
+        @Override
+        public Set<String> call() throws IOException {
+            final Set<String> classNames = new TreeSet<String>();
+            probe(root, "", classNames);
+            return classNames;
+        }
+
+        private void probe(File directory, String prefix, Set<String> classNames) throws IOException {
+            final File[] children = directory.listFiles();
+            if (children == null) {
+                return;
+            }
+            for (File child : children) {
+                final String name = prefix + child.getName();
+                if (child.isDirectory()) {
+                    probe(child, name + "/", classNames);
+                } else if (isIncludedClass(name) && containsDescriptor(readFully(new FileInputStream(child)))) {
+                    classNames.add(toClassName(name));
+                }
+            }
+        }
+    }
+
+    private final class JarProbe implements Callable<Set<String>> {
+        private final File jar;
+
+        private JarProbe(File jar) {
+            this.jar = jar;
+        }
+
+        @Override
+        public Set<String> call() throws IOException {
+            final Set<String> classNames = new TreeSet<String>();
+            final ZipFile zip = new ZipFile(jar);
+            try {
+                final Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    final ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && isIncludedClass(entry.getName()) && containsDescriptor(readFully(zip.getInputStream(entry)))) {
+                        classNames.add(toClassName(entry.getName()));
+                    }
+                }
+                return classNames;
+            } finally {
+                zip.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.metadata;
+
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.request.cycle.RequestCycle;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Detects changes to bean classes (and their <code>.wicketopia.properties</code> configuration resources) by comparing
+ * the modification times of their class files, so that only the affected bean metadata needs to be rebuilt while
+ * running in development mode.  Checks are performed at most once per request cycle.
+ *
+ * @since 1.5
+ */
+public class MetaDataChangeDetector {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    public static final String CONFIGURATION_EXTENSION = ".wicketopia.properties";
+
+    private static final MetaDataKey<Boolean> CHECKED_KEY = new CheckedKey();
+
+    private final ConcurrentMap<Class<?>, Long> fingerprints = new ConcurrentHashMap<Class<?>, Long>();
+
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Calculates a fingerprint of the modification times of the class files and configuration resources of the bean
+     * class and all of its superclasses.
+     *
+     * @param beanClass the bean class
+     * @return the fingerprint
+     */
+    static long fingerprint(Class<?> beanClass) {
+        long fingerprint = 17;
+        for (Class<?> type = beanClass; type != null && !Object.class.equals(type); type = type.getSuperclass()) {
+            final String baseName = type.getName().substring(type.getName().lastIndexOf('.') + 1);
+            fingerprint = 31 * fingerprint + lastModified(type.getResource(baseName + ".class"));
+            fingerprint = 31 * fingerprint + lastModified(type.getResource(baseName + CONFIGURATION_EXTENSION));
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Only resources on the file system can change without a restart, so everything else (jar entries, etc.) is
+     * treated as never modified.
+     */
+    private static long lastModified(URL resource) {
+        if (resource == null || !"file".equals(resource.getProtocol())) {
+            return 0;
+        }
+        try {
+            return new File(resource.toURI()).lastModified();
+        } catch (URISyntaxException e) {
+            return new File(resource.getPath()).lastModified();
+        }
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the watched classes which have changed since they were last watched.  Changed classes are no longer
+     * watched (they should be watched again once their metadata has been rebuilt).  When called within a request
+     * cycle, only the first call actually checks for changes.
+     *
+     * @return the changed classes
+     */
+    public List<Class<?>> detectChanges() {
+        final RequestCycle requestCycle = RequestCycle.get();
+        if (requestCycle != null) {
+            if (requestCycle.getMetaData(CHECKED_KEY) != null) {
+                return Collections.emptyList();
+            }
+            requestCycle.setMetaData(CHECKED_KEY, Boolean.TRUE);
+        }
+        List<Class<?>> changed = Collections.emptyList();
+        for (Map.Entry<Class<?>, Long> entry : fingerprints.entrySet()) {
+            if (fingerprint(entry.getKey()) != entry.getValue() && fingerprints.remove(entry.getKey(), entry.getValue())) {
+                if (changed.isEmpty()) {
+                    changed = new ArrayList<Class<?>>();
+                }
+                changed.add(entry.getKey());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Stops watching all classes.
+     */
+    public void clear() {
+        fingerprints.clear();
+    }
+
+    /**
+     * Starts watching the bean class for changes.
+     *
+     * @param beanClass the bean class
+     */
+    public void watch(Class<?> beanClass) {
+        fingerprints.put(beanClass, fingerprint(beanClass));
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final class CheckedKey extends MetaDataKey<Boolean> {
+    }
+}
@@ -18,9 +18,16 @@ package org.wicketopia.metadata;
 
 import org.metastopheles.BeanMetaData;
 import org.metastopheles.FacetKey;
+import org.wicketopia.Wicketopia;
+import org.wicketopia.util.CompactSerialization;
 import org.wicketopia.util.Displayable;
 import org.wicketopia.util.Pluralizer;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 
 /**
@@ -37,6 +44,7 @@ public class WicketopiaBeanFacet implements Serializable, Displayable {
     private final BeanMetaData beanMetaData;
     private String displayName;
     private String displayNameMessageKey;
+    private volatile boolean frozen = false;
 
 //----------------------------------------------------------------------------------------------------------------------
 // Static Methods
@@ -50,7 +58,18 @@ public class WicketopiaBeanFacet implements Serializable, Displayable {
         return beanMetaData.getBeanDescriptor().getBeanClass().getName();
     }
 
+    /**
+     * Returns the facet for the bean, creating it if necessary.  The metadata's facets live in a plain map, so the
+     * lookup only skips the lock once Wicketopia has frozen and safely published the metadata (see
+     * {@link Wicketopia#isPublished(BeanMetaData)}); until then it synchronizes on the metadata.
+     *
+     * @param beanMetaData the bean metadata
+     * @return the facet
+     */
     public static WicketopiaBeanFacet get(BeanMetaData beanMetaData) {
+        if (Wicketopia.isPublished(beanMetaData)) {
+            return beanMetaData.getFacet(FACET_KEY);
+        }
         synchronized (beanMetaData) {
             WicketopiaBeanFacet meta = beanMetaData.getFacet(FACET_KEY);
             if (meta == null) {
@@ -85,10 +104,12 @@ public class WicketopiaBeanFacet implements Serializable, Displayable {
     }
 
     public void setDisplayName(String displayName) {
+        checkNotFrozen();
         this.displayName = displayName;
     }
 
     public void setDisplayNameMessageKey(String displayNameMessageKey) {
+        checkNotFrozen();
         this.displayNameMessageKey = displayNameMessageKey;
     }
 
@@ -100,18 +121,70 @@ public class WicketopiaBeanFacet implements Serializable, Displayable {
         return beanMetaData;
     }
 
+    public boolean isFrozen() {
+        return frozen;
+    }
+
 //----------------------------------------------------------------------------------------------------------------------
 // Other Methods
 //----------------------------------------------------------------------------------------------------------------------
 
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Metadata for class " + beanMetaData.getBeanDescriptor().getBeanClass().getName() + " is frozen and can no longer be modified.");
+        }
+    }
+
+    /**
+     * Freezes this facet.  Any further attempt to modify it results in an {@link IllegalStateException}.
+     *
+     * @since 1.5
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    /**
+     * Facets of registered metadata are written as a bean class name, all others along with their bean metadata.
+     */
     private Object writeReplace() {
-        return new SerializedForm(getBeanMetaData());
+        if (CompactSerialization.isRegistered(beanMetaData)) {
+            return new CompactForm(beanMetaData.getBeanDescriptor().getBeanClass());
+        }
+        return new SerializedForm(beanMetaData);
     }
 
 //----------------------------------------------------------------------------------------------------------------------
 // Inner Classes
 //----------------------------------------------------------------------------------------------------------------------
 
+    private static final class CompactForm implements Externalizable {
+        private static final long serialVersionUID = 1L;
+
+        private Class<?> beanClass;
+
+        public CompactForm() {
+        }
+
+        private CompactForm(Class<?> beanClass) {
+            this.beanClass = beanClass;
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            beanClass = CompactSerialization.readClass(in);
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            CompactSerialization.writeClass(out, beanClass);
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            return WicketopiaBeanFacet.get(CompactSerialization.resolveBeanMetaData(beanClass));
+        }
+    }
+
     private static final class SerializedForm implements Serializable {
         private final BeanMetaData beanMetaData;
 
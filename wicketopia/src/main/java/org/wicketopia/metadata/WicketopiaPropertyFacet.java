@@ -16,19 +16,29 @@
 
 package org.wicketopia.metadata;
 
+import org.metastopheles.BeanMetaData;
 import org.metastopheles.FacetKey;
 import org.metastopheles.PropertyMetaData;
+import org.wicketopia.Wicketopia;
 import org.wicketopia.builder.ComponentBuilder;
 import org.wicketopia.builder.EditorBuilder;
 import org.wicketopia.builder.ViewerBuilder;
 import org.wicketopia.builder.feature.ComponentBuilderFeature;
 import org.wicketopia.context.Context;
 import org.wicketopia.context.ContextPredicate;
+import org.wicketopia.util.CompactSerialization;
 import org.wicketopia.util.ContextualBoolean;
 import org.wicketopia.util.Displayable;
 import org.wicketopia.util.Pluralizer;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -60,6 +70,7 @@ public class WicketopiaPropertyFacet implements Serializable, Displayable {
     private ContextualBoolean viewable = new ContextualBoolean(true);
     private ContextualBoolean editable = new ContextualBoolean(true);
     private ContextualBoolean required = new ContextualBoolean(false);
+    private volatile boolean frozen = false;
 
 //----------------------------------------------------------------------------------------------------------------------
 // Static Methods
@@ -69,7 +80,18 @@ public class WicketopiaPropertyFacet implements Serializable, Displayable {
         return Integer.valueOf(leftFacet.getOrder()).compareTo(rightFacet.getOrder());
     }
 
+    /**
+     * Returns the facet for the property, creating it if necessary.  The metadata's facets live in a plain map, so the
+     * lookup only skips the lock once Wicketopia has frozen and safely published the metadata (see
+     * {@link Wicketopia#isPublished(BeanMetaData)}); until then it synchronizes on the metadata.
+     *
+     * @param propertyMetaData the property metadata
+     * @return the facet
+     */
     public static WicketopiaPropertyFacet get(PropertyMetaData propertyMetaData) {
+        if (Wicketopia.isPublished(propertyMetaData.getBeanMetaData())) {
+            return propertyMetaData.getFacet(FACET_KEY);
+        }
         synchronized (propertyMetaData) {
             WicketopiaPropertyFacet meta = propertyMetaData.getFacet(FACET_KEY);
             if (meta == null) {
@@ -116,10 +138,12 @@ public class WicketopiaPropertyFacet implements Serializable, Displayable {
     }
 
     public void setDisplayName(String displayName) {
+        checkNotFrozen();
         this.displayName = displayName;
     }
 
     public void setDisplayNameMessageKey(String displayNameMessageKey) {
+        checkNotFrozen();
         this.displayNameMessageKey = displayNameMessageKey;
     }
 
@@ -128,7 +152,7 @@ public class WicketopiaPropertyFacet implements Serializable, Displayable {
 //----------------------------------------------------------------------------------------------------------------------
 
     public Set<ComponentBuilderFeature<EditorBuilder>> getEditorFeatures() {
-        return editorFeatures;
+        return frozen ? Collections.unmodifiableSet(editorFeatures) : editorFeatures;
     }
 
     public String getEditorType() {
@@ -136,6 +160,7 @@ public class WicketopiaPropertyFacet implements Serializable, Displayable {
     }
 
     public void setEditorType(String editorType) {
+        checkNotFrozen();
         this.editorType = editorType;
     }
 
@@ -144,6 +169,7 @@ public class WicketopiaPropertyFacet implements Serializable, Displayable {
     }
 
     public void setOrder(int order) {
+        checkNotFrozen();
         this.order = order;
     }
 
@@ -152,7 +178,7 @@ public class WicketopiaPropertyFacet implements Serializable, Displayable {
     }
 
     public Set<ComponentBuilderFeature<ViewerBuilder>> getViewerFeatures() {
-        return viewerFeatures;
+        return frozen ? Collections.unmodifiableSet(viewerFeatures) : viewerFeatures;
     }
 
     public String getViewerType() {
@@ -160,14 +186,20 @@ public class WicketopiaPropertyFacet implements Serializable, Displayable {
     }
 
     public void setViewerType(String viewerType) {
+        checkNotFrozen();
         this.viewerType = viewerType;
     }
 
+    public boolean isFrozen() {
+        return frozen;
+    }
+
     public boolean isIgnored() {
         return ignored;
     }
 
     public void setIgnored(boolean ignored) {
+        checkNotFrozen();
         this.ignored = ignored;
     }
 
@@ -175,34 +207,100 @@ public class WicketopiaPropertyFacet implements Serializable, Displayable {
 // Other Methods
 //----------------------------------------------------------------------------------------------------------------------
 
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Metadata for property " + propertyMetaData.getPropertyDescriptor().getName() + " of class " +
+                    propertyMetaData.getBeanMetaData().getBeanDescriptor().getBeanClass().getName() + " is frozen and can no longer be modified.");
+        }
+    }
+
     public void addEditorFeature(ComponentBuilderFeature<EditorBuilder> feature) {
+        checkNotFrozen();
         editorFeatures.add(feature);
     }
 
     public void addViewerFeature(ComponentBuilderFeature<ViewerBuilder> feature) {
+        checkNotFrozen();
         viewerFeatures.add(feature);
     }
 
+    /**
+     * Adds the predicates which may make this property's visibility vary between requests for the same context name
+     * (role checks, for example) to the supplied collection.
+     *
+     * @param predicates the collection to add to
+     */
+    public void collectDynamicVisibilityPredicates(Collection<? super ContextPredicate> predicates) {
+        viewable.collectDynamicPredicates(predicates);
+    }
+
     public void decorate(ViewerBuilder builder, Context context) {
-        applyFeatures(viewerFeatures, builder, context);
+        decorate(builder, context, getActiveViewerFeatures(context));
+    }
+
+    /**
+     * Decorates the viewer using a precomputed list of the viewer features which are active for the context.
+     *
+     * @param builder        the viewer builder
+     * @param context        the context
+     * @param activeFeatures the active viewer features
+     */
+    public void decorate(ViewerBuilder builder, Context context, List<ComponentBuilderFeature<ViewerBuilder>> activeFeatures) {
+        applyFeatures(activeFeatures, builder);
         builder.visible(isVisible(context));
     }
 
-    private <B extends ComponentBuilder> void applyFeatures(Set<? extends ComponentBuilderFeature<B>> features, B builder, Context context) {
-        for (ComponentBuilderFeature<B> feature : features) {
-            if (feature.isActiveFor(context)) {
-                feature.activate(builder);
-            }
+    private <B extends ComponentBuilder> void applyFeatures(List<ComponentBuilderFeature<B>> activeFeatures, B builder) {
+        for (ComponentBuilderFeature<B> feature : activeFeatures) {
+            feature.activate(builder);
         }
     }
 
     public void decorate(EditorBuilder builder, Context context) {
-        applyFeatures(editorFeatures, builder, context);
+        decorate(builder, context, getActiveEditorFeatures(context));
+    }
+
+    /**
+     * Decorates the editor using a precomputed list of the editor features which are active for the context.
+     *
+     * @param builder        the editor builder
+     * @param context        the context
+     * @param activeFeatures the active editor features
+     */
+    public void decorate(EditorBuilder builder, Context context, List<ComponentBuilderFeature<EditorBuilder>> activeFeatures) {
+        applyFeatures(activeFeatures, builder);
         builder.visible(isVisible(context));
         builder.required(isRequired(context));
         builder.enabled(isEnabled(context));
     }
 
+    /**
+     * Freezes this facet.  Any further attempt to modify it results in an {@link IllegalStateException}.
+     *
+     * @since 1.5
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    public List<ComponentBuilderFeature<EditorBuilder>> getActiveEditorFeatures(Context context) {
+        return findActiveFeatures(editorFeatures, context);
+    }
+
+    public List<ComponentBuilderFeature<ViewerBuilder>> getActiveViewerFeatures(Context context) {
+        return findActiveFeatures(viewerFeatures, context);
+    }
+
+    private static <B extends ComponentBuilder> List<ComponentBuilderFeature<B>> findActiveFeatures(Set<ComponentBuilderFeature<B>> features, Context context) {
+        final List<ComponentBuilderFeature<B>> active = new ArrayList<ComponentBuilderFeature<B>>(features.size());
+        for (ComponentBuilderFeature<B> feature : features) {
+            if (feature.isActiveFor(context)) {
+                active.add(feature);
+            }
+        }
+        return active;
+    }
+
     public boolean isEnabled(Context context) {
         return editable.getValue(context);
     }
@@ -216,25 +314,67 @@ public class WicketopiaPropertyFacet implements Serializable, Displayable {
     }
 
     public void setEnabled(ContextPredicate predicate, boolean value) {
+        checkNotFrozen();
         this.editable.setValue(predicate, value);
     }
 
     public void setRequired(ContextPredicate predicate, boolean value) {
+        checkNotFrozen();
         this.required.setValue(predicate, value);
     }
 
     public void setVisible(ContextPredicate predicate, boolean value) {
+        checkNotFrozen();
         this.viewable.setValue(predicate, value);
     }
 
+    /**
+     * Facets of registered metadata are written as a (bean class, property name) token, all others along with their
+     * property metadata.
+     */
     private Object writeReplace() {
-        return new SerializedForm(getPropertyMetaData());
+        final BeanMetaData beanMetaData = propertyMetaData.getBeanMetaData();
+        if (CompactSerialization.isRegistered(beanMetaData)) {
+            return new CompactForm(beanMetaData.getBeanDescriptor().getBeanClass(), propertyMetaData.getPropertyDescriptor().getName());
+        }
+        return new SerializedForm(propertyMetaData);
     }
 
 //----------------------------------------------------------------------------------------------------------------------
 // Inner Classes
 //----------------------------------------------------------------------------------------------------------------------
 
+    private static final class CompactForm implements Externalizable {
+        private static final long serialVersionUID = 1L;
+
+        private Class<?> beanClass;
+        private String propertyName;
+
+        public CompactForm() {
+        }
+
+        private CompactForm(Class<?> beanClass, String propertyName) {
+            this.beanClass = beanClass;
+            this.propertyName = propertyName;
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            beanClass = CompactSerialization.readClass(in);
+            propertyName = in.readUTF();
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            CompactSerialization.writeClass(out, beanClass);
+            out.writeUTF(propertyName);
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            return WicketopiaPropertyFacet.get(CompactSerialization.resolveBeanMetaData(beanClass).getPropertyMetaData(propertyName));
+        }
+    }
+
     private static class OrderComparator implements Comparator<PropertyMetaData>, Serializable {
         @Override
         public int compare(PropertyMetaData left, PropertyMetaData right) {
@@ -18,16 +18,32 @@ package org.wicketopia.model.column;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.extensions.markup.html.repeater.data.grid.ICellPopulator;
-import org.apache.wicket.extensions.markup.html.repeater.data.table.IColumn;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.filter.ChoiceFilter;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.filter.FilterForm;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.filter.IFilteredColumn;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.filter.NoFilter;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.filter.TextFilter;
 import org.apache.wicket.markup.repeater.Item;
 import org.apache.wicket.model.IModel;
 import org.wicketopia.context.Context;
 import org.wicketopia.factory.PropertyComponentFactory;
+import org.wicketopia.model.table.PropertyFilterState;
+import org.wicketopia.util.CompactSerialization;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Arrays;
 
 /**
+ * A column which displays a bean property.  When used in a table with a filter toolbar whose filter state is a
+ * {@link PropertyFilterState}, enum and boolean properties are filtered using a drop down choice and string properties
+ * using a (prefix) text field.
+ *
  * @author James Carman
  */
-public class BeanPropertyColumn<T> implements IColumn<T, String> {
+public class BeanPropertyColumn<T> implements IFilteredColumn<T, String> {
     private final PropertyComponentFactory<T> factory;
     private final String propertyName;
     private final Context context;
@@ -53,6 +69,29 @@ public class BeanPropertyColumn<T> implements IColumn<T, String> {
         // Nothing to detach!
     }
 
+    @Override
+    public Component getFilter(String componentId, FilterForm<?> form) {
+        final Object state = form.getStateLocator().getFilterState();
+        if (!(state instanceof PropertyFilterState)) {
+            return new NoFilter(componentId);
+        }
+        final PropertyFilterState<?> filterState = (PropertyFilterState<?>) state;
+        final Class<?> propertyType = filterState.getPropertyType(propertyName);
+        if (propertyType == null) {
+            return new NoFilter(componentId);
+        }
+        if (propertyType.isEnum()) {
+            return new ChoiceFilter<Object>(componentId, filterState.getValueModel(propertyName), form, Arrays.<Object>asList(propertyType.getEnumConstants()), true);
+        }
+        if (Boolean.class.equals(propertyType) || Boolean.TYPE.equals(propertyType)) {
+            return new ChoiceFilter<Object>(componentId, filterState.getValueModel(propertyName), form, Arrays.<Object>asList(Boolean.TRUE, Boolean.FALSE), true);
+        }
+        if (String.class.equals(propertyType)) {
+            return new TextFilter<String>(componentId, filterState.getPrefixModel(propertyName), form);
+        }
+        return new NoFilter(componentId);
+    }
+
     @Override
     public Component getHeader(String componentId) {
         return factory.createPropertyLabel(componentId, propertyName);
@@ -62,4 +101,69 @@ public class BeanPropertyColumn<T> implements IColumn<T, String> {
     public void populateItem(Item<ICellPopulator<T>> cellItem, String componentId, IModel<T> rowModel) {
         cellItem.add(factory.createPropertyComponent(componentId, rowModel, propertyName, context));
     }
+
+    protected Context getContext() {
+        return context;
+    }
+
+    protected PropertyComponentFactory<T> getFactory() {
+        return factory;
+    }
+
+    protected String getPropertyName() {
+        return propertyName;
+    }
+
+    private Object writeReplace() {
+        return new CompactForm(null, factory, propertyName, context);
+    }
+
+    /**
+     * The compact serialized form of the built-in columns.  The bean type is only written for inline columns.
+     */
+    static final class CompactForm implements Externalizable {
+        private static final long serialVersionUID = 1L;
+
+        private Class<?> beanType;
+        private PropertyComponentFactory<?> factory;
+        private String propertyName;
+        private Context context;
+
+        public CompactForm() {
+        }
+
+        CompactForm(Class<?> beanType, PropertyComponentFactory<?> factory, String propertyName, Context context) {
+            this.beanType = beanType;
+            this.factory = factory;
+            this.propertyName = propertyName;
+            this.context = context;
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+            beanType = in.readBoolean() ? CompactSerialization.readClass(in) : null;
+            factory = (PropertyComponentFactory<?>) in.readObject();
+            propertyName = in.readUTF();
+            context = (Context) in.readObject();
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            out.writeBoolean(beanType != null);
+            if (beanType != null) {
+                CompactSerialization.writeClass(out, beanType);
+            }
+            out.writeObject(factory);
+            out.writeUTF(propertyName);
+            out.writeObject(context);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object readResolve() {
+            if (beanType != null) {
+                return new InlineBeanPropertyColumn(beanType, factory, propertyName, context);
+            }
+            return new BeanPropertyColumn(factory, propertyName, context);
+        }
+    }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.model.column;
+
+import org.apache.wicket.extensions.markup.html.repeater.data.grid.ICellPopulator;
+import org.apache.wicket.markup.repeater.Item;
+import org.apache.wicket.model.IModel;
+import org.wicketopia.context.Context;
+import org.wicketopia.factory.PropertyComponentFactory;
+import org.wicketopia.viewer.component.InlinePropertyViewer;
+
+/**
+ * A read-only bean property column whose cells are {@link InlinePropertyViewer}s, which need neither a property model
+ * nor a viewer builder per cell.
+ *
+ * @see org.wicketopia.Wicketopia#createInlineColumns(Class, Context, String...)
+ * @since 1.5
+ */
+public class InlineBeanPropertyColumn<T> extends BeanPropertyColumn<T> {
+    private final Class<T> beanType;
+
+    public InlineBeanPropertyColumn(Class<T> beanType, PropertyComponentFactory<T> factory, String propertyName, Context context) {
+        super(factory, propertyName, context);
+        this.beanType = beanType;
+    }
+
+    @Override
+    public void populateItem(Item<ICellPopulator<T>> cellItem, String componentId, IModel<T> rowModel) {
+        cellItem.add(new InlinePropertyViewer(componentId, rowModel, beanType, getPropertyName(), getContext()));
+    }
+
+    private Object writeReplace() {
+        return new CompactForm(beanType, getFactory(), getPropertyName(), getContext());
+    }
+}
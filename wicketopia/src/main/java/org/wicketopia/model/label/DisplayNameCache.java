@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.model.label;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.wicket.Component;
+import org.apache.wicket.Localizer;
+import org.apache.wicket.Page;
+import org.apache.wicket.Session;
+import org.apache.wicket.markup.repeater.AbstractRepeater;
+import org.apache.wicket.resource.IPropertiesChangeListener;
+import org.wicketopia.util.BoundedMemo;
+import org.wicketopia.util.Displayable;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches localized display names (including enum choice labels), one immutable bundle per locale/style/variation.  Bundles are built lazily as
+ * display names are first requested and are thrown away whenever Wicket reports that a properties file has been
+ * reloaded.  Display names are cached per component "scope" (the classes and ids of the component and its parents),
+ * since that is what determines which resource bundles the {@link Localizer} searches.  Like the localizer's own cache
+ * keys, scopes leave out the ids of repeater items, so every row of a table shares the same entries.  Each bundle holds
+ * a bounded number of entries.
+ *
+ * @since 1.5
+ */
+public class DisplayNameCache implements IPropertiesChangeListener {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final int MAX_NAMES_PER_BUNDLE = 4096;
+    private static final int MAX_ENUMS_PER_BUNDLE = 512;
+
+    private final ConcurrentMap<BundleKey, Bundle> bundles = new ConcurrentHashMap<BundleKey, Bundle>();
+
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static String scopeOf(Component component) {
+        if (component == null) {
+            return "";
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (Component cursor = component; cursor != null; cursor = cursor.getParent()) {
+            sb.append(cursor.getClass().getName());
+            if (cursor instanceof Page) {
+                break;
+            }
+            if (!(cursor.getParent() instanceof AbstractRepeater)) {
+                sb.append(':').append(cursor.isAuto() ? "wicket-auto" : cursor.getId());
+            }
+            sb.append('/');
+        }
+        return sb.toString();
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// IPropertiesChangeListener Implementation
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public void propertiesChanged(String key) {
+        clear();
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    public void clear() {
+        bundles.clear();
+    }
+
+    /**
+     * Returns the localized display name of the displayable object, as the localizer would resolve it for the
+     * component.
+     *
+     * @param displayable the displayable object
+     * @param localizer   the localizer used to resolve display names which are not yet cached
+     * @param component   the component (may be <code>null</code>)
+     * @return the localized display name
+     */
+    public String getDisplayName(Displayable displayable, Localizer localizer, Component component) {
+        return getDisplayName(displayable.getDisplayNameMessageKey(), displayable.getDisplayName(), localizer, component);
+    }
+
+    /**
+     * Returns the localized display name for the message key, as the localizer would resolve it for the component.
+     *
+     * @param messageKey   the display name message key
+     * @param defaultValue the display name to use if the message key cannot be resolved
+     * @param localizer    the localizer used to resolve display names which are not yet cached
+     * @param component    the component (may be <code>null</code>)
+     * @return the localized display name
+     */
+    public String getDisplayName(String messageKey, String defaultValue, Localizer localizer, Component component) {
+        final Bundle bundle = getBundle(component);
+        final NameKey nameKey = new NameKey(scopeOf(component), messageKey, defaultValue);
+        String displayName = bundle.names.get(nameKey);
+        if (displayName == null) {
+            displayName = localizer.getString(messageKey, component, defaultValue);
+            bundle.names.put(nameKey, displayName);
+        }
+        return displayName;
+    }
+
+    /**
+     * Returns the localized labels of all constants of the enum class, indexed by ordinal.  For enum value Bar from
+     * enum class com.myco.Foo, the message key is com.myco.Foo.Bar and the default label is the constant's
+     * <code>toString()</code> value.  The returned array is shared and must not be modified.
+     *
+     * @param enumClass the enum class
+     * @param localizer the localizer used to resolve labels which are not yet cached
+     * @param component the component (may be <code>null</code>)
+     * @return the labels, indexed by ordinal
+     */
+    public String[] getEnumLabels(Class<? extends Enum> enumClass, Localizer localizer, Component component) {
+        final Bundle bundle = getBundle(component);
+        final EnumKey enumKey = new EnumKey(scopeOf(component), enumClass);
+        String[] labels = bundle.enumLabels.get(enumKey);
+        if (labels == null) {
+            final Enum[] constants = enumClass.getEnumConstants();
+            labels = new String[constants.length];
+            for (Enum constant : constants) {
+                labels[constant.ordinal()] = localizer.getString(constant.getClass().getName() + "." + constant.name(), component, constant.toString());
+            }
+            bundle.enumLabels.put(enumKey, labels);
+        }
+        return labels;
+    }
+
+    private Bundle getBundle(Component component) {
+        final BundleKey bundleKey;
+        if (component != null) {
+            bundleKey = new BundleKey(component.getLocale(), component.getStyle(), component.getVariation());
+        } else if (Session.exists()) {
+            bundleKey = new BundleKey(Session.get().getLocale(), Session.get().getStyle(), null);
+        } else {
+            bundleKey = new BundleKey(Locale.getDefault(), null, null);
+        }
+        Bundle bundle = bundles.get(bundleKey);
+        if (bundle == null) {
+            final Bundle created = new Bundle();
+            bundle = bundles.putIfAbsent(bundleKey, created);
+            if (bundle == null) {
+                bundle = created;
+            }
+        }
+        return bundle;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final class Bundle {
+        private final BoundedMemo<NameKey, String> names = new BoundedMemo<NameKey, String>(MAX_NAMES_PER_BUNDLE);
+        private final BoundedMemo<EnumKey, String[]> enumLabels = new BoundedMemo<EnumKey, String[]>(MAX_ENUMS_PER_BUNDLE);
+    }
+
+    private static final class BundleKey {
+        private final Locale locale;
+        private final String style;
+        private final String variation;
+
+        private BundleKey(Locale locale, String style, String variation) {
+            this.locale = locale;
+            this.style = style;
+            this.variation = variation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final BundleKey other = (BundleKey) o;
+            return ObjectUtils.equals(locale, other.locale) && ObjectUtils.equals(style, other.style) && ObjectUtils.equals(variation, other.variation);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = locale != null ? locale.hashCode() : 0;
+            result = 31 * result + (style != null ? style.hashCode() : 0);
+            result = 31 * result + (variation != null ? variation.hashCode() : 0);
+            return result;
+        }
+    }
+
+    private static final class EnumKey {
+        private final String scope;
+        private final Class<?> enumClass;
+
+        private EnumKey(String scope, Class<?> enumClass) {
+            this.scope = scope;
+            this.enumClass = enumClass;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final EnumKey other = (EnumKey) o;
+            return scope.equals(other.scope) && enumClass.equals(other.enumClass);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * scope.hashCode() + enumClass.hashCode();
+        }
+    }
+
+    private static final class NameKey {
+        private final String scope;
+        private final String messageKey;
+        private final String defaultValue;
+
+        private NameKey(String scope, String messageKey, String defaultValue) {
+            this.scope = scope;
+            this.messageKey = messageKey;
+            this.defaultValue = defaultValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final NameKey other = (NameKey) o;
+            return scope.equals(other.scope) && ObjectUtils.equals(messageKey, other.messageKey) && ObjectUtils.equals(defaultValue, other.defaultValue);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = scope.hashCode();
+            result = 31 * result + (messageKey != null ? messageKey.hashCode() : 0);
+            result = 31 * result + (defaultValue != null ? defaultValue.hashCode() : 0);
+            return result;
+        }
+    }
+}
@@ -16,12 +16,20 @@
 
 package org.wicketopia.model.label;
 
+import org.apache.wicket.Application;
 import org.apache.wicket.Component;
 import org.apache.wicket.Localizer;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.IWrapModel;
+import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.model.ResourceModel;
+import org.wicketopia.Wicketopia;
 import org.wicketopia.util.Displayable;
 
 /**
+ * A {@link ResourceModel} for the display name of a {@link Displayable}.  When Wicketopia is installed, display names
+ * are read through its {@link DisplayNameCache} rather than resolved by the {@link Localizer} on every render.
+ *
  * @since 1.0
  */
 public class DisplayNameModel extends ResourceModel {
@@ -31,12 +39,23 @@ public class DisplayNameModel extends ResourceModel {
 
     private static final long serialVersionUID = 1L;
 
+    private final String messageKey;
+    private final String defaultValue;
+
 //----------------------------------------------------------------------------------------------------------------------
 // Static Methods
 //----------------------------------------------------------------------------------------------------------------------
 
     public static String getDisplayName(Displayable displayable, Localizer localizer, Component component) {
-        return localizer.getString(displayable.getDisplayNameMessageKey(), component, displayable.getDisplayName());
+        return getDisplayName(displayable.getDisplayNameMessageKey(), displayable.getDisplayName(), localizer, component);
+    }
+
+    private static String getDisplayName(String messageKey, String defaultValue, Localizer localizer, Component component) {
+        final Wicketopia wicketopia = Application.exists() ? Wicketopia.get() : null;
+        if (wicketopia == null) {
+            return localizer.getString(messageKey, component, defaultValue);
+        }
+        return wicketopia.getDisplayNameCache().getDisplayName(messageKey, defaultValue, localizer, component);
     }
 
 //----------------------------------------------------------------------------------------------------------------------
@@ -45,5 +64,54 @@ public class DisplayNameModel extends ResourceModel {
 
     public DisplayNameModel(Displayable displayable) {
         super(displayable.getDisplayNameMessageKey(), displayable.getDisplayName());
+        this.messageKey = displayable.getDisplayNameMessageKey();
+        this.defaultValue = displayable.getDisplayName();
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// IComponentAssignedModel Implementation
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public IWrapModel<String> wrapOnAssignment(Component component) {
+        return new AssignmentWrapper(component);
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// IModel Implementation
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public String getObject() {
+        return getDisplayName(messageKey, defaultValue, Application.get().getResourceSettings().getLocalizer(), null);
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    private final class AssignmentWrapper extends LoadableDetachableModel<String> implements IWrapModel<String> {
+        private static final long serialVersionUID = 1L;
+
+        private final Component component;
+
+        private AssignmentWrapper(Component component) {
+            this.component = component;
+        }
+
+        @Override
+        public IModel<String> getWrappedModel() {
+            return DisplayNameModel.this;
+        }
+
+        @Override
+        protected String load() {
+            return getDisplayName(messageKey, defaultValue, component.getLocalizer(), component);
+        }
+
+        @Override
+        protected void onDetach() {
+            DisplayNameModel.this.detach();
+        }
     }
 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.model.property;
+
+import org.apache.wicket.model.AbstractPropertyModel;
+
+import java.lang.reflect.Method;
+
+/**
+ * A drop-in replacement for {@link org.apache.wicket.model.PropertyModel} which reads and writes the property through
+ * a cached {@link PropertyAccessor} rather than evaluating the property expression on every call.  Expressions which
+ * can't be compiled (list indexes, map keys, etc.) are handled by the usual property resolver.  Only the bean type and
+ * the expression are serialized; the accessor is looked up again after deserialization.
+ *
+ * @param <T> the property type
+ * @since 1.5
+ */
+public class CompiledPropertyModel<T> extends AbstractPropertyModel<T> {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final long serialVersionUID = 1L;
+
+    private final Class<?> beanType;
+    private final String expression;
+    private transient PropertyAccessor accessor;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    public static <Z> CompiledPropertyModel<Z> of(Object modelObject, Class<?> beanType, String expression) {
+        return new CompiledPropertyModel<Z>(modelObject, beanType, expression);
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Creates a model whose accessor is resolved from the runtime class of the target object.
+     *
+     * @param modelObject the target object or model
+     * @param expression  the property expression
+     */
+    public CompiledPropertyModel(Object modelObject, String expression) {
+        this(modelObject, null, expression);
+    }
+
+    /**
+     * Creates a model whose accessor is resolved from the supplied bean type (or the runtime class of the target object
+     * if it isn't an instance of the bean type).
+     *
+     * @param modelObject the target object or model
+     * @param beanType    the bean type
+     * @param expression  the property expression
+     */
+    public CompiledPropertyModel(Object modelObject, Class<?> beanType, String expression) {
+        super(modelObject);
+        this.beanType = beanType;
+        this.expression = expression;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// IModel Implementation
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T getObject() {
+        final Object target = getInnermostModelOrObject();
+        if (target == null) {
+            return null;
+        }
+        final PropertyAccessor accessor = getAccessor(target);
+        return accessor == null ? super.getObject() : (T) accessor.getValue(target);
+    }
+
+    @Override
+    public void setObject(T object) {
+        final Object target = getInnermostModelOrObject();
+        final PropertyAccessor accessor = target == null ? null : getAccessor(target);
+        if (accessor == null || (object == null ? accessor.getPropertyType().isPrimitive() : !isAssignable(accessor.getPropertyType(), object))) {
+            super.setObject(object);
+        } else {
+            accessor.setValue(target, object);
+        }
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// IObjectClassAwareModel Implementation
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Class<T> getObjectClass() {
+        final PropertyAccessor accessor = getAccessor(getInnermostModelOrObject());
+        return accessor == null ? super.getObjectClass() : (Class<T>) accessor.getPropertyType();
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// IPropertyReflectionAwareModel Implementation
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public Method getPropertyGetter() {
+        final PropertyAccessor accessor = getAccessor(getInnermostModelOrObject());
+        return accessor == null ? super.getPropertyGetter() : accessor.getGetter();
+    }
+
+    @Override
+    public Method getPropertySetter() {
+        final PropertyAccessor accessor = getAccessor(getInnermostModelOrObject());
+        return accessor == null ? super.getPropertySetter() : accessor.getSetter();
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static boolean isAssignable(Class<?> type, Object value) {
+        if (type.isPrimitive()) {
+            return (type == Boolean.TYPE && value instanceof Boolean) ||
+                    (type == Character.TYPE && value instanceof Character) ||
+                    (type == Byte.TYPE && value instanceof Byte) ||
+                    (type == Short.TYPE && value instanceof Short) ||
+                    (type == Integer.TYPE && value instanceof Integer) ||
+                    (type == Long.TYPE && value instanceof Long) ||
+                    (type == Float.TYPE && value instanceof Float) ||
+                    (type == Double.TYPE && value instanceof Double);
+        }
+        return type.isInstance(value);
+    }
+
+    private PropertyAccessor getAccessor(Object target) {
+        PropertyAccessor current = accessor;
+        if (current != null && (target == null || current.getBeanType().isInstance(target))) {
+            return current;
+        }
+        if (beanType != null && (target == null || beanType.isInstance(target))) {
+            current = PropertyAccessor.forPath(beanType, expression);
+        } else if (target != null) {
+            current = PropertyAccessor.forPath(target.getClass(), expression);
+        } else {
+            return null;
+        }
+        accessor = current;
+        return current;
+    }
+
+    @Override
+    protected String propertyExpression() {
+        return expression;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + ":expression=[" + expression + "]";
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.model.property;
+
+import org.apache.wicket.WicketRuntimeException;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A precompiled accessor for a (possibly nested) property path, such as <code>address.city</code>, of a bean type.
+ * The getter/setter chain is resolved once and cached per (bean type, path), so reading or writing the property is
+ * just a series of method invocations rather than a property expression evaluation.  The cache doesn't keep the bean
+ * types loaded (their class loaders can still be discarded when an application is redeployed).  Only simple dotted paths of
+ * JavaBean properties are supported; {@link #forPath(Class, String)} returns <code>null</code> for anything else
+ * (list indexes, map keys, fields, etc.).
+ *
+ * @since 1.5
+ */
+public final class PropertyAccessor {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * The accessors by bean type.  The bean types are weakly referenced, and so are the accessors, since they refer
+     * back to their bean types through their methods.  An accessor stays cached while anything (a model, say) uses it,
+     * and recompiling one is cheap, since the introspector caches the bean infos.
+     */
+    private static final Map<Class<?>, ConcurrentMap<String, Reference<PropertyAccessor>>> ACCESSORS = new WeakHashMap<Class<?>, ConcurrentMap<String, Reference<PropertyAccessor>>>();
+
+    /**
+     * Marks paths which can't be compiled, so that we don't try again.
+     */
+    private static final PropertyAccessor UNSUPPORTED = new PropertyAccessor(Object.class, "", new Method[0], new Method[0]);
+
+    private final Class<?> beanType;
+    private final String path;
+    private final Method[] getters;
+    private final Method[] setters;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the accessor for the property path of the bean type.
+     *
+     * @param beanType the bean type
+     * @param path     the property path
+     * @return the accessor or <code>null</code> if the path can't be compiled
+     */
+    public static PropertyAccessor forPath(Class<?> beanType, String path) {
+        final ConcurrentMap<String, Reference<PropertyAccessor>> accessors = getAccessors(beanType);
+        final Reference<PropertyAccessor> reference = accessors.get(path);
+        PropertyAccessor accessor = reference == null ? null : reference.get();
+        if (accessor == null) {
+            accessor = compile(beanType, path);
+            accessors.put(path, new WeakReference<PropertyAccessor>(accessor));
+        }
+        return accessor == UNSUPPORTED ? null : accessor;
+    }
+
+    private static ConcurrentMap<String, Reference<PropertyAccessor>> getAccessors(Class<?> beanType) {
+        synchronized (ACCESSORS) {
+            ConcurrentMap<String, Reference<PropertyAccessor>> accessors = ACCESSORS.get(beanType);
+            if (accessors == null) {
+                accessors = new ConcurrentHashMap<String, Reference<PropertyAccessor>>();
+                ACCESSORS.put(beanType, accessors);
+            }
+            return accessors;
+        }
+    }
+
+    private static PropertyAccessor compile(Class<?> beanType, String path) {
+        final String[] names = path.split("\\.");
+        final Method[] getters = new Method[names.length];
+        final Method[] setters = new Method[names.length];
+        Class<?> type = beanType;
+        for (int i = 0; i < names.length; ++i) {
+            final PropertyDescriptor descriptor = findPropertyDescriptor(type, names[i]);
+            if (descriptor == null || descriptor.getReadMethod() == null) {
+                return UNSUPPORTED;
+            }
+            getters[i] = accessible(descriptor.getReadMethod());
+            setters[i] = accessible(descriptor.getWriteMethod());
+            type = descriptor.getPropertyType();
+        }
+        return new PropertyAccessor(beanType, path, getters, setters);
+    }
+
+    private static PropertyDescriptor findPropertyDescriptor(Class<?> type, String name) {
+        if (name.length() == 0) {
+            return null;
+        }
+        try {
+            final BeanInfo beanInfo = Introspector.getBeanInfo(type);
+            for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors()) {
+                if (name.equals(descriptor.getName())) {
+                    return descriptor;
+                }
+            }
+            return null;
+        } catch (IntrospectionException e) {
+            return null;
+        }
+    }
+
+    private static <A extends AccessibleObject> A accessible(A member) {
+        if (member != null) {
+            try {
+                member.setAccessible(true);
+            } catch (SecurityException e) {
+                // Leave it alone, we'll just try it as is...
+            }
+        }
+        return member;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    private PropertyAccessor(Class<?> beanType, String path, Method[] getters, Method[] setters) {
+        this.beanType = beanType;
+        this.path = path;
+        this.getters = getters;
+        this.setters = setters;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Getter/Setter Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    public Class<?> getBeanType() {
+        return beanType;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the getter of the last property in the path.
+     *
+     * @return the getter
+     */
+    public Method getGetter() {
+        return getters[getters.length - 1];
+    }
+
+    /**
+     * Returns the type of the last property in the path.
+     *
+     * @return the property type
+     */
+    public Class<?> getPropertyType() {
+        return getGetter().getReturnType();
+    }
+
+    /**
+     * Returns the setter of the last property in the path.
+     *
+     * @return the setter or <code>null</code> if the property is read-only
+     */
+    public Method getSetter() {
+        return setters[setters.length - 1];
+    }
+
+    /**
+     * Reads the property value.  If any intermediate property in the path is <code>null</code>, the value is
+     * <code>null</code>.
+     *
+     * @param bean the bean
+     * @return the property value
+     */
+    public Object getValue(Object bean) {
+        Object current = bean;
+        for (int i = 0; i < getters.length && current != null; ++i) {
+            current = invoke(getters[i], current);
+        }
+        return current;
+    }
+
+    /**
+     * Writes the property value.  Any <code>null</code> intermediate properties in the path are instantiated using
+     * their default constructors, as Wicket's property resolver does.
+     *
+     * @param bean  the bean
+     * @param value the property value
+     */
+    public void setValue(Object bean, Object value) {
+        Object current = bean;
+        final int last = getters.length - 1;
+        for (int i = 0; i < last; ++i) {
+            Object next = invoke(getters[i], current);
+            if (next == null) {
+                next = instantiate(getters[i].getReturnType());
+                invoke(setter(i), current, next);
+            }
+            current = next;
+        }
+        invoke(setter(last), current, value);
+    }
+
+    private Method setter(int index) {
+        final Method setter = setters[index];
+        if (setter == null) {
+            throw new WicketRuntimeException("No setter found for property \"" + getters[index].getName() + "\" of path \"" + path + "\" of class " + beanType.getName() + ".");
+        }
+        return setter;
+    }
+
+    private Object instantiate(Class<?> type) {
+        try {
+            return type.newInstance();
+        } catch (InstantiationException e) {
+            throw new WicketRuntimeException("Unable to instantiate intermediate object of type " + type.getName() + " for path \"" + path + "\" of class " + beanType.getName() + ".", e);
+        } catch (IllegalAccessException e) {
+            throw new WicketRuntimeException("Unable to instantiate intermediate object of type " + type.getName() + " for path \"" + path + "\" of class " + beanType.getName() + ".", e);
+        }
+    }
+
+    private Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            throw new WicketRuntimeException("Unable to access method " + method + " for path \"" + path + "\".", e);
+        } catch (IllegalArgumentException e) {
+            throw new WicketRuntimeException("Unable to invoke method " + method + " for path \"" + path + "\".", e);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new WicketRuntimeException("Method " + method + " threw an exception for path \"" + path + "\".", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.model.table;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.wicket.model.IModel;
+import org.wicketopia.model.property.PropertyAccessor;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The filter criteria of a {@link SortableCollectionDataProvider}, by property.  Each property may have at most one
+ * criterion (an exact value, a range or a case-insensitive prefix); an item must match all of them.
+ *
+ * @param <T> the item type
+ * @since 1.5
+ */
+public class PropertyFilterState<T> implements Serializable {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final long serialVersionUID = 1L;
+
+    private final Class<T> beanType;
+    private final Map<String, Criterion> criteria = new LinkedHashMap<String, Criterion>();
+    private int version;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    public PropertyFilterState(Class<T> beanType) {
+        this.beanType = beanType;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Getter/Setter Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    public Class<T> getBeanType() {
+        return beanType;
+    }
+
+    /**
+     * Returns a number which changes whenever the criteria change.
+     *
+     * @return the version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    public void clear() {
+        if (!criteria.isEmpty()) {
+            criteria.clear();
+            version++;
+        }
+    }
+
+    public void clear(String propertyName) {
+        if (criteria.remove(propertyName) != null) {
+            version++;
+        }
+    }
+
+    /**
+     * Returns the prefix criterion for the property as a model, suitable for a text filter.
+     *
+     * @param propertyName the property name
+     * @return the model
+     */
+    public IModel<String> getPrefixModel(final String propertyName) {
+        return new CriterionModel<String>(propertyName, PrefixCriterion.class) {
+            @Override
+            public void setObject(String prefix) {
+                setPrefix(propertyName, prefix);
+            }
+        };
+    }
+
+    /**
+     * Returns the type of the property, or <code>null</code> if it can't be determined.
+     *
+     * @param propertyName the property name
+     * @return the property type
+     */
+    public Class<?> getPropertyType(String propertyName) {
+        final PropertyAccessor accessor = PropertyAccessor.forPath(beanType, propertyName);
+        return accessor == null ? null : accessor.getPropertyType();
+    }
+
+    /**
+     * Returns the exact value criterion for the property as a model, suitable for a choice filter.
+     *
+     * @param propertyName the property name
+     * @return the model
+     */
+    public IModel<Object> getValueModel(final String propertyName) {
+        return new CriterionModel<Object>(propertyName, ValueCriterion.class) {
+            @Override
+            public void setObject(Object value) {
+                setValue(propertyName, value);
+            }
+        };
+    }
+
+    public boolean isEmpty() {
+        return criteria.isEmpty();
+    }
+
+    /**
+     * Returns the positions of the items which match all the criteria.
+     *
+     * @param indexes the property indexes of the items
+     * @param size    the number of items
+     * @return the matching positions
+     */
+    BitSet select(PropertyIndexes indexes, int size) {
+        final BitSet matches = new BitSet(size);
+        matches.set(0, size);
+        for (Map.Entry<String, Criterion> entry : criteria.entrySet()) {
+            matches.and(entry.getValue().select(indexes.getIndex(entry.getKey())));
+            if (matches.isEmpty()) {
+                break;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Only items whose property value (as a string) starts with the prefix, ignoring case, will match.
+     *
+     * @param propertyName the property name
+     * @param prefix       the prefix (<code>null</code> or blank clears the criterion)
+     */
+    public void setPrefix(String propertyName, String prefix) {
+        setCriterion(propertyName, StringUtils.isBlank(prefix) ? null : new PrefixCriterion(prefix));
+    }
+
+    /**
+     * Only items whose property value is between <code>min</code> and <code>max</code> (inclusive) will match.  Numeric
+     * bounds needn't have the property's exact type; values which can't be compared to the bounds never match.
+     *
+     * @param propertyName the property name
+     * @param min          the minimum value (<code>null</code> for no minimum)
+     * @param max          the maximum value (<code>null</code> for no maximum)
+     */
+    public void setRange(String propertyName, Comparable<?> min, Comparable<?> max) {
+        setCriterion(propertyName, min == null && max == null ? null : new RangeCriterion(min, max));
+    }
+
+    /**
+     * Only items whose property value equals the supplied value will match.
+     *
+     * @param propertyName the property name
+     * @param value        the value (<code>null</code> clears the criterion)
+     */
+    public void setValue(String propertyName, Object value) {
+        setCriterion(propertyName, value == null ? null : new ValueCriterion(value));
+    }
+
+    private void setCriterion(String propertyName, Criterion criterion) {
+        if (criterion == null) {
+            clear(propertyName);
+        } else {
+            criteria.put(propertyName, criterion);
+            version++;
+        }
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Supplies the index for a property.
+     */
+    interface PropertyIndexes {
+        PropertyIndex getIndex(String propertyName);
+    }
+
+    private abstract static class Criterion implements Serializable {
+        abstract BitSet select(PropertyIndex index);
+    }
+
+    /**
+     * A criterion which is described by a single value (and can therefore be edited through a model).
+     */
+    private abstract static class SingleValueCriterion extends Criterion {
+        abstract Object getValue();
+    }
+
+    private abstract class CriterionModel<M> implements IModel<M> {
+        private final String propertyName;
+        private final Class<? extends SingleValueCriterion> criterionType;
+
+        private CriterionModel(String propertyName, Class<? extends SingleValueCriterion> criterionType) {
+            this.propertyName = propertyName;
+            this.criterionType = criterionType;
+        }
+
+        @Override
+        public void detach() {
+            // Do nothing!
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public M getObject() {
+            final Criterion criterion = criteria.get(propertyName);
+            return criterionType.isInstance(criterion) ? (M) criterionType.cast(criterion).getValue() : null;
+        }
+    }
+
+    private static final class PrefixCriterion extends SingleValueCriterion {
+        private final String prefix;
+
+        private PrefixCriterion(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        Object getValue() {
+            return prefix;
+        }
+
+        @Override
+        BitSet select(PropertyIndex index) {
+            return index.startingWith(prefix);
+        }
+    }
+
+    private static final class RangeCriterion extends Criterion {
+        private final Comparable<?> min;
+        private final Comparable<?> max;
+
+        private RangeCriterion(Comparable<?> min, Comparable<?> max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        BitSet select(PropertyIndex index) {
+            return index.between(min, max);
+        }
+    }
+
+    private static final class ValueCriterion extends SingleValueCriterion {
+        private final Object value;
+
+        private ValueCriterion(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object getValue() {
+            return value;
+        }
+
+        @Override
+        BitSet select(PropertyIndex index) {
+            return index.equalTo(value);
+        }
+    }
+}
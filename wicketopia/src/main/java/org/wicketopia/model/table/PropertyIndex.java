@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.model.table;
+
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Lazily-built indexes over the values of a single property of a collection's items: a hash index for equality
+ * lookups and sorted arrays for range and (case-insensitive) prefix lookups.  All lookups return the matching
+ * positions as a new {@link BitSet}.
+ */
+final class PropertyIndex {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private final Object[] values;
+    private Map<Object, BitSet> hash;
+    private Comparable[] sorted;
+    private int[] sortedPositions;
+    private String[] folded;
+    private int[] foldedPositions;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Compares a property value to a bound.  Numbers of different types (an <code>Integer</code> bound on a
+     * <code>Long</code> property, say) are compared numerically rather than failing with a
+     * {@link ClassCastException}.
+     */
+    @SuppressWarnings("unchecked")
+    private static int compare(Comparable value, Comparable bound) {
+        if (value instanceof Number && bound instanceof Number && value.getClass() != bound.getClass()) {
+            final Number left = (Number) value;
+            final Number right = (Number) bound;
+            if (left instanceof Double || left instanceof Float || right instanceof Double || right instanceof Float) {
+                return Double.compare(left.doubleValue(), right.doubleValue());
+            }
+            return new BigDecimal(left.toString()).compareTo(new BigDecimal(right.toString()));
+        }
+        return value.compareTo(bound);
+    }
+
+    private static String fold(Object value) {
+        return String.valueOf(value).toLowerCase(Locale.ENGLISH);
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    PropertyIndex(Object[] values) {
+        this.values = values;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the positions whose value is between <code>min</code> and <code>max</code> (inclusive).  Either bound
+     * may be <code>null</code>, meaning unbounded.  <code>null</code> values never match, and neither do values which
+     * can't be compared to the bounds.
+     */
+    synchronized BitSet between(Comparable min, Comparable max) {
+        if (sorted == null) {
+            final SortKeys keys = SortKeys.of(values);
+            final int[] order = keys.sort(true);
+            final int count = order.length - keys.nullCount();
+            sorted = new Comparable[count];
+            sortedPositions = new int[count];
+            for (int i = 0; i < count; ++i) {
+                sortedPositions[i] = order[i];
+                sorted[i] = (Comparable) values[order[i]];
+            }
+        }
+        final BitSet matches = new BitSet(values.length);
+        try {
+            final int low = min == null ? 0 : lowerBound(min, false);
+            final int high = max == null ? sorted.length : lowerBound(max, true);
+            for (int i = low; i < high; ++i) {
+                matches.set(sortedPositions[i]);
+            }
+        } catch (ClassCastException e) {
+            // The bounds aren't comparable to (all of) the values, so check them one at a time...
+            matches.clear();
+            for (int i = 0; i < sorted.length; ++i) {
+                if (isBetween(sorted[i], min, max)) {
+                    matches.set(sortedPositions[i]);
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static boolean isBetween(Comparable value, Comparable min, Comparable max) {
+        try {
+            return (min == null || compare(value, min) >= 0) && (max == null || compare(value, max) <= 0);
+        } catch (ClassCastException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the index of the first sorted value which is greater than or equal to (or, if <code>strict</code>, greater
+     * than) the key.
+     */
+    private int lowerBound(Comparable key, boolean strict) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = compare(sorted[middle], key);
+            if (comparison < 0 || (strict && comparison == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the positions whose value equals the supplied value.
+     */
+    synchronized BitSet equalTo(Object value) {
+        if (hash == null) {
+            hash = new HashMap<Object, BitSet>();
+            for (int i = 0; i < values.length; ++i) {
+                if (values[i] != null) {
+                    BitSet positions = hash.get(values[i]);
+                    if (positions == null) {
+                        positions = new BitSet(values.length);
+                        hash.put(values[i], positions);
+                    }
+                    positions.set(i);
+                }
+            }
+        }
+        final BitSet positions = hash.get(value);
+        return positions == null ? new BitSet(values.length) : (BitSet) positions.clone();
+    }
+
+    int size() {
+        return values.length;
+    }
+
+    /**
+     * Returns the positions whose value (as a string) starts with the prefix, ignoring case.
+     */
+    synchronized BitSet startingWith(String prefix) {
+        if (folded == null) {
+            final Object[] strings = new Object[values.length];
+            for (int i = 0; i < values.length; ++i) {
+                strings[i] = values[i] == null ? null : fold(values[i]);
+            }
+            final SortKeys keys = SortKeys.of(strings);
+            final int[] order = keys.sort(true);
+            final int count = order.length - keys.nullCount();
+            folded = new String[count];
+            foldedPositions = new int[count];
+            for (int i = 0; i < count; ++i) {
+                foldedPositions[i] = order[i];
+                folded[i] = (String) strings[order[i]];
+            }
+        }
+        final String key = fold(prefix);
+        int low = 0;
+        int high = folded.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (folded[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        final BitSet matches = new BitSet(values.length);
+        for (int i = low; i < folded.length && folded[i].startsWith(key); ++i) {
+            matches.set(foldedPositions[i]);
+        }
+        return matches;
+    }
+}
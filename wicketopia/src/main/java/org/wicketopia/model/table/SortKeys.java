@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.model.table;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.model.PropertyModel;
+import org.wicketopia.model.property.PropertyAccessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The sort keys of a set of items, extracted once up front.  Integral and floating point keys are unboxed into
+ * primitive arrays.  Items are ordered by key (<code>null</code> keys last) and then by their original position, which
+ * makes the order total, so a partial (top-k) selection always agrees with a full sort.
+ */
+abstract class SortKeys {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Inputs at least this large are sorted in parallel (if an executor is supplied and more than one processor is
+     * available).
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+
+    private final boolean[] nulls;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Extracts the sort keys of the items.
+     *
+     * @param items    the items
+     * @param property the sort property expression
+     * @return the sort keys
+     */
+    static SortKeys extract(Object[] items, String property) {
+        return of(extractValues(items, property));
+    }
+
+    /**
+     * Extracts the values of the property from the items.
+     *
+     * @param items    the items
+     * @param property the property expression
+     * @return the property values, by position
+     */
+    static Object[] extractValues(Object[] items, String property) {
+        final Object[] values = new Object[items.length];
+        PropertyAccessor accessor = null;
+        for (int i = 0; i < items.length; ++i) {
+            final Object item = items[i];
+            if (item != null && (accessor == null || accessor.getBeanType() != item.getClass())) {
+                accessor = PropertyAccessor.forPath(item.getClass(), property);
+            }
+            values[i] = item == null ? null : accessor == null ? new PropertyModel<Object>(item, property).getObject() : accessor.getValue(item);
+        }
+        return values;
+    }
+
+    /**
+     * Creates the sort keys for the (already extracted) values.
+     *
+     * @param values the values
+     * @return the sort keys
+     */
+    static SortKeys of(Object[] values) {
+        final boolean[] nulls = new boolean[values.length];
+        boolean integral = true;
+        boolean floating = true;
+        for (int i = 0; i < values.length; ++i) {
+            final Object value = values[i];
+            if (value == null) {
+                nulls[i] = true;
+            } else {
+                integral &= value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+                floating &= value instanceof Double || value instanceof Float;
+            }
+        }
+        if (integral) {
+            final long[] keys = new long[values.length];
+            for (int i = 0; i < values.length; ++i) {
+                keys[i] = nulls[i] ? 0L : ((Number) values[i]).longValue();
+            }
+            return new LongKeys(nulls, keys);
+        }
+        if (floating) {
+            final double[] keys = new double[values.length];
+            for (int i = 0; i < values.length; ++i) {
+                keys[i] = nulls[i] ? 0.0 : ((Number) values[i]).doubleValue();
+            }
+            return new DoubleKeys(nulls, keys);
+        }
+        final Comparable[] keys = new Comparable[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            keys[i] = (Comparable) values[i];
+        }
+        return new ComparableKeys(nulls, keys);
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    protected SortKeys(boolean[] nulls) {
+        this.nulls = nulls;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Compares the (non-null) keys at the two positions.
+     */
+    protected abstract int compareKeys(int left, int right);
+
+    final int compare(int left, int right, boolean ascending) {
+        if (left == right) {
+            return 0;
+        }
+        if (nulls[left] || nulls[right]) {
+            if (nulls[left] && nulls[right]) {
+                return left < right ? -1 : 1;
+            }
+            return nulls[left] ? 1 : -1;
+        }
+        final int result = compareKeys(left, right);
+        if (result != 0) {
+            return ascending ? result : -result;
+        }
+        return left < right ? -1 : 1;
+    }
+
+    final int size() {
+        return nulls.length;
+    }
+
+    final int nullCount() {
+        int count = 0;
+        for (boolean isNull : nulls) {
+            if (isNull) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the positions of all items, in sorted order.
+     *
+     * @param ascending whether to sort in ascending order
+     * @return the sorted positions
+     */
+    int[] sort(boolean ascending) {
+        return sort(ascending, null);
+    }
+
+    /**
+     * Returns the positions of all items, in sorted order.  Large inputs are sorted in chunks on the supplied executor
+     * (whose pool bounds the number of threads used), and the chunks are merged on the calling thread.
+     *
+     * @param ascending whether to sort in ascending order
+     * @param executor  the executor to sort large inputs on (<code>null</code> to sort on the calling thread)
+     * @return the sorted positions
+     */
+    int[] sort(boolean ascending, ExecutorService executor) {
+        final int[] order = identity(size());
+        if (executor != null && order.length >= PARALLEL_THRESHOLD && PROCESSORS > 1) {
+            parallelSort(order, ascending, executor);
+        } else {
+            mergeSort(order, new int[order.length], 0, order.length, ascending);
+        }
+        return order;
+    }
+
+    /**
+     * Returns the positions of the first <code>k</code> items, in sorted order, without sorting all of them.
+     *
+     * @param k         the number of items
+     * @param ascending whether to sort in ascending order
+     * @return the sorted positions of the first <code>k</code> items
+     */
+    int[] select(int k, boolean ascending) {
+        final int n = size();
+        if (k >= n) {
+            return sort(ascending);
+        }
+        // Max-heap (with respect to the sort order) of the best k positions seen so far...
+        final int[] heap = new int[k];
+        int heapSize = 0;
+        for (int i = 0; i < n && k > 0; ++i) {
+            if (heapSize < k) {
+                heap[heapSize] = i;
+                siftUp(heap, heapSize++, ascending);
+            } else if (compare(i, heap[0], ascending) < 0) {
+                heap[0] = i;
+                siftDown(heap, heapSize, ascending);
+            }
+        }
+        mergeSort(heap, new int[heap.length], 0, heap.length, ascending);
+        return heap;
+    }
+
+    private void siftUp(int[] heap, int index, boolean ascending) {
+        final int value = heap[index];
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (compare(heap[parent], value, ascending) >= 0) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = value;
+    }
+
+    private void siftDown(int[] heap, int size, boolean ascending) {
+        final int value = heap[0];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && compare(heap[child + 1], heap[child], ascending) > 0) {
+                child++;
+            }
+            if (compare(value, heap[child], ascending) >= 0) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = value;
+    }
+
+    private void mergeSort(int[] order, int[] buffer, int from, int to, boolean ascending) {
+        if (to - from < 16) {
+            for (int i = from + 1; i < to; ++i) {
+                final int value = order[i];
+                int j = i - 1;
+                while (j >= from && compare(order[j], value, ascending) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = value;
+            }
+            return;
+        }
+        final int middle = (from + to) >>> 1;
+        mergeSort(order, buffer, from, middle, ascending);
+        mergeSort(order, buffer, middle, to, ascending);
+        merge(order, buffer, from, middle, to, ascending);
+    }
+
+    private void merge(int[] order, int[] buffer, int from, int middle, int to, boolean ascending) {
+        if (compare(order[middle - 1], order[middle], ascending) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; ++i) {
+            if (right >= to || (left < middle && compare(buffer[left], buffer[right], ascending) <= 0)) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+
+    /**
+     * Sorts equally-sized chunks of the positions concurrently and then merges them.
+     */
+    private void parallelSort(final int[] order, final boolean ascending, ExecutorService executor) {
+        final int[] buffer = new int[order.length];
+        final int chunkSize = (order.length + PROCESSORS - 1) / PROCESSORS;
+        final List<Future<?>> futures = new ArrayList<Future<?>>(PROCESSORS);
+        for (int from = 0; from < order.length; from += chunkSize) {
+            final int chunkFrom = from;
+            final int chunkTo = Math.min(order.length, from + chunkSize);
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    mergeSort(order, buffer, chunkFrom, chunkTo, ascending);
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WicketRuntimeException("Interrupted while sorting.", e);
+        } catch (ExecutionException e) {
+            throw new WicketRuntimeException("Unable to sort items.", e.getCause());
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        for (int width = chunkSize; width < order.length; width *= 2) {
+            for (int from = 0; from + width < order.length; from += 2 * width) {
+                merge(order, buffer, from, from + width, Math.min(order.length, from + 2 * width), ascending);
+            }
+        }
+    }
+
+    private static int[] identity(int size) {
+        final int[] order = new int[size];
+        for (int i = 0; i < size; ++i) {
+            order[i] = i;
+        }
+        return order;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final class ComparableKeys extends SortKeys {
+        private final Comparable[] keys;
+
+        private ComparableKeys(boolean[] nulls, Comparable[] keys) {
+            super(nulls);
+            this.keys = keys;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected int compareKeys(int left, int right) {
+            return keys[left].compareTo(keys[right]);
+        }
+    }
+
+    private static final class DoubleKeys extends SortKeys {
+        private final double[] keys;
+
+        private DoubleKeys(boolean[] nulls, double[] keys) {
+            super(nulls);
+            this.keys = keys;
+        }
+
+        @Override
+        protected int compareKeys(int left, int right) {
+            return Double.compare(keys[left], keys[right]);
+        }
+    }
+
+    private static final class LongKeys extends SortKeys {
+        private final long[] keys;
+
+        private LongKeys(boolean[] nulls, long[] keys) {
+            super(nulls);
+            this.keys = keys;
+        }
+
+        @Override
+        protected int compareKeys(int left, int right) {
+            return keys[left] < keys[right] ? -1 : (keys[left] == keys[right] ? 0 : 1);
+        }
+    }
+}
@@ -16,35 +16,72 @@
 
 package org.wicketopia.model.table;
 
+import org.apache.wicket.Application;
 import org.apache.wicket.extensions.markup.html.repeater.data.sort.SortOrder;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.filter.IFilterStateLocator;
 import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
 import org.apache.wicket.extensions.markup.html.repeater.util.SortableDataProvider;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
-import org.apache.wicket.model.PropertyModel;
+import org.apache.wicket.protocol.http.WebApplication;
+import org.wicketopia.Wicketopia;
 
-import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Adapts a collection model to be a {@link SortableDataProvider}.  Properties which need to support sorting should
- * be {@link Comparable}.
+ * be {@link Comparable}.  The items may optionally be filtered using a {@link PropertyFilterState}, which is evaluated
+ * against per-property indexes built lazily (and kept for as long as the collection remains unchanged).  Whether the
+ * collection has changed is checked once per request.  Large collections are sorted in parallel on the installed
+ * {@link Wicketopia#getSortExecutor() Wicketopia's sort executor}.
  *
  * @param <T> the item type
  * @since 1.0
  */
-public abstract class SortableCollectionDataProvider<T> extends SortableDataProvider<T, String> {
+public abstract class SortableCollectionDataProvider<T> extends SortableDataProvider<T, String> implements IFilterStateLocator<PropertyFilterState<T>> {
 //----------------------------------------------------------------------------------------------------------------------
 // Fields
 //----------------------------------------------------------------------------------------------------------------------
 
     public static final String NO_ORDER = "<<<NO_ORDERING>>>";
+
+    /**
+     * When no more than this fraction (1/n) of the items is needed, the first pages are selected rather than sorting
+     * all of the items.
+     */
+    private static final int PARTIAL_SORT_RATIO = 8;
+
     private final IModel<? extends Collection<? extends T>> inner;
+    private PropertyFilterState<T> filterState;
+    private transient SortCache sortCache;
+    private transient FilterCache filterCache;
+    private transient IndexCache indexCache;
+    private transient CollectionVersion version;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Combines the identities of the items, in iteration order.  This is much cheaper than re-sorting, and it changes
+     * whenever items are added, removed, replaced or reordered.
+     */
+    private static int fingerprint(Collection<?> collection) {
+        int fingerprint = 1;
+        for (Object item : collection) {
+            fingerprint = 31 * fingerprint + System.identityHashCode(item);
+        }
+        return fingerprint;
+    }
 
 //----------------------------------------------------------------------------------------------------------------------
 // Constructors
@@ -88,13 +125,26 @@ public abstract class SortableCollectionDataProvider<T> extends SortableDataProv
 //----------------------------------------------------------------------------------------------------------------------
 
     public Iterator<? extends T> iterator(long first, long count) {
-        final List<T> list = new ArrayList<T>(inner.getObject());
-        Collections.sort(list, new SortableDataProviderComparator<T>(getSort()));
-        return list.subList((int) first, (int) (first + count)).iterator();
+        final Collection<? extends T> collection = inner.getObject();
+        final T[] items = getItems(collection);
+        final int from = (int) Math.min(first, items.length);
+        final int to = (int) Math.min(first + count, items.length);
+        final SortParam<String> sort = getSort();
+        final String property = sort == null ? null : sort.getProperty();
+        if (property == null || NO_ORDER.equals(property)) {
+            return Arrays.asList(items).subList(from, to).iterator();
+        }
+        final int[] order = getSortOrder(getVersion(collection), items, property, sort.isAscending(), to);
+        final List<T> page = new ArrayList<T>(to - from);
+        for (int i = from; i < to; ++i) {
+            page.add(items[order[i]]);
+        }
+        return page.iterator();
     }
 
     public long size() {
-        return inner.getObject().size();
+        final Collection<? extends T> collection = inner.getObject();
+        return isFiltered() ? getFilteredPositions(getVersion(collection), null).length : collection.size();
     }
 
 //----------------------------------------------------------------------------------------------------------------------
@@ -104,39 +154,234 @@ public abstract class SortableCollectionDataProvider<T> extends SortableDataProv
     @Override
     public void detach() {
         super.detach();
+        version = null;
         inner.detach();
     }
 
+//----------------------------------------------------------------------------------------------------------------------
+// IFilterStateLocator Implementation
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    public PropertyFilterState<T> getFilterState() {
+        return filterState;
+    }
+
+    @Override
+    public void setFilterState(PropertyFilterState<T> filterState) {
+        this.filterState = filterState;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Discards the cached sort order and filter indexes.  The caches notice when items are added, removed or replaced,
+     * but they can't detect changes to the property values of the items themselves, so call this after modifying items
+     * in place.
+     */
+    public void clearSortCache() {
+        version = null;
+        sortCache = null;
+        filterCache = null;
+        indexCache = null;
+    }
+
+    /**
+     * Returns the positions (within the collection) of the items which match the filter.
+     */
+    private int[] getFilteredPositions(CollectionVersion version, T[] allItems) {
+        final FilterCache cache = filterCache;
+        if (cache != null && cache.covers(version, filterState)) {
+            return cache.positions;
+        }
+        IndexCache indexes = indexCache;
+        if (indexes == null || !indexes.version.matches(version)) {
+            indexes = new IndexCache(version, allItems != null ? allItems : version.getCollection().toArray());
+            indexCache = indexes;
+        }
+        final BitSet matches = filterState.select(indexes, indexes.items.length);
+        final int[] positions = new int[matches.cardinality()];
+        for (int i = matches.nextSetBit(0), j = 0; i >= 0; i = matches.nextSetBit(i + 1), ++j) {
+            positions[j] = i;
+        }
+        filterCache = new FilterCache(version, filterState, positions);
+        return positions;
+    }
+
+    /**
+     * Returns the items of the collection which match the filter (if any).
+     */
+    @SuppressWarnings("unchecked")
+    private T[] getItems(Collection<? extends T> collection) {
+        final T[] items = (T[]) collection.toArray();
+        if (!isFiltered()) {
+            return items;
+        }
+        final int[] positions = getFilteredPositions(getVersion(collection), items);
+        final T[] filtered = (T[]) new Object[positions.length];
+        for (int i = 0; i < positions.length; ++i) {
+            filtered[i] = items[positions[i]];
+        }
+        return filtered;
+    }
+
+    /**
+     * Returns the executor used to sort large collections in parallel.  The default implementation uses the sort
+     * executor of the Wicketopia instance installed into the current application, if any.
+     *
+     * @return the sort executor, or <code>null</code> to sort on the calling thread
+     */
+    protected ExecutorService getSortExecutor() {
+        if (!Application.exists() || !(Application.get() instanceof WebApplication)) {
+            return null;
+        }
+        final Wicketopia wicketopia = Wicketopia.get();
+        return wicketopia == null ? null : wicketopia.getSortExecutor();
+    }
+
+    /**
+     * Returns (at least) the first <code>count</code> positions of the items in sorted order.  The sort keys are
+     * extracted once, and when only the first few pages are needed they are selected instead of sorting everything.
+     */
+    private int[] getSortOrder(CollectionVersion version, T[] items, String property, boolean ascending, int count) {
+        final SortCache cache = sortCache;
+        final PropertyFilterState<T> filter = isFiltered() ? filterState : null;
+        if (cache != null && cache.covers(property, ascending, version, filter, count)) {
+            return cache.order;
+        }
+        final SortKeys keys = SortKeys.extract(items, property);
+        final int[] order = count <= items.length / PARTIAL_SORT_RATIO ? keys.select(count, ascending) : keys.sort(ascending, getSortExecutor());
+        sortCache = new SortCache(property, ascending, version, filter, order);
+        return order;
+    }
+
+    /**
+     * Returns the current version of the collection.  Fingerprinting the collection takes a pass over all of its items,
+     * so it is only done once per request (like Wicket's own caching of the item count), unless a different collection
+     * instance (or one of a different size) turns up.
+     */
+    private CollectionVersion getVersion(Collection<? extends T> collection) {
+        CollectionVersion current = version;
+        if (current == null || !current.isOf(collection)) {
+            current = new CollectionVersion(collection);
+            version = current;
+        }
+        return current;
+    }
+
+    private boolean isFiltered() {
+        return filterState != null && !filterState.isEmpty();
+    }
+
 //----------------------------------------------------------------------------------------------------------------------
 // Inner Classes
 //----------------------------------------------------------------------------------------------------------------------
 
-    private static final class SortableDataProviderComparator<T> implements Comparator<T>, Serializable {
-        private final SortParam<String> sortParam;
+    /**
+     * Identifies a particular state of a collection.  The collection is only weakly referenced, and it is considered
+     * unchanged if it is the same instance with the same size and the same items in the same order.
+     */
+    private static final class CollectionVersion {
+        private final WeakReference<Collection<?>> collection;
+        private final int size;
+        private final int fingerprint;
 
-        private SortableDataProviderComparator(SortParam<String> sortParam) {
-            this.sortParam = sortParam;
+        private CollectionVersion(Collection<?> collection) {
+            this.collection = new WeakReference<Collection<?>>(collection);
+            this.size = collection.size();
+            this.fingerprint = fingerprint(collection);
         }
 
-        @SuppressWarnings("unchecked")
-        public int compare(final T o1, final T o2) {
-            final String property = sortParam.getProperty();
-            if (property == null || NO_ORDER.equals(property)) {
-                return -1;
-            }
-            PropertyModel<Comparable> model1 = new
-                    PropertyModel<Comparable>(o1, property);
-            PropertyModel<Comparable> model2 = new
-                    PropertyModel<Comparable>(o2, property);
-            Comparable value1 = model1.getObject();
-            Comparable value2 = model2.getObject();
-            if (value1 == null) {
-                return 1;
-            }
-            if (value2 == null) {
-                return -1;
+        private Collection<?> getCollection() {
+            return collection.get();
+        }
+
+        /**
+         * A cheap check of whether this version (still) describes the collection, without fingerprinting it.
+         */
+        private boolean isOf(Collection<?> collection) {
+            return getCollection() == collection && size == collection.size();
+        }
+
+        private boolean matches(CollectionVersion other) {
+            return this == other || (getCollection() == other.getCollection() && size == other.size && fingerprint == other.fingerprint);
+        }
+    }
+
+    /**
+     * The positions of the items matching a particular version of a filter.
+     */
+    private static final class FilterCache {
+        private final CollectionVersion version;
+        private final PropertyFilterState<?> filter;
+        private final int filterVersion;
+        private final int[] positions;
+
+        private FilterCache(CollectionVersion version, PropertyFilterState<?> filter, int[] positions) {
+            this.version = version;
+            this.filter = filter;
+            this.filterVersion = filter.getVersion();
+            this.positions = positions;
+        }
+
+        private boolean covers(CollectionVersion version, PropertyFilterState<?> filter) {
+            return this.filter == filter && filterVersion == filter.getVersion() && this.version.matches(version);
+        }
+    }
+
+    /**
+     * The property indexes of a particular version of the collection.
+     */
+    private static final class IndexCache implements PropertyFilterState.PropertyIndexes {
+        private final CollectionVersion version;
+        private final Object[] items;
+        private final Map<String, PropertyIndex> indexes = new HashMap<String, PropertyIndex>();
+
+        private IndexCache(CollectionVersion version, Object[] items) {
+            this.version = version;
+            this.items = items;
+        }
+
+        @Override
+        public PropertyIndex getIndex(String propertyName) {
+            PropertyIndex index = indexes.get(propertyName);
+            if (index == null) {
+                index = new PropertyIndex(SortKeys.extractValues(items, propertyName));
+                indexes.put(propertyName, index);
             }
-            return sortParam.isAscending() ? value1.compareTo(value2) : value2.compareTo(value1);
+            return index;
+        }
+    }
+
+    /**
+     * The sorted positions for a particular sort, collection and filter.
+     */
+    private static final class SortCache {
+        private final String property;
+        private final boolean ascending;
+        private final CollectionVersion version;
+        private final PropertyFilterState<?> filter;
+        private final int filterVersion;
+        private final int[] order;
+
+        private SortCache(String property, boolean ascending, CollectionVersion version, PropertyFilterState<?> filter, int[] order) {
+            this.property = property;
+            this.ascending = ascending;
+            this.version = version;
+            this.filter = filter;
+            this.filterVersion = filter == null ? 0 : filter.getVersion();
+            this.order = order;
+        }
+
+        private boolean covers(String property, boolean ascending, CollectionVersion version, PropertyFilterState<?> filter, int count) {
+            return this.property.equals(property) &&
+                    this.ascending == ascending &&
+                    this.filter == filter &&
+                    (filter == null || filterVersion == filter.getVersion()) &&
+                    order.length >= count &&
+                    this.version.matches(version);
         }
     }
-}
\ No newline at end of file
+}
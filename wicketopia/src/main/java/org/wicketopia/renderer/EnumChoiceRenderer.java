@@ -16,13 +16,17 @@
 
 package org.wicketopia.renderer;
 
+import org.apache.wicket.Application;
 import org.apache.wicket.markup.html.form.DropDownChoice;
 import org.apache.wicket.markup.html.form.IChoiceRenderer;
 import org.apache.wicket.model.StringResourceModel;
+import org.wicketopia.Wicketopia;
 
 /**
  * A choice renderer for enum values which allows internationalization of the display values.  For enum value Bar from
- * enum class com.myco.Foo, it will look for message key com.myco.Foo.Bar.
+ * enum class com.myco.Foo, it will look for message key com.myco.Foo.Bar.  When Wicketopia is installed, the labels are
+ * resolved once per enum class, locale and component scope and read from its
+ * {@link org.wicketopia.model.label.DisplayNameCache}.
  *
  * @since 1.0
  */
@@ -38,7 +42,12 @@ public class EnumChoiceRenderer<T extends Enum> implements IChoiceRenderer<T> {
 // Static Methods
 //----------------------------------------------------------------------------------------------------------------------
 
+    @SuppressWarnings("unchecked")
     private static <T extends Enum> String getEnumDisplayValue(T enumValue, DropDownChoice<T> dropDownChoice) {
+        final Wicketopia wicketopia = Application.exists() ? Wicketopia.get() : null;
+        if (wicketopia != null) {
+            return wicketopia.getDisplayNameCache().getEnumLabels(enumValue.getDeclaringClass(), dropDownChoice.getLocalizer(), dropDownChoice)[enumValue.ordinal()];
+        }
         return new StringResourceModel(enumValue.getClass().getName() + "." + enumValue.name(), dropDownChoice, null, enumValue.toString()).getString();
     }
 
@@ -58,7 +67,8 @@ public class EnumChoiceRenderer<T extends Enum> implements IChoiceRenderer<T> {
         return getEnumDisplayValue(enumValue, dropDownChoice);
     }
 
+    @SuppressWarnings("unchecked")
     public String getIdValue(T enumValue, int index) {
-        return String.valueOf(enumValue.ordinal());
+        return EnumChoices.of(enumValue.getDeclaringClass()).getId(enumValue);
     }
 }
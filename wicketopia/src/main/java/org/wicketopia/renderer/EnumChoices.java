@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.renderer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The shared, immutable choice data of an enum class: its constants and their id strings, both indexed by ordinal.
+ * This lets enum choice components share a single choice list and convert posted ids back to constants without
+ * scanning their choices.
+ *
+ * @since 1.5
+ */
+public final class EnumChoices<T extends Enum> {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final ConcurrentMap<Class<?>, EnumChoices<?>> CACHE = new ConcurrentHashMap<Class<?>, EnumChoices<?>>();
+
+    private final List<T> constants;
+    private final String[] ids;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    @SuppressWarnings("unchecked")
+    public static <T extends Enum> EnumChoices<T> of(Class<T> enumClass) {
+        EnumChoices<T> choices = (EnumChoices<T>) CACHE.get(enumClass);
+        if (choices == null) {
+            choices = new EnumChoices<T>(enumClass);
+            final EnumChoices<T> existing = (EnumChoices<T>) CACHE.putIfAbsent(enumClass, choices);
+            if (existing != null) {
+                choices = existing;
+            }
+        }
+        return choices;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    private EnumChoices(Class<T> enumClass) {
+        final T[] values = enumClass.getEnumConstants();
+        this.constants = Collections.unmodifiableList(Arrays.asList(values));
+        this.ids = new String[values.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = String.valueOf(i);
+        }
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Getter/Setter Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns all constants of the enum class, in ordinal order.
+     *
+     * @return an unmodifiable list of the constants
+     */
+    public List<T> getConstants() {
+        return constants;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the constant identified by the id string (its ordinal).
+     *
+     * @param id the id
+     * @return the constant or <code>null</code> if the id does not identify a constant
+     */
+    public T getConstant(String id) {
+        if (id == null || id.length() == 0 || (id.length() > 1 && id.charAt(0) == '0')) {
+            return null;
+        }
+        int ordinal = 0;
+        for (int i = 0; i < id.length(); i++) {
+            final char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+            ordinal = ordinal * 10 + (c - '0');
+            if (ordinal >= ids.length) {
+                return null;
+            }
+        }
+        return constants.get(ordinal);
+    }
+
+    /**
+     * Returns the id string of the constant (its ordinal).
+     *
+     * @param constant the constant
+     * @return the id
+     */
+    public String getId(T constant) {
+        return ids[constant.ordinal()];
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.util;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, thread-safe memo of computed values.  Lookups never block; once the memo is full, an arbitrary entry is
+ * evicted for each new one.  Hit and miss counts are kept for monitoring.  Callers whose computations depend on
+ * state which may change (causing the memo to be cleared) should read the {@link #getGeneration() generation} before
+ * computing a value and store it using {@link #put(Object, Object, long)}, so a value computed from stale state is
+ * never memoized after the memo has been cleared.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ * @since 1.5
+ */
+public final class BoundedMemo<K, V> {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private final int maximumSize;
+    private volatile Generation<K, V> current = new Generation<K, V>(0L);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    public BoundedMemo(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Getter/Setter Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the current generation of the memo, which changes every time it is cleared.
+     *
+     * @return the generation
+     */
+    public long getGeneration() {
+        return current.number;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Discards all memoized values and starts a new generation.  Values being stored concurrently (for an earlier
+     * generation) end up in the discarded memo, never in the new one.
+     */
+    public synchronized void clear() {
+        current = new Generation<K, V>(current.number + 1);
+    }
+
+    /**
+     * Returns the memoized value for the key (counting a hit or a miss).
+     *
+     * @param key the key
+     * @return the value or <code>null</code> if none is memoized
+     */
+    public V get(K key) {
+        final V value = current.values.get(key);
+        if (value == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Memoizes the value for the key, evicting an arbitrary entry if the memo is full.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public void put(K key, V value) {
+        put(current, key, value);
+    }
+
+    /**
+     * Memoizes the value for the key, provided the memo hasn't been cleared since the supplied generation.
+     *
+     * @param key        the key
+     * @param value      the value
+     * @param generation the generation read before the value was computed
+     */
+    public void put(K key, V value, long generation) {
+        final Generation<K, V> expected = current;
+        if (expected.number == generation) {
+            put(expected, key, value);
+        }
+    }
+
+    private void put(Generation<K, V> generation, K key, V value) {
+        final ConcurrentMap<K, V> values = generation.values;
+        if (values.size() >= maximumSize) {
+            final Iterator<K> keys = values.keySet().iterator();
+            if (keys.hasNext()) {
+                values.remove(keys.next());
+            }
+        }
+        values.put(key, value);
+    }
+
+    public int size() {
+        return current.values.size();
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final class Generation<K, V> {
+        private final long number;
+        private final ConcurrentMap<K, V> values = new ConcurrentHashMap<K, V>();
+
+        private Generation(long number) {
+            this.number = number;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.util;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.core.util.lang.WicketObjects;
+import org.apache.wicket.protocol.http.WebApplication;
+import org.metastopheles.BeanMetaData;
+import org.wicketopia.Wicketopia;
+
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Helpers for the compact ({@link java.io.Externalizable}) serialized forms of Wicketopia objects.  Rather than whole
+ * object graphs, these forms write class names and property names, which are resolved back through the installed
+ * Wicketopia instance's metadata registry when read.
+ *
+ * @since 1.5
+ */
+public final class CompactSerialization {
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the Wicketopia instance installed in the current application, if any.
+     *
+     * @return the Wicketopia instance or <code>null</code>
+     */
+    public static Wicketopia findWicketopia() {
+        return Application.exists() && Application.get() instanceof WebApplication ? Wicketopia.get() : null;
+    }
+
+    /**
+     * Returns whether or not the bean metadata is the instance registered with the installed Wicketopia, in which case
+     * it can be serialized as a mere class name.
+     *
+     * @param beanMetaData the bean metadata
+     * @return whether or not the bean metadata is registered
+     */
+    public static boolean isRegistered(BeanMetaData beanMetaData) {
+        final Wicketopia wicketopia = findWicketopia();
+        return wicketopia != null && wicketopia.getBeanMetaData(beanMetaData.getBeanDescriptor().getBeanClass()) == beanMetaData;
+    }
+
+    /**
+     * Reads a class written by {@link #writeClass(ObjectOutput, Class)}.
+     *
+     * @param in the input
+     * @return the class
+     * @throws IOException if the class cannot be resolved
+     */
+    public static Class<?> readClass(ObjectInput in) throws IOException {
+        final String className = in.readUTF();
+        final Class<?> type = WicketObjects.resolveClass(className);
+        if (type == null) {
+            throw new InvalidClassException(className, "Unable to resolve class.");
+        }
+        return type;
+    }
+
+    /**
+     * Returns the registered bean metadata for the class, as needed when resolving a compact form.
+     *
+     * @param beanClass the bean class
+     * @return the bean metadata
+     * @throws InvalidObjectException if no Wicketopia instance is installed in the current application
+     */
+    public static BeanMetaData resolveBeanMetaData(Class<?> beanClass) throws InvalidObjectException {
+        final Wicketopia wicketopia = findWicketopia();
+        if (wicketopia == null) {
+            throw new InvalidObjectException("Unable to resolve metadata for class " + beanClass.getName() + " (Wicketopia is not installed in the current application).");
+        }
+        return wicketopia.getBeanMetaData(beanClass);
+    }
+
+    /**
+     * Writes the name of a class, to be read by {@link #readClass(ObjectInput)}.
+     *
+     * @param out  the output
+     * @param type the class
+     * @throws IOException if the name cannot be written
+     */
+    public static void writeClass(ObjectOutput out, Class<?> type) throws IOException {
+        out.writeUTF(type.getName());
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    private CompactSerialization() {
+    }
+}
@@ -18,22 +18,32 @@ package org.wicketopia.util;
 
 import org.wicketopia.context.Context;
 import org.wicketopia.context.ContextPredicate;
+import org.wicketopia.context.StaticContextPredicate;
 
 import java.io.Serializable;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Collection;
 
 /**
- *
+ * A boolean value which varies by {@link Context}.  The conditions whose predicates depend only upon the context name
+ * ({@link StaticContextPredicate}s) are compiled into a decision table indexed by {@link Context#getId() context id},
+ * so they are evaluated at most once per context name.  Only the remaining (dynamic) predicates are evaluated on every
+ * call.
  */
 public class ContextualBoolean implements Serializable {
 //----------------------------------------------------------------------------------------------------------------------
 // Fields
 //----------------------------------------------------------------------------------------------------------------------
 
+    private static final ContextualCondition[] NO_CONDITIONS = new ContextualCondition[0];
+    private static final byte UNKNOWN = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+
     private final boolean defaultValue;
-    private final List<ContextualCondition> conditions = new LinkedList<ContextualCondition>();
     private final Aggregator aggregator;
+    private volatile ContextualCondition[] staticConditions = NO_CONDITIONS;
+    private volatile ContextualCondition[] dynamicConditions = NO_CONDITIONS;
+    private transient volatile byte[] decisions;
 
 //----------------------------------------------------------------------------------------------------------------------
 // Constructors
@@ -48,19 +58,75 @@ public class ContextualBoolean implements Serializable {
 // Other Methods
 //----------------------------------------------------------------------------------------------------------------------
 
+    private static ContextualCondition[] append(ContextualCondition[] conditions, ContextualCondition condition) {
+        final ContextualCondition[] appended = new ContextualCondition[conditions.length + 1];
+        System.arraycopy(conditions, 0, appended, 0, conditions.length);
+        appended[conditions.length] = condition;
+        return appended;
+    }
+
+    /**
+     * Adds the predicates whose results depend upon more than just the context name (i.e. those which are not
+     * {@link StaticContextPredicate}s) to the supplied collection.
+     *
+     * @param predicates the collection to add to
+     */
+    public void collectDynamicPredicates(Collection<? super ContextPredicate> predicates) {
+        for (ContextualCondition condition : dynamicConditions) {
+            predicates.add(condition.predicate);
+        }
+    }
+
     public boolean getValue(Context context) {
-        if (conditions.isEmpty()) {
+        boolean aggregate = getStaticValue(context);
+        for (ContextualCondition condition : dynamicConditions) {
+            if (aggregator.isDecided(aggregate)) {
+                return aggregate;
+            }
+            aggregate = aggregator.aggregate(aggregate, condition.evaluate(context));
+        }
+        return aggregate;
+    }
+
+    private boolean getStaticValue(Context context) {
+        if (staticConditions.length == 0) {
             return defaultValue;
         }
+        final int id = context.getId();
+        final byte[] table = decisions;
+        if (table != null && id < table.length && table[id] != UNKNOWN) {
+            return table[id] == TRUE;
+        }
+        return decide(context);
+    }
+
+    private synchronized boolean decide(Context context) {
         boolean aggregate = defaultValue;
-        for (ContextualCondition condition : conditions) {
-            aggregate = aggregator.aggregate(aggregate, condition.predicate.evaluate(context) ? condition.value : !condition.value);
+        for (ContextualCondition condition : staticConditions) {
+            aggregate = aggregator.aggregate(aggregate, condition.evaluate(context));
+        }
+        final int id = context.getId();
+        byte[] table = decisions;
+        if (table == null || id >= table.length) {
+            final byte[] grown = new byte[Math.max(id + 1, table == null ? 8 : table.length * 2)];
+            if (table != null) {
+                System.arraycopy(table, 0, grown, 0, table.length);
+            }
+            table = grown;
         }
+        table[id] = aggregate ? TRUE : FALSE;
+        decisions = table;
         return aggregate;
     }
 
-    public void setValue(ContextPredicate predicate, boolean value) {
-        conditions.add(new ContextualCondition(predicate, value));
+    public synchronized void setValue(ContextPredicate predicate, boolean value) {
+        final ContextualCondition condition = new ContextualCondition(predicate, value);
+        if (predicate instanceof StaticContextPredicate) {
+            staticConditions = append(staticConditions, condition);
+            decisions = null;
+        } else {
+            dynamicConditions = append(dynamicConditions, condition);
+        }
     }
 
     public static enum Aggregator {
@@ -69,17 +135,33 @@ public class ContextualBoolean implements Serializable {
             public boolean aggregate(boolean left, boolean right) {
                 return left || right;
             }
+
+            @Override
+            public boolean isDecided(boolean value) {
+                return value;
+            }
         },
         AND {
             @Override
             public boolean aggregate(boolean left, boolean right) {
                 return left && right;
             }
+
+            @Override
+            public boolean isDecided(boolean value) {
+                return !value;
+            }
         };
 
         public abstract boolean aggregate(boolean left, boolean right);
 
-
+        /**
+         * Returns whether the aggregate value can no longer be changed by further conditions.
+         *
+         * @param value the aggregate value so far
+         * @return whether the aggregate value is decided
+         */
+        public abstract boolean isDecided(boolean value);
     }
 //----------------------------------------------------------------------------------------------------------------------
 // Inner Classes
@@ -93,5 +175,9 @@ public class ContextualBoolean implements Serializable {
             this.predicate = predicate;
             this.value = value;
         }
+
+        private boolean evaluate(Context context) {
+            return predicate.evaluate(context) ? value : !value;
+        }
     }
 }
@@ -20,11 +20,8 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -40,9 +37,13 @@ public abstract class Pluralizer {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Pluralizer.class);
 
-    private static List<PluralizationRule> pluralizationRules = Collections.synchronizedList(new ArrayList<PluralizationRule>());
+    private static final int MEMO_SIZE = 1024;
 
-    private static Map<String, String> pluralizationCache = Collections.synchronizedMap(new HashMap<String, String>());
+    private static final List<PluralizationRule> pluralizationRules = new CopyOnWriteArrayList<PluralizationRule>();
+
+    private static final BoundedMemo<String, String> pluralizationCache = new BoundedMemo<String, String>(MEMO_SIZE);
+
+    private static final BoundedMemo<String, String> wordsCache = new BoundedMemo<String, String>(MEMO_SIZE);
 
 //----------------------------------------------------------------------------------------------------------------------
 // Static Methods
@@ -60,6 +61,20 @@ public abstract class Pluralizer {
         registerPluralizationRule(new RegexPluralizationRule("([^aeioudgkprt]h$)", "es", 1));
     }
 
+    /**
+     * Returns the memo of pluralized terms (useful for monitoring its hit/miss counts).
+     */
+    public static BoundedMemo<String, String> getPluralizationCache() {
+        return pluralizationCache;
+    }
+
+    /**
+     * Returns the memo of names split into words (useful for monitoring its hit/miss counts).
+     */
+    public static BoundedMemo<String, String> getWordsCache() {
+        return wordsCache;
+    }
+
     /**
      * Applies default English pluralization rules adding &quot;s&quot; to the end of the term.
      */
@@ -83,6 +98,7 @@ public abstract class Pluralizer {
     }
 
     public static String pluralize(String term) {
+        final long generation = pluralizationCache.getGeneration();
         String pluralForm = pluralizationCache.get(term);
 
         if (pluralForm == null) {
@@ -97,6 +113,7 @@ public abstract class Pluralizer {
                     LOGGER.debug("Located pluralization [" + pluralForm + "] for term [" + term + "] using default rules.");
                 }
             }
+            pluralizationCache.put(term, pluralForm, generation);
         } else {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Located pluralization [" + pluralForm + "] for term [" + term + "] in the cache.");
@@ -108,9 +125,24 @@ public abstract class Pluralizer {
 
     public static void registerPluralizationRule(PluralizationRule rule) {
         pluralizationRules.add(rule);
+        pluralizationCache.clear();
+    }
+
+    public static void unregisterPluralizationRule(PluralizationRule rule) {
+        pluralizationRules.remove(rule);
+        pluralizationCache.clear();
     }
 
     public static String splitIntoWords(String name) {
+        String split = wordsCache.get(name);
+        if (split == null) {
+            split = doSplitIntoWords(name);
+            wordsCache.put(name, split);
+        }
+        return split;
+    }
+
+    private static String doSplitIntoWords(String name) {
         String[] words = StringUtils.splitByCharacterTypeCamelCase(name);
         words[0] = StringUtils.capitalize(words[0]);
         StringBuilder sb = new StringBuilder();
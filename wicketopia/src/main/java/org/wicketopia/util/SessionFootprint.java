@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.util;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * Measures how much an object graph (typically a page) adds to the session footprint, i.e. the number of bytes it
+ * occupies once serialized into the page store.
+ *
+ * @since 1.5
+ */
+public final class SessionFootprint {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionFootprint.class);
+
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Counts the components in the hierarchy rooted at the component (inclusive).
+     *
+     * @param root the root component
+     * @return the number of components
+     */
+    public static int componentCount(Component root) {
+        final int[] count = {1};
+        if (root instanceof MarkupContainer) {
+            ((MarkupContainer) root).visitChildren(new IVisitor<Component, Void>() {
+                @Override
+                public void component(Component component, IVisit<Void> visit) {
+                    count[0]++;
+                }
+            });
+        }
+        return count[0];
+    }
+
+    /**
+     * Logs (at info level) the serialized size and component count of the component hierarchy.
+     *
+     * @param label a label identifying the measurement in the log
+     * @param root  the root component (usually a page)
+     * @return the serialized size in bytes
+     */
+    public static long report(String label, Component root) {
+        final long size = serializedSize(root);
+        LOGGER.info("{}: {} bytes, {} components.", new Object[]{label, size, componentCount(root)});
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes the object occupies when serialized with standard Java serialization.
+     *
+     * @param object the object
+     * @return the serialized size in bytes
+     */
+    public static long serializedSize(Serializable object) {
+        final CountingOutputStream counter = new CountingOutputStream();
+        try {
+            final ObjectOutputStream out = new ObjectOutputStream(counter);
+            out.writeObject(object);
+            out.close();
+        } catch (IOException e) {
+            throw new WicketRuntimeException("Unable to serialize object of type " + object.getClass().getName() + ".", e);
+        }
+        return counter.count;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    private SessionFootprint() {
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
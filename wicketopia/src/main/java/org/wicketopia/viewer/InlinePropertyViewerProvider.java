@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.viewer;
+
+import org.apache.wicket.Component;
+import org.metastopheles.PropertyMetaData;
+
+/**
+ * A viewer provider whose viewers are plain text, which allows read-only views to write the property value straight
+ * to the response instead of creating a viewer component for it.
+ *
+ * @since 1.5
+ */
+public interface InlinePropertyViewerProvider extends PropertyViewerProvider {
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the (unescaped) text the viewer would display for the property value.
+     *
+     * @param propertyMetadata the property metadata
+     * @param propertyValue    the property value (may be <code>null</code>)
+     * @param component        the component which is rendering the value
+     * @return the display value
+     */
+    String getDisplayValue(PropertyMetaData propertyMetadata, Object propertyValue, Component component);
+}
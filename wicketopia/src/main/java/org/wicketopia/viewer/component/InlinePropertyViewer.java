@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.viewer.component;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.core.util.lang.PropertyResolver;
+import org.apache.wicket.markup.ComponentTag;
+import org.apache.wicket.markup.MarkupStream;
+import org.apache.wicket.markup.html.WebComponent;
+import org.apache.wicket.markup.parser.XmlTag;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.util.convert.IConverter;
+import org.apache.wicket.util.string.Strings;
+import org.wicketopia.Wicketopia;
+import org.wicketopia.context.Context;
+import org.wicketopia.metadata.BeanRenderPlan;
+import org.wicketopia.model.property.PropertyAccessor;
+import org.wicketopia.viewer.InlinePropertyViewerProvider;
+
+/**
+ * A lightweight, stateless viewer which writes a property of its bean straight to the response, without a property
+ * model or a viewer builder.  It is meant for read-only table cells where the property is
+ * {@link BeanRenderPlan.PropertyPlan#isInlineViewable() inline viewable}.
+ *
+ * @since 1.5
+ */
+public class InlinePropertyViewer extends WebComponent {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final long serialVersionUID = 1L;
+
+    private final Class<?> beanType;
+    private final String propertyName;
+    private final Context context;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Static Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the (unescaped) text displayed for a property of the bean.  If the property can't be viewed inline,
+     * the value is simply converted to a string, as a {@link org.apache.wicket.markup.html.basic.Label} would do.
+     *
+     * @param plan      the property plan
+     * @param bean      the bean (may be <code>null</code>)
+     * @param component the component which is rendering the value
+     * @return the display value
+     */
+    @SuppressWarnings("unchecked")
+    public static String getDisplayValue(BeanRenderPlan.PropertyPlan plan, Object bean, Component component) {
+        final Object value = bean == null ? null : getPropertyValue(plan.getPropertyName(), bean);
+        if (plan.isInlineViewable()) {
+            return ((InlinePropertyViewerProvider) plan.getViewerProvider()).getDisplayValue(plan.getPropertyMetaData(), value, component);
+        }
+        if (value == null) {
+            return "";
+        }
+        final IConverter<Object> converter = (IConverter<Object>) component.getConverter(value.getClass());
+        return converter.convertToString(value, component.getLocale());
+    }
+
+    private static Object getPropertyValue(String propertyName, Object bean) {
+        final PropertyAccessor accessor = PropertyAccessor.forPath(bean.getClass(), propertyName);
+        return accessor != null ? accessor.getValue(bean) : PropertyResolver.getValue(propertyName, bean);
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Constructors
+//----------------------------------------------------------------------------------------------------------------------
+
+    public InlinePropertyViewer(String id, IModel<?> beanModel, Class<?> beanType, String propertyName, Context context) {
+        super(id, beanModel);
+        this.beanType = beanType;
+        this.propertyName = propertyName;
+        this.context = context;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected void onComponentTag(ComponentTag tag) {
+        super.onComponentTag(tag);
+        if (tag.isOpenClose()) {
+            tag.setType(XmlTag.TagType.OPEN);
+        }
+    }
+
+    @Override
+    public void onComponentTagBody(MarkupStream markupStream, ComponentTag openTag) {
+        final BeanRenderPlan.PropertyPlan plan = Wicketopia.get().getRenderPlan(beanType, context).getPropertyPlan(propertyName);
+        final String text = plan == null ? "" : getDisplayValue(plan, getDefaultModelObject(), this);
+        replaceComponentTagBody(markupStream, openTag, Strings.escapeMarkup(text));
+    }
+}
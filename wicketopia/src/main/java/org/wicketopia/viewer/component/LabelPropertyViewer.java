@@ -23,6 +23,8 @@ import org.apache.wicket.model.IModel;
 import org.metastopheles.PropertyMetaData;
 import org.wicketopia.builder.ViewerBuilder;
 import org.wicketopia.context.Context;
+import org.apache.wicket.util.convert.IConverter;
+import org.wicketopia.viewer.InlinePropertyViewerProvider;
 import org.wicketopia.viewer.PropertyViewerProvider;
 
 public class LabelPropertyViewer extends Label implements ViewerBuilder {
@@ -71,10 +73,20 @@ public class LabelPropertyViewer extends Label implements ViewerBuilder {
 // Inner Classes
 //----------------------------------------------------------------------------------------------------------------------
 
-    private static final class Provider implements PropertyViewerProvider {
+    private static final class Provider implements InlinePropertyViewerProvider {
         @Override
         public ViewerBuilder createPropertyViewer(String componentId, PropertyMetaData propertyMetadata, IModel<?> propertyModel, Context context) {
             return new LabelPropertyViewer(componentId, propertyModel);
         }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public String getDisplayValue(PropertyMetaData propertyMetadata, Object propertyValue, Component component) {
+            if (propertyValue == null) {
+                return "";
+            }
+            final IConverter<Object> converter = (IConverter<Object>) component.getConverter(propertyValue.getClass());
+            return converter.convertToString(propertyValue, component.getLocale());
+        }
     }
 }
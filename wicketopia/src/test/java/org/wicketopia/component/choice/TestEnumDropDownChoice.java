@@ -18,6 +18,8 @@ package org.wicketopia.component.choice;
 
 import org.apache.wicket.util.tester.FormTester;
 import org.testng.annotations.Test;
+import org.wicketopia.Wicketopia;
+import org.wicketopia.renderer.EnumChoices;
 import org.wicketopia.testing.AbstractWicketTestCase;
 import org.wicketopia.util.Gender;
 import org.wicketopia.util.Person;
@@ -26,6 +28,8 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 
 /**
  * @author James Carman
@@ -46,6 +50,34 @@ public class TestEnumDropDownChoice extends AbstractWicketTestCase {
         assertEquals(p.getGender(), Gender.Female);
     }
 
+    @Test
+    public void testConvertChoiceIdToChoice() {
+        final EnumDropDownChoice<Gender> all = new EnumDropDownChoice<Gender>("gender", Gender.class);
+        assertSame(all.getChoices(), EnumChoices.of(Gender.class).getConstants());
+        assertEquals(all.convertChoiceIdToChoice("1"), Gender.Female);
+        assertNull(all.convertChoiceIdToChoice("3"));
+        assertNull(all.convertChoiceIdToChoice("01"));
+        assertNull(all.convertChoiceIdToChoice("x"));
+
+        final EnumDropDownChoice<Gender> subset = new EnumDropDownChoice<Gender>("gender", Gender.Male, Gender.Unknown);
+        assertEquals(subset.convertChoiceIdToChoice("2"), Gender.Unknown);
+        assertNull(subset.convertChoiceIdToChoice("1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRenderingWithDisplayNameCache() {
+        Wicketopia.install();
+        for (int i = 0; i < 2; i++) {
+            tester.startPage(new EnumDropDownChoiceTestPage(new Person()));
+            EnumDropDownChoice<Gender> choice =
+                    (EnumDropDownChoice<Gender>) tester.getComponentFromLastRenderedPage("form:gender");
+            assertEquals(choice.getChoiceRenderer().getDisplayValue(Gender.Male), "Male");
+            assertEquals(choice.getChoiceRenderer().getDisplayValue(Gender.Unknown), "It's Pat!");
+            assertEquals(choice.getChoiceRenderer().getIdValue(Gender.Unknown, 0), "2");
+        }
+    }
+
     @Test
     public void testModelContentsWithEnumClassParameter() {
         EnumDropDownChoice<Gender> genderChoice = new EnumDropDownChoice<Gender>("gender", Gender.class);
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.component.table;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
+import org.apache.wicket.markup.repeater.data.ListDataProvider;
+import org.testng.annotations.Test;
+import org.wicketopia.Wicketopia;
+import org.wicketopia.context.Context;
+import org.wicketopia.testing.AbstractWicketopiaTestCase;
+import org.wicketopia.util.EditableBean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class TestVirtualScrollTable extends AbstractWicketopiaTestCase {
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static List<EditableBean> createBeans(int count) {
+        final List<EditableBean> beans = new ArrayList<EditableBean>();
+        for (int i = 0; i < count; ++i) {
+            final EditableBean bean = new EditableBean();
+            bean.setStringProperty("Bean #" + i + ".");
+            beans.add(bean);
+        }
+        return beans;
+    }
+
+    private VirtualScrollTable<EditableBean> createTable(int rows) {
+        final Context context = new Context(Context.LIST);
+        return new VirtualScrollTable<EditableBean>(VirtualScrollTableTestPage.TABLE_ID, EditableBean.class, new ListDataProvider<EditableBean>(createBeans(rows)), context, Wicketopia.get().createViewerFactory(EditableBean.class), "stringProperty");
+    }
+
+    @Test
+    public void testRendersOnlyWindow() {
+        final VirtualScrollTable<EditableBean> table = createTable(100000);
+        tester.startPage(new VirtualScrollTableTestPage<EditableBean>(table));
+        tester.assertNoErrorMessage();
+        final String response = tester.getLastResponseAsString();
+        assertTrue(response.contains("Bean #0."));
+        assertTrue(response.contains("Bean #" + (table.getWindowSize() - 1) + "."));
+        assertFalse(response.contains("Bean #" + table.getWindowSize() + "."));
+        assertTrue(response.contains("height: " + (100000 * VirtualScrollTable.DEFAULT_ROW_HEIGHT) + "px;"));
+    }
+
+    @Test
+    public void testScrollingRecyclesRows() {
+        final VirtualScrollTable<EditableBean> table = createTable(100000);
+        tester.startPage(new VirtualScrollTableTestPage<EditableBean>(table));
+        final Component firstRow = tester.getComponentFromLastRenderedPage("table:viewport:spacer:window:rows:1");
+        final int initialLength = tester.getLastResponseAsString().length();
+
+        final AbstractDefaultAjaxBehavior callback = (AbstractDefaultAjaxBehavior) table.get("viewport").getBehaviors(AbstractDefaultAjaxBehavior.class).get(0);
+        tester.getRequest().setParameter("first", "50000");
+        tester.getRequest().setParameter("count", String.valueOf(table.getWindowSize()));
+        tester.executeBehavior(callback);
+
+        assertEquals(table.getFirst(), 50000);
+        final String response = tester.getLastResponseAsString();
+        assertTrue(response.contains("Bean #50000."));
+        assertFalse(response.contains("Bean #0."));
+        assertTrue(response.length() < initialLength);
+        assertSame(tester.getComponentFromLastRenderedPage("table:viewport:spacer:window:rows:1"), firstRow);
+    }
+
+    @Test
+    public void testWindowClamped() {
+        final VirtualScrollTable<EditableBean> table = createTable(45);
+        tester.startPage(new VirtualScrollTableTestPage<EditableBean>(table));
+        final AbstractDefaultAjaxBehavior callback = (AbstractDefaultAjaxBehavior) table.get("viewport").getBehaviors(AbstractDefaultAjaxBehavior.class).get(0);
+        tester.getRequest().setParameter("first", "40");
+        tester.getRequest().setParameter("count", "1000000");
+        tester.executeBehavior(callback);
+        final String response = tester.getLastResponseAsString();
+        assertTrue(response.contains("Bean #44."));
+        assertFalse(response.contains("Bean #39."));
+        assertFalse(table.get("viewport:spacer:window:rows:6").isVisible());
+    }
+}
@@ -16,6 +16,9 @@
 
 package org.wicketopia.layout.list;
 
+import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
 import org.testng.annotations.Test;
@@ -26,9 +29,16 @@ import org.wicketopia.testing.AbstractWicketTestCase;
 import org.wicketopia.util.EditableBean;
 import org.wicketopia.util.Gender;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
 public class TestBeanListLayoutPanel extends AbstractWicketTestCase {
     @Test
     public void testWithViewer() {
@@ -54,15 +64,132 @@ public class TestBeanListLayoutPanel extends AbstractWicketTestCase {
         tester.assertLabel("view:headers:2", "Int Property");
         tester.assertLabel("view:headers:3", "Gender");
         // Validate rows...
-        tester.assertLabel("view:rows:0:cells:0:component", "Hello");
-        tester.assertLabel("view:rows:0:cells:1:component", "123");
-        tester.assertLabel("view:rows:0:cells:2:component", "Male");
-        tester.assertLabel("view:rows:1:cells:0:component", "World");
-        tester.assertLabel("view:rows:1:cells:1:component", "987");
-        tester.assertLabel("view:rows:1:cells:2:component", "Female");
+        tester.assertLabel("view:rows:1:cells:0", "Hello");
+        tester.assertLabel("view:rows:1:cells:1", "123");
+        tester.assertLabel("view:rows:1:cells:2", "Male");
+        tester.assertLabel("view:rows:2:cells:0", "World");
+        tester.assertLabel("view:rows:2:cells:1", "987");
+        tester.assertLabel("view:rows:2:cells:2", "Female");
 
         tester.assertNoErrorMessage();
         tester.assertNoInfoMessage();
     }
 
+    @Test
+    public void testRowsReusedByIdentity() {
+        Wicketopia plugin = new Wicketopia();
+        plugin.install(tester.getApplication());
+        final EditableBean bean1 = new EditableBean();
+        bean1.setStringProperty("Hello");
+        final EditableBean bean2 = new EditableBean();
+        bean2.setStringProperty("World");
+        final Context context = new Context(Context.VIEW);
+        final List<EditableBean> beans = new ArrayList<EditableBean>(Arrays.asList(bean1, bean2));
+        IModel<List<? extends EditableBean>> model = new AbstractReadOnlyModel<List<? extends EditableBean>>() {
+            @Override
+            public List<? extends EditableBean> getObject() {
+                return beans;
+            }
+        };
+        PropertyComponentFactory<EditableBean> factory = plugin.createViewerFactory(EditableBean.class);
+        final BeanListLayoutTestPage page = new BeanListLayoutTestPage(new BeanListLayoutPanel<EditableBean>(BeanListLayoutTestPage.PANEL_ID, EditableBean.class, model, context, factory, "stringProperty"));
+        tester.startPage(page);
+        final Component helloRow = tester.getComponentFromLastRenderedPage("view:rows:1");
+        tester.assertLabel("view:rows:2:cells:0", "World");
+
+        Collections.reverse(beans);
+        tester.startPage(page);
+        tester.assertLabel("view:rows:1:cells:0", "Hello");
+        tester.assertLabel("view:rows:2:cells:0", "World");
+        assertSame(tester.getComponentFromLastRenderedPage("view:rows:1"), helloRow);
+        final String response = tester.getLastResponseAsString();
+        assertTrue(response.indexOf("World") < response.indexOf("Hello"));
+    }
+
+    @Test
+    public void testRowsReusedAcrossReloads() {
+        Wicketopia plugin = new Wicketopia();
+        plugin.install(tester.getApplication());
+        final Context context = new Context(Context.VIEW);
+        PropertyComponentFactory<EditableBean> factory = plugin.createViewerFactory(EditableBean.class);
+        final BeanListLayoutPanel<EditableBean> panel = new BeanListLayoutPanel<EditableBean>(BeanListLayoutTestPage.PANEL_ID, EditableBean.class, new ReloadingModel("Hello", "World"), context, factory, "stringProperty");
+        panel.setRowKeyFunction(new StringPropertyKey());
+        final BeanListLayoutTestPage page = new BeanListLayoutTestPage(panel);
+        tester.startPage(page);
+        final Component helloRow = tester.getComponentFromLastRenderedPage("view:rows:1");
+
+        tester.startPage(page);
+        assertSame(tester.getComponentFromLastRenderedPage("view:rows:1"), helloRow);
+        final AjaxRequestTarget target = tester.getApplication().newAjaxRequestTarget(page);
+        assertTrue(panel.refreshRow(target, bean("Hello")));
+        assertTrue(target.getComponents().contains(helloRow));
+        assertFalse(panel.refreshRow(target, bean("Goodbye")));
+    }
+
+    @Test
+    public void testIdentityKeysDoNotSurviveReloads() {
+        Wicketopia plugin = new Wicketopia();
+        plugin.install(tester.getApplication());
+        final Context context = new Context(Context.VIEW);
+        PropertyComponentFactory<EditableBean> factory = plugin.createViewerFactory(EditableBean.class);
+        final BeanListLayoutPanel<EditableBean> panel = new BeanListLayoutPanel<EditableBean>(BeanListLayoutTestPage.PANEL_ID, EditableBean.class, new ReloadingModel("Hello"), context, factory, "stringProperty");
+        panel.setRowKeyFunction(RowKeys.IDENTITY);
+        final BeanListLayoutTestPage page = new BeanListLayoutTestPage(panel);
+        tester.startPage(page);
+        final Component helloRow = tester.getComponentFromLastRenderedPage("view:rows:1");
+
+        tester.startPage(page);
+        assertNotSame(tester.getComponentFromLastRenderedPage("view:rows:2"), helloRow);
+    }
+
+    @Test
+    public void testRepeatedBeansKeepTheirRows() {
+        Wicketopia plugin = new Wicketopia();
+        plugin.install(tester.getApplication());
+        final EditableBean bean = new EditableBean();
+        bean.setStringProperty("Hello");
+        final Context context = new Context(Context.VIEW);
+        IModel<List<? extends EditableBean>> model = Model.ofList(Arrays.asList(bean, bean));
+        PropertyComponentFactory<EditableBean> factory = plugin.createViewerFactory(EditableBean.class);
+        tester.startPage(new BeanListLayoutTestPage(new BeanListLayoutPanel<EditableBean>(BeanListLayoutTestPage.PANEL_ID, EditableBean.class, model, context, factory, "stringProperty")));
+        tester.assertLabel("view:rows:1:cells:0", "Hello");
+        tester.assertLabel("view:rows:2:cells:0", "Hello");
+    }
+
+    private static EditableBean bean(String stringProperty) {
+        final EditableBean bean = new EditableBean();
+        bean.setStringProperty(stringProperty);
+        return bean;
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Returns new bean instances every time, like a detachable model loading from a database.
+     */
+    private static class ReloadingModel extends AbstractReadOnlyModel<List<? extends EditableBean>> {
+        private final String[] values;
+
+        private ReloadingModel(String... values) {
+            this.values = values;
+        }
+
+        @Override
+        public List<? extends EditableBean> getObject() {
+            final List<EditableBean> beans = new ArrayList<EditableBean>();
+            for (String value : values) {
+                beans.add(bean(value));
+            }
+            return beans;
+        }
+    }
+
+    private static class StringPropertyKey implements RowKeyFunction<EditableBean> {
+        @Override
+        public Object getRowKey(EditableBean bean) {
+            return bean.getStringProperty();
+        }
+    }
 }
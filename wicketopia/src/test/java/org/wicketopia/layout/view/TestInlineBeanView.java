@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.layout.view;
+
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+import org.testng.annotations.Test;
+import org.wicketopia.Wicketopia;
+import org.wicketopia.context.Context;
+import org.wicketopia.testing.AbstractWicketTestCase;
+import org.wicketopia.util.EditableBean;
+import org.wicketopia.util.Gender;
+
+import static org.testng.Assert.assertTrue;
+
+public class TestInlineBeanView extends AbstractWicketTestCase {
+    @Test
+    public void testRendersAllPropertiesFromOneComponent() {
+        Wicketopia plugin = new Wicketopia();
+        plugin.install(tester.getApplication());
+        final EditableBean bean = new EditableBean();
+        bean.setStringProperty("<Hello>");
+        bean.setIntProperty(123);
+        bean.setGender(Gender.Male);
+        final IModel<EditableBean> model = new Model<EditableBean>(bean);
+        final Context context = new Context(Context.VIEW);
+        assertTrue(InlineBeanView.isSupported(EditableBean.class, context));
+        final InlineBeanView<EditableBean> view = new InlineBeanView<EditableBean>("view", EditableBean.class, model, context);
+        tester.startComponentInPage(view);
+        final String response = tester.getLastResponseAsString();
+        assertTrue(response.contains("class=\"" + CssBeanViewLayoutPanel.DEFAULT_CSS_CLASS + "\""));
+        assertTrue(response.contains("<div class=\"prop-div\"><div class=\"prop-label\">String Property</div><div class=\"prop-component\">&lt;Hello&gt;</div></div>"));
+        assertTrue(response.contains("<div class=\"prop-label\">Int Property</div><div class=\"prop-component\">123</div>"));
+        assertTrue(response.contains("<div class=\"prop-label\">Gender</div><div class=\"prop-component\">Male</div>"));
+        assertTrue(view.isStateless());
+    }
+}
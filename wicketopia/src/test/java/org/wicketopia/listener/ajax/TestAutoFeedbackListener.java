@@ -16,10 +16,14 @@
 
 package org.wicketopia.listener.ajax;
 
+import org.apache.wicket.Component;
 import org.apache.wicket.util.tester.WicketTester;
 import org.testng.annotations.Test;
 import org.wicketopia.testing.AbstractWicketTestCase;
 
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
 
 /**
  * @since 1.0
@@ -38,4 +42,46 @@ public class TestAutoFeedbackListener extends AbstractWicketTestCase {
 
 
     }
+
+    @Test
+    public void testWithRegistry() {
+        WicketTester tester = new WicketTester();
+        AutoFeedbackListener.install(tester.getApplication());
+        final AutoFeedbackTestPage page = new AutoFeedbackTestPage();
+        tester.startPage(page);
+        final Component feedback = page.get("feedback");
+        assertTrue(FeedbackRegistry.find(page).isRegistered(feedback));
+
+        // Nothing to show and nothing to clear...
+        tester.clickLink("noMessageLink");
+        assertFalse(isOnAjaxResponse(tester, feedback));
+
+        tester.clickLink("messageLink");
+        tester.assertComponentOnAjaxResponse("feedback");
+        tester.clearFeedbackMessages();
+
+        // The previous message needs to be cleared...
+        tester.clickLink("noMessageLink");
+        tester.assertComponentOnAjaxResponse("feedback");
+
+        tester.clickLink("noMessageLink");
+        assertFalse(isOnAjaxResponse(tester, feedback));
+    }
+
+    @Test
+    public void testUnregister() {
+        WicketTester tester = new WicketTester();
+        AutoFeedbackListener.install(tester.getApplication());
+        final AutoFeedbackTestPage page = new AutoFeedbackTestPage();
+        tester.startPage(page);
+        final Component feedback = page.get("feedback");
+        FeedbackRegistry.unregister(feedback);
+        assertFalse(FeedbackRegistry.find(page).isRegistered(feedback));
+        tester.clickLink("messageLink");
+        assertFalse(isOnAjaxResponse(tester, feedback));
+    }
+
+    private static boolean isOnAjaxResponse(WicketTester tester, Component component) {
+        return tester.getLastResponseAsString().contains("<component id=\"" + component.getMarkupId() + "\"");
+    }
 }
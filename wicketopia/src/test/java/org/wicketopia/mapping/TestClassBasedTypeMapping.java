@@ -23,6 +23,7 @@ import org.testng.annotations.Test;
 import org.wicketopia.util.Person;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -114,4 +115,26 @@ public class TestClassBasedTypeMapping {
         impl.addTypeOverride(Number.class, "num");
         assertEquals(impl.getTypeName(metaData.getPropertyMetaData("ssn")), "num");
     }
+
+    @Test
+    public void testOverrideInvalidatesResolvedNames() {
+        ClassBasedTypeMapping impl = new ClassBasedTypeMapping("default");
+        assertEquals(impl.getTypeName(Integer.class), "default");
+        impl.addTypeOverride(Number.class, "num");
+        assertEquals(impl.getTypeName(Integer.class), "num");
+        final Map<Class, String> overrides = new HashMap<Class, String>();
+        overrides.put(Integer.class, "integer_override");
+        impl.setTypeOverrides(overrides);
+        assertEquals(impl.getTypeName(Integer.class), "integer_override");
+        assertEquals(impl.getTypeName(Long.class), "num");
+    }
+
+    @Test
+    public void testResolveAll() {
+        typeMapping.addTypeOverride(Number.class, "num");
+        typeMapping.resolveAll(Arrays.<Class<?>>asList(Integer.class, String.class));
+        assertEquals(typeMapping.getTypeName(Integer.class), "num");
+        assertNull(typeMapping.getTypeName(String.class));
+        assertNull(typeMapping.getTypeName(String.class));
+    }
 }
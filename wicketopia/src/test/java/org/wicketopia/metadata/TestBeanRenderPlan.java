@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.metadata;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.metastopheles.BeanMetaData;
+import org.metastopheles.BeanMetaDataFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wicketopia.Wicketopia;
+import org.wicketopia.context.Context;
+import org.wicketopia.context.ContextPredicate;
+import org.wicketopia.testing.AbstractWicketTestCase;
+import org.wicketopia.util.Person;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.*;
+
+public class TestBeanRenderPlan extends AbstractWicketTestCase {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private BeanMetaDataFactory factory;
+    private Wicketopia wicketopia;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    @BeforeMethod
+    public void installWicketopia() {
+        factory = new BeanMetaDataFactory();
+        wicketopia = new Wicketopia();
+        wicketopia.install(tester.getApplication());
+        wicketopia.setBeanMetaDataFactory(factory);
+    }
+
+    private WicketopiaPropertyFacet facet(String propertyName) {
+        final BeanMetaData beanMetaData = factory.getBeanMetaData(Person.class);
+        return WicketopiaPropertyFacet.get(beanMetaData.getPropertyMetaData(propertyName));
+    }
+
+    @Test
+    public void testPlanCachedByContextName() {
+        final BeanRenderPlan plan = wicketopia.getRenderPlan(Person.class, new Context(Context.VIEW));
+        assertSame(wicketopia.getRenderPlan(Person.class, new Context(Context.VIEW)), plan);
+        assertNotSame(wicketopia.getRenderPlan(Person.class, new Context(Context.UPDATE)), plan);
+        assertEquals(plan.getContextName(), Context.VIEW);
+        assertEquals(plan.getBeanType(), Person.class);
+    }
+
+    @Test
+    public void testPlanOrderingAndVisibility() {
+        facet("first").setOrder(3);
+        facet("last").setOrder(1);
+        facet("multiWordProperty").setOrder(2);
+        facet("ssn").setIgnored(true);
+        facet("gender").setVisible(Context.whereContextNameIn(Context.LIST), false);
+
+        final BeanRenderPlan view = wicketopia.getRenderPlan(Person.class, new Context(Context.VIEW));
+        assertEquals(view.getPropertyNames(), Arrays.asList("last", "multiWordProperty", "first", "gender"));
+        final BeanRenderPlan list = wicketopia.getRenderPlan(Person.class, new Context(Context.LIST));
+        assertEquals(list.getPropertyNames(), Arrays.asList("last", "multiWordProperty", "first"));
+        assertNull(list.getPropertyPlan("gender"));
+    }
+
+    @Test
+    public void testProvidersResolved() {
+        final BeanRenderPlan.PropertyPlan first = wicketopia.getRenderPlan(Person.class, new Context(Context.UPDATE)).getPropertyPlan("first");
+        assertNotNull(first.getEditorProvider());
+        assertNotNull(first.getViewerProvider());
+        assertSame(first.getPropertyMetaData(), wicketopia.getBeanMetaData(Person.class).getPropertyMetaData("first"));
+    }
+
+    @Test
+    public void testDynamicPredicateFingerprint() {
+        final ToggledPredicate predicate = new ToggledPredicate();
+        facet("first").setVisible(predicate, false);
+
+        final BeanRenderPlan hidden = wicketopia.getRenderPlan(Person.class, new Context(Context.VIEW));
+        assertNull(hidden.getPropertyPlan("first"));
+
+        predicate.value = false;
+        final BeanRenderPlan shown = wicketopia.getRenderPlan(Person.class, new Context(Context.VIEW));
+        assertNotNull(shown.getPropertyPlan("first"));
+        assertNotSame(shown, hidden);
+
+        predicate.value = true;
+        assertSame(wicketopia.getRenderPlan(Person.class, new Context(Context.VIEW)), hidden);
+    }
+
+    @Test
+    public void testPlanClearedWhenProviderAdded() {
+        final BeanRenderPlan plan = wicketopia.getRenderPlan(Person.class, new Context(Context.VIEW));
+        wicketopia.addPropertyViewerProvider("foo", plan.getPropertyPlan("first").getViewerProvider());
+        assertNotSame(wicketopia.getRenderPlan(Person.class, new Context(Context.VIEW)), plan);
+    }
+
+    @Test
+    public void testVisiblePropertiesWithExplicitNames() {
+        facet("ssn").setIgnored(true);
+        assertEquals(wicketopia.getVisibleProperties(Person.class, new Context(Context.VIEW), "ssn", "last", "first"), Arrays.asList("last", "first"));
+    }
+
+    @Test(expectedExceptions = WicketRuntimeException.class)
+    public void testVisiblePropertiesWithUnknownName() {
+        wicketopia.getVisibleProperties(Person.class, new Context(Context.VIEW), "bogus");
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final class ToggledPredicate implements ContextPredicate {
+        private boolean value = true;
+
+        @Override
+        public boolean evaluate(Context context) {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.metadata;
+
+import org.testng.annotations.Test;
+import org.wicketopia.builder.feature.annotation.WicketopiaMetaDataDecorators;
+
+import java.net.URL;
+
+import static org.testng.Assert.*;
+
+public class TestDecoratorIndex {
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void testFindIndexedRoots() throws Exception {
+        final URL[] roots = DecoratorIndex.findIndexedRoots(getClass().getClassLoader(), null);
+        final URL expected = WicketopiaMetaDataDecorators.class.getProtectionDomain().getCodeSource().getLocation();
+        boolean found = false;
+        for (URL root : roots) {
+            if (root.toString().equals(expected.toString())) {
+                found = true;
+            }
+        }
+        assertTrue(found);
+    }
+
+    @Test
+    public void testIndexContainsDecorators() throws Exception {
+        final URL index = WicketopiaMetaDataDecorators.class.getClassLoader().getResource(DecoratorIndex.INDEX_RESOURCE);
+        assertNotNull(index);
+        assertTrue(DecoratorIndex.readIndex(index).contains(WicketopiaMetaDataDecorators.class.getName()));
+    }
+
+    @Test
+    public void testJarRoot() throws Exception {
+        assertEquals(DecoratorIndex.toRoot(new URL("jar:file:/lib/foo.jar!/" + DecoratorIndex.INDEX_RESOURCE)), new URL("file:/lib/foo.jar"));
+    }
+
+    @Test
+    public void testDirectoryRoot() throws Exception {
+        assertEquals(DecoratorIndex.toRoot(new URL("file:/classes/" + DecoratorIndex.INDEX_RESOURCE)), new URL("file:/classes/"));
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.metadata;
+
+import org.metastopheles.BeanMetaDataFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wicketopia.builder.feature.annotation.WicketopiaMetaDataDecorators;
+import org.wicketopia.util.Person;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.testng.Assert.*;
+
+public class TestDecoratorScanner {
+//----------------------------------------------------------------------------------------------------------------------
+// Fields
+//----------------------------------------------------------------------------------------------------------------------
+
+    private File cacheFile;
+    private DecoratorScanner scanner;
+
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        cacheFile = File.createTempFile("wicketopia-scan", ".cache");
+        cacheFile.delete();
+        cacheFile.deleteOnExit();
+        scanner = new DecoratorScanner();
+        scanner.setCacheFile(cacheFile);
+    }
+
+    @Test
+    public void testDirectoryWithDecorators() throws Exception {
+        final URL classes = codeSource(WicketopiaMetaDataDecorators.class);
+        assertEquals(scanner.scan(new URL[]{classes}), new URL[]{classes});
+    }
+
+    @Test
+    public void testExcludedPackages() throws Exception {
+        scanner.excludePackages("org.wicketopia");
+        assertEquals(scanner.scan(new URL[]{codeSource(WicketopiaMetaDataDecorators.class)}).length, 0);
+    }
+
+    @Test
+    public void testJarIsCached() throws Exception {
+        final URL decorators = createJar("decorators.jar", WicketopiaMetaDataDecorators.class);
+        final URL beans = createJar("beans.jar", Person.class);
+        assertEquals(scanner.scan(new URL[]{decorators, beans}), new URL[]{decorators});
+        final Properties cache = loadCache();
+        assertEquals(cache.size(), 2);
+        assertTrue(cache.containsValue(new File(decorators.toURI()).getAbsolutePath() + "|" + WicketopiaMetaDataDecorators.class.getName()));
+        assertTrue(cache.containsValue(new File(beans.toURI()).getAbsolutePath() + "|"));
+        assertEquals(scanner.scan(new URL[]{decorators, beans}), new URL[]{decorators});
+    }
+
+    @Test
+    public void testStaleCacheEntriesArePruned() throws Exception {
+        final URL decorators = createJar("decorators.jar", WicketopiaMetaDataDecorators.class);
+        final URL beans = createJar("beans.jar", Person.class);
+        scanner.scan(new URL[]{decorators, beans});
+        final Properties cache = loadCache();
+        cache.setProperty("legacy", "true");
+        saveCache(cache);
+        final File beansJar = new File(beans.toURI());
+        assertTrue(beansJar.delete());
+        final File decoratorsJar = new File(decorators.toURI());
+        assertTrue(decoratorsJar.setLastModified(decoratorsJar.lastModified() - 60000L));
+        assertEquals(scanner.scan(new URL[]{decorators}), new URL[]{decorators});
+        final Properties pruned = loadCache();
+        assertEquals(pruned.size(), 1);
+        assertEquals(pruned.values().iterator().next(), decoratorsJar.getAbsolutePath() + "|" + WicketopiaMetaDataDecorators.class.getName());
+    }
+
+    @Test
+    public void testFindDecoratorClasses() throws Exception {
+        final URL decorators = createJar("decorators.jar", WicketopiaMetaDataDecorators.class);
+        final URL beans = createJar("beans.jar", Person.class);
+        assertEquals(scanner.findDecoratorClasses(new URL[]{decorators, beans}, new URL[0]), Collections.singleton(WicketopiaMetaDataDecorators.class.getName()));
+    }
+
+    @Test
+    public void testFindDecoratorClassesHonorsPackageFilters() throws Exception {
+        final URL indexed = createIndexedDirectory("com.example.IndexedDecorators", "org.example.OtherDecorators");
+        final URL decorators = createJar("decorators.jar", WicketopiaMetaDataDecorators.class);
+        scanner.excludePackages("org.wicketopia", "org.example");
+        assertEquals(scanner.findDecoratorClasses(new URL[]{decorators}, new URL[]{indexed}), Collections.singleton("com.example.IndexedDecorators"));
+        scanner = new DecoratorScanner();
+        scanner.setCacheEnabled(false);
+        scanner.includePackages("org.example");
+        assertEquals(scanner.findDecoratorClasses(new URL[]{decorators}, new URL[]{indexed}), Collections.singleton("org.example.OtherDecorators"));
+    }
+
+    @Test
+    public void testCreateBeanMetaDataFactory() throws Exception {
+        final BeanMetaDataFactory factory = scanner.createBeanMetaDataFactory(new URL[]{codeSource(WicketopiaMetaDataDecorators.class)}, new URL[0]);
+        assertFalse(factory.getPropertyMetaDataDecorators().isEmpty());
+        scanner = new DecoratorScanner();
+        scanner.setCacheEnabled(false);
+        scanner.excludePackages("org.wicketopia");
+        assertTrue(scanner.createBeanMetaDataFactory(new URL[]{codeSource(WicketopiaMetaDataDecorators.class)}, new URL[0]).getPropertyMetaDataDecorators().isEmpty());
+    }
+
+    @Test
+    public void testDefaultCacheFileDependsOnUrls() throws Exception {
+        final URL decorators = createJar("decorators.jar", WicketopiaMetaDataDecorators.class);
+        final URL beans = createJar("beans.jar", Person.class);
+        final File directory = cacheFile.getParentFile();
+        scanner.setCacheFile(null);
+        scanner.setCacheDirectory(directory);
+        final File first = scanner.resolveCacheFile(new URL[]{decorators});
+        assertEquals(first.getParentFile(), directory);
+        assertEquals(scanner.resolveCacheFile(new URL[]{decorators}), first);
+        assertFalse(first.equals(scanner.resolveCacheFile(new URL[]{decorators, beans})));
+        scanner.setCacheEnabled(false);
+        assertNull(scanner.resolveCacheFile(new URL[]{decorators}));
+    }
+
+    @Test
+    public void testExcludedJars() throws Exception {
+        scanner.excludeJars("deco*.jar");
+        assertEquals(scanner.scan(new URL[]{createJar("decorators.jar", WicketopiaMetaDataDecorators.class)}).length, 0);
+    }
+
+    @Test
+    public void testIndexedAndUnindexedRoots() throws Exception {
+        final URL indexed = createIndexedDirectory("com.example.IndexedDecorators");
+        final URL unindexed = createJar("decorators.jar", WicketopiaMetaDataDecorators.class);
+        final URL beans = createJar("beans.jar", Person.class);
+        // The indexed root is not probed (it holds no decorator classes here), the un-indexed roots still are.
+        assertEquals(scanner.scan(new URL[]{new URL(indexed.toString().replaceAll("/$", "")), unindexed, beans}, new URL[]{indexed}), new URL[]{indexed, unindexed});
+        assertEquals(scanner.scan(new URL[]{unindexed, beans}, new URL[0]), new URL[]{unindexed});
+    }
+
+    private Properties loadCache() throws Exception {
+        final Properties cache = new Properties();
+        final InputStream in = new FileInputStream(cacheFile);
+        try {
+            cache.load(in);
+        } finally {
+            in.close();
+        }
+        return cache;
+    }
+
+    private void saveCache(Properties cache) throws Exception {
+        final FileOutputStream out = new FileOutputStream(cacheFile);
+        try {
+            cache.store(out, null);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static URL createIndexedDirectory(String... classNames) throws Exception {
+        final File directory = File.createTempFile("wicketopia-scan", "");
+        directory.delete();
+        final File index = new File(directory, DecoratorIndex.INDEX_RESOURCE);
+        index.getParentFile().mkdirs();
+        final FileOutputStream out = new FileOutputStream(index);
+        try {
+            for (String className : classNames) {
+                out.write((className + "\n").getBytes("UTF-8"));
+            }
+        } finally {
+            out.close();
+        }
+        return directory.toURI().toURL();
+    }
+
+    private static URL codeSource(Class<?> type) {
+        return type.getProtectionDomain().getCodeSource().getLocation();
+    }
+
+    private static URL createJar(String name, Class<?> type) throws Exception {
+        final File directory = File.createTempFile("wicketopia-scan", "");
+        directory.delete();
+        directory.mkdirs();
+        directory.deleteOnExit();
+        final File jar = new File(directory, name);
+        jar.deleteOnExit();
+        final String entryName = type.getName().replace('.', '/') + ".class";
+        final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new ZipEntry(entryName));
+            final InputStream in = type.getClassLoader().getResourceAsStream(entryName);
+            try {
+                final byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+        return jar.toURI().toURL();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.metadata;
+
+import org.testng.annotations.Test;
+import org.wicketopia.util.Gender;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.testng.Assert.*;
+
+public class TestMetaDataChangeDetector {
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void testUnchangedClass() {
+        final MetaDataChangeDetector detector = new MetaDataChangeDetector();
+        detector.watch(Gender.class);
+        assertEquals(detector.detectChanges(), Collections.emptyList());
+    }
+
+    @Test
+    public void testChangedClassFile() throws Exception {
+        final File root = File.createTempFile("wicketopia-detector", "");
+        root.delete();
+        final String resourceName = Gender.class.getName().replace('.', '/') + ".class";
+        final File classFile = new File(root, resourceName);
+        classFile.getParentFile().mkdirs();
+        copy(Gender.class.getClassLoader().getResourceAsStream(resourceName), classFile);
+        classFile.setLastModified(classFile.lastModified() - 60000);
+        final Class<?> beanClass = new URLClassLoader(new URL[]{root.toURI().toURL()}, null).loadClass(Gender.class.getName());
+
+        final MetaDataChangeDetector detector = new MetaDataChangeDetector();
+        detector.watch(beanClass);
+        assertEquals(detector.detectChanges(), Collections.emptyList());
+
+        classFile.setLastModified(classFile.lastModified() + 30000);
+        assertEquals(detector.detectChanges(), Arrays.<Class<?>>asList(beanClass));
+        assertEquals(detector.detectChanges(), Collections.emptyList());
+    }
+
+    private static void copy(InputStream in, File file) throws Exception {
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+}
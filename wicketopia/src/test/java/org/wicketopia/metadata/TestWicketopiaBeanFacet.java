@@ -42,6 +42,16 @@ public class TestWicketopiaBeanFacet extends AbstractWicketTestCase {
     }
 
 
+    @Test
+    public void testOnlyPublishedMetaDataIsReadWithoutLocking() {
+        final BeanMetaData unpublished = new BeanMetaDataFactory().getBeanMetaData(Person.class);
+        assertFalse(Wicketopia.isPublished(unpublished));
+        final BeanMetaData published = Wicketopia.get().getBeanMetaData(Person.class);
+        assertTrue(Wicketopia.isPublished(published));
+        assertTrue(WicketopiaBeanFacet.get(published).isFrozen());
+        assertFalse(WicketopiaBeanFacet.get(unpublished).isFrozen());
+    }
+
     @Test
     public void testDefaultDisplayName() {
         final BeanMetaDataFactory factory = new BeanMetaDataFactory();
@@ -69,4 +79,15 @@ public class TestWicketopiaBeanFacet extends AbstractWicketTestCase {
         WicketopiaBeanFacet facet = WicketopiaBeanFacet.get(metaData);
         assertSame(SerializationUtils.clone(facet), facet);
     }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testFreeze() {
+        final BeanMetaDataFactory factory = new BeanMetaDataFactory();
+        final BeanMetaData metaData = factory.getBeanMetaData(Person.class);
+        WicketopiaBeanFacet facet = WicketopiaBeanFacet.get(metaData);
+        assertFalse(facet.isFrozen());
+        facet.freeze();
+        assertTrue(facet.isFrozen());
+        facet.setDisplayName("Something Else");
+    }
 }
@@ -133,4 +133,32 @@ public class TestWicketopiaPropertyFacet extends AbstractWicketTestCase {
         WicketopiaPropertyFacet first = WicketopiaPropertyFacet.get(metaData.getPropertyMetaData("first"));
         assertSame(SerializationUtils.clone(first), first);
     }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testFreeze() {
+        final BeanMetaDataFactory factory = new BeanMetaDataFactory();
+        final BeanMetaData metaData = factory.getBeanMetaData(Person.class);
+        WicketopiaPropertyFacet facet = WicketopiaPropertyFacet.get(metaData.getPropertyMetaData("first"));
+        assertFalse(facet.isFrozen());
+        facet.freeze();
+        assertTrue(facet.isFrozen());
+        facet.setOrder(1);
+    }
+
+    @Test
+    public void testFrozenAfterInstall() {
+        final Wicketopia wicketopia = new Wicketopia();
+        wicketopia.install(tester.getApplication());
+        assertTrue(wicketopia.isFrozen());
+        WicketopiaPropertyFacet facet = WicketopiaPropertyFacet.get(wicketopia.getBeanMetaData(Person.class).getPropertyMetaData("first"));
+        assertTrue(facet.isFrozen());
+        assertNotNull(facet.getEditorType());
+        assertNotNull(facet.getViewerType());
+        try {
+            facet.getEditorFeatures().clear();
+            fail("Editor features of a frozen facet should not be modifiable.");
+        } catch (UnsupportedOperationException e) {
+            // Expected...
+        }
+    }
 }
@@ -27,10 +27,13 @@ import org.wicketopia.factory.PropertyComponentFactory;
 import org.wicketopia.model.table.DefaultSortableCollectionDataProvider;
 import org.wicketopia.testing.AbstractWicketopiaTestCase;
 import org.wicketopia.util.EditableBean;
+import org.wicketopia.util.Gender;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.testng.Assert.assertTrue;
+
 public class TestBeanPropertyColumn extends AbstractWicketopiaTestCase {
     @Test
     public void testRendering() {
@@ -47,4 +50,22 @@ public class TestBeanPropertyColumn extends AbstractWicketopiaTestCase {
         tester.assertNoErrorMessage();
     }
 
+    @Test
+    public void testInlineRendering() {
+        List<EditableBean> beans = new ArrayList<EditableBean>();
+        final EditableBean bean1 = new EditableBean();
+        bean1.setStringProperty("Inline & Fast");
+        bean1.setGender(Gender.Female);
+        beans.add(bean1);
+        final SortableDataProvider<EditableBean, String> dataProvider = new DefaultSortableCollectionDataProvider<EditableBean>("gender", SortOrder.ASCENDING, beans);
+        final Context context = new Context(Context.LIST);
+        final List<IColumn<EditableBean, String>> columns = Wicketopia.get().createInlineColumns(EditableBean.class, context, "stringProperty", "gender");
+        assertTrue(columns.get(0) instanceof InlineBeanPropertyColumn);
+        final DefaultDataTable<EditableBean, String> table = new DefaultDataTable<EditableBean, String>(DataTableTestPage.TABLE_ID, columns, dataProvider, Integer.MAX_VALUE);
+        tester.startPage(new DataTableTestPage<EditableBean>(table));
+        tester.assertNoErrorMessage();
+        final String response = tester.getLastResponseAsString();
+        assertTrue(response.contains(">Inline &amp; Fast<"));
+        assertTrue(response.contains(">Female<"));
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.model.label;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.Localizer;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.repeater.RepeatingView;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wicketopia.testing.AbstractWicketTestCase;
+import org.wicketopia.util.Gender;
+
+import static org.testng.Assert.*;
+
+public class TestDisplayNameCache extends AbstractWicketTestCase {
+    private DisplayNameCache cache;
+    private CountingLocalizer localizer;
+
+    @BeforeMethod
+    public void createCache() {
+        cache = new DisplayNameCache();
+        localizer = new CountingLocalizer();
+    }
+
+    @Test
+    public void testResolvesOncePerScope() {
+        assertEquals(cache.getDisplayName("first", "First", localizer, null), "First (resolved)");
+        assertEquals(cache.getDisplayName("first", "First", localizer, null), "First (resolved)");
+        assertEquals(localizer.count, 1);
+
+        final Component component = new Label("label");
+        assertEquals(cache.getDisplayName("first", "First", localizer, component), "First (resolved)");
+        assertEquals(cache.getDisplayName("first", "First", localizer, component), "First (resolved)");
+        assertEquals(localizer.count, 2);
+    }
+
+    @Test
+    public void testRepeaterItemsShareScope() {
+        final RepeatingView rows = new RepeatingView("rows");
+        final Label[] labels = new Label[3];
+        for (int i = 0; i < labels.length; i++) {
+            final WebMarkupContainer row = new WebMarkupContainer(rows.newChildId());
+            rows.add(row);
+            labels[i] = new Label("label");
+            row.add(labels[i]);
+        }
+        for (Label label : labels) {
+            assertEquals(cache.getDisplayName("first", "First", localizer, label), "First (resolved)");
+        }
+        assertEquals(localizer.count, 1);
+    }
+
+    @Test
+    public void testRepeaterItemsShareEnumLabels() {
+        final RepeatingView rows = new RepeatingView("rows");
+        String[] previous = null;
+        for (int i = 0; i < 3; i++) {
+            final WebMarkupContainer row = new WebMarkupContainer(rows.newChildId());
+            rows.add(row);
+            final Label label = new Label("gender");
+            row.add(label);
+            final String[] labels = cache.getEnumLabels(Gender.class, localizer, label);
+            if (previous != null) {
+                assertSame(labels, previous);
+            }
+            previous = labels;
+        }
+        assertEquals(localizer.count, Gender.values().length);
+    }
+
+    @Test
+    public void testDistinguishesMessageKeysAndDefaults() {
+        cache.getDisplayName("first", "First", localizer, null);
+        cache.getDisplayName("last", "First", localizer, null);
+        assertEquals(cache.getDisplayName("first", "Given Name", localizer, null), "Given Name (resolved)");
+        assertEquals(localizer.count, 3);
+    }
+
+    @Test
+    public void testPropertiesChangeClearsCache() {
+        cache.getDisplayName("first", "First", localizer, null);
+        cache.propertiesChanged("Test.properties");
+        cache.getDisplayName("first", "First", localizer, null);
+        assertEquals(localizer.count, 2);
+    }
+
+    private static final class CountingLocalizer extends Localizer {
+        private int count;
+
+        @Override
+        public String getString(String key, Component component, String defaultValue) {
+            count++;
+            return defaultValue + " (resolved)";
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.model.property;
+
+import org.apache.commons.lang.SerializationUtils;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.model.Model;
+import org.testng.annotations.Test;
+import org.wicketopia.util.Person;
+
+import java.beans.Introspector;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+public class TestCompiledPropertyModel {
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void testGetAndSet() {
+        final Person person = new Person();
+        person.setFirst("John");
+        final CompiledPropertyModel<String> model = new CompiledPropertyModel<String>(Model.of(person), Person.class, "first");
+        assertEquals(model.getObject(), "John");
+        model.setObject("Jane");
+        assertEquals(person.getFirst(), "Jane");
+        assertEquals(model.getObjectClass(), String.class);
+        assertEquals(model.getPropertyGetter().getName(), "getFirst");
+        assertEquals(model.getPropertySetter().getName(), "setFirst");
+    }
+
+    @Test
+    public void testNestedPath() {
+        final Employee employee = new Employee();
+        final CompiledPropertyModel<String> model = new CompiledPropertyModel<String>(employee, "person.last");
+        assertNull(model.getObject());
+        model.setObject("Doe");
+        assertNotNull(employee.getPerson());
+        assertEquals(employee.getPerson().getLast(), "Doe");
+        assertEquals(model.getObject(), "Doe");
+    }
+
+    @Test
+    public void testUncompilableExpression() {
+        final Employee employee = new Employee();
+        employee.getAttributes().put("title", "Manager");
+        assertNull(PropertyAccessor.forPath(Employee.class, "attributes[title]"));
+        final CompiledPropertyModel<String> model = new CompiledPropertyModel<String>(employee, "attributes[title]");
+        assertEquals(model.getObject(), "Manager");
+    }
+
+    @Test(expectedExceptions = WicketRuntimeException.class)
+    public void testReadOnlyProperty() {
+        new CompiledPropertyModel<Integer>(new Employee(), "readOnly").setObject(5);
+    }
+
+    @Test
+    public void testSerialization() {
+        final Person person = new Person();
+        person.setFirst("John");
+        final CompiledPropertyModel<String> model = new CompiledPropertyModel<String>(Model.of(person), Person.class, "first");
+        assertEquals(model.getObject(), "John");
+        @SuppressWarnings("unchecked")
+        final CompiledPropertyModel<String> clone = (CompiledPropertyModel<String>) SerializationUtils.clone(model);
+        assertEquals(clone.getObject(), "John");
+    }
+
+    @Test
+    public void testAccessorCached() {
+        assertSame(PropertyAccessor.forPath(Person.class, "first"), PropertyAccessor.forPath(Person.class, "first"));
+    }
+
+    @Test
+    public void testCacheDoesNotKeepBeanTypesLoaded() throws Exception {
+        final WeakReference<ClassLoader> loader = cacheAccessorFromDiscardableLoader();
+        final List<byte[]> garbage = new ArrayList<byte[]>();
+        for (int i = 0; i < 50 && loader.get() != null; ++i) {
+            System.gc();
+            garbage.add(new byte[1 << 20]);
+        }
+        assertNull(loader.get());
+    }
+
+    private WeakReference<ClassLoader> cacheAccessorFromDiscardableLoader() throws Exception {
+        // A loader which loads Person itself (rather than delegating), like a redeployed application's would...
+        final URL classes = Person.class.getProtectionDomain().getCodeSource().getLocation();
+        final ClassLoader loader = new URLClassLoader(new URL[]{classes}, null);
+        final Class<?> personClass = loader.loadClass(Person.class.getName());
+        assertNotSame(personClass, Person.class);
+        assertNotNull(PropertyAccessor.forPath(personClass, "first"));
+        // The introspector's own cache holds on to the class until memory runs low...
+        Introspector.flushFromCaches(personClass);
+        return new WeakReference<ClassLoader>(loader);
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    public static class Employee implements Serializable {
+        private Person person;
+        private final Map<String, String> attributes = new HashMap<String, String>();
+
+        public Map<String, String> getAttributes() {
+            return attributes;
+        }
+
+        public Person getPerson() {
+            return person;
+        }
+
+        public void setPerson(Person person) {
+            this.person = person;
+        }
+
+        public int getReadOnly() {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.model.table;
+
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.SortOrder;
+import org.testng.annotations.Test;
+import org.wicketopia.util.Gender;
+import org.wicketopia.util.Person;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.testng.Assert.*;
+
+public class TestSortableCollectionDataProvider {
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static List<Person> createPeople(int count, long seed) {
+        final Random random = new Random(seed);
+        final List<Person> people = new ArrayList<Person>(count);
+        for (int i = 0; i < count; ++i) {
+            final Person person = new Person();
+            person.setSsn(random.nextInt(10) == 0 ? null : random.nextInt(count / 2 + 1));
+            person.setFirst("first" + random.nextInt(count));
+            person.setGender(Gender.values()[random.nextInt(Gender.values().length)]);
+            people.add(person);
+        }
+        return people;
+    }
+
+    private static List<Person> expected(List<Person> people, final boolean ascending) {
+        final List<Person> sorted = new ArrayList<Person>(people);
+        Collections.sort(sorted, new Comparator<Person>() {
+            @Override
+            public int compare(Person left, Person right) {
+                if (left.getSsn() == null || right.getSsn() == null) {
+                    return left.getSsn() == null ? (right.getSsn() == null ? 0 : 1) : -1;
+                }
+                return ascending ? left.getSsn().compareTo(right.getSsn()) : right.getSsn().compareTo(left.getSsn());
+            }
+        });
+        return sorted;
+    }
+
+    private static List<Person> page(SortableCollectionDataProvider<Person> provider, long first, long count) {
+        final List<Person> page = new ArrayList<Person>();
+        for (Iterator<? extends Person> i = provider.iterator(first, count); i.hasNext(); ) {
+            page.add(i.next());
+        }
+        return page;
+    }
+
+    @Test
+    public void testFullSort() {
+        final List<Person> people = createPeople(500, 1L);
+        final DefaultSortableCollectionDataProvider<Person> provider = new DefaultSortableCollectionDataProvider<Person>("ssn", SortOrder.ASCENDING, people);
+        assertEquals(page(provider, 0, people.size()), expected(people, true));
+        provider.setSort("ssn", SortOrder.DESCENDING);
+        assertEquals(page(provider, 0, people.size()), expected(people, false));
+    }
+
+    @Test
+    public void testPartialSort() {
+        final List<Person> people = createPeople(2000, 2L);
+        final DefaultSortableCollectionDataProvider<Person> provider = new DefaultSortableCollectionDataProvider<Person>("ssn", SortOrder.ASCENDING, people);
+        assertEquals(page(provider, 10, 10), expected(people, true).subList(10, 20));
+        assertEquals(page(provider, 1990, 20), expected(people, true).subList(1990, 2000));
+    }
+
+    @Test
+    public void testLargeSort() {
+        final List<Person> people = createPeople(100000, 3L);
+        final DefaultSortableCollectionDataProvider<Person> provider = new DefaultSortableCollectionDataProvider<Person>("ssn", SortOrder.DESCENDING, people);
+        assertEquals(page(provider, 0, people.size()), expected(people, false));
+    }
+
+    @Test
+    public void testParallelSort() {
+        final List<Person> people = createPeople(SortKeys.PARALLEL_THRESHOLD * 2, 11L);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final DefaultSortableCollectionDataProvider<Person> provider = new DefaultSortableCollectionDataProvider<Person>("ssn", SortOrder.ASCENDING, people) {
+                @Override
+                protected ExecutorService getSortExecutor() {
+                    return executor;
+                }
+            };
+            assertEquals(page(provider, 0, people.size()), expected(people, true));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSameSizeChangesDetectedOnNextRequest() {
+        final List<Person> people = createPeople(100, 12L);
+        final DefaultSortableCollectionDataProvider<Person> provider = new DefaultSortableCollectionDataProvider<Person>("ssn", SortOrder.ASCENDING, people);
+        final Person before = page(provider, 0, 10).get(0);
+        final Person first = new Person();
+        first.setSsn(-1);
+        people.set(50, first);
+        // Within a request, the collection is assumed to be unchanged...
+        assertSame(page(provider, 0, 10).get(0), before);
+        provider.detach();
+        assertSame(page(provider, 0, 10).get(0), first);
+    }
+
+    @Test
+    public void testComparableKeys() {
+        final List<Person> people = createPeople(100, 4L);
+        final DefaultSortableCollectionDataProvider<Person> provider = new DefaultSortableCollectionDataProvider<Person>("first", SortOrder.ASCENDING, people);
+        final List<Person> page = page(provider, 0, people.size());
+        for (int i = 1; i < page.size(); ++i) {
+            assertTrue(page.get(i - 1).getFirst().compareTo(page.get(i).getFirst()) <= 0);
+        }
+    }
+
+    @Test
+    public void testCollectionChangesDetected() {
+        final List<Person> people = createPeople(100, 5L);
+        final DefaultSortableCollectionDataProvider<Person> provider = new DefaultSortableCollectionDataProvider<Person>("ssn", SortOrder.ASCENDING, people);
+        page(provider, 0, 10);
+        provider.detach();
+        final Person first = new Person();
+        first.setSsn(-1);
+        people.remove(50);
+        people.add(first);
+        assertSame(page(provider, 0, 10).get(0), first);
+    }
+
+    @Test
+    public void testReplacedItemDetected() {
+        final List<Person> people = createPeople(100, 9L);
+        final DefaultSortableCollectionDataProvider<Person> provider = new DefaultSortableCollectionDataProvider<Person>("ssn", SortOrder.ASCENDING, people);
+        page(provider, 0, 10);
+        provider.detach();
+        final Person first = new Person();
+        first.setSsn(-1);
+        people.set(50, first);
+        assertSame(page(provider, 0, 10).get(0), first);
+    }
+
+    @Test
+    public void testClearSortCache() {
+        final List<Person> people = createPeople(100, 7L);
+        final DefaultSortableCollectionDataProvider<Person> provider = new DefaultSortableCollectionDataProvider<Person>("ssn", SortOrder.ASCENDING, people);
+        page(provider, 0, 10);
+        final Person first = people.get(50);
+        first.setSsn(-1);
+        provider.clearSortCache();
+        assertSame(page(provider, 0, 10).get(0), first);
+    }
+
+    @Test
+    public void testNoOrder() {
+        final List<Person> people = createPeople(10, 6L);
+        final DefaultSortableCollectionDataProvider<Person> provider = new DefaultSortableCollectionDataProvider<Person>(SortableCollectionDataProvider.NO_ORDER, SortOrder.NONE, people);
+        assertEquals(page(provider, 2, 5), people.subList(2, 7));
+    }
+
+    @Test
+    public void testFilterByValue() {
+        final List<Person> people = createPeople(1000, 8L);
+        final DefaultSortableCollectionDataProvider<Person> provider = new DefaultSortableCollectionDataProvider<Person>("ssn", SortOrder.ASCENDING, people);
+        final PropertyFilterState<Person> filterState = new PropertyFilterState<Person>(Person.class);
+        provider.setFilterState(filterState);
+        assertEquals(provider.size(), people.size());
+        filterState.setValue("gender", Gender.Female);
+        final List<Person> expected = new ArrayList<Person>();
+        for (Person person : expected(people, true)) {
+            if (person.getGender() == Gender.Female) {
+                expected.add(person);
+            }
+        }
+        assertEquals(provider.size(), expected.size());
+        assertEquals(page(provider, 0, expected.size()), expected);
+        assertEquals(page(provider, 5, 10), expected.subList(5, 15));
+        assertEquals(filterState.getValueModel("gender").getObject(), Gender.Female);
+        assertNull(filterState.getPrefixModel("gender").getObject());
+    }
+
+    @Test
+    public void testFilterByRangeAndPrefix() {
+        final List<Person> people = createPeople(1000, 9L);
+        final DefaultSortableCollectionDataProvider<Person> provider = new DefaultSortableCollectionDataProvider<Person>("ssn", SortOrder.DESCENDING, people);
+        final PropertyFilterState<Person> filterState = new PropertyFilterState<Person>(Person.class);
+        provider.setFilterState(filterState);
+        filterState.setRange("ssn", 100, 200);
+        filterState.getPrefixModel("first").setObject("FIRST1");
+        final List<Person> expected = new ArrayList<Person>();
+        for (Person person : expected(people, false)) {
+            if (person.getSsn() != null && person.getSsn() >= 100 && person.getSsn() <= 200 && person.getFirst().startsWith("first1")) {
+                expected.add(person);
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(provider.size(), expected.size());
+        assertEquals(page(provider, 0, expected.size()), expected);
+        assertEquals(filterState.getPrefixModel("first").getObject(), "FIRST1");
+        assertNull(filterState.getValueModel("ssn").getObject());
+        assertNull(filterState.getPrefixModel("ssn").getObject());
+
+        filterState.clear();
+        assertEquals(provider.size(), people.size());
+    }
+
+    @Test
+    public void testFilterByRangeOfOtherType() {
+        final List<Person> people = createPeople(1000, 10L);
+        final DefaultSortableCollectionDataProvider<Person> provider = new DefaultSortableCollectionDataProvider<Person>("ssn", SortOrder.ASCENDING, people);
+        final PropertyFilterState<Person> filterState = new PropertyFilterState<Person>(Person.class);
+        provider.setFilterState(filterState);
+        filterState.setRange("ssn", 100L, 200.5);
+        final List<Person> expected = new ArrayList<Person>();
+        for (Person person : expected(people, true)) {
+            if (person.getSsn() != null && person.getSsn() >= 100 && person.getSsn() <= 200) {
+                expected.add(person);
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(page(provider, 0, expected.size()), expected);
+
+        filterState.setRange("ssn", "100", null);
+        assertEquals(provider.size(), 0);
+    }
+}
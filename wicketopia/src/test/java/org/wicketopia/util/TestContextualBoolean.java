@@ -18,6 +18,11 @@ package org.wicketopia.util;
 
 import org.testng.annotations.Test;
 import org.wicketopia.context.Context;
+import org.wicketopia.context.ContextPredicate;
+import org.wicketopia.context.StaticContextPredicate;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.testng.Assert.*;
 
@@ -43,4 +48,72 @@ public class TestContextualBoolean {
         cb.setValue(Context.whereContextNameIn(Context.CREATE), true);
         assertFalse(cb.getValue(context));
     }
+
+    @Test
+    public void testStaticPredicatesEvaluatedOncePerContextName() {
+        final CountingPredicate predicate = new CountingPredicate(true);
+        final ContextualBoolean cb = new ContextualBoolean(false);
+        cb.setValue(predicate, true);
+        assertTrue(cb.getValue(new Context(Context.CREATE)));
+        assertTrue(cb.getValue(new Context(Context.CREATE)));
+        assertEquals(predicate.count, 1);
+        assertTrue(cb.getValue(new Context(Context.UPDATE)));
+        assertEquals(predicate.count, 2);
+    }
+
+    @Test
+    public void testDynamicPredicatesEvaluatedEachTime() {
+        final DynamicPredicate predicate = new DynamicPredicate();
+        final ContextualBoolean cb = new ContextualBoolean(true);
+        cb.setValue(Context.whereContextNameIn(Context.CREATE), true);
+        cb.setValue(predicate, true);
+        final Context context = new Context(Context.CREATE);
+        assertFalse(cb.getValue(context));
+        predicate.value = true;
+        assertTrue(cb.getValue(context));
+        assertFalse(cb.getValue(new Context(Context.UPDATE)));
+
+        final List<ContextPredicate> dynamic = new ArrayList<ContextPredicate>();
+        cb.collectDynamicPredicates(dynamic);
+        assertEquals(dynamic.size(), 1);
+        assertSame(dynamic.get(0), predicate);
+    }
+
+    @Test
+    public void testContextIds() {
+        assertEquals(new Context("foo").getId(), Context.idOf("foo"));
+        assertFalse(Context.idOf("foo") == Context.idOf("bar"));
+        assertSame(Context.forName("foo"), Context.forName("foo"));
+        assertTrue(Context.whereContextNameIn("foo", "bar").evaluate(new Context("bar")));
+        assertFalse(Context.whereContextNameIn("foo", "bar").evaluate(new Context("baz")));
+        assertTrue(Context.whereContextNameIn(Context.ALL).evaluate(new Context("baz")));
+    }
+
+//----------------------------------------------------------------------------------------------------------------------
+// Inner Classes
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static final class CountingPredicate implements StaticContextPredicate {
+        private final boolean value;
+        private int count;
+
+        private CountingPredicate(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean evaluate(Context context) {
+            count++;
+            return value;
+        }
+    }
+
+    private static final class DynamicPredicate implements ContextPredicate {
+        private boolean value;
+
+        @Override
+        public boolean evaluate(Context context) {
+            return value;
+        }
+    }
 }
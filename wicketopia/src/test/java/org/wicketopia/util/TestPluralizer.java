@@ -16,17 +16,87 @@
 
 package org.wicketopia.util;
 
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
 
 public class TestPluralizer {
+    private Pluralizer.PluralizationRule registeredRule;
+
+    @AfterMethod
+    public void removeRegisteredRule() {
+        if (registeredRule != null) {
+            Pluralizer.unregisterPluralizationRule(registeredRule);
+            registeredRule = null;
+        }
+    }
+
     @Test
     public void testCommonWords() {
         assertPlural("Person", "Persons");
         assertPlural("Party", "Parties");
     }
 
+    @Test
+    public void testPluralizationIsMemoized() {
+        Pluralizer.pluralize("Memoized Box");
+        final long hits = Pluralizer.getPluralizationCache().getHits();
+        assertPlural("Memoized Box", "Memoized Boxes");
+        assertEquals(Pluralizer.getPluralizationCache().getHits(), hits + 1);
+    }
+
+    @Test
+    public void testRuleRegistrationInvalidatesMemo() {
+        assertPlural("Memoized Child", "Memoized Childs");
+        registeredRule = new Pluralizer.PluralizationRule() {
+            public boolean appliesTo(String term) {
+                return term.endsWith(" Child");
+            }
+
+            public String apply(String term) {
+                return term + "ren";
+            }
+        };
+        Pluralizer.registerPluralizationRule(registeredRule);
+        assertPlural("Memoized Child", "Memoized Children");
+    }
+
+    @Test
+    public void testStaleValueNotMemoizedAfterClear() {
+        final BoundedMemo<String, String> memo = new BoundedMemo<String, String>(4);
+        final long generation = memo.getGeneration();
+        memo.clear();
+        memo.put("key", "stale", generation);
+        assertNull(memo.get("key"));
+        memo.put("key", "fresh", memo.getGeneration());
+        assertEquals(memo.get("key"), "fresh");
+    }
+
+    @Test
+    public void testSplitIntoWordsIsMemoized() {
+        assertEquals(Pluralizer.splitIntoWords("memoizedFirstName"), "Memoized First Name");
+        final long hits = Pluralizer.getWordsCache().getHits();
+        assertEquals(Pluralizer.splitIntoWords("memoizedFirstName"), "Memoized First Name");
+        assertEquals(Pluralizer.getWordsCache().getHits(), hits + 1);
+    }
+
+    @Test
+    public void testMemoIsBounded() {
+        final BoundedMemo<Integer, String> memo = new BoundedMemo<Integer, String>(4);
+        for (int i = 0; i < 10; i++) {
+            memo.put(i, String.valueOf(i));
+        }
+        assertEquals(memo.size(), 4);
+        assertEquals(memo.get(9), "9");
+        memo.clear();
+        assertEquals(memo.size(), 0);
+        assertEquals(memo.get(9), null);
+        assertEquals(memo.getMisses(), 1);
+        assertEquals(memo.getHits(), 1);
+    }
+
     private void assertPlural(String singular, String plural) {
         assertEquals(Pluralizer.pluralize(singular), plural);
     }
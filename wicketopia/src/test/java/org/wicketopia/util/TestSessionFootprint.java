@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2011 Carman Consulting, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wicketopia.util;
+
+import org.apache.commons.lang.SerializationUtils;
+import org.apache.wicket.Page;
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.SortOrder;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.DefaultDataTable;
+import org.apache.wicket.extensions.markup.html.repeater.data.table.IColumn;
+import org.apache.wicket.extensions.markup.html.repeater.util.SortableDataProvider;
+import org.metastopheles.BeanMetaData;
+import org.metastopheles.PropertyMetaData;
+import org.testng.annotations.Test;
+import org.wicketopia.Wicketopia;
+import org.wicketopia.context.Context;
+import org.wicketopia.factory.PropertyComponentFactory;
+import org.wicketopia.metadata.WicketopiaBeanFacet;
+import org.wicketopia.metadata.WicketopiaPropertyFacet;
+import org.wicketopia.model.column.BeanPropertyColumn;
+import org.wicketopia.model.column.DataTableTestPage;
+import org.wicketopia.model.column.InlineBeanPropertyColumn;
+import org.wicketopia.model.table.DefaultSortableCollectionDataProvider;
+import org.wicketopia.testing.AbstractWicketopiaTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class TestSessionFootprint extends AbstractWicketopiaTestCase {
+//----------------------------------------------------------------------------------------------------------------------
+// Other Methods
+//----------------------------------------------------------------------------------------------------------------------
+
+    private static List<EditableBean> createBeans(int count) {
+        final List<EditableBean> beans = new ArrayList<EditableBean>();
+        for (int i = 0; i < count; ++i) {
+            final EditableBean bean = new EditableBean();
+            bean.setStringProperty("Bean " + i);
+            bean.setGender(i % 2 == 0 ? Gender.Female : Gender.Male);
+            beans.add(bean);
+        }
+        return beans;
+    }
+
+    private long measure(String label, List<IColumn<EditableBean, String>> columns) {
+        final SortableDataProvider<EditableBean, String> dataProvider = new DefaultSortableCollectionDataProvider<EditableBean>("gender", SortOrder.ASCENDING, createBeans(25));
+        final DefaultDataTable<EditableBean, String> table = new DefaultDataTable<EditableBean, String>(DataTableTestPage.TABLE_ID, columns, dataProvider, Integer.MAX_VALUE);
+        tester.startPage(new DataTableTestPage<EditableBean>(table));
+        tester.assertNoErrorMessage();
+        final Page page = tester.getLastRenderedPage();
+        final long size = SessionFootprint.report(label, page);
+        assertNotNull(SerializationUtils.clone(page));
+        return size;
+    }
+
+    @Test
+    public void testColumnRoundTrip() {
+        final PropertyComponentFactory<EditableBean> factory = Wicketopia.get().createViewerFactory(EditableBean.class);
+        final Context context = new Context(Context.LIST);
+        final BeanPropertyColumn<EditableBean> column = new BeanPropertyColumn<EditableBean>(factory, "gender", context);
+        final Object copy = SerializationUtils.clone(column);
+        assertEquals(copy.getClass(), BeanPropertyColumn.class);
+        assertEquals(((BeanPropertyColumn<?>) copy).getSortProperty(), "gender");
+
+        final List<IColumn<EditableBean, String>> inline = Wicketopia.get().createInlineColumns(EditableBean.class, context, "gender");
+        assertEquals(SerializationUtils.clone(inline.get(0)).getClass(), InlineBeanPropertyColumn.class);
+        assertTrue(SessionFootprint.serializedSize(column) < 512);
+    }
+
+    @Test
+    public void testContextRoundTrip() {
+        final Context context = new Context(Context.UPDATE);
+        final Context copy = (Context) SerializationUtils.clone(context);
+        assertEquals(copy.getName(), Context.UPDATE);
+        assertSame(copy, Context.forName(Context.UPDATE));
+    }
+
+    @Test
+    public void testFacetRoundTrip() {
+        final BeanMetaData beanMetaData = Wicketopia.get().getBeanMetaData(EditableBean.class);
+        final WicketopiaBeanFacet beanFacet = WicketopiaBeanFacet.get(beanMetaData);
+        assertSame(SerializationUtils.clone(beanFacet), beanFacet);
+        final PropertyMetaData propertyMetaData = beanMetaData.getPropertyMetaData("gender");
+        final WicketopiaPropertyFacet propertyFacet = WicketopiaPropertyFacet.get(propertyMetaData);
+        assertSame(SerializationUtils.clone(propertyFacet), propertyFacet);
+        assertTrue(SessionFootprint.serializedSize(propertyFacet) < 256);
+    }
+
+    @Test
+    public void testPageFootprint() {
+        final Context context = new Context(Context.LIST);
+        final PropertyComponentFactory<EditableBean> factory = Wicketopia.get().createViewerFactory(EditableBean.class);
+        final List<IColumn<EditableBean, String>> columns = new ArrayList<IColumn<EditableBean, String>>();
+        columns.add(new BeanPropertyColumn<EditableBean>(factory, "stringProperty", context));
+        columns.add(new BeanPropertyColumn<EditableBean>(factory, "gender", context));
+        final long componentSize = measure("Data table (component columns)", columns);
+        final long inlineSize = measure("Data table (inline columns)", Wicketopia.get().createInlineColumns(EditableBean.class, context, "stringProperty", "gender"));
+        assertTrue(inlineSize < componentSize);
+    }
+}